@@ -0,0 +1,447 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.examples.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Reference server side of the
+ * {@link org.fusesource.restygwt.client.dispatcher.BatchingFilterawareDispatcher}: takes a
+ * <code>multipart/mixed</code> POST with one <code>application/http</code> part per request,
+ * forwards each request to the servlet mapped to its path and answers with one
+ * <code>application/http</code> part per response, echoing the <code>Content-ID</code> of
+ * the request part.
+ *
+ * The sub requests are executed one after the other within this request.
+ */
+public class BatchServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String CRLF = "\r\n";
+
+    private static final String UTF8 = "UTF-8";
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String boundary = boundary(request.getContentType());
+        if (boundary == null) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "multipart/mixed expected");
+            return;
+        }
+
+        String body = read(request);
+        String responseBoundary = "response_" + boundary;
+        StringBuilder result = new StringBuilder();
+
+        for (String part : parts(body, boundary)) {
+            String[] mime = splitHead(part);
+            String contentId = null;
+            for (String line : mime[0].split("\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-ID")) {
+                    contentId = line.substring(colon + 1).trim();
+                }
+            }
+
+            String[] http = splitHead(mime[1]);
+            String[] lines = http[0].split("\n");
+            String[] requestLine = lines[0].trim().split(" ");
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    headers.put(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+                }
+            }
+
+            BufferedResponse partResponse = new BufferedResponse(response);
+            execute(request, requestLine[0], requestLine[1], headers, http[1], partResponse);
+
+            result.append("--").append(responseBoundary).append(CRLF);
+            result.append("Content-Type: application/http").append(CRLF);
+            if (contentId != null) {
+                result.append("Content-ID: ").append(contentId).append(CRLF);
+            }
+            result.append(CRLF);
+            result.append("HTTP/1.1 ").append(partResponse.status).append(' ')
+                    .append(partResponse.statusText()).append(CRLF);
+            for (Map.Entry<String, List<String>> header : partResponse.headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    result.append(header.getKey()).append(": ").append(value).append(CRLF);
+                }
+            }
+            result.append(CRLF);
+            result.append(partResponse.text());
+            result.append(CRLF);
+        }
+        result.append("--").append(responseBoundary).append("--").append(CRLF);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("multipart/mixed; boundary=" + responseBoundary);
+        response.setCharacterEncoding(UTF8);
+        response.getWriter().print(result);
+    }
+
+    private void execute(HttpServletRequest request, final String method, String url,
+            final Map<String, String> headers, final String body, BufferedResponse response)
+            throws ServletException, IOException {
+        // strip scheme, host and context path
+        String path = url;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash >= 0 ? path.substring(slash) : "/";
+        }
+        if (request.getContextPath().length() > 0 && path.startsWith(request.getContextPath())) {
+            path = path.substring(request.getContextPath().length());
+        }
+
+        RequestDispatcher dispatcher = getServletContext().getRequestDispatcher(path);
+        if (dispatcher == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        final byte[] content = body.getBytes(UTF8);
+        HttpServletRequestWrapper partRequest = new HttpServletRequestWrapper(request) {
+
+            @Override
+            public String getMethod() {
+                return method;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    if (header.getKey().equalsIgnoreCase(name)) {
+                        return header.getValue();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            @SuppressWarnings("rawtypes")
+            public Enumeration getHeaders(String name) {
+                String value = getHeader(name);
+                List<String> values = new ArrayList<String>();
+                if (value != null) {
+                    values.add(value);
+                }
+                return Collections.enumeration(values);
+            }
+
+            @Override
+            @SuppressWarnings("rawtypes")
+            public Enumeration getHeaderNames() {
+                return Collections.enumeration(headers.keySet());
+            }
+
+            @Override
+            public String getContentType() {
+                return getHeader("Content-Type");
+            }
+
+            @Override
+            public int getContentLength() {
+                return content.length;
+            }
+
+            @Override
+            public ServletInputStream getInputStream() {
+                final ByteArrayInputStream in = new ByteArrayInputStream(content);
+                return new ServletInputStream() {
+
+                    @Override
+                    public int read() {
+                        return in.read();
+                    }
+                };
+            }
+
+            @Override
+            public BufferedReader getReader() throws IOException {
+                return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), UTF8));
+            }
+        };
+
+        dispatcher.forward(partRequest, response);
+    }
+
+    private static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/mixed")) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.toLowerCase().startsWith("boundary=")) {
+                return param.substring("boundary=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    private static String read(HttpServletRequest request) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), UTF8));
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            body.append(buffer, 0, read);
+        }
+        return body.toString();
+    }
+
+    private static List<String> parts(String body, String boundary) {
+        List<String> parts = new ArrayList<String>();
+        String delimiter = "--" + boundary;
+        int start = body.indexOf(delimiter);
+        while (start >= 0) {
+            start += delimiter.length();
+            if (body.startsWith("--", start)) {
+                break;
+            }
+            start = body.indexOf('\n', start) + 1;
+            int end = body.indexOf("\n" + delimiter, start);
+            if (start == 0 || end < 0) {
+                break;
+            }
+            String part = body.substring(start, end);
+            parts.add(part.endsWith("\r") ? part.substring(0, part.length() - 1) : part);
+            start = end + 1;
+        }
+        return parts;
+    }
+
+    private static String[] splitHead(String message) {
+        int crlf = message.indexOf("\r\n\r\n");
+        int lf = message.indexOf("\n\n");
+        if (crlf >= 0 && (lf < 0 || crlf < lf)) {
+            return new String[] { message.substring(0, crlf).replace("\r", ""), message.substring(crlf + 4) };
+        }
+        if (lf >= 0) {
+            return new String[] { message.substring(0, lf).replace("\r", ""), message.substring(lf + 2) };
+        }
+        return new String[] { message.replace("\r", ""), "" };
+    }
+
+    /**
+     * Keeps status, headers and body of one sub request in memory.
+     */
+    static class BufferedResponse extends HttpServletResponseWrapper {
+
+        int status = SC_OK;
+        String message;
+        final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String characterEncoding = UTF8;
+        PrintWriter writer;
+
+        BufferedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        /**
+         * HTTP dates are RFC 1123 dates in GMT, e.g. <code>Sun, 06 Nov 1994 08:49:37 GMT</code>.
+         */
+        static String formatDate(long date) {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format.format(new Date(date));
+        }
+
+        String statusText() {
+            if (message != null) {
+                return message;
+            }
+            return status < 400 ? "OK" : "Error";
+        }
+
+        String text() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            return out.toString(characterEncoding);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setStatus(int sc, String sm) {
+            status = sc;
+            message = sm;
+        }
+
+        @Override
+        public void sendError(int sc) {
+            status = sc;
+        }
+
+        @Override
+        public void sendError(int sc, String msg) {
+            status = sc;
+            message = msg;
+        }
+
+        @Override
+        public void sendRedirect(String location) {
+            status = SC_MOVED_TEMPORARILY;
+            setHeader("Location", location);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            List<String> values = new ArrayList<String>();
+            values.add(value);
+            headers.put(name, values);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            List<String> values = headers.get(name);
+            if (values == null) {
+                setHeader(name, value);
+            } else {
+                values.add(value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            addHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            setHeader(name, formatDate(date));
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            addHeader(name, formatDate(date));
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public void setContentType(String type) {
+            setHeader("Content-Type", type);
+        }
+
+        @Override
+        public String getContentType() {
+            List<String> values = headers.get("Content-Type");
+            return values == null ? null : values.get(0);
+        }
+
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            characterEncoding = charset;
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return characterEncoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+
+                @Override
+                public void write(int b) {
+                    out.write(b);
+                }
+            };
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(out, characterEncoding));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public void reset() {
+            status = SC_OK;
+            headers.clear();
+            out.reset();
+        }
+
+        @Override
+        public void resetBuffer() {
+            out.reset();
+        }
+    }
+}
@@ -23,6 +23,8 @@ import java.util.Map;
 
 import org.fusesource.restygwt.client.Method;
 import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.RestServiceProxy;
+import org.fusesource.restygwt.client.dispatcher.BatchingFilterawareDispatcher;
 import org.fusesource.restygwt.examples.client.MapResult;
 import org.fusesource.restygwt.examples.client.MapService;
 
@@ -50,6 +52,34 @@ public class JerseyJaxsonTestGWT extends GWTTestCase {
         delayTestFinish(REQUEST_TIMEOUT);
     }
 
+    public void testBatchedGet() {
+        MapService service = GWT.create(MapService.class);
+        ((RestServiceProxy) service).setDispatcher(
+                new BatchingFilterawareDispatcher(GWT.getModuleBaseURL() + "batch"));
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        map.put("hello", "world");
+        map.put("another", "value");
+        final MapResult expected = new MapResult(map);
+
+        // both calls share one round-trip to the batch servlet
+        final int[] pending = { 2 };
+        MethodCallback<MapResult> callback = new MethodCallback<MapResult>() {
+            public void onSuccess(Method method, MapResult result) {
+                assertEquals(expected, result);
+                if (--pending[0] == 0) {
+                    finishTest();
+                }
+            }
+
+            public void onFailure(Method method, Throwable exception) {
+                fail(exception.getMessage());
+            }
+        };
+        service.get(callback);
+        service.get(callback);
+        delayTestFinish(REQUEST_TIMEOUT);
+    }
+
     private <T> MethodCallback<T> expectResult(final T expectedResult) {
         return new MethodCallback<T>() {
             public void onSuccess(Method method, T result) {
@@ -18,6 +18,7 @@
 
 package org.fusesource.restygwt.client;
 
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.i18n.client.DateTimeFormat;
 import com.google.gwt.json.client.JSONArray;
 import com.google.gwt.json.client.JSONBoolean;
@@ -63,6 +64,39 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         }
     }
 
+    /**
+     * write the json of the value, it parses to the same tree as {@link #encode(Object)} returns.
+     * a <code>null</code> is written as json null. the generated encoders write
+     * straight into the writer, this default writes the encoded value.
+     */
+    public void write(T value, JsonWriter writer) throws EncodingException {
+        writer.value(encode(value));
+    }
+
+    /**
+     * decode the json text of a response. the gwt-jackson decoders hand the
+     * text to their mapper, this default decodes the parsed value.
+     */
+    public T parse(String json) throws DecodingException {
+        return decode(JSONParser.parseLenient(json));
+    }
+
+    /**
+     * read the named value of the object straight from the parsed json, see
+     * {@link NativeJson}. the generated decoders read their fields that way,
+     * this default decodes the wrapped value.
+     */
+    public T read(JavaScriptObject object, String name) throws DecodingException {
+        return decode(NativeJson.get(object, name));
+    }
+
+    /**
+     * read the value at the index of the array straight from the parsed json
+     */
+    public T read(JavaScriptObject array, int index) throws DecodingException {
+        return decode(NativeJson.get(array, index));
+    }
+
     // /////////////////////////////////////////////////////////////////
     // Built in encoders for the native types.
     // /////////////////////////////////////////////////////////////////
@@ -84,6 +118,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Boolean value) throws EncodingException {
             return (value == null) ? getNullType() : JSONBoolean.getInstance(value);
         }
+
+        @Override
+        public void write(Boolean value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.booleanValue());
+            }
+        }
+
+        @Override
+        public Boolean read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : NativeJson.getBoolean(object, name);
+        }
+
+        @Override
+        public Boolean read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : NativeJson.getBoolean(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Character> CHAR = new AbstractJsonEncoderDecoder<Character>() {
@@ -100,6 +153,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Character value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONNumber(value);
         }
+
+        @Override
+        public void write(Character value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value((int) value.charValue());
+            }
+        }
+
+        @Override
+        public Character read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : (char) NativeJson.getNumber(object, name);
+        }
+
+        @Override
+        public Character read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : (char) NativeJson.getNumber(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Byte> BYTE = new AbstractJsonEncoderDecoder<Byte>() {
@@ -120,6 +192,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
             }
             return new JSONNumber(value);
         }
+
+        @Override
+        public void write(Byte value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.intValue());
+            }
+        }
+
+        @Override
+        public Byte read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : (byte) NativeJson.getNumber(object, name);
+        }
+
+        @Override
+        public Byte read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : (byte) NativeJson.getNumber(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Short> SHORT = new AbstractJsonEncoderDecoder<Short>() {
@@ -136,6 +227,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Short value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONNumber(value);
         }
+
+        @Override
+        public void write(Short value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.intValue());
+            }
+        }
+
+        @Override
+        public Short read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : (short) NativeJson.getNumber(object, name);
+        }
+
+        @Override
+        public Short read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : (short) NativeJson.getNumber(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Integer> INT = new AbstractJsonEncoderDecoder<Integer>() {
@@ -152,6 +262,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Integer value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONNumber(value);
         }
+
+        @Override
+        public void write(Integer value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.intValue());
+            }
+        }
+
+        @Override
+        public Integer read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : (int) NativeJson.getNumber(object, name);
+        }
+
+        @Override
+        public Integer read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : (int) NativeJson.getNumber(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Long> LONG = new AbstractJsonEncoderDecoder<Long>() {
@@ -172,6 +301,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Long value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONNumber(value);
         }
+
+        @Override
+        public void write(Long value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.longValue());
+            }
+        }
+
+        @Override
+        public Long read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : NativeJson.getLong(object, name);
+        }
+
+        @Override
+        public Long read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : NativeJson.getLong(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Float> FLOAT = new AbstractJsonEncoderDecoder<Float>() {
@@ -188,6 +336,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Float value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONNumber(value);
         }
+
+        @Override
+        public void write(Float value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.doubleValue());
+            }
+        }
+
+        @Override
+        public Float read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : (float) NativeJson.getNumber(object, name);
+        }
+
+        @Override
+        public Float read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : (float) NativeJson.getNumber(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<Double> DOUBLE = new AbstractJsonEncoderDecoder<Double>() {
@@ -204,6 +371,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(Double value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONNumber(value);
         }
+
+        @Override
+        public void write(Double value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value.doubleValue());
+            }
+        }
+
+        @Override
+        public Double read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : NativeJson.getNumber(object, name);
+        }
+
+        @Override
+        public Double read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : NativeJson.getNumber(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<String> STRING = new AbstractJsonEncoderDecoder<String>() {
@@ -232,6 +418,25 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         public JSONValue encode(String value) throws EncodingException {
             return (value == null) ? getNullType() : new JSONString(value);
         }
+
+        @Override
+        public void write(String value, JsonWriter writer) throws EncodingException {
+            if (value == null) {
+                writer.nullValue();
+            } else {
+                writer.value(value);
+            }
+        }
+
+        @Override
+        public String read(JavaScriptObject object, String name) throws DecodingException {
+            return NativeJson.isNull(object, name) ? null : NativeJson.getString(object, name);
+        }
+
+        @Override
+        public String read(JavaScriptObject array, int index) throws DecodingException {
+            return NativeJson.isNull(array, index) ? null : NativeJson.getString(array, index);
+        }
     };
 
     public static final AbstractJsonEncoderDecoder<BigDecimal> BIG_DECIMAL = new AbstractJsonEncoderDecoder<BigDecimal>() {
@@ -600,6 +805,46 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         return rc;
     }
 
+    static public <Type> List<Type> readList(JavaScriptObject object, String name, AbstractJsonEncoderDecoder<Type> encoder) {
+        if (NativeJson.isNull(object, name)) {
+            return null;
+        }
+        JavaScriptObject array = NativeJson.getArray(object, name);
+        return read(array, encoder, new ArrayList<Type>(NativeJson.length(array)));
+    }
+
+    static public <Type> List<Type> readList(JavaScriptObject array, int index, AbstractJsonEncoderDecoder<Type> encoder) {
+        if (NativeJson.isNull(array, index)) {
+            return null;
+        }
+        JavaScriptObject elements = NativeJson.getArray(array, index);
+        return read(elements, encoder, new ArrayList<Type>(NativeJson.length(elements)));
+    }
+
+    static public <Type> Set<Type> readSet(JavaScriptObject object, String name, AbstractJsonEncoderDecoder<Type> encoder) {
+        if (NativeJson.isNull(object, name)) {
+            return null;
+        }
+        JavaScriptObject array = NativeJson.getArray(object, name);
+        return read(array, encoder, new HashSet<Type>(NativeJson.length(array) * 2));
+    }
+
+    static public <Type> Set<Type> readSet(JavaScriptObject array, int index, AbstractJsonEncoderDecoder<Type> encoder) {
+        if (NativeJson.isNull(array, index)) {
+            return null;
+        }
+        JavaScriptObject elements = NativeJson.getArray(array, index);
+        return read(elements, encoder, new HashSet<Type>(NativeJson.length(elements) * 2));
+    }
+
+    static private <Type, C extends Collection<Type>> C read(JavaScriptObject array, AbstractJsonEncoderDecoder<Type> encoder, C rc) {
+        int size = NativeJson.length(array);
+        for (int i = 0; i < size; i++) {
+            rc.add(encoder.read(array, i));
+        }
+        return rc;
+    }
+
     static public <Type> Map<String, Type> toMap(JSONValue value, AbstractJsonEncoderDecoder<Type> encoder, Style style) {
         if (value == null || value.isNull() != null) {
             return null;
@@ -803,6 +1048,36 @@ abstract public class AbstractJsonEncoderDecoder<T> implements JsonEncoderDecode
         return rc;
     }
 
+    /**
+     * write the collection as json array, like {@link #toJSON(Collection, AbstractJsonEncoderDecoder)}
+     */
+    static public <Type> void write(Collection<Type> value, AbstractJsonEncoderDecoder<Type> encoder, JsonWriter writer) {
+        if (value == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginArray();
+        for (Type t : value) {
+            encoder.write(t, writer);
+        }
+        writer.endArray();
+    }
+
+    /**
+     * write the array as json array, like {@link #toJSON(Object[], AbstractJsonEncoderDecoder)}
+     */
+    static public <Type> void write(Type[] value, AbstractJsonEncoderDecoder<Type> encoder, JsonWriter writer) {
+        if (value == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginArray();
+        for (Type t : value) {
+            encoder.write(t, writer);
+        }
+        writer.endArray();
+    }
+
     static public <Type> JSONValue toJSON(Type[] value, AbstractJsonEncoderDecoder<Type> encoder) {
         if (value == null) {
             return getNullType();
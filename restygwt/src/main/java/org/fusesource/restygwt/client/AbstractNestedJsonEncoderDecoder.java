@@ -7,6 +7,7 @@ import java.util.Set;
 
 import org.fusesource.restygwt.client.Json.Style;
 
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.json.client.JSONNull;
 import com.google.gwt.json.client.JSONValue;
 
@@ -40,6 +41,12 @@ public abstract class AbstractNestedJsonEncoderDecoder<E, F, G> extends Abstract
                 return value != null ? toJSON(value, nested) : JSONNull.getInstance();
             }
 
+            @Override
+            public void write(T[] value, JsonWriter writer)
+                    throws EncodingException {
+                write(value, nested, writer);
+            }
+
             @SuppressWarnings("unchecked")
             @Override
             public T[] decode(JSONValue value)
@@ -59,11 +66,29 @@ public abstract class AbstractNestedJsonEncoderDecoder<E, F, G> extends Abstract
                 return value != null ? toJSON((T[])value.toArray(), nested) : JSONNull.getInstance();
             }
 
+            @Override
+            public void write(Collection<T> value, JsonWriter writer)
+                    throws EncodingException {
+                write(value, nested, writer);
+            }
+
             @Override
             public Collection<T> decode(JSONValue value)
                     throws DecodingException {
                 return toList(value, nested);
             }
+
+            @Override
+            public Collection<T> read(JavaScriptObject object, String name)
+                    throws DecodingException {
+                return readList(object, name, nested);
+            }
+
+            @Override
+            public Collection<T> read(JavaScriptObject array, int index)
+                    throws DecodingException {
+                return readList(array, index, nested);
+            }
         };
     }
     
@@ -77,11 +102,29 @@ public abstract class AbstractNestedJsonEncoderDecoder<E, F, G> extends Abstract
                 return value != null ? toJSON((T[])value.toArray(), nested) : JSONNull.getInstance();
             }
 
+            @Override
+            public void write(List<T> value, JsonWriter writer)
+                    throws EncodingException {
+                write(value, nested, writer);
+            }
+
             @Override
             public List<T> decode(JSONValue value)
                     throws DecodingException {
                 return toList(value, nested);
             }
+
+            @Override
+            public List<T> read(JavaScriptObject object, String name)
+                    throws DecodingException {
+                return readList(object, name, nested);
+            }
+
+            @Override
+            public List<T> read(JavaScriptObject array, int index)
+                    throws DecodingException {
+                return readList(array, index, nested);
+            }
         };
     }
 
@@ -94,11 +137,29 @@ public abstract class AbstractNestedJsonEncoderDecoder<E, F, G> extends Abstract
                 return value != null ? toJSON(value, nested) : JSONNull.getInstance();
             }
 
+            @Override
+            public void write(Set<T> value, JsonWriter writer)
+                    throws EncodingException {
+                write(value, nested, writer);
+            }
+
             @Override
             public Set<T> decode(JSONValue value)
                     throws DecodingException {
                 return toSet(value, nested);
             }
+
+            @Override
+            public Set<T> read(JavaScriptObject object, String name)
+                    throws DecodingException {
+                return readSet(object, name, nested);
+            }
+
+            @Override
+            public Set<T> read(JavaScriptObject array, int index)
+                    throws DecodingException {
+                return readSet(array, index, nested);
+            }
         };
     }        
 
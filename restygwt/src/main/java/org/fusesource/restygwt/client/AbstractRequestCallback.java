@@ -21,6 +21,9 @@ package org.fusesource.restygwt.client;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.fusesource.restygwt.client.RequestTimingEvent.Phase;
+import org.fusesource.restygwt.client.cache.QueueableCacheStorage;
+
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestCallback;
@@ -39,6 +42,11 @@ public abstract class AbstractRequestCallback<T> implements RequestCallback {
 
     private Logger logger;
 
+    /**
+     * whether {@link MethodCallback#onSuccess(Method, Object)} was called already
+     */
+    private boolean delivered = false;
+
     public AbstractRequestCallback(Method method, MethodCallback<T> callback) {
         this.method = method;
         this.callback = callback;
@@ -46,8 +54,33 @@ public abstract class AbstractRequestCallback<T> implements RequestCallback {
 
     @Override
     final public void onError(Request request, Throwable exception) {
+        if (delivered && isRefreshable()) {
+            // a failed refresh, keep the stale result
+            return;
+        }
         this.method.request = request;
+        recordNetwork(request, null, true);
+        fail(exception);
+    }
+
+    /**
+     * hand a failure to the callback
+     */
+    private void fail(Throwable exception) {
+        double start = RequestTimings.start();
         callback.onFailure(this.method, exception);
+        RequestTimings.record(this.method, Phase.CALLBACK, start, true);
+    }
+
+    /**
+     * a response of a cache, e.g. a stale one served while it gets refreshed, did not take the network
+     */
+    private void recordNetwork(Request request, Response response, boolean failure) {
+        if (request == null && response != null
+                && response.getHeader(QueueableCacheStorage.RESTY_CACHE_HEADER) != null) {
+            return;
+        }
+        RequestTimings.record(this.method, Phase.NETWORK, this.method.sentAt, failure);
     }
 
     private Logger getLogger() {
@@ -57,29 +90,43 @@ public abstract class AbstractRequestCallback<T> implements RequestCallback {
         return this.logger;
     }
     
+    /**
+     * @return whether the callback wants the refreshed result after it got a stale result from a cache
+     */
+    public boolean isRefreshable() {
+        return callback instanceof RefreshCallback;
+    }
+
     @Override
     final public void onResponseReceived(Request request, Response response) {
+        if (delivered && isRefreshable()) {
+            onRefresh(request, response);
+            return;
+        }
         this.method.request = request;
         this.method.response = response;
         if (response == null) {
-            callback.onFailure(this.method,
-                    Defaults.getExceptionMapper().createNoResponseException());
+            recordNetwork(request, response, true);
+            fail(Defaults.getExceptionMapper().createNoResponseException());
         } else if (isFailedStatus(response)) {
-            callback.onFailure(this.method,
-                    Defaults.getExceptionMapper().createFailedStatusException(method, response));
+            recordNetwork(request, response, true);
+            fail(Defaults.getExceptionMapper().createFailedStatusException(method, response));
         } else {
+            recordNetwork(request, response, false);
             T value;
             try { 
                 if ( getLogger() != null ) {
                     getLogger().fine("Received http response for request: " + this.method.builder.getHTTPMethod()
                         + " " + this.method.builder.getUrl());
                 }
+                double read = RequestTimings.start();
                 String content = response.getText();
+                RequestTimings.record(this.method, Phase.READ, read);
                 if (content != null && content.length() > 0) {
                     if (getLogger() != null) {
                         getLogger().finest(content);
                     }
-                    value = parseResult();
+                    value = parse(response);
                 } else {
                     value = null;
                 }
@@ -87,12 +134,68 @@ public abstract class AbstractRequestCallback<T> implements RequestCallback {
                 if ( getLogger() != null ) {
                     getLogger().log(Level.FINE, "Could not parse response: " + e, e);
                 }
-                callback.onFailure(this.method, e);
+                fail(e);
                 return;
             }
 
+            delivered = true;
+            double start = RequestTimings.start();
             callback.onSuccess(this.method, value);
+            RequestTimings.record(this.method, Phase.CALLBACK, start);
+        }
+    }
+
+    private void onRefresh(Request request, Response response) {
+        if (response == null || isFailedStatus(response)) {
+            if (getLogger() != null) {
+                getLogger().fine("refresh failed, keep stale result for request: "
+                        + this.method.builder.getHTTPMethod() + " " + this.method.builder.getUrl());
+            }
+            return;
+        }
+        this.method.request = request;
+        this.method.response = response;
+        T value;
+        try {
+            String content = response.getText();
+            value = content != null && content.length() > 0 ? parse(response) : null;
+        } catch (Throwable e) {
+            if (getLogger() != null) {
+                getLogger().log(Level.FINE, "Could not parse refreshed response: " + e, e);
+            }
+            return;
+        }
+        ((RefreshCallback<T>) callback).onRefresh(this.method, value);
+    }
+
+    /**
+     * @return what tells apart the results decoded by the callbacks of a {@link SharedResponse}.
+     *         callbacks of the same class decode the same result, <code>null</code> never shares it.
+     */
+    protected Object getResultKey() {
+        return getClass();
+    }
+
+    /**
+     * decode the response, only once for all callbacks of a {@link SharedResponse}
+     */
+    @SuppressWarnings("unchecked")
+    private T parse(Response response) throws Exception {
+        Object key = response instanceof SharedResponse ? getResultKey() : null;
+        if (key == null) {
+            return parseResult();
+        }
+        SharedResponse shared = (SharedResponse) response;
+        if (shared.hasResult(key)) {
+            if (getLogger() != null) {
+                getLogger().finer("reuse decoded result for request: " + this.method.builder.getHTTPMethod()
+                        + " " + this.method.builder.getUrl());
+            }
+            return (T) shared.getResult(key);
         }
+        T value = parseResult();
+        shared.putResult(key, value);
+        return value;
     }
 
     protected boolean isFailedStatus(Response response) {
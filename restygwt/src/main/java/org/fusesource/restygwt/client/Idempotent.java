@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks PUT and DELETE requests which are safe to send again, e.g. because
+ * they replace or delete a resource as a whole. A
+ * {@link org.fusesource.restygwt.client.callback.RetryingCallbackFactory}
+ * retries GET, HEAD and OPTIONS requests only, unless they are marked.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target( { METHOD, TYPE })
+public @interface Idempotent {
+
+    /**
+     * When creating the ``RestService`` classes the marked requests get this
+     * key in {@link Method#addData(String, String)}.
+     */
+    public static final String KEY = "idempotent";
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client;
+
+import com.google.gwt.json.client.JSONValue;
+
+/**
+ * writes json straight into a string, without the tree of {@link JSONValue}s
+ * {@link JsonEncoderDecoder#encode(Object)} builds. the generated encoders
+ * write through {@link AbstractJsonEncoderDecoder#write(Object, JsonWriter)}.
+ * the text parses to the encoded tree, it only lacks the blank
+ * {@link com.google.gwt.json.client.JSONObject#toString()} puts after each comma, e.g.
+ *
+ * <pre>
+ * JsonWriter writer = new JsonWriter();
+ * writer.beginObject().name("name").value("resty").name("tags").beginArray().value("gwt").endArray().endObject();
+ * writer.toString(); // {"name":"resty","tags":["gwt"]}
+ * </pre>
+ *
+ * the writer takes care of the commas but does not check the structure.
+ */
+public class JsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder out;
+
+    /**
+     * whether the next name or value needs a comma in front
+     */
+    private boolean comma;
+
+    public JsonWriter() {
+        this(new StringBuilder());
+    }
+
+    public JsonWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        out.append('{');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        out.append('}');
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        out.append('[');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        out.append(']');
+        comma = true;
+        return this;
+    }
+
+    /**
+     * the name of the next value of an object
+     */
+    public JsonWriter name(String name) {
+        separate();
+        string(name);
+        out.append(':');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        separate();
+        string(value);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        out.append(value);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(int value) {
+        separate();
+        out.append(value);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * written as a double, like {@link com.google.gwt.json.client.JSONNumber} does
+     */
+    public JsonWriter value(long value) {
+        return value((double) value);
+    }
+
+    public JsonWriter value(double value) {
+        separate();
+        out.append(value);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * write an encoded value as it is, <code>null</code> as json null
+     */
+    public JsonWriter value(JSONValue value) {
+        if (value == null) {
+            return nullValue();
+        }
+        return jsonValue(value.toString());
+    }
+
+    /**
+     * write json text as it is, e.g. the one a gwt-jackson mapper wrote
+     */
+    public JsonWriter jsonValue(String json) {
+        separate();
+        out.append(json);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        separate();
+        out.append("null");
+        comma = true;
+        return this;
+    }
+
+    /**
+     * @return the json written so far
+     */
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void separate() {
+        if (comma) {
+            out.append(',');
+        }
+    }
+
+    /**
+     * append the quoted string. the characters which need no escaping are
+     * appended in runs, not one by one. the line and paragraph separators are
+     * escaped as well, javascript does not take them within a string.
+     */
+    private void string(String value) {
+        out.append('"');
+        int length = value.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            if (run < i) {
+                out.append(value, run, i);
+            }
+            run = i + 1;
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    out.append("\\u").append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf])
+                            .append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+            }
+        }
+        if (run < length) {
+            out.append(value, run, length);
+        }
+        out.append('"');
+    }
+}
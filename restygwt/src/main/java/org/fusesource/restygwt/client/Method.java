@@ -18,18 +18,24 @@
 
 package org.fusesource.restygwt.client;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.fusesource.restygwt.client.cache.CacheKey;
 import org.fusesource.restygwt.rebind.AnnotationResolver;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
@@ -61,6 +67,13 @@ public class Method {
      * @author chirino
      */
     static private class MethodRequestBuilder extends RequestBuilder {
+
+        /**
+         * {@link RequestBuilder} does not expose the headers it holds, but we need them to
+         * replay a request e.g. inside a batch.
+         */
+        private final Map<String, String> headers = new LinkedHashMap<String, String>();
+
         public MethodRequestBuilder(String method, String url) {
 
             super(method, url);
@@ -72,6 +85,12 @@ public class Method {
             	setHeader("X-HTTP-Method-Override", method);
             }
         }
+
+        @Override
+        public void setHeader(String header, String value) {
+            super.setHeader(header, value);
+            headers.put(header, value);
+        }
     }
 
     public RequestBuilder builder;
@@ -96,6 +115,27 @@ public class Method {
      */
     private final Map<String, String> data = new HashMap<String, String>();
 
+    /**
+     * the keys of the request by who computed them, see {@link #getCacheKey(Object)}
+     */
+    private Map<Object, CacheKey> cacheKeys;
+
+    /**
+     * sent by {@link #prefetch()}
+     */
+    private boolean prefetch;
+
+    /**
+     * the service method which sent the request, see {@link #serviceMethod(String, String)}
+     */
+    private String serviceInterface;
+    private String serviceMethod;
+
+    /**
+     * when the request was sent, see {@link RequestTimings}
+     */
+    double sentAt = RequestTimings.NOT_TIMED;
+
     private Logger logger;
 
     protected Method() {
@@ -151,6 +191,15 @@ public class Method {
         return this;
     }
 
+    /**
+     * send the json a generated encoder wrote, see {@link JsonWriter}
+     */
+    public Method json(JsonWriter data) {
+        defaultContentType(Resource.CONTENT_TYPE_JSON);
+        builder.setRequestData(data.toString());
+        return this;
+    }
+
     public Method xml(Document data) {
         defaultContentType(Resource.CONTENT_TYPE_XML);
         builder.setRequestData(data.toString());
@@ -208,11 +257,65 @@ public class Method {
     }
 
     public Object send(final RequestCallback callback) throws RequestException {
+        sentAt = RequestTimings.start();
         doSetTimeout();
         builder.setCallback(callback);
         // lazily load dispatcher from defaults, if one is not set yet.
         Dispatcher localDispatcher = dispatcher == null ? Defaults.getDispatcher() : dispatcher;
-        return localDispatcher.send(this, builder);
+        Request sent = localDispatcher.send(this, builder);
+        if (sent != null) {
+            // keep the request in flight at hand, e.g. to cancel it
+            request = sent;
+        }
+        return sent;
+    }
+
+    /**
+     * send the request to fill the cache, without decoding its response. it
+     * goes out at the lowest priority once the browser event loop is done,
+     * a dispatcher filter is free to drop it, e.g. the
+     * {@link org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter}
+     * when the response is cached or already on its way.
+     *
+     * @see Prefetcher
+     */
+    public void prefetch() {
+        prefetch = true;
+        addData(Options.PRIORITY_KEY, String.valueOf(Prefetcher.PRIORITY));
+        Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+
+            @Override
+            public void execute() {
+                try {
+                    send(new RequestCallback() {
+
+                        @Override
+                        public void onResponseReceived(Request request, Response response) {
+                        }
+
+                        @Override
+                        public void onError(Request request, Throwable exception) {
+                            if (getLogger() != null) {
+                                getLogger().log(Level.FINE, "prefetch failed: " + builder.getHTTPMethod() + " "
+                                        + builder.getUrl(), exception);
+                            }
+                        }
+                    });
+                } catch (RequestException e) {
+                    if (getLogger() != null) {
+                        getLogger().log(Level.FINE, "prefetch not sent: " + builder.getHTTPMethod() + " "
+                                + builder.getUrl(), e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return whether the request was sent by {@link #prefetch()}
+     */
+    public final boolean isPrefetch() {
+        return prefetch;
     }
 
     private Logger getLogger() {
@@ -343,6 +446,38 @@ public class Method {
         }
     }
 
+    /**
+     * get all headers set on the builder of this method so far.
+     *
+     * @return read-only view of the headers, empty if the builder was not created by this method
+     */
+    public Map<String, String> getHeaders() {
+        if (builder instanceof MethodRequestBuilder) {
+            return Collections.unmodifiableMap(((MethodRequestBuilder) builder).headers);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * tell which service method sends the request, e.g. for the {@link RequestTimingEvent}s.
+     *
+     * @param serviceInterface the qualified name of the {@link RestService} interface
+     * @param serviceMethod the name of the method
+     */
+    public Method serviceMethod(String serviceInterface, String serviceMethod) {
+        this.serviceInterface = serviceInterface;
+        this.serviceMethod = serviceMethod;
+        return this;
+    }
+
+    public String getServiceInterface() {
+        return serviceInterface;
+    }
+
+    public String getServiceMethod() {
+        return serviceMethod;
+    }
+
     public Dispatcher getDispatcher() {
         return dispatcher;
     }
@@ -370,4 +505,26 @@ public class Method {
     public Map<String, String> getData() {
         return data;
     }
+
+    /**
+     * the filters sharing a cache compute the key of a request once, the
+     * first one keeps it here for the others.
+     *
+     * @param owner who computed the key, e.g. the cache storage
+     * @return the key the owner computed for the request, <code>null</code> if none
+     */
+    public final CacheKey getCacheKey(Object owner) {
+        return cacheKeys == null ? null : cacheKeys.get(owner);
+    }
+
+    /**
+     * @see #getCacheKey(Object)
+     */
+    public final void setCacheKey(Object owner, CacheKey key) {
+        if (cacheKeys == null) {
+            // usually one owner, a cache or the single flight, rarely both
+            cacheKeys = new IdentityHashMap<Object, CacheKey>(2);
+        }
+        cacheKeys.put(owner, key);
+    }
 }
@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client;
+
+import org.fusesource.restygwt.client.JsonEncoderDecoder.DecodingException;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONValue;
+
+/**
+ * reads the values of parsed json straight from the javascript objects,
+ * without the {@link JSONValue} wrapper {@link JSONObject#get(String)} and
+ * {@link JSONArray#get(int)} allocate for every value. a value is addressed by
+ * the object holding it and its name, or the array holding it and its index.
+ * {@link #parse(String)} puts the parsed document at index 0 of an array,
+ * so the document itself is addressed like any other value, e.g.
+ *
+ * <pre>
+ * JavaScriptObject json = NativeJson.parse(text);
+ * Pojo pojo = PojoCodec.INSTANCE.read(json, 0);
+ * </pre>
+ *
+ * numbers and strings are converted like the decoders of
+ * {@link AbstractJsonEncoderDecoder} convert them, values of the wrong type
+ * throw a {@link DecodingException}. like {@link JSONObject#get(String)} only
+ * the own properties of an object are values, e.g. a missing "constructor"
+ * is missing and not the one every object inherits.
+ */
+public final class NativeJson {
+
+    private NativeJson() {
+    }
+
+    /**
+     * parse strictly with <code>JSON.parse</code>
+     *
+     * @return an array holding the document at index 0
+     */
+    public static native JavaScriptObject parse(String json) /*-{
+        return [ JSON.parse(json) ];
+    }-*/;
+
+    /**
+     * @return whether the value is json null or missing
+     */
+    public static native boolean isNull(JavaScriptObject object, String name) /*-{
+        return !Object.prototype.hasOwnProperty.call(object, name) || object[name] == null;
+    }-*/;
+
+    public static native boolean isNull(JavaScriptObject array, int index) /*-{
+        return array[index] == null;
+    }-*/;
+
+    public static double getNumber(JavaScriptObject object, String name) {
+        String type = type(object, name);
+        if ("number".equals(type)) {
+            return number(object, name);
+        }
+        if ("string".equals(type)) {
+            try {
+                return Double.parseDouble(string(object, name));
+            } catch (NumberFormatException e) {
+                // just throw the exception below
+            }
+        }
+        throw new DecodingException("Expected a json number, but was given: " + stringify(object, name));
+    }
+
+    public static double getNumber(JavaScriptObject array, int index) {
+        String type = type(array, index);
+        if ("number".equals(type)) {
+            return number(array, index);
+        }
+        if ("string".equals(type)) {
+            try {
+                return Double.parseDouble(string(array, index));
+            } catch (NumberFormatException e) {
+                // just throw the exception below
+            }
+        }
+        throw new DecodingException("Expected a json number, but was given: " + stringify(array, index));
+    }
+
+    /**
+     * a string is parsed as a long, so the digits a double can not hold survive
+     */
+    public static long getLong(JavaScriptObject object, String name) {
+        if ("string".equals(type(object, name))) {
+            try {
+                return Long.parseLong(string(object, name));
+            } catch (NumberFormatException e) {
+                throw new DecodingException("Expected a json number, but was given: " + stringify(object, name));
+            }
+        }
+        return (long) getNumber(object, name);
+    }
+
+    public static long getLong(JavaScriptObject array, int index) {
+        if ("string".equals(type(array, index))) {
+            try {
+                return Long.parseLong(string(array, index));
+            } catch (NumberFormatException e) {
+                throw new DecodingException("Expected a json number, but was given: " + stringify(array, index));
+            }
+        }
+        return (long) getNumber(array, index);
+    }
+
+    public static boolean getBoolean(JavaScriptObject object, String name) {
+        if (!"boolean".equals(type(object, name))) {
+            throw new DecodingException("Expected a json boolean, but was given: " + stringify(object, name));
+        }
+        return bool(object, name);
+    }
+
+    public static boolean getBoolean(JavaScriptObject array, int index) {
+        if (!"boolean".equals(type(array, index))) {
+            throw new DecodingException("Expected a json boolean, but was given: " + stringify(array, index));
+        }
+        return bool(array, index);
+    }
+
+    /**
+     * numbers and booleans are given as their json text
+     */
+    public static String getString(JavaScriptObject object, String name) {
+        String type = type(object, name);
+        if ("string".equals(type)) {
+            return string(object, name);
+        }
+        if ("number".equals(type) || "boolean".equals(type)) {
+            return stringify(object, name);
+        }
+        throw new DecodingException("Expected a json string, but was given: " + stringify(object, name));
+    }
+
+    public static String getString(JavaScriptObject array, int index) {
+        String type = type(array, index);
+        if ("string".equals(type)) {
+            return string(array, index);
+        }
+        if ("number".equals(type) || "boolean".equals(type)) {
+            return stringify(array, index);
+        }
+        throw new DecodingException("Expected a json string, but was given: " + stringify(array, index));
+    }
+
+    public static JavaScriptObject getObject(JavaScriptObject object, String name) {
+        if (!"object".equals(type(object, name)) || isArray(object, name)) {
+            throw new DecodingException("Expected a json object, but was given: " + stringify(object, name));
+        }
+        return jso(object, name);
+    }
+
+    public static JavaScriptObject getObject(JavaScriptObject array, int index) {
+        if (!"object".equals(type(array, index)) || isArray(array, index)) {
+            throw new DecodingException("Expected a json object, but was given: " + stringify(array, index));
+        }
+        return jso(array, index);
+    }
+
+    public static JavaScriptObject getArray(JavaScriptObject object, String name) {
+        if (!isArray(object, name)) {
+            throw new DecodingException("Expected a json array, but was given: " + stringify(object, name));
+        }
+        return jso(object, name);
+    }
+
+    public static JavaScriptObject getArray(JavaScriptObject array, int index) {
+        if (!isArray(array, index)) {
+            throw new DecodingException("Expected a json array, but was given: " + stringify(array, index));
+        }
+        return jso(array, index);
+    }
+
+    public static native int length(JavaScriptObject array) /*-{
+        return array.length;
+    }-*/;
+
+    /**
+     * wrap the value for the decoders which take a {@link JSONValue}
+     *
+     * @return <code>null</code> if the value is missing
+     */
+    public static JSONValue get(JavaScriptObject object, String name) {
+        return new JSONObject(object).get(name);
+    }
+
+    public static JSONValue get(JavaScriptObject array, int index) {
+        return new JSONArray(array).get(index);
+    }
+
+    /**
+     * @return the type of the value as <code>typeof</code> gives it, <code>null</code> and missing values give "null"
+     */
+    private static native String type(JavaScriptObject object, String name) /*-{
+        if (!Object.prototype.hasOwnProperty.call(object, name)) {
+            return "null";
+        }
+        var value = object[name];
+        return value == null ? "null" : typeof value;
+    }-*/;
+
+    private static native String type(JavaScriptObject array, int index) /*-{
+        var value = array[index];
+        return value == null ? "null" : typeof value;
+    }-*/;
+
+    private static native boolean isArray(JavaScriptObject object, String name) /*-{
+        return Object.prototype.hasOwnProperty.call(object, name)
+                && Object.prototype.toString.call(object[name]) == "[object Array]";
+    }-*/;
+
+    private static native boolean isArray(JavaScriptObject array, int index) /*-{
+        return Object.prototype.toString.call(array[index]) == "[object Array]";
+    }-*/;
+
+    private static native double number(JavaScriptObject object, String name) /*-{
+        return object[name];
+    }-*/;
+
+    private static native double number(JavaScriptObject array, int index) /*-{
+        return array[index];
+    }-*/;
+
+    private static native boolean bool(JavaScriptObject object, String name) /*-{
+        return object[name];
+    }-*/;
+
+    private static native boolean bool(JavaScriptObject array, int index) /*-{
+        return array[index];
+    }-*/;
+
+    private static native String string(JavaScriptObject object, String name) /*-{
+        return object[name];
+    }-*/;
+
+    private static native String string(JavaScriptObject array, int index) /*-{
+        return array[index];
+    }-*/;
+
+    private static native JavaScriptObject jso(JavaScriptObject object, String name) /*-{
+        return object[name];
+    }-*/;
+
+    private static native JavaScriptObject jso(JavaScriptObject array, int index) /*-{
+        return array[index];
+    }-*/;
+
+    private static native String stringify(JavaScriptObject object, String name) /*-{
+        return Object.prototype.hasOwnProperty.call(object, name) ? String(JSON.stringify(object[name])) : "undefined";
+    }-*/;
+
+    private static native String stringify(JavaScriptObject array, int index) /*-{
+        return String(JSON.stringify(array[index]));
+    }-*/;
+}
@@ -30,6 +30,20 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 @Target( { METHOD, TYPE })
 public @interface Options {
 
+    /**
+     * When creating the ``RestService`` classes the {@link #priority()} is put
+     * into {@link Method#addData(String, String)} with this key, so dispatcher
+     * filters can pick it up.
+     */
+    public static final String PRIORITY_KEY = "priority";
+
+    /**
+     * When creating the ``RestService`` classes the {@link #serviceRootKey()} of the
+     * service is put into {@link Method#addData(String, String)} with this key, e.g.
+     * for the {@link org.fusesource.restygwt.client.dispatcher.CircuitBreakerDispatcherFilter}.
+     */
+    public static final String SERVICE_ROOT_KEY = "serviceRoot";
+
     Class<? extends Dispatcher> dispatcher() default Dispatcher.class;
 
     /**
@@ -51,4 +65,11 @@ public @interface Options {
      * If not used the default service root value set with {@link Defaults#setServiceRoot(String)} will be used.
      */
     String serviceRootKey() default "";
+
+    /**
+     * Sets the priority of the request. Requests with a higher priority are sent first whenever
+     * a dispatcher filter like the {@link org.fusesource.restygwt.client.dispatcher.ThrottlingDispatcherFilter}
+     * has to queue requests. Defaults to 0, negative values are fine for background requests.
+     */
+    int priority() default 0;
 }
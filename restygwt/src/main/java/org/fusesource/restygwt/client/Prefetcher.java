@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client;
+
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+
+/**
+ * Lets a ``RestService`` warm up the cache for the requests the next screen
+ * will need. A service interface extending this one with itself as type
+ * argument gets a companion on its generated proxy:
+ *
+ * <pre>
+ * public interface CountryService extends RestService, Prefetcher&lt;CountryService&gt; {
+ *     &#064;GET
+ *     void getCountries(&#064;QueryParam("region") String region, MethodCallback&lt;List&lt;Country&gt;&gt; callback);
+ * }
+ *
+ * service.prefetch().getCountries("europe", null);
+ * </pre>
+ *
+ * The GET methods of the companion send the same request the service method
+ * would send, but only at the lowest {@link Options#priority()} once the
+ * browser event loop is done, see {@link Method#prefetch()}. The response is
+ * not decoded and the callback argument is ignored, it may be <code>null</code>.
+ * Methods returning a {@link com.google.gwt.http.client.Request} return
+ * <code>null</code>. All other methods of the companion send nothing, they
+ * just log that there is no prefetch for them and return <code>null</code>.
+ *
+ * Prefetching only makes sense with a {@link CachingDispatcherFilter} on the
+ * dispatcher: it stores the response and drops a prefetch whose response is
+ * cached or already on its way.
+ */
+public interface Prefetcher<T> {
+
+    /**
+     * the {@link Options#priority()} of a prefetch, lower than anything else
+     */
+    public static final int PRIORITY = Integer.MIN_VALUE;
+
+    /**
+     * @return the companion of the service sending prefetches
+     */
+    T prefetch();
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client;
+
+/**
+ * a {@link MethodCallback} which gets a stale result from a cache serving
+ * stale responses while they are revalidated, e.g. the
+ * {@link org.fusesource.restygwt.client.cache.RevalidatingQueueableCacheStorage}
+ * with a stale window, is told about the refreshed result as well.
+ *
+ * callbacks which do not implement this interface just get the stale result.
+ */
+public interface RefreshCallback<T> extends MethodCallback<T> {
+
+    /**
+     * called after {@link #onSuccess(Method, Object)} got a stale result, with
+     * the result of the refresh done in the background. a failed refresh is not
+     * reported, the stale result stays valid.
+     */
+    public void onRefresh(Method method, T response);
+}
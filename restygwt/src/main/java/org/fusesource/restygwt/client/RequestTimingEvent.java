@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client;
+
+/**
+ * the timing of one phase of a request. the times are milliseconds of
+ * {@link RequestTimings#now()}, only their differences are meaningful.
+ */
+public class RequestTimingEvent {
+
+    public enum Phase {
+        /**
+         * the filters of a {@link org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher}
+         */
+        DISPATCH,
+        /**
+         * from the end of the dispatch until the response or the error arrives, including any
+         * queueing, e.g. of a batch, and the network. a response of a cache has none.
+         */
+        NETWORK,
+        /**
+         * the text of the response
+         */
+        READ,
+        /**
+         * the json parser of a generated service method
+         */
+        PARSE,
+        /**
+         * the decoding of the parsed json to the result of a generated service method
+         */
+        DECODE,
+        /**
+         * the {@link MethodCallback} of the request
+         */
+        CALLBACK
+    }
+
+    private final Method method;
+
+    private final Phase phase;
+
+    private final double start;
+
+    private final double end;
+
+    private final boolean failure;
+
+    public RequestTimingEvent(Method method, Phase phase, double start, double end, boolean failure) {
+        this.method = method;
+        this.phase = phase;
+        this.start = start;
+        this.end = end;
+        this.failure = failure;
+    }
+
+    /**
+     * @return the method of the request, e.g. for its url or response
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the qualified name of the {@link RestService} interface which sent the request,
+     *         <code>null</code> if it was not sent by a service
+     */
+    public String getServiceInterface() {
+        return method.getServiceInterface();
+    }
+
+    /**
+     * @return the name of the service method which sent the request, <code>null</code> if it
+     *         was not sent by a service
+     */
+    public String getServiceMethod() {
+        return method.getServiceMethod();
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public double getStart() {
+        return start;
+    }
+
+    public double getEnd() {
+        return end;
+    }
+
+    public double getDuration() {
+        return end - start;
+    }
+
+    /**
+     * @return whether the request failed, i.e. the network phase ended with an error or
+     *         the callback got a failure
+     */
+    public boolean isFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fusesource.restygwt.client.RequestTimingEvent.Phase;
+
+import com.google.gwt.core.client.GWT;
+
+/**
+ * the registry of the {@link RequestTimingListener}s. {@link Method},
+ * {@link org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher},
+ * {@link AbstractRequestCallback} and the generated service methods record
+ * the phases of each request here. without a listener recording costs a
+ * check of a static flag, no timestamp is taken and no event is created.
+ *
+ * <pre>
+ * double start = RequestTimings.start();
+ * ...
+ * RequestTimings.record(method, Phase.DECODE, start);
+ * </pre>
+ */
+public final class RequestTimings {
+
+    /**
+     * the start of a phase which is not timed
+     */
+    public static final double NOT_TIMED = -1;
+
+    private static final List<RequestTimingListener> listeners = new ArrayList<RequestTimingListener>();
+
+    private static boolean enabled = false;
+
+    private RequestTimings() {
+    }
+
+    public static void addListener(RequestTimingListener listener) {
+        listeners.add(listener);
+        enabled = true;
+    }
+
+    public static void removeListener(RequestTimingListener listener) {
+        listeners.remove(listener);
+        enabled = !listeners.isEmpty();
+    }
+
+    /**
+     * @return whether there is a listener
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the start of a phase, {@link #NOT_TIMED} without a listener
+     */
+    public static double start() {
+        return enabled ? now() : NOT_TIMED;
+    }
+
+    /**
+     * @see #record(Method, Phase, double, boolean)
+     */
+    public static double record(Method method, Phase phase, double start) {
+        return record(method, phase, start, false);
+    }
+
+    /**
+     * tell the listeners a phase of the request is done
+     *
+     * @param start what {@link #start()} returned when the phase started
+     * @return the end of the phase, i.e. the start of the next one, {@link #NOT_TIMED}
+     *         if the phase was not timed or there is no listener
+     */
+    public static double record(Method method, Phase phase, double start, boolean failure) {
+        if (!enabled || start == NOT_TIMED) {
+            return NOT_TIMED;
+        }
+        double end = now();
+        RequestTimingEvent event = new RequestTimingEvent(method, phase, start, end, failure);
+        for (RequestTimingListener listener : listeners) {
+            listener.onTiming(event);
+        }
+        return end;
+    }
+
+    /**
+     * the request passed the filters of the dispatcher and goes on the wire
+     *
+     * @param start the start of the network phase, {@link #NOT_TIMED} if the request
+     *        does not go on the wire, e.g. as a cache answers it
+     */
+    public static void startNetwork(Method method, double start) {
+        method.sentAt = start;
+    }
+
+    /**
+     * @return milliseconds with sub-millisecond resolution where the browser
+     *         supports it, only the difference of two values is meaningful
+     */
+    public static double now() {
+        return GWT.isScript() ? performanceNow() : System.currentTimeMillis();
+    }
+
+    private static native double performanceNow() /*-{
+        return $wnd.performance && $wnd.performance.now ? $wnd.performance.now() : new Date().getTime();
+    }-*/;
+}
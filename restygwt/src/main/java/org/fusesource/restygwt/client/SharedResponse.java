@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+
+/**
+ * a response handed to several callbacks, e.g. to the ones of coalesced
+ * requests. it keeps the results the callbacks decoded from it: the next
+ * callback of the same kind gets the very same result instead of decoding
+ * the text once more. the callbacks share the decoded objects, so they
+ * should not modify them.
+ *
+ * @see AbstractRequestCallback#getResultKey()
+ */
+public class SharedResponse extends Response {
+
+    private final Response shared;
+
+    private Map<Object, Object> results;
+
+    public SharedResponse(Response response) {
+        this(response, null);
+    }
+
+    /**
+     * @param results where to keep the decoded results, shared by all responses given the same map.
+     *        <code>null</code> for a map of its own.
+     */
+    protected SharedResponse(Response response, Map<Object, Object> results) {
+        this.shared = response;
+        this.results = results;
+    }
+
+    public boolean hasResult(Object key) {
+        return results != null && results.containsKey(key);
+    }
+
+    public Object getResult(Object key) {
+        return results == null ? null : results.get(key);
+    }
+
+    public void putResult(Object key, Object result) {
+        if (results == null) {
+            results = new HashMap<Object, Object>();
+        }
+        results.put(key, result);
+    }
+
+    @Override
+    public String getHeader(String header) {
+        return shared.getHeader(header);
+    }
+
+    @Override
+    public Header[] getHeaders() {
+        return shared.getHeaders();
+    }
+
+    @Override
+    public String getHeadersAsString() {
+        return shared.getHeadersAsString();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return shared.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() {
+        return shared.getStatusText();
+    }
+
+    @Override
+    public String getText() {
+        return shared.getText();
+    }
+
+    @Override
+    public String toString() {
+        return shared.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import org.fusesource.restygwt.client.dispatcher.SupersedingDispatcherFilter;
+
+/**
+ * Marks requests where only the latest one of a group matters, e.g. the
+ * lookups of a typeahead field. Sending a new request cancels the one still
+ * in flight for the same group, its response never reaches the callback.
+ *
+ * Needs a {@link SupersedingDispatcherFilter} on the dispatcher.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target( { METHOD, TYPE })
+public @interface Supersede {
+
+    /**
+     * When creating the ``RestService`` classes, there will be put some information
+     * in {@link Method#addData(String, String)}. To have a centralized place
+     * what is the key on that ``put`` (and later ``get``) operation, we have this
+     * constant here.
+     */
+    public static final String GROUP_KEY = "sg";
+
+    /**
+     * requests of the same group supersede each other. defaults to the
+     * annotated method, i.e. a request only supersedes the requests of the
+     * same service method.
+     */
+    String group() default "";
+}
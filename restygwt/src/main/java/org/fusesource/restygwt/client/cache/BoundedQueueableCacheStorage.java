@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * keeps the responses within a budget of bytes, whatever their scopes.
+ * when a new response exceeds the budget the least recently used ones are
+ * evicted. responses are stored as {@link CompactResponse} snapshots, so the
+ * cache does not keep the XMLHttpRequests of the responses alive.
+ */
+public class BoundedQueueableCacheStorage extends DefaultQueueableCacheStorage {
+
+    private static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * the headers kept by default, the ones the caching and the callbacks look at
+     */
+    public static final String[] DEFAULT_HEADERS = {
+        "Content-Type",
+        "Cache-Control",
+        "Expires",
+        "Date",
+        "Vary",
+        RevalidatableCacheStorage.HEADER_ETAG,
+        RevalidatableCacheStorage.HEADER_LAST_MODIFIED
+    };
+
+    private final int maxBytes;
+
+    private final String[] headers;
+
+    /**
+     * size of all stored entries in access order, least recently used first
+     */
+    private final LinkedHashMap<CacheKey, Integer> sizes = new LinkedHashMap<CacheKey, Integer>(16, 0.75f, true);
+
+    private int bytes;
+
+    private int evictions;
+
+    public BoundedQueueableCacheStorage() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public BoundedQueueableCacheStorage(int maxBytes) {
+        this(maxBytes, DEFAULT_HEADERS);
+    }
+
+    /**
+     * @param maxBytes the budget for all responses, see {@link CompactResponse#size()}
+     * @param headers the headers kept of a response
+     */
+    public BoundedQueueableCacheStorage(int maxBytes, String... headers) {
+        this.maxBytes = maxBytes;
+        this.headers = headers;
+    }
+
+    @Override
+    public Response getResultOrReturnNull(final CacheKey key, final String scope) {
+        Response result = super.getResultOrReturnNull(key, scope);
+        if (result != null) {
+            // marks it as recently used
+            sizes.get(key);
+        }
+        return result;
+    }
+
+    @Override
+    public void putResult(final CacheKey key, final Response response, final String... scopes) {
+        CompactResponse compact = response instanceof CompactResponse
+                ? (CompactResponse) response : new CompactResponse(response, headers);
+        int size = compact.size();
+        if (size > maxBytes) {
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(BoundedQueueableCacheStorage.class.getName())
+                        .fine("not caching " + key + " with " + size + " bytes, the budget is " + maxBytes);
+            }
+            drop(key);
+            return;
+        }
+
+        unaccount(key);
+        super.putResult(key, compact, scopes);
+        sizes.put(key, size);
+        bytes += size;
+        evict();
+    }
+
+    @Override
+    public void purge() {
+        super.purge();
+        sizes.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the bytes taken by all stored responses
+     */
+    public int getSize() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of stored responses
+     */
+    public int getEntryCount() {
+        return sizes.size();
+    }
+
+    /**
+     * @return the number of responses evicted to stay within the budget
+     */
+    public int getEvictionCount() {
+        return evictions;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    protected void removed(CacheKey key, Set<String> scopes) {
+        super.removed(key, scopes);
+        unaccount(key);
+    }
+
+    /**
+     * called for each response evicted to stay within the budget
+     */
+    protected void evicted(CacheKey key) {
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(BoundedQueueableCacheStorage.class.getName())
+                    .finer("evicted cache-key " + key);
+        }
+    }
+
+    private void evict() {
+        while (bytes > maxBytes && !sizes.isEmpty()) {
+            CacheKey eldest = sizes.keySet().iterator().next();
+            unaccount(eldest);
+            countEviction(eldest);
+            drop(eldest);
+            evictions++;
+            evicted(eldest);
+        }
+    }
+
+    private void unaccount(CacheKey key) {
+        Integer size = sizes.remove(key);
+        if (size != null) {
+            bytes -= size;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import com.google.gwt.http.client.Response;
+
+/**
+ * the caching related headers of a response: <code>Cache-Control</code>,
+ * <code>Expires</code>, <code>Date</code>, <code>Age</code> and <code>Vary</code>.
+ */
+public class CacheControl {
+
+    public static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    public static final String HEADER_EXPIRES = "Expires";
+
+    public static final String HEADER_DATE = "Date";
+
+    public static final String HEADER_VARY = "Vary";
+
+    public static final String HEADER_AGE = "Age";
+
+    private static final String[] MONTHS = { "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug",
+            "sep", "oct", "nov", "dec" };
+
+    /**
+     * the max-age in seconds, -1 if not given
+     */
+    public final long maxAge;
+
+    /**
+     * the stale-while-revalidate window in seconds, -1 if not given
+     */
+    public final long staleWhileRevalidate;
+
+    public final boolean noStore;
+
+    public final boolean noCache;
+
+    public final boolean isPrivate;
+
+    public final boolean mustRevalidate;
+
+    /**
+     * the <code>Expires</code> header in milliseconds, -1 if not given, 0 if it can not be parsed
+     */
+    public final long expires;
+
+    /**
+     * the <code>Date</code> header in milliseconds, -1 if not given or it can not be parsed
+     */
+    public final long date;
+
+    /**
+     * the <code>Age</code> header in seconds, i.e. how long the response sat in a shared
+     * cache before, -1 if not given or it can not be parsed
+     */
+    public final long age;
+
+    /**
+     * the request headers named by <code>Vary</code>, empty if there are none
+     */
+    public final String[] vary;
+
+    private CacheControl(String cacheControl, String expires, String date, String age, String vary) {
+        long maxAge = -1;
+        long staleWhileRevalidate = -1;
+        boolean noStore = false;
+        boolean noCache = false;
+        boolean isPrivate = false;
+        boolean mustRevalidate = false;
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase();
+                if (directive.startsWith("max-age=")) {
+                    maxAge = parseSeconds(directive.substring("max-age=".length()));
+                } else if (directive.startsWith("stale-while-revalidate=")) {
+                    staleWhileRevalidate = parseSeconds(directive.substring("stale-while-revalidate=".length()));
+                } else if (directive.equals("no-store")) {
+                    noStore = true;
+                } else if (directive.startsWith("no-cache")) {
+                    noCache = true;
+                } else if (directive.startsWith("private")) {
+                    isPrivate = true;
+                } else if (directive.equals("must-revalidate")) {
+                    mustRevalidate = true;
+                }
+            }
+        }
+        this.maxAge = maxAge;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.noStore = noStore;
+        this.noCache = noCache;
+        this.isPrivate = isPrivate;
+        this.mustRevalidate = mustRevalidate;
+
+        if (expires == null) {
+            this.expires = -1;
+        } else {
+            long parsed = parseDate(expires);
+            // an invalid date like "0" means already expired
+            this.expires = parsed < 0 ? 0 : parsed;
+        }
+        this.date = date == null ? -1 : parseDate(date);
+        this.age = age == null ? -1 : parseSeconds(age);
+
+        if (vary == null || vary.trim().length() == 0) {
+            this.vary = new String[0];
+        } else {
+            String[] names = vary.split(",");
+            for (int i = 0; i < names.length; i++) {
+                names[i] = names[i].trim();
+            }
+            this.vary = names;
+        }
+    }
+
+    public static CacheControl parse(Response response) {
+        return new CacheControl(response.getHeader(HEADER_CACHE_CONTROL), response.getHeader(HEADER_EXPIRES),
+                response.getHeader(HEADER_DATE), response.getHeader(HEADER_AGE), response.getHeader(HEADER_VARY));
+    }
+
+    /**
+     * @return whether the response carries any information about its freshness
+     */
+    public boolean hasFreshness() {
+        return maxAge >= 0 || noCache || expires >= 0;
+    }
+
+    /**
+     * @return the lifetime in milliseconds following max-age, no-cache or Expires, less
+     *         the Age of the response, -1 if the response says nothing about it
+     */
+    public long lifetime(long now) {
+        if (noCache) {
+            return 0;
+        }
+        long lifetime;
+        if (maxAge >= 0) {
+            lifetime = maxAge * 1000;
+        } else if (expires >= 0) {
+            // relative to the clock of the server if possible
+            lifetime = expires - (date >= 0 ? date : now);
+        } else {
+            return -1;
+        }
+        if (age > 0) {
+            lifetime -= age * 1000;
+        }
+        return lifetime < 0 ? 0 : lifetime;
+    }
+
+    /**
+     * @return whether the response varies on all of the request, i.e. <code>Vary: *</code>
+     */
+    public boolean variesOnAll() {
+        for (String name : vary) {
+            if (name.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * parses a date in the preferred format of HTTP, e.g. <code>Sun, 06 Nov 1994 08:49:37 GMT</code>.
+     *
+     * @return the milliseconds since the epoch, -1 if it can not be parsed
+     */
+    static long parseDate(String value) {
+        String[] parts = value.trim().split("[ :]+");
+        if (parts.length != 8 || !parts[7].equalsIgnoreCase("GMT")) {
+            return -1;
+        }
+        int month = -1;
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (MONTHS[i].equalsIgnoreCase(parts[2])) {
+                month = i + 1;
+            }
+        }
+        try {
+            int day = Integer.parseInt(parts[1]);
+            int year = Integer.parseInt(parts[3]);
+            int hours = Integer.parseInt(parts[4]);
+            int minutes = Integer.parseInt(parts[5]);
+            int seconds = Integer.parseInt(parts[6]);
+            if (month < 0) {
+                return -1;
+            }
+            long days = daysSinceEpoch(year, month, day);
+            return (((days * 24 + hours) * 60 + minutes) * 60 + seconds) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * days since 1970-01-01 of a date of the proleptic gregorian calendar
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.fusesource.restygwt.client.Method;
+
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.json.client.JSONValue;
+
+/**
+ * resolves the {@link Domain}s a method of a service belongs to, i.e. the
+ * scopes its responses are cached with.
+ */
+public final class CacheDomains {
+
+    /**
+     * the parsed domains per json value of {@link Domain#CACHE_DOMAIN_KEY}. there is one
+     * such value per annotated service method, so each gets parsed once only.
+     */
+    private static final Map<String, String[]> parsed = new HashMap<String, String[]>();
+
+    private CacheDomains() {
+    }
+
+    /**
+     * @return array of names of cache domains, <code>null</code> if there is none.
+     *         the array is shared by all requests of the method, do not modify it.
+     */
+    public static String[] of(final Method method) {
+        final String json = method.getData().get(Domain.CACHE_DOMAIN_KEY);
+        if (null == json) return null;
+
+        if (parsed.containsKey(json)) {
+            return parsed.get(json);
+        }
+        final String[] domains = parse(json);
+        parsed.put(json, domains);
+        return domains;
+    }
+
+    private static String[] parse(final String json) {
+        final JSONValue jsonValue = JSONParser.parseStrict(json);
+        if (null == jsonValue) {
+            return null;
+        }
+
+        final JSONArray jsonArray = jsonValue.isArray();
+        if (null != jsonArray) {
+            final String[] dd = new String[jsonArray.size()];
+            for (int i = 0; i < jsonArray.size(); ++i) {
+                dd[i] = jsonArray.get(i).isString().stringValue();
+            }
+
+            return dd;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+/**
+ * the counters of a cache, either for one scope (e.g. a {@link Domain}) or
+ * for all of them. instances handed out are snapshots and do not change.
+ */
+public class CacheStatistics {
+
+    int hits;
+    int misses;
+    int coalesced;
+    int evictions;
+    int expirations;
+    int bytes;
+
+    CacheStatistics() {
+    }
+
+    CacheStatistics(CacheStatistics counters, int bytes) {
+        this.hits = counters.hits;
+        this.misses = counters.misses;
+        this.coalesced = counters.coalesced;
+        this.evictions = counters.evictions;
+        this.expirations = counters.expirations;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the requests answered with a cached response, fresh or stale
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the requests which went over the wire
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the requests queued to get the response of an identical one in flight
+     */
+    public int getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return the responses evicted to stay within a budget
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the responses dropped at the end of their lifetime
+     */
+    public int getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * @return the approximate memory taken by the responses held, two bytes a character
+     */
+    public int getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return hits of all hits and misses, <code>0</code> without any
+     */
+    public double getHitRatio() {
+        int lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics [hits=" + hits + ", misses=" + misses + ", coalesced=" + coalesced
+                + ", evictions=" + evictions + ", expirations=" + expirations + ", bytes=" + bytes + "]";
+    }
+}
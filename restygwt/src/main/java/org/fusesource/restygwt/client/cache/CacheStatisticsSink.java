@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.Map;
+
+/**
+ * receives the statistics of a {@link StatisticsCacheStorage} on
+ * {@link StatisticsCacheStorage#publishStatistics()}, e.g. to log them or
+ * to send them to the server.
+ */
+public interface CacheStatisticsSink {
+
+    /**
+     * @param total the statistics of all scopes together
+     * @param scopes the statistics of each scope, responses without a scope
+     *        are under the empty string
+     */
+    public void publish(CacheStatistics total, Map<String, CacheStatistics> scopes);
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+
+/**
+ * a snapshot of a response holding status, text and a selection of headers
+ * only. other than the response of the wire it does not keep the underlying
+ * XMLHttpRequest alive.
+ */
+public class CompactResponse extends Response {
+
+    private final int statusCode;
+    private final String statusText;
+    private final String text;
+
+    /**
+     * names (lower case) and values of the headers kept, alternating
+     */
+    private final String[] headers;
+
+    /**
+     * @param response the response to take the snapshot from
+     * @param headerNames the headers to keep
+     */
+    public CompactResponse(Response response, String... headerNames) {
+        this.statusCode = response.getStatusCode();
+        this.statusText = response.getStatusText();
+        this.text = response.getText();
+
+        List<String> kept = new ArrayList<String>();
+        for (String name : headerNames) {
+            String value = response.getHeader(name);
+            if (value != null) {
+                kept.add(name.toLowerCase());
+                kept.add(value);
+            }
+        }
+        this.headers = kept.toArray(new String[kept.size()]);
+    }
+
+    /**
+     * @param headers names (lower case) and values of the headers, alternating
+     */
+    CompactResponse(int statusCode, String statusText, String text, String... headers) {
+        this.statusCode = statusCode;
+        this.statusText = statusText;
+        this.text = text;
+        this.headers = headers;
+    }
+
+    /**
+     * @return the approximate memory taken by text and headers, two bytes a character
+     */
+    public int size() {
+        int chars = text == null ? 0 : text.length();
+        for (String header : headers) {
+            chars += header.length();
+        }
+        return 2 * chars;
+    }
+
+    @Override
+    public String getHeader(String header) {
+        String name = header.toLowerCase();
+        for (int i = 0; i < headers.length; i += 2) {
+            if (headers[i].equals(name)) {
+                return headers[i + 1];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Header[] getHeaders() {
+        Header[] result = new Header[headers.length / 2];
+        for (int i = 0; i < result.length; i++) {
+            final String name = headers[2 * i];
+            final String value = headers[2 * i + 1];
+            result[i] = new Header() {
+
+                @Override
+                public String getName() {
+                    return name;
+                }
+
+                @Override
+                public String getValue() {
+                    return value;
+                }
+            };
+        }
+        return result;
+    }
+
+    @Override
+    public String getHeadersAsString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < headers.length; i += 2) {
+            result.append(headers[i]).append(": ").append(headers[i + 1]).append("\r\n");
+        }
+        return result.toString();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getStatusText() {
+        return statusText;
+    }
+
+    @Override
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactResponse [" + statusCode + ", " + size() + " bytes]";
+    }
+}
@@ -18,12 +18,17 @@
 
 package org.fusesource.restygwt.client.cache;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
+import org.fusesource.restygwt.client.SharedResponse;
+
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.http.client.Header;
 import com.google.gwt.http.client.RequestCallback;
@@ -35,12 +40,19 @@ import com.google.gwt.logging.client.LogConfiguration;
  * the cache the Response will have an extra header field "X-Resty-Cache". this allows CallbackFilter to
  * determine the action on whether the Response came from the cache or just came over the wire.
  *
+ * a Response put with several scopes is stored once and removed from all of them together.
+ *
+ * it keeps {@link CacheStatistics} per scope, see {@link StatisticsCacheStorage}.
+ *
+ * with {@link #setShareDecodedResults(boolean)} the hits of a Response share the objects
+ * decoded from it, see {@link SharedResponse}.
+ *
  * @author kristian
  *
  */
-public class DefaultQueueableCacheStorage implements QueueableCacheStorage {
+public class DefaultQueueableCacheStorage implements StatisticsCacheStorage {
 
-    public static class ResponseWrapper extends Response {
+    public static class ResponseWrapper extends SharedResponse {
 
         // keep it public for testing
         public final Response response;
@@ -108,21 +120,52 @@ public class DefaultQueueableCacheStorage implements QueueableCacheStorage {
         }
 
         ResponseWrapper(Response resp) {
+            this(resp, null);
+        }
+
+        ResponseWrapper(Response resp, Map<Object, Object> results) {
+            super(resp, results);
             this.response = resp;
         }
     }
 
-    private static final String DEFAULT_SCOPE = "";
+    protected static final String DEFAULT_SCOPE = "";
 
     /**
-     * key-value hashmap for holding cache values. nothing special here.
-     * 
-     * invalidated values will be dropped by timer
+     * the responses, each one held once whatever the number of its scopes.
      */
-    protected final Map<String, HashMap<CacheKey, Response>> cache = new HashMap<String, HashMap<CacheKey, Response>>();
+    private final Map<CacheKey, Response> cache = new HashMap<CacheKey, Response>();
+
+    /**
+     * the scopes of each response. a response put with several scopes is one
+     * invalidation group: removing it from one of them removes it from all.
+     */
+    private final Map<CacheKey, Set<String>> scopes = new HashMap<CacheKey, Set<String>>();
+
+    /**
+     * reverse index, the keys of each scope
+     */
+    private final Map<String, Set<CacheKey>> keys = new HashMap<String, Set<CacheKey>>();
 
     private final Map<CacheKey, List<RequestCallback>> pendingCallbacks = new HashMap<CacheKey, List<RequestCallback>>();
 
+    /**
+     * the results decoded from each response, when they are shared
+     */
+    private Map<CacheKey, Map<Object, Object>> results;
+
+    private CacheStatistics totals = new CacheStatistics();
+
+    /**
+     * the counters of each scope, the memory taken is summed up when asked for
+     */
+    private final Map<String, CacheStatistics> counters = new HashMap<String, CacheStatistics>();
+
+    private CacheStatisticsSink statisticsSink;
+
+    /**
+     * the default scope finds a response of any scope, as the key identifies the request
+     */
     @Override
     public Response getResultOrReturnNull(CacheKey key) {
         return getResultOrReturnNull(key, DEFAULT_SCOPE);
@@ -130,12 +173,8 @@ public class DefaultQueueableCacheStorage implements QueueableCacheStorage {
 
     @Override
     public Response getResultOrReturnNull(final CacheKey key, final String scope) {
-        final HashMap<CacheKey, Response> scoped = cache.get(scope);
-        if (null != scoped) {
-            Response result = scoped.get(key);
-            if (result != null) {
-                return new ResponseWrapper(result);
-            }
+        if (isInScope(key, scope)) {
+            return wrap(key, cache.get(key));
         }
 
         return null;
@@ -148,27 +187,36 @@ public class DefaultQueueableCacheStorage implements QueueableCacheStorage {
 
     protected void putResult(final CacheKey key, final Response response,
             final String scope) {
-        HashMap<CacheKey, Response> scoped = cache.get(scope);
-
-        if (null == scoped) {
-            cache.put(scope, new HashMap<CacheKey, Response>());
-            scoped = cache.get(scope);
-        }
-
-        scoped.put(key, response);
+        putResult(key, response, new String[] { scope });
     }
 
+    /**
+     * stores the response once, along with the scopes it got before
+     */
     @Override
     public void putResult(CacheKey key, Response response, String... scopes) {
-        if (null == scopes) {
-            putResult(key, response);
-            return;
+        if (null == scopes || scopes.length == 0) {
+            scopes = new String[] { DEFAULT_SCOPE };
         }
 
-        // TODO mark multi-scoped values as one invalidation group
-        // TODO remove redundant storage
+        cache.put(key, response);
+        if (results != null) {
+            // decoded from the response replaced
+            results.remove(key);
+        }
+        Set<String> scopesOfKey = this.scopes.get(key);
+        if (null == scopesOfKey) {
+            scopesOfKey = new HashSet<String>();
+            this.scopes.put(key, scopesOfKey);
+        }
         for (String scope : scopes) {
-            putResult(key, response, scope);
+            scopesOfKey.add(scope);
+            Set<CacheKey> keysOfScope = keys.get(scope);
+            if (null == keysOfScope) {
+                keysOfScope = new HashSet<CacheKey>();
+                keys.put(scope, keysOfScope);
+            }
+            keysOfScope.add(key);
         }
     }
 
@@ -203,15 +251,30 @@ public class DefaultQueueableCacheStorage implements QueueableCacheStorage {
                     .finer("remove " + cache.size() + " elements from cache.");
         }
         cache.clear();
+        scopes.clear();
+        keys.clear();
+        if (results != null) {
+            results.clear();
+        }
     }
 
+    /**
+     * removes the responses of the scope from all their scopes
+     */
     @Override
     public void purge(final String scope) {
-        HashMap<CacheKey, Response> scoped = cache.get(scope);
+        Set<CacheKey> scoped = keys.get(scope);
+        if (null == scoped) {
+            return;
+        }
 
-        // TODO handle timers in scoping too
-        if (null != scoped)
-            scoped.clear();
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(DefaultQueueableCacheStorage.class.getName())
+                    .finer("remove " + scoped.size() + " elements of scope \"" + scope + "\" from cache.");
+        }
+        for (CacheKey key : new ArrayList<CacheKey>(scoped)) {
+            drop(key);
+        }
     }
 
     @Override
@@ -228,15 +291,234 @@ public class DefaultQueueableCacheStorage implements QueueableCacheStorage {
         }
     }
 
+    /**
+     * @param share whether the hits of a response get the objects a callback of the same kind
+     *        decoded from it before, instead of decoding it again. the same goes for the
+     *        callbacks queued for a response in flight. the callbacks must not modify the
+     *        objects then.
+     */
+    public void setShareDecodedResults(boolean share) {
+        if (!share) {
+            results = null;
+        } else if (results == null) {
+            results = new HashMap<CacheKey, Map<Object, Object>>();
+        }
+    }
+
+    /**
+     * @return whether the callbacks share the objects decoded from a response, off by default
+     */
+    public boolean isShareDecodedResults() {
+        return results != null;
+    }
+
+    @Override
+    public void recordHit(String... scopes) {
+        totals.hits++;
+        for (CacheStatistics statistics : counters(scopes)) {
+            statistics.hits++;
+        }
+    }
+
+    @Override
+    public void recordMiss(String... scopes) {
+        totals.misses++;
+        for (CacheStatistics statistics : counters(scopes)) {
+            statistics.misses++;
+        }
+    }
+
+    @Override
+    public void recordCoalesced(String... scopes) {
+        totals.coalesced++;
+        for (CacheStatistics statistics : counters(scopes)) {
+            statistics.coalesced++;
+        }
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        int bytes = 0;
+        for (Response response : cache.values()) {
+            bytes += sizeOf(response);
+        }
+        return new CacheStatistics(totals, bytes);
+    }
+
+    @Override
+    public CacheStatistics getStatistics(String scope) {
+        int bytes = 0;
+        Set<CacheKey> keysOfScope = keys.get(scope);
+        if (keysOfScope != null) {
+            for (CacheKey key : keysOfScope) {
+                bytes += sizeOf(cache.get(key));
+            }
+        }
+        CacheStatistics statistics = counters.get(scope);
+        return new CacheStatistics(statistics == null ? new CacheStatistics() : statistics, bytes);
+    }
+
+    @Override
+    public Map<String, CacheStatistics> getScopeStatistics() {
+        Set<String> all = new HashSet<String>(counters.keySet());
+        all.addAll(keys.keySet());
+        Map<String, CacheStatistics> result = new HashMap<String, CacheStatistics>();
+        for (String scope : all) {
+            result.put(scope, getStatistics(scope));
+        }
+        return result;
+    }
+
+    @Override
+    public void setStatisticsSink(CacheStatisticsSink sink) {
+        this.statisticsSink = sink;
+    }
+
+    @Override
+    public void publishStatistics() {
+        if (statisticsSink != null) {
+            statisticsSink.publish(getStatistics(), getScopeStatistics());
+        }
+    }
+
+    @Override
+    public void resetStatistics() {
+        totals = new CacheStatistics();
+        counters.clear();
+    }
+
+    /**
+     * @return the stored response whatever its scopes, without the cache header
+     */
+    protected Response getStoredResult(CacheKey key) {
+        return cache.get(key);
+    }
+
+    /**
+     * @return the stored response with the cache header, sharing the results decoded from it
+     */
+    protected Response wrap(CacheKey key, Response stored) {
+        return new ResponseWrapper(stored, resultsOf(key));
+    }
+
+    /**
+     * @return the scopes of the stored response, <code>null</code> if there is none
+     */
+    protected Set<String> getScopes(CacheKey key) {
+        return scopes.get(key);
+    }
+
+    /**
+     * removes the response from all its scopes
+     */
+    protected void drop(CacheKey key) {
+        if (cache.remove(key) == null) {
+            return;
+        }
+        if (results != null) {
+            results.remove(key);
+        }
+        Set<String> scopesOfKey = scopes.remove(key);
+        for (String scope : scopesOfKey) {
+            Set<CacheKey> keysOfScope = keys.get(scope);
+            keysOfScope.remove(key);
+            if (keysOfScope.isEmpty()) {
+                keys.remove(scope);
+            }
+        }
+        removed(key, scopesOfKey);
+    }
+
+    /**
+     * count the stored response as evicted in each of its scopes, before it is dropped
+     */
+    protected void countEviction(CacheKey key) {
+        Set<String> scopesOfKey = scopes.get(key);
+        if (scopesOfKey != null) {
+            totals.evictions++;
+            for (String scope : scopesOfKey) {
+                counter(scope).evictions++;
+            }
+        }
+    }
+
+    /**
+     * count the stored response as expired in each of its scopes, before it is dropped
+     */
+    protected void countExpiration(CacheKey key) {
+        Set<String> scopesOfKey = scopes.get(key);
+        if (scopesOfKey != null) {
+            totals.expirations++;
+            for (String scope : scopesOfKey) {
+                counter(scope).expirations++;
+            }
+        }
+    }
+
+    /**
+     * @return the approximate memory taken by the response, see {@link CompactResponse#size()}
+     */
+    protected int sizeOf(Response response) {
+        if (response instanceof CompactResponse) {
+            return ((CompactResponse) response).size();
+        }
+        String text = response.getText();
+        return text == null ? 0 : 2 * text.length();
+    }
+
+    /**
+     * called for each response removed, except the ones removed all at once by {@link #purge()}
+     */
+    protected void removed(CacheKey key, Set<String> scopes) {
+    }
+
+    private Map<Object, Object> resultsOf(CacheKey key) {
+        if (results == null) {
+            return null;
+        }
+        Map<Object, Object> resultsOfKey = results.get(key);
+        if (resultsOfKey == null) {
+            resultsOfKey = new HashMap<Object, Object>();
+            results.put(key, resultsOfKey);
+        }
+        return resultsOfKey;
+    }
+
+    private CacheStatistics counter(String scope) {
+        CacheStatistics statistics = counters.get(scope);
+        if (statistics == null) {
+            statistics = new CacheStatistics();
+            counters.put(scope, statistics);
+        }
+        return statistics;
+    }
+
+    private List<CacheStatistics> counters(String... scopes) {
+        List<CacheStatistics> result = new ArrayList<CacheStatistics>();
+        if (null == scopes || scopes.length == 0) {
+            result.add(counter(DEFAULT_SCOPE));
+        } else {
+            for (String scope : scopes) {
+                result.add(counter(scope));
+            }
+        }
+        return result;
+    }
+
+    private boolean isInScope(CacheKey key, String scope) {
+        Set<String> scopesOfKey = scopes.get(key);
+        return scopesOfKey != null && (DEFAULT_SCOPE.equals(scope) || scopesOfKey.contains(scope));
+    }
+
     private void doRemove(CacheKey key, String scope) {
+        if (!isInScope(key, scope)) {
+            return;
+        }
         if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
             Logger.getLogger(DefaultQueueableCacheStorage.class.getName())
                     .finer("removing cache-key " + key + " from scope \""
                             + scope + "\"");
         }
-
-        HashMap<CacheKey, Response> scoped = cache.get(scope);
-        if (null != scoped)
-            scoped.remove(key);
+        drop(key);
     }
 }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.gwt.http.client.RequestBuilder;
+
+/**
+ * the key of a request made of its method, its normalized url and a digest
+ * of its body:
+ * <ul>
+ * <li>the query parameters are sorted by name, i.e. <code>?a=1&amp;b=2</code>
+ * and <code>?b=2&amp;a=1</code> are the same. the values of a parameter
+ * given more than once keep their order.</li>
+ * <li>the fragment is dropped.</li>
+ * <li>the body is replaced by its length and two 32 bit hashes, so a large
+ * body costs one pass when the key is made and nothing afterwards.</li>
+ * </ul>
+ *
+ * the hash code is computed once. a request without a body gets the same
+ * key as its {@link ComplexCacheKey}.
+ */
+public class HashedCacheKey extends SimpleCacheKey {
+
+    private static final Comparator<String> BY_NAME = new Comparator<String>() {
+
+        @Override
+        public int compare(String left, String right) {
+            return name(left).compareTo(name(right));
+        }
+    };
+
+    private final int hash;
+
+    public HashedCacheKey(RequestBuilder requestBuilder) {
+        this(requestBuilder.getHTTPMethod(), requestBuilder.getUrl(), requestBuilder.getRequestData());
+    }
+
+    public HashedCacheKey(String method, String url, String requestData) {
+        super(method + " " + normalize(url) + " [" + digest(requestData) + "]");
+        this.hash = toString().hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object anObject) {
+        if (anObject instanceof HashedCacheKey && ((HashedCacheKey) anObject).hash != hash) {
+            return false;
+        }
+        return super.equals(anObject);
+    }
+
+    /**
+     * @return the url with the query parameters sorted by name and without fragment
+     */
+    public static String normalize(String url) {
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        int query = url.indexOf('?');
+        if (query < 0 || url.indexOf('&', query) < 0) {
+            return url;
+        }
+
+        List<String> parameters = new ArrayList<String>();
+        int start = query + 1;
+        while (start <= url.length()) {
+            int end = url.indexOf('&', start);
+            if (end < 0) {
+                end = url.length();
+            }
+            if (end > start) {
+                parameters.add(url.substring(start, end));
+            }
+            start = end + 1;
+        }
+        // stable, the values of a parameter keep their order
+        Collections.sort(parameters, BY_NAME);
+
+        StringBuilder normalized = new StringBuilder(url.length()).append(url, 0, query + 1);
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                normalized.append('&');
+            }
+            normalized.append(parameters.get(i));
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return length and hashes of the body, "null" without a body
+     */
+    public static String digest(String requestData) {
+        if (requestData == null) {
+            return "null";
+        }
+        // two independent hashes, shifts and additions only to stay exact in javascript
+        int h1 = 0;
+        int h2 = 5381;
+        for (int i = 0; i < requestData.length(); i++) {
+            char c = requestData.charAt(i);
+            h1 = (h1 << 5) - h1 + c;
+            h2 = ((h2 << 5) + h2) ^ c;
+        }
+        // fixed width, otherwise e.g. 1 and 23 would read like 12 and 3
+        return "#" + requestData.length() + ":" + hex(h1) + hex(h2);
+    }
+
+    private static String hex(int hash) {
+        String hex = Integer.toHexString(hash);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    private static String name(String parameter) {
+        int eq = parameter.indexOf('=');
+        return eq < 0 ? parameter : parameter.substring(0, eq);
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * a cache following the caching headers of the server:
+ * <ul>
+ * <li><code>Cache-Control: no-store</code> and <code>Vary: *</code> responses are not stored</li>
+ * <li><code>Cache-Control: max-age</code>, <code>no-cache</code> or else <code>Expires</code>
+ * set the lifetime of a response, the default lifetime applies if none of them is given</li>
+ * <li><code>Age</code> shortens the lifetime by the time a shared cache held the response</li>
+ * <li><code>Cache-Control: private</code> responses are stored, this is a private cache</li>
+ * <li><code>Cache-Control: stale-while-revalidate</code> sets the stale window of a response</li>
+ * <li><code>Cache-Control: must-revalidate</code> responses are never served once expired</li>
+ * <li>each variant of a response with a <code>Vary</code> header is stored on its own</li>
+ * </ul>
+ *
+ * expired responses are revalidated like with the {@link RevalidatingQueueableCacheStorage}.
+ * telling apart variants needs the {@link VaryingCacheKey} which the caching filters
+ * use with this storage.
+ */
+public class HttpQueueableCacheStorage extends RevalidatingQueueableCacheStorage {
+
+    /**
+     * the request headers the responses of a key vary on, learned from the latest response
+     */
+    private final Map<CacheKey, String[]> varies = new HashMap<CacheKey, String[]>();
+
+    /**
+     * the caching headers of the stored responses, parsed once when they are stored
+     */
+    private final Map<CacheKey, CacheControl> cacheControls = new HashMap<CacheKey, CacheControl>();
+
+    public HttpQueueableCacheStorage() {
+        super();
+    }
+
+    /**
+     * @param lifetimeMillis lifetime of responses which say nothing about their freshness
+     */
+    public HttpQueueableCacheStorage(int lifetimeMillis) {
+        super(lifetimeMillis);
+    }
+
+    /**
+     * @param lifetimeMillis lifetime of responses which say nothing about their freshness
+     * @param staleWindowMillis stale window of responses which say nothing about it
+     */
+    public HttpQueueableCacheStorage(int lifetimeMillis, int staleWindowMillis) {
+        super(lifetimeMillis, staleWindowMillis);
+    }
+
+    @Override
+    public Response getResultOrReturnNull(final CacheKey key, final String scope) {
+        return super.getResultOrReturnNull(variant(key), scope);
+    }
+
+    @Override
+    public Response getStaleResultOrReturnNull(final CacheKey key) {
+        return super.getStaleResultOrReturnNull(variant(key));
+    }
+
+    @Override
+    public Response getServableStaleResultOrReturnNull(final CacheKey key) {
+        return super.getServableStaleResultOrReturnNull(variant(key));
+    }
+
+    @Override
+    public Response revalidated(final CacheKey key, final Response notModified) {
+        CacheKey variant = variant(key);
+        Response revalidated = super.revalidated(variant, notModified);
+        if (revalidated != null) {
+            // the server may send new caching headers along with the 304
+            CacheControl cacheControl = CacheControl.parse(notModified);
+            if (cacheControl.hasFreshness()) {
+                expires.put(variant, now() + cacheControl.lifetime(now()));
+            }
+        }
+        return revalidated;
+    }
+
+    @Override
+    public void putResult(final CacheKey key, final Response response, final String... scopes) {
+        CacheControl cacheControl = CacheControl.parse(response);
+        if (cacheControl.noStore || cacheControl.variesOnAll()) {
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(HttpQueueableCacheStorage.class.getName())
+                        .finer("response must not be stored: " + key);
+            }
+            remove(key);
+            return;
+        }
+
+        CacheKey variant = key;
+        if (key instanceof VaryingCacheKey) {
+            VaryingCacheKey varying = (VaryingCacheKey) key;
+            if (cacheControl.vary.length > 0) {
+                varies.put(varying.getKey(), cacheControl.vary);
+            } else {
+                varies.remove(varying.getKey());
+            }
+            variant = varying.variant(cacheControl.vary);
+        }
+        cacheControls.put(variant, cacheControl);
+        super.putResult(variant, response, scopes);
+    }
+
+    @Override
+    public void remove(CacheKey key) {
+        super.remove(variant(key));
+    }
+
+    @Override
+    public void remove(CacheKey key, String... scopes) {
+        super.remove(variant(key), scopes);
+    }
+
+    @Override
+    public void purge() {
+        super.purge();
+        varies.clear();
+        cacheControls.clear();
+    }
+
+    @Override
+    protected void removed(CacheKey key, Set<String> scopes) {
+        super.removed(key, scopes);
+        cacheControls.remove(key);
+    }
+
+    @Override
+    public boolean hasCallback(final CacheKey key) {
+        return super.hasCallback(variant(key));
+    }
+
+    @Override
+    public void addCallback(final CacheKey key, final RequestCallback callback) {
+        super.addCallback(variant(key), callback);
+    }
+
+    @Override
+    public List<RequestCallback> removeCallbacks(final CacheKey key) {
+        return super.removeCallbacks(variant(key));
+    }
+
+    @Override
+    protected long lifetime(CacheKey key, Response response) {
+        long lifetime = cacheControl(key, response).lifetime(now());
+        return lifetime < 0 ? super.lifetime(key, response) : lifetime;
+    }
+
+    @Override
+    protected long staleWindow(CacheKey key, Response response) {
+        CacheControl cacheControl = cacheControl(key, response);
+        if (cacheControl.mustRevalidate) {
+            return 0;
+        }
+        if (cacheControl.staleWhileRevalidate >= 0) {
+            return cacheControl.staleWhileRevalidate * 1000;
+        }
+        return super.staleWindow(key, response);
+    }
+
+    private CacheControl cacheControl(CacheKey key, Response response) {
+        CacheControl cacheControl = cacheControls.get(key);
+        return cacheControl == null ? CacheControl.parse(response) : cacheControl;
+    }
+
+    /**
+     * @return the key of the variant of the response the key selects
+     */
+    private CacheKey variant(CacheKey key) {
+        if (key instanceof VaryingCacheKey) {
+            VaryingCacheKey varying = (VaryingCacheKey) key;
+            return varying.variant(varies.get(varying.getKey()));
+        }
+        return key;
+    }
+}
@@ -0,0 +1,593 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JavaScriptException;
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.logging.client.LogConfiguration;
+import com.google.gwt.storage.client.Storage;
+
+/**
+ * keeps the responses in a web {@link Storage} as well, so they survive a
+ * reload of the page. the in-memory map stays the first level, a lookup
+ * missing it loads the response from the web storage. nothing is read from
+ * the web storage up front.
+ *
+ * <ul>
+ * <li>each scope (e.g. a {@link Domain}) gets a quota of characters, when a
+ * response exceeds it the oldest responses of that scope are dropped. a
+ * response counts against the quota of each of its scopes.</li>
+ * <li>the text of the responses can be compressed</li>
+ * <li>responses are stamped with the version given, responses of any other
+ * version are dropped as soon as they are read. changing the version with
+ * a new release invalidates whatever the former release stored.</li>
+ * <li>responses expire after the lifetime their <code>Cache-Control</code> or
+ * <code>Expires</code> header gives, otherwise after the lifetime set with
+ * {@link #setLifetime(long)}. the expiry is stored along with them.</li>
+ * <li>responses marked <code>no-store</code> or <code>private</code> are
+ * kept in memory only.</li>
+ * </ul>
+ *
+ * the keys of the responses do not tell the users of the browser apart: call
+ * {@link #purge()} on logout, so the next user does not get the responses of
+ * the former one.
+ *
+ * without web storage support it is just the in-memory storage.
+ */
+public class PersistentQueueableCacheStorage extends DefaultQueueableCacheStorage {
+
+    private static final String ITEM_PREFIX = "restygwt.cache.";
+
+    private static final String INDEX_PREFIX = "restygwt.cacheindex.";
+
+    /**
+     * characters per scope, browsers give an origin about 5 million of them
+     */
+    private static final int DEFAULT_QUOTA = 512 * 1024;
+
+    /**
+     * of a response which says nothing about its freshness
+     */
+    private static final long DEFAULT_LIFETIME_MS = 24 * 60 * 60 * 1000L;
+
+    private static final String COMPRESSED = "z";
+
+    private static final class Stored {
+
+        final CompactResponse response;
+        final String[] scopes;
+        final long expiry;
+
+        Stored(CompactResponse response, String[] scopes, long expiry) {
+            this.response = response;
+            this.scopes = scopes;
+            this.expiry = expiry;
+        }
+    }
+
+    private final Storage storage;
+
+    private final String version;
+
+    private final int defaultQuota;
+
+    private final boolean compress;
+
+    private final Map<String, Integer> quotas = new HashMap<String, Integer>();
+
+    private long lifetimeMillis = DEFAULT_LIFETIME_MS;
+
+    /**
+     * when the responses in memory expire
+     */
+    private final Map<CacheKey, Long> expiries = new HashMap<CacheKey, Long>();
+
+    /**
+     * the keys of the items in memory, to drop them along with the item
+     */
+    private final Map<String, CacheKey> keys = new HashMap<String, CacheKey>();
+
+    /**
+     * the stored items per scope with their size, oldest first. loaded from
+     * the web storage on first use of a scope.
+     */
+    private final Map<String, LinkedHashMap<String, Integer>> indexes =
+            new HashMap<String, LinkedHashMap<String, Integer>>();
+
+    /**
+     * uses the local storage and compresses the responses
+     *
+     * @param version the version stamp, e.g. the release of the application
+     */
+    public PersistentQueueableCacheStorage(String version) {
+        this(Storage.getLocalStorageIfSupported(), version, DEFAULT_QUOTA, true);
+    }
+
+    /**
+     * @param storage the web storage, <code>null</code> keeps the responses in memory only
+     * @param version the version stamp, e.g. the release of the application
+     * @param defaultQuota the characters a scope may take of the web storage
+     * @param compress whether to compress the text of the responses
+     */
+    public PersistentQueueableCacheStorage(Storage storage, String version, int defaultQuota, boolean compress) {
+        this.storage = storage;
+        this.version = version;
+        this.defaultQuota = defaultQuota;
+        this.compress = compress;
+    }
+
+    /**
+     * @param scope the scope, the name of a {@link Domain} class
+     * @param quota the characters the scope may take of the web storage
+     */
+    public void setQuota(String scope, int quota) {
+        quotas.put(scope, quota);
+    }
+
+    /**
+     * @param lifetimeMillis how long a response without <code>Cache-Control</code> or
+     *        <code>Expires</code> header is kept, a day by default
+     */
+    public void setLifetime(long lifetimeMillis) {
+        this.lifetimeMillis = lifetimeMillis;
+    }
+
+    @Override
+    public Response getResultOrReturnNull(final CacheKey key, final String scope) {
+        Long expiry = expiries.get(key);
+        if (expiry != null && expiry <= now()) {
+            countExpiration(key);
+            drop(key);
+            return null;
+        }
+        Response result = super.getResultOrReturnNull(key, scope);
+        if (result != null || storage == null || getStoredResult(key) != null) {
+            return result;
+        }
+
+        String item = itemKey(key);
+        Stored loaded = load(item);
+        if (loaded == null) {
+            return null;
+        }
+        if (loaded.expiry <= now()) {
+            removeStored(item, Arrays.asList(loaded.scopes));
+            return null;
+        }
+        // into memory only
+        super.putResult(key, loaded.response, loaded.scopes);
+        expiries.put(key, loaded.expiry);
+        keys.put(item, key);
+        return super.getResultOrReturnNull(key, scope);
+    }
+
+    @Override
+    public void putResult(final CacheKey key, final Response response, String... scopes) {
+        if (null == scopes || scopes.length == 0) {
+            scopes = new String[] { DEFAULT_SCOPE };
+        }
+        CompactResponse compact = response instanceof CompactResponse
+                ? (CompactResponse) response : new CompactResponse(response, BoundedQueueableCacheStorage.DEFAULT_HEADERS);
+        super.putResult(key, compact, scopes);
+
+        CacheControl cacheControl = CacheControl.parse(response);
+        long lifetime = cacheControl.lifetime(now());
+        long expiry = now() + (lifetime < 0 ? lifetimeMillis : lifetime);
+        expiries.put(key, expiry);
+        if (storage == null) {
+            return;
+        }
+        String item = itemKey(key);
+        keys.put(item, key);
+        if (cacheControl.noStore || cacheControl.isPrivate) {
+            // neither written to disk nor left to the next user of the browser
+            List<String> storedScopes = getStoredScopes(item);
+            if (storedScopes != null) {
+                removeStored(item, storedScopes);
+            }
+            return;
+        }
+        Set<String> allScopes = getScopes(key);
+        store(item, serialize(compact, allScopes, expiry), allScopes);
+    }
+
+    @Override
+    public void remove(CacheKey key) {
+        removeNotLoaded(key, DEFAULT_SCOPE);
+        super.remove(key);
+    }
+
+    @Override
+    public void remove(CacheKey key, String... scopes) {
+        if (scopes != null) {
+            removeNotLoaded(key, scopes);
+        }
+        super.remove(key, scopes);
+    }
+
+    @Override
+    public void purge() {
+        super.purge();
+        indexes.clear();
+        expiries.clear();
+        keys.clear();
+        if (storage == null) {
+            return;
+        }
+        for (int i = storage.getLength() - 1; i >= 0; i--) {
+            String item = storage.key(i);
+            if (item != null && (item.startsWith(ITEM_PREFIX) || item.startsWith(INDEX_PREFIX))) {
+                storage.removeItem(item);
+            }
+        }
+    }
+
+    @Override
+    public void purge(final String scope) {
+        super.purge(scope);
+        if (storage == null) {
+            return;
+        }
+        // the ones not loaded yet, along with their other scopes
+        for (String item : new ArrayList<String>(index(scope).keySet())) {
+            List<String> storedScopes = getStoredScopes(item);
+            removeStored(item, storedScopes != null ? storedScopes : Collections.singletonList(scope));
+        }
+        indexes.remove(scope);
+        storage.removeItem(INDEX_PREFIX + scope);
+    }
+
+    /**
+     * @return the characters the responses of the given scope take of the web storage
+     */
+    public int getStoredSize(String scope) {
+        if (storage == null) {
+            return 0;
+        }
+        int size = 0;
+        for (int itemSize : index(scope).values()) {
+            size += itemSize;
+        }
+        return size;
+    }
+
+    @Override
+    protected void removed(CacheKey key, Set<String> scopes) {
+        super.removed(key, scopes);
+        expiries.remove(key);
+        if (storage == null) {
+            return;
+        }
+        String item = itemKey(key);
+        keys.remove(item);
+        removeStored(item, scopes);
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * removes a response which is not in memory from the web storage, if it is in one of the scopes
+     */
+    private void removeNotLoaded(CacheKey key, String... scopes) {
+        if (storage == null || getStoredResult(key) != null) {
+            // the removal from memory takes it along
+            return;
+        }
+        String item = itemKey(key);
+        List<String> storedScopes = getStoredScopes(item);
+        if (storedScopes == null) {
+            return;
+        }
+        for (String scope : scopes) {
+            if (DEFAULT_SCOPE.equals(scope) || storedScopes.contains(scope)) {
+                removeStored(item, storedScopes);
+                return;
+            }
+        }
+    }
+
+    /**
+     * removes an item from the web storage along with its entry in the index of each scope
+     */
+    private void removeStored(String item, Collection<String> scopes) {
+        storage.removeItem(item);
+        for (String scope : scopes) {
+            LinkedHashMap<String, Integer> index = index(scope);
+            if (index.remove(item) != null) {
+                saveIndex(scope, index);
+            }
+        }
+    }
+
+    /**
+     * drops an item to make room, from memory as well if it got loaded
+     */
+    private void evict(String item) {
+        CacheKey key = keys.get(item);
+        if (key != null && getStoredResult(key) != null) {
+            countEviction(key);
+            drop(key);
+            return;
+        }
+        List<String> storedScopes = getStoredScopes(item);
+        // the index of an unreadable item is not known, look into the ones loaded
+        removeStored(item, storedScopes != null ? storedScopes : new ArrayList<String>(indexes.keySet()));
+    }
+
+    /**
+     * a response counts against the quota of each of its scopes
+     */
+    private void store(String item, String value, Set<String> scopes) {
+        if (item.indexOf('\n') >= 0) {
+            // would break the index, e.g. a request with a multi-line body
+            return;
+        }
+        storage.removeItem(item);
+        boolean fits = true;
+        for (String scope : scopes) {
+            LinkedHashMap<String, Integer> index = index(scope);
+            index.remove(item);
+            fits &= makeRoom(scope, index, value.length());
+        }
+
+        if (fits) {
+            try {
+                storage.setItem(item, value);
+                for (String scope : scopes) {
+                    index(scope).put(item, value.length());
+                }
+            } catch (JavaScriptException e) {
+                // the web storage of the browser is full
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(PersistentQueueableCacheStorage.class.getName())
+                            .fine("could not store " + item + ": " + e.getMessage());
+                }
+            }
+        }
+        for (String scope : scopes) {
+            saveIndex(scope, index(scope));
+        }
+    }
+
+    /**
+     * drops the oldest responses of the scope until the given size fits into its quota
+     *
+     * @return whether the size fits at all
+     */
+    private boolean makeRoom(String scope, LinkedHashMap<String, Integer> index, int size) {
+        int quota = quotas.containsKey(scope) ? quotas.get(scope) : defaultQuota;
+        if (size > quota) {
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(PersistentQueueableCacheStorage.class.getName())
+                        .fine("not storing " + size + " characters, the quota of scope \"" + scope + "\" is " + quota);
+            }
+            return false;
+        }
+
+        int used = size;
+        for (int itemSize : index.values()) {
+            used += itemSize;
+        }
+        List<String> oldest = new ArrayList<String>();
+        for (Map.Entry<String, Integer> entry : index.entrySet()) {
+            if (used <= quota) {
+                break;
+            }
+            oldest.add(entry.getKey());
+            used -= entry.getValue();
+        }
+        for (String item : oldest) {
+            evict(item);
+        }
+        return true;
+    }
+
+    private Stored load(String item) {
+        String value = storage.getItem(item);
+        if (value == null) {
+            return null;
+        }
+        try {
+            Stored stored = deserialize(value);
+            if (stored != null) {
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(PersistentQueueableCacheStorage.class.getName())
+                            .finer("loaded " + item + " from web storage");
+                }
+                return stored;
+            }
+        } catch (RuntimeException e) {
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(PersistentQueueableCacheStorage.class.getName())
+                        .fine("dropping unreadable " + item + ": " + e.getMessage());
+            }
+        }
+        // of another version or unreadable
+        storage.removeItem(item);
+        return null;
+    }
+
+    /**
+     * version, expiry, status, flags, scopes, headers and text, separated by line feeds
+     */
+    private String serialize(CompactResponse response, Set<String> scopes, long expiry) {
+        JSONArray scopeNames = new JSONArray();
+        for (String scope : scopes) {
+            scopeNames.set(scopeNames.size(), new JSONString(scope));
+        }
+        JSONObject headers = new JSONObject();
+        for (Header header : response.getHeaders()) {
+            headers.put(header.getName(), new JSONString(header.getValue()));
+        }
+        String text = response.getText() == null ? "" : response.getText();
+        return version + "\n" + expiry + "\n" + response.getStatusCode() + "\n" + (compress ? COMPRESSED : "") + "\n"
+                + scopeNames.toString() + "\n" + headers.toString() + "\n"
+                + (compress ? TextCompression.compress(text) : text);
+    }
+
+    /**
+     * @return the response and its scopes, <code>null</code> if it is of another version
+     */
+    private Stored deserialize(String value) {
+        String[] fields = new String[7];
+        if (!split(value, fields)) {
+            return null;
+        }
+        String text = fields[6];
+        if (COMPRESSED.equals(fields[3])) {
+            text = TextCompression.decompress(text);
+        }
+
+        JSONObject headers = JSONParser.parseStrict(fields[5]).isObject();
+        List<String> namesAndValues = new ArrayList<String>();
+        for (String name : headers.keySet()) {
+            namesAndValues.add(name);
+            namesAndValues.add(headers.get(name).isString().stringValue());
+        }
+        return new Stored(new CompactResponse(Integer.parseInt(fields[2]), null, text,
+                namesAndValues.toArray(new String[namesAndValues.size()])), parseScopes(fields[4]),
+                Long.parseLong(fields[1]));
+    }
+
+    /**
+     * @return the scopes a stored item is indexed in, of whatever version, <code>null</code> if
+     *         there is no such item or it is unreadable
+     */
+    private List<String> getStoredScopes(String item) {
+        String value = storage.getItem(item);
+        if (value == null) {
+            return null;
+        }
+        String[] fields = new String[6];
+        try {
+            split(value, fields);
+            return Arrays.asList(parseScopes(fields[4]));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * fills the fields, the last one takes the rest of the value
+     *
+     * @return false if the value is of another version
+     */
+    private boolean split(String value, String[] fields) {
+        int start = 0;
+        for (int i = 0; i < fields.length - 1; i++) {
+            int end = value.indexOf('\n', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("missing field " + i);
+            }
+            fields[i] = value.substring(start, end);
+            start = end + 1;
+        }
+        fields[fields.length - 1] = value.substring(start);
+        return version.equals(fields[0]);
+    }
+
+    private static String[] parseScopes(String json) {
+        JSONArray scopeNames = JSONParser.parseStrict(json).isArray();
+        String[] scopes = new String[scopeNames.size()];
+        for (int i = 0; i < scopes.length; i++) {
+            scopes[i] = scopeNames.get(i).isString().stringValue();
+        }
+        return scopes;
+    }
+
+    /**
+     * the index is stored like the items: the version in the first line, then
+     * a line with size and item key per item
+     */
+    private LinkedHashMap<String, Integer> index(String scope) {
+        LinkedHashMap<String, Integer> index = indexes.get(scope);
+        if (index != null) {
+            return index;
+        }
+
+        index = new LinkedHashMap<String, Integer>();
+        indexes.put(scope, index);
+        String stored = storage.getItem(INDEX_PREFIX + scope);
+        if (stored == null) {
+            return index;
+        }
+        String[] lines = stored.split("\n");
+        boolean current = version.equals(lines[0]);
+        for (int i = 1; i < lines.length; i++) {
+            int separator = lines[i].indexOf(' ');
+            String item = lines[i].substring(separator + 1);
+            if (current) {
+                index.put(item, Integer.parseInt(lines[i].substring(0, separator)));
+            } else {
+                storage.removeItem(item);
+            }
+        }
+        if (!current) {
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(PersistentQueueableCacheStorage.class.getName())
+                        .fine("dropped " + (lines.length - 1) + " stored responses of scope \"" + scope
+                                + "\" of version " + lines[0]);
+            }
+            storage.removeItem(INDEX_PREFIX + scope);
+        }
+        return index;
+    }
+
+    private void saveIndex(String scope, LinkedHashMap<String, Integer> index) {
+        if (index.isEmpty()) {
+            storage.removeItem(INDEX_PREFIX + scope);
+            return;
+        }
+        StringBuilder stored = new StringBuilder(version);
+        for (Map.Entry<String, Integer> entry : index.entrySet()) {
+            stored.append('\n').append(entry.getValue()).append(' ').append(entry.getKey());
+        }
+        try {
+            storage.setItem(INDEX_PREFIX + scope, stored.toString());
+        } catch (JavaScriptException e) {
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(PersistentQueueableCacheStorage.class.getName())
+                        .fine("could not store the index of scope \"" + scope + "\": " + e.getMessage());
+            }
+        }
+    }
+
+    private static String itemKey(CacheKey key) {
+        return ITEM_PREFIX + key;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import com.google.gwt.http.client.Response;
+
+/**
+ * a cache which keeps expired responses carrying an <code>ETag</code> or
+ * <code>Last-Modified</code> header, so the next request for them can be
+ * made conditional. a <code>304 Not Modified</code> then renews the expired
+ * response instead of downloading it again.
+ *
+ * expired responses inside a stale window may be served right away while
+ * they get refreshed in the background (stale-while-revalidate).
+ */
+public interface RevalidatableCacheStorage extends QueueableCacheStorage {
+
+    public static final String HEADER_ETAG = "ETag";
+
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * @return the expired response for the key if it can be revalidated, <code>null</code> otherwise
+     */
+    public Response getStaleResultOrReturnNull(final CacheKey key);
+
+    /**
+     * @return the expired response for the key if it is still inside its stale window,
+     *         <code>null</code> otherwise
+     */
+    public Response getServableStaleResultOrReturnNull(final CacheKey key);
+
+    /**
+     * the server confirmed that the expired response is still valid.
+     *
+     * @param notModified the <code>304</code> response of the server
+     * @return the renewed response, <code>null</code> if it is not in the cache anymore
+     */
+    public Response revalidated(final CacheKey key, final Response notModified);
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * like the {@link VolatileQueueableCacheStorage} a response is served for a
+ * fixed lifetime only. after that a response with an <code>ETag</code> or
+ * <code>Last-Modified</code> header is kept to revalidate it with a conditional
+ * request, all others are dropped.
+ *
+ * with a stale window an expired response is kept for that long in any case
+ * and served while it gets refreshed in the background.
+ *
+ * expiry is checked when a response is looked up, there are no timers involved.
+ */
+public class RevalidatingQueueableCacheStorage extends DefaultQueueableCacheStorage
+        implements RevalidatableCacheStorage {
+
+    /**
+     * how long a response is fresh
+     */
+    private static final int DEFAULT_LIFETIME_MS = 30 * 1000;
+
+    private final int lifetimeMillis;
+
+    private final int staleWindowMillis;
+
+    /**
+     * the point in time a cachekey expires
+     */
+    protected final Map<CacheKey, Long> expires = new HashMap<CacheKey, Long>();
+
+    public RevalidatingQueueableCacheStorage() {
+        this(DEFAULT_LIFETIME_MS);
+    }
+
+    public RevalidatingQueueableCacheStorage(int lifetimeMillis) {
+        this(lifetimeMillis, 0);
+    }
+
+    /**
+     * @param lifetimeMillis how long a response is fresh
+     * @param staleWindowMillis how long an expired response is served while it is refreshed
+     */
+    public RevalidatingQueueableCacheStorage(int lifetimeMillis, int staleWindowMillis) {
+        this.lifetimeMillis = lifetimeMillis;
+        this.staleWindowMillis = staleWindowMillis;
+    }
+
+    @Override
+    public Response getResultOrReturnNull(final CacheKey key, final String scope) {
+        if (isExpired(key)) {
+            Response stale = getStoredResult(key);
+            if (stale == null || !(isRevalidatable(stale) || isInStaleWindow(key, stale))) {
+                expire(key);
+            }
+            return null;
+        }
+        return super.getResultOrReturnNull(key, scope);
+    }
+
+    @Override
+    public Response getStaleResultOrReturnNull(final CacheKey key) {
+        Response stale = getStoredResult(key);
+        if (stale != null && isExpired(key) && isRevalidatable(stale)) {
+            return new ResponseWrapper(stale);
+        }
+        return null;
+    }
+
+    @Override
+    public Response getServableStaleResultOrReturnNull(final CacheKey key) {
+        Response stale = getStoredResult(key);
+        if (stale != null && isExpired(key) && isInStaleWindow(key, stale)) {
+            return wrap(key, stale);
+        }
+        return null;
+    }
+
+    @Override
+    public Response revalidated(final CacheKey key, final Response notModified) {
+        Response stale = getStoredResult(key);
+        if (stale == null) {
+            return null;
+        }
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(RevalidatingQueueableCacheStorage.class.getName())
+                    .finer("revalidated cache-key " + key);
+        }
+        expires.put(key, now() + lifetime(key, stale));
+        return wrap(key, stale);
+    }
+
+    @Override
+    public void putResult(final CacheKey key, final Response response, final String... scopes) {
+        super.putResult(key, response, scopes);
+        expires.put(key, now() + lifetime(key, response));
+    }
+
+    @Override
+    protected void removed(CacheKey key, Set<String> scopes) {
+        super.removed(key, scopes);
+        expires.remove(key);
+    }
+
+    @Override
+    public void purge() {
+        super.purge();
+        expires.clear();
+    }
+
+    /**
+     * @param key the key the response is stored with
+     * @return how many milliseconds the given response is fresh
+     */
+    protected long lifetime(CacheKey key, Response response) {
+        return lifetimeMillis;
+    }
+
+    /**
+     * @param key the key the response is stored with
+     * @return how many milliseconds the given response is served after it expired
+     */
+    protected long staleWindow(CacheKey key, Response response) {
+        return staleWindowMillis;
+    }
+
+    /**
+     * @return whether an expired response can be revalidated with a conditional request
+     */
+    protected boolean isRevalidatable(Response response) {
+        return response.getHeader(HEADER_ETAG) != null
+                || response.getHeader(HEADER_LAST_MODIFIED) != null;
+    }
+
+    protected boolean isExpired(CacheKey key) {
+        Long expiry = expires.get(key);
+        return expiry != null && expiry <= now();
+    }
+
+    protected boolean isInStaleWindow(CacheKey key, Response response) {
+        Long expiry = expires.get(key);
+        return expiry != null && now() < expiry + staleWindow(key, response);
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void expire(CacheKey key) {
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(RevalidatingQueueableCacheStorage.class.getName())
+                    .finer("removing expired cache-key " + key);
+        }
+        countExpiration(key);
+        drop(key);
+        expires.remove(key);
+    }
+}
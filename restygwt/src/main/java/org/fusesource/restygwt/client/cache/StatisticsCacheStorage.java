@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.Map;
+
+/**
+ * a cache which keeps statistics about its use per scope. the storage knows
+ * about evictions, expirations and the memory taken, hits, misses and
+ * coalesced requests are recorded by the filters using it.
+ */
+public interface StatisticsCacheStorage extends QueueableCacheStorage {
+
+    /**
+     * a request got a cached response
+     *
+     * @param scopes the scopes of the request, none for the default scope
+     */
+    public void recordHit(final String... scopes);
+
+    /**
+     * a request found nothing in the cache and goes over the wire
+     */
+    public void recordMiss(final String... scopes);
+
+    /**
+     * a request is queued to get the response of an identical one in flight
+     */
+    public void recordCoalesced(final String... scopes);
+
+    /**
+     * @return the statistics of all scopes together
+     */
+    public CacheStatistics getStatistics();
+
+    /**
+     * @return the statistics of the scope, all zero for an unknown one
+     */
+    public CacheStatistics getStatistics(final String scope);
+
+    /**
+     * @return the statistics of each scope recorded or holding responses
+     */
+    public Map<String, CacheStatistics> getScopeStatistics();
+
+    /**
+     * @param sink where to publish the statistics to, <code>null</code> for nowhere
+     */
+    public void setStatisticsSink(final CacheStatisticsSink sink);
+
+    /**
+     * hand the current statistics to the sink, if there is one
+     */
+    public void publishStatistics();
+
+    /**
+     * start counting from zero again
+     */
+    public void resetStatistics();
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LZW compression of a string into a string, for storages which take strings
+ * only. the codes are packed into 15 bits a character, so the result never
+ * holds surrogates or other characters a storage might trip over.
+ */
+final class TextCompression {
+
+    private static final int LITERAL_8 = 0;
+    private static final int LITERAL_16 = 1;
+    private static final int END = 2;
+    private static final int FIRST_CODE = 3;
+
+    private static final int BITS_PER_CHAR = 15;
+    private static final int CHAR_OFFSET = 32;
+
+    private TextCompression() {
+    }
+
+    static String compress(String text) {
+        Writer out = new Writer();
+        Map<String, Integer> dictionary = new HashMap<String, Integer>();
+        int next = FIRST_CODE;
+        String word = "";
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String extended = word + c;
+            if (dictionary.containsKey(extended)) {
+                word = extended;
+                continue;
+            }
+            if (word.length() > 0) {
+                out.write(dictionary.get(word), bits(next));
+                dictionary.put(extended, next++);
+            }
+            String single = String.valueOf(c);
+            if (dictionary.containsKey(single)) {
+                word = single;
+            } else {
+                if (c < 256) {
+                    out.write(LITERAL_8, bits(next));
+                    out.write(c, 8);
+                } else {
+                    out.write(LITERAL_16, bits(next));
+                    out.write(c, 16);
+                }
+                dictionary.put(single, next++);
+                word = "";
+            }
+        }
+        if (word.length() > 0) {
+            out.write(dictionary.get(word), bits(next));
+        }
+        out.write(END, bits(next));
+        return out.flush();
+    }
+
+    static String decompress(String compressed) {
+        Reader in = new Reader(compressed);
+        List<String> dictionary = new ArrayList<String>();
+        for (int i = 0; i < FIRST_CODE; i++) {
+            dictionary.add(null);
+        }
+        StringBuilder text = new StringBuilder();
+        String previous = null;
+        while (true) {
+            // the compressing side added the entry of the previous code already
+            int next = dictionary.size() + (previous == null ? 0 : 1);
+            int code = in.read(bits(next));
+            if (code == END) {
+                return text.toString();
+            }
+            String entry;
+            if (code == LITERAL_8 || code == LITERAL_16) {
+                entry = String.valueOf((char) in.read(code == LITERAL_8 ? 8 : 16));
+                if (previous != null) {
+                    dictionary.add(previous + entry);
+                }
+                dictionary.add(entry);
+                previous = null;
+            } else {
+                if (code < dictionary.size()) {
+                    entry = dictionary.get(code);
+                } else if (code == dictionary.size() && previous != null) {
+                    entry = previous + previous.charAt(0);
+                } else {
+                    throw new IllegalArgumentException("invalid code " + code);
+                }
+                if (previous != null) {
+                    dictionary.add(previous + entry.charAt(0));
+                }
+                previous = entry;
+            }
+            text.append(entry);
+        }
+    }
+
+    /**
+     * @return the bits needed to write any code below the given one
+     */
+    private static int bits(int codes) {
+        int bits = 2;
+        while ((1 << bits) < codes) {
+            bits++;
+        }
+        return bits;
+    }
+
+    private static final class Writer {
+
+        private final StringBuilder out = new StringBuilder();
+        private int buffer;
+        private int used;
+
+        void write(int value, int bits) {
+            for (int i = 0; i < bits; i++) {
+                buffer |= ((value >> i) & 1) << used;
+                if (++used == BITS_PER_CHAR) {
+                    out.append((char) (buffer + CHAR_OFFSET));
+                    buffer = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        String flush() {
+            if (used > 0) {
+                out.append((char) (buffer + CHAR_OFFSET));
+            }
+            return out.toString();
+        }
+    }
+
+    private static final class Reader {
+
+        private final String in;
+        private int position;
+        private int buffer;
+        private int used = BITS_PER_CHAR;
+
+        Reader(String in) {
+            this.in = in;
+        }
+
+        int read(int bits) {
+            int value = 0;
+            for (int i = 0; i < bits; i++) {
+                if (used == BITS_PER_CHAR) {
+                    if (position == in.length()) {
+                        throw new IllegalArgumentException("truncated input");
+                    }
+                    buffer = in.charAt(position++) - CHAR_OFFSET;
+                    used = 0;
+                }
+                value |= ((buffer >> used++) & 1) << i;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.Arrays;
+
+import com.google.gwt.http.client.RequestBuilder;
+
+/**
+ * a {@link HashedCacheKey} which knows the request it was made for, so
+ * a cache can tell apart the variants of a response with a <code>Vary</code>
+ * header. equals the {@link HashedCacheKey} of the same request.
+ *
+ * the key holds on to the builder, caches store {@link #variant(String[])} instead.
+ */
+public class VaryingCacheKey implements CacheKey {
+
+    private final CacheKey key;
+
+    private final RequestBuilder builder;
+
+    public VaryingCacheKey(RequestBuilder builder) {
+        this(new HashedCacheKey(builder), builder);
+    }
+
+    /**
+     * @param key the key of the request without regard to any request header
+     */
+    public VaryingCacheKey(CacheKey key, RequestBuilder builder) {
+        this.key = key;
+        this.builder = builder;
+    }
+
+    /**
+     * @return the key without regard to any request header
+     */
+    public CacheKey getKey() {
+        return key;
+    }
+
+    /**
+     * @param headers the names of the request headers the response varies on
+     * @return the key of the variant selected by the given request headers
+     */
+    public CacheKey variant(String[] headers) {
+        if (headers == null || headers.length == 0) {
+            return key;
+        }
+        String[] names = headers.clone();
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+        StringBuilder variant = new StringBuilder(key.toString()).append(" {");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                variant.append(", ");
+            }
+            variant.append(names[i].toLowerCase()).append('=').append(header(names[i]));
+        }
+        return new SimpleCacheKey(variant.append('}').toString());
+    }
+
+    private String header(String name) {
+        String value = builder.getHeader(name);
+        if (value == null) {
+            // the builder is case sensitive, try the usual spelling, e.g. Accept-Language
+            StringBuilder canonical = new StringBuilder(name.toLowerCase());
+            for (int i = 0; i < canonical.length(); i++) {
+                if (i == 0 || canonical.charAt(i - 1) == '-') {
+                    canonical.setCharAt(i, Character.toUpperCase(canonical.charAt(i)));
+                }
+            }
+            value = builder.getHeader(canonical.toString());
+        }
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object anObject) {
+        // unwrapped on both sides, so it is the same whichever key is asked
+        if (anObject instanceof VaryingCacheKey) {
+            anObject = ((VaryingCacheKey) anObject).key;
+        }
+        return key.equals(anObject);
+    }
+
+    @Override
+    public String toString() {
+        return key.toString();
+    }
+}
@@ -18,14 +18,26 @@
 
 package org.fusesource.restygwt.client.cache;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
+import com.google.gwt.core.client.GWT;
 import com.google.gwt.http.client.Response;
 import com.google.gwt.logging.client.LogConfiguration;
 import com.google.gwt.user.client.Timer;
 
+/**
+ * drops a response after a fixed lifetime. an expired response is never
+ * served: it is dropped when it is looked up, all others are dropped in
+ * batches by a single timer sweeping the storage.
+ *
+ * as all responses live equally long the order they were put is the order
+ * they expire in, so the sweep just takes the expired ones off the head of a
+ * queue.
+ */
 public class VolatileQueueableCacheStorage extends DefaultQueueableCacheStorage {
     
     /**
@@ -33,52 +45,180 @@ public class VolatileQueueableCacheStorage extends DefaultQueueableCacheStorage
      */
     private static final int DEFAULT_LIFETIME_MS = 30 * 1000;
 
+    /**
+     * how long at least between two sweeps
+     */
+    private static final int DEFAULT_SWEEP_INTERVAL_MS = 1000;
+
+    private static final class Expiry {
+
+        final CacheKey key;
+        final long at;
+
+        Expiry(CacheKey key, long at) {
+            this.key = key;
+            this.at = at;
+        }
+    }
+
     private final int lifetimeMillis;
-    
+
+    private final int sweepIntervalMillis;
+
+    /**
+     * the point in time a cachekey expires
+     */
+    private final Map<CacheKey, Long> expiries = new HashMap<CacheKey, Long>();
+
+    /**
+     * expiries in the order they were put. a key put again or removed stays
+     * in here until it is swept, only the one matching {@link #expiries} counts.
+     */
+    private final LinkedList<Expiry> queue = new LinkedList<Expiry>();
+
+    private Timer sweeper;
+
+    private boolean sweepScheduled;
+
     public VolatileQueueableCacheStorage(){
         this(DEFAULT_LIFETIME_MS);
     }
+
     public VolatileQueueableCacheStorage(int lifetimeMillis){
+        this(lifetimeMillis, DEFAULT_SWEEP_INTERVAL_MS);
+    }
+
+    /**
+     * @param lifetimeMillis how long will a cachekey be allowed to exist
+     * @param sweepIntervalMillis how long at least between two sweeps of expired cachekeys
+     */
+    public VolatileQueueableCacheStorage(int lifetimeMillis, int sweepIntervalMillis){
         this.lifetimeMillis = lifetimeMillis;
+        this.sweepIntervalMillis = sweepIntervalMillis;
     }
-    
-    private final List<Timer> timers = new ArrayList<Timer>();
 
     @Override
-    protected void putResult(final CacheKey key, final Response response, final String scope) {
-        final Timer t = new Timer() {
-            @Override
-            public void run() {
-                try {
-                    if (LogConfiguration.loggingIsEnabled()) {
-                        Logger.getLogger(VolatileQueueableCacheStorage.class.getName())
-                                .finer("removing cache-key " + key + " from scope \"" + scope + "\"");
-                    }
-                    cache.get(scope).remove(key);
-                    timers.remove(this);
-                } catch (Exception ex) {
-                    Logger.getLogger(VolatileQueueableCacheStorage.class.getName())
-                            .severe(ex.getMessage());
-                }
-            }
-        };
-        t.schedule(lifetimeMillis);
-        timers.add(t);
-        
-        super.putResult(key, response, scope);
+    public Response getResultOrReturnNull(final CacheKey key, final String scope) {
+        Long expiry = expiries.get(key);
+        if (expiry != null && expiry <= now()) {
+            expire(key);
+            return null;
+        }
+        return super.getResultOrReturnNull(key, scope);
     }
-    
+
+    @Override
+    public void putResult(final CacheKey key, final Response response, final String... scopes) {
+        super.putResult(key, response, scopes);
+
+        long at = now() + lifetimeMillis;
+        expiries.put(key, at);
+        queue.add(new Expiry(key, at));
+        if (!sweepScheduled) {
+            scheduleSweep();
+        }
+    }
+
     @Override
     public void purge() {
         super.purge();
-        if (LogConfiguration.loggingIsEnabled()) {
-            Logger.getLogger(DefaultQueueableCacheStorage.class.getName()).finer("remove "
-                    + timers.size() + " timers from list.");
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(VolatileQueueableCacheStorage.class.getName()).finer("remove "
+                    + expiries.size() + " expiries.");
         }
-        for (Timer t: timers) {
-            t.cancel();
+        expiries.clear();
+        queue.clear();
+        if (sweepScheduled) {
+            sweepScheduled = false;
+            cancelSweep();
         }
-        timers.clear();
     }
 
+    @Override
+    protected void removed(CacheKey key, Set<String> scopes) {
+        super.removed(key, scopes);
+        // the queued expiry is dropped with the next sweep
+        expiries.remove(key);
+    }
+
+    /**
+     * drop all expired cachekeys and schedule the next sweep if there is anything left to expire.
+     */
+    protected void sweep() {
+        sweepScheduled = false;
+        long now = now();
+        int count = 0;
+        while (!queue.isEmpty() && queue.getFirst().at <= now) {
+            Expiry expiry = queue.removeFirst();
+            Long current = expiries.get(expiry.key);
+            if (current != null && current == expiry.at) {
+                expire(expiry.key);
+                count++;
+            }
+        }
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(VolatileQueueableCacheStorage.class.getName())
+                    .finer("swept " + count + " expired cache-keys, " + queue.size() + " left");
+        }
+        scheduleSweep();
+    }
+
+    /**
+     * @return the number of queued expiries, including outdated ones not swept yet
+     */
+    public int getQueuedExpiries() {
+        return queue.size();
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * run {@link #sweep()} after the given delay
+     */
+    protected void schedule(int delayMillis) {
+        if (sweeper == null) {
+            sweeper = new Timer() {
+                @Override
+                public void run() {
+                    try {
+                        sweep();
+                    } catch (Exception ex) {
+                        Logger.getLogger(VolatileQueueableCacheStorage.class.getName())
+                                .severe(ex.getMessage());
+                    }
+                }
+            };
+        }
+        sweeper.schedule(delayMillis);
+    }
+
+    /**
+     * cancel the sweep scheduled with {@link #schedule(int)}
+     */
+    protected void cancelSweep() {
+        if (sweeper != null) {
+            sweeper.cancel();
+        }
+    }
+
+    private void scheduleSweep() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        long due = queue.getFirst().at - now();
+        sweepScheduled = true;
+        schedule((int) Math.max(due, sweepIntervalMillis));
+    }
+
+    private void expire(CacheKey key) {
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(VolatileQueueableCacheStorage.class.getName())
+                    .finer("removing cache-key " + key);
+        }
+        countExpiration(key);
+        drop(key);
+        expiries.remove(key);
+    }
 }
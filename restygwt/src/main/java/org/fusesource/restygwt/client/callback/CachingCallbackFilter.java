@@ -22,19 +22,22 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.SharedResponse;
+import org.fusesource.restygwt.client.cache.CacheDomains;
 import org.fusesource.restygwt.client.cache.CacheKey;
-import org.fusesource.restygwt.client.cache.ComplexCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage;
 import org.fusesource.restygwt.client.cache.Domain;
+import org.fusesource.restygwt.client.cache.HashedCacheKey;
+import org.fusesource.restygwt.client.cache.HttpQueueableCacheStorage;
 import org.fusesource.restygwt.client.cache.QueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.RevalidatableCacheStorage;
+import org.fusesource.restygwt.client.cache.VaryingCacheKey;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.Response;
-import com.google.gwt.json.client.JSONArray;
-import com.google.gwt.json.client.JSONParser;
-import com.google.gwt.json.client.JSONValue;
 import com.google.gwt.logging.client.LogConfiguration;
 
 public class CachingCallbackFilter implements CallbackFilter {
@@ -55,7 +58,7 @@ public class CachingCallbackFilter implements CallbackFilter {
             RequestCallback callback) {
         final int code = response.getStatusCode();
 
-        final CacheKey ck = cacheKey(method.builder);
+        final CacheKey ck = cacheKey(method);
         final List<RequestCallback> removedCallbacks = cache.removeCallbacks(ck);
 
         if (removedCallbacks != null){
@@ -68,9 +71,13 @@ public class CachingCallbackFilter implements CallbackFilter {
                                         + " more queued callbacks for " + ck);
                     }
 
+                    // the callbacks decode the response once for all of them, if they may share
+                    Response shared = response != null && removedCallbacks.size() > 1 && isShareDecodedResults()
+                            && !(response instanceof SharedResponse) ? new SharedResponse(response) : response;
+
                     // call all callbacks found in cache
                     for (RequestCallback cb : removedCallbacks) {
-                        cb.onResponseReceived(request, response);
+                        cb.onResponseReceived(request, shared);
                     }
                 }
 
@@ -102,6 +109,13 @@ public class CachingCallbackFilter implements CallbackFilter {
             }
         }
 
+        if (code == Response.SC_NOT_MODIFIED && cache instanceof RevalidatableCacheStorage) {
+            final Response cached = ((RevalidatableCacheStorage) cache).revalidated(ck, response);
+            if (cached != null) {
+                return notModified(ck, cached, callback);
+            }
+        }
+
         if (isCachingStatusCode(code)) { 
             cacheResult(method, response);
             return callback;
@@ -114,17 +128,67 @@ public class CachingCallbackFilter implements CallbackFilter {
         return callback;
     }
 
+    /**
+     * a <code>304</code> is not an expected status code, i.e. it might arrive as error.
+     * either way the callback gets the cached response instead.
+     */
+    private RequestCallback notModified(final CacheKey ck, final Response cached,
+            final RequestCallback callback) {
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(CachingCallbackFilter.class.getName())
+                    .finer("not modified, deliver cached response for " + ck);
+        }
+        return new RequestCallback() {
+            @Override
+            public void onResponseReceived(Request request, Response response) {
+                callback.onResponseReceived(request, cached);
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                callback.onResponseReceived(request, cached);
+            }
+        };
+    }
+
+    /**
+     * @return whether the queued callbacks share the objects decoded from the response,
+     *         see {@link DefaultQueueableCacheStorage#setShareDecodedResults(boolean)}
+     */
+    protected boolean isShareDecodedResults() {
+        return cache instanceof DefaultQueueableCacheStorage
+                && ((DefaultQueueableCacheStorage) cache).isShareDecodedResults();
+    }
+
     protected boolean isCachingStatusCode(final int code) {
         return code < Response.SC_MULTIPLE_CHOICES // code < 300
                 && code >= Response.SC_OK; // code >= 200
     }
 
     protected CacheKey cacheKey(final RequestBuilder builder) {
-        return new ComplexCacheKey(builder);
+        if (cache instanceof HttpQueueableCacheStorage) {
+            // tell apart the variants of a response
+            return new VaryingCacheKey(builder);
+        }
+        return new HashedCacheKey(builder);
+    }
+
+    /**
+     * @return the key of the request, computed once for the filters sharing the cache storage
+     */
+    protected CacheKey cacheKey(final Method method) {
+        CacheKey key = method.getCacheKey(cache);
+        if (key == null) {
+            key = cacheKey(method.builder);
+            if (key != null) {
+                method.setCacheKey(cache, key);
+            }
+        }
+        return key;
     }
 
     protected void cacheResult(final Method method, final Response response) {
-        CacheKey cacheKey = cacheKey(method.builder);
+        CacheKey cacheKey = cacheKey(method);
         if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
             Logger.getLogger(CachingCallbackFilter.class.getName()).finer("cache to " + cacheKey
                     + ": " + response);
@@ -140,23 +204,6 @@ public class CachingCallbackFilter implements CallbackFilter {
      * @return array of names of cache domains
      */
     protected String[] getCacheDomains(final Method method) {
-        if (null == method.getData().get(Domain.CACHE_DOMAIN_KEY)) return null;
-
-        final JSONValue jsonValue = JSONParser.parseStrict(method.getData()
-                .get(Domain.CACHE_DOMAIN_KEY));
-        if (null == jsonValue) {
-            return null;
-        }
-
-        final JSONArray jsonArray = jsonValue.isArray();
-        if (null != jsonArray) {
-            final String[] dd = new String[jsonArray.size()];
-            for (int i = 0; i < jsonArray.size(); ++i) {
-                dd[i] = jsonArray.get(i).isString().stringValue();
-            }
-
-            return dd;
-        }
-        return null;
+        return CacheDomains.of(method);
     }
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.callback;
+
+import java.util.Date;
+
+import org.fusesource.restygwt.client.Idempotent;
+import org.fusesource.restygwt.client.Method;
+
+import com.google.gwt.http.client.Response;
+
+/**
+ * retries with decorrelated jitter: each delay is a random value between the
+ * base delay and three times the previous delay, capped. the clients which
+ * failed at the same moment do not come back at the same moment, unlike with
+ * a fixed backoff.
+ *
+ * only idempotent requests are retried: GET, HEAD and OPTIONS, PUT and DELETE
+ * if marked {@link Idempotent}. they are retried on a response without
+ * status, <code>408</code>, <code>429</code> and any <code>5xx</code>. on a
+ * <code>429</code> or <code>503</code> with a <code>Retry-After</code> header
+ * the request waits as long as the server asks for, it gives up if that is
+ * longer than the cap.
+ */
+public class JitteredRetryPolicy implements RetryPolicy {
+
+    public static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private final int baseMillis;
+
+    private final int capMillis;
+
+    private final int maxRetries;
+
+    /**
+     * @param baseMillis the shortest delay
+     * @param capMillis the longest delay
+     * @param maxRetries how often a request is sent again at most
+     */
+    public JitteredRetryPolicy(int baseMillis, int capMillis, int maxRetries) {
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public int delay(Method method, Response response, int retries, int lastDelay) {
+        if (retries >= maxRetries || !isIdempotent(method) || !isRetryable(response)) {
+            return -1;
+        }
+        int status = response.getStatusCode();
+        if (status == 429 || status == 503) {
+            long retryAfter = retryAfter(response.getHeader(HEADER_RETRY_AFTER));
+            if (retryAfter >= 0) {
+                return retryAfter > capMillis ? -1 : (int) retryAfter;
+            }
+        }
+        int upper = Math.max(baseMillis, 3 * Math.max(lastDelay, baseMillis));
+        return (int) Math.min(capMillis, baseMillis + random() * (upper - baseMillis));
+    }
+
+    /**
+     * @return whether the request may be sent again without harm
+     */
+    protected boolean isIdempotent(Method method) {
+        if (method.builder == null) {
+            // jsonp methods do not have a builder, they are GETs
+            return true;
+        }
+        String httpMethod = method.builder.getHTTPMethod();
+        if ("GET".equalsIgnoreCase(httpMethod) || "HEAD".equalsIgnoreCase(httpMethod)
+                || "OPTIONS".equalsIgnoreCase(httpMethod)) {
+            return true;
+        }
+        return ("PUT".equalsIgnoreCase(httpMethod) || "DELETE".equalsIgnoreCase(httpMethod))
+                && method.getData().containsKey(Idempotent.KEY);
+    }
+
+    /**
+     * @return whether the failure might be gone with the next try
+     */
+    protected boolean isRetryable(Response response) {
+        int status = response.getStatusCode();
+        return status == 0 || status == 408 || status == 429 || status >= 500;
+    }
+
+    /**
+     * @return the milliseconds the <code>Retry-After</code> header asks to wait, -1 if there is none
+     */
+    protected long retryAfter(String header) {
+        if (header == null || header.trim().length() == 0) {
+            return -1;
+        }
+        header = header.trim();
+        try {
+            return Math.max(0, Long.parseLong(header) * 1000);
+        } catch (NumberFormatException e) {
+            // not delta seconds but a http date
+        }
+        try {
+            @SuppressWarnings("deprecation")
+            long date = Date.parse(header);
+            return Math.max(0, date - now());
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return a random number between 0 inclusive and 1 exclusive
+     */
+    protected double random() {
+        return Math.random();
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+}
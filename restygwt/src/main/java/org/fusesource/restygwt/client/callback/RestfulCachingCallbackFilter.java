@@ -61,7 +61,7 @@ public class RestfulCachingCallbackFilter extends CachingCallbackFilter {
             cacheKey = new UrlCacheKey(uri);
         }
         else {
-            cacheKey = cacheKey(method.builder);
+            cacheKey = cacheKey(method);
         }
         if (RequestBuilder.DELETE.toString().equalsIgnoreCase(
                method.builder.getHTTPMethod()) || 
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.callback;
+
+/**
+ * caps the retries relative to the requests, so failing requests cannot
+ * multiply the load on a struggling server. every request adds a share of a
+ * retry to the budget, every retry takes a whole one. the budget starts full
+ * and never holds more than its reserve, i.e. after a quiet period some
+ * retries are possible right away.
+ *
+ * a {@link RetryingCallbackFactory} shares one budget among all its requests.
+ */
+public class RetryBudget {
+
+    public static final double DEFAULT_RATIO = 0.2;
+
+    public static final int DEFAULT_RESERVE = 10;
+
+    private final double ratio;
+
+    private final int reserve;
+
+    private double balance;
+
+    public RetryBudget() {
+        this(DEFAULT_RATIO, DEFAULT_RESERVE);
+    }
+
+    /**
+     * @param ratio the share of a retry each request adds, e.g. <code>0.2</code> for one retry per five requests
+     * @param reserve the most retries possible in a row
+     */
+    public RetryBudget(double ratio, int reserve) {
+        this.ratio = ratio;
+        this.reserve = reserve;
+        this.balance = reserve;
+    }
+
+    /**
+     * a new request was sent
+     */
+    public void deposit() {
+        balance = Math.min(reserve, balance + ratio);
+    }
+
+    /**
+     * @return whether a retry is within the budget, if so it is taken from it
+     */
+    public boolean withdraw() {
+        if (balance < 1) {
+            return false;
+        }
+        balance--;
+        return true;
+    }
+
+    /**
+     * @return the number of retries within the budget
+     */
+    public int getRemaining() {
+        return (int) balance;
+    }
+}
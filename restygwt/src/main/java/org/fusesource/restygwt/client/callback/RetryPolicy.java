@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.callback;
+
+import org.fusesource.restygwt.client.Method;
+
+import com.google.gwt.http.client.Response;
+
+/**
+ * decides whether and when a {@link RetryingFilterawareRequestCallback}
+ * sends a failed request again.
+ */
+public interface RetryPolicy {
+
+    /**
+     * @param response the failed response
+     * @param retries how often the request was sent again so far
+     * @param lastDelay the delay before the latest retry, 0 before the first one
+     * @return the milliseconds to wait before sending the request again, a negative value to give up
+     */
+    int delay(Method method, Response response, int retries, int lastDelay);
+}
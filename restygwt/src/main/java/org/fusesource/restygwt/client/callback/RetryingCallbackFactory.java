@@ -20,23 +20,34 @@ package org.fusesource.restygwt.client.callback;
 
 import org.fusesource.restygwt.client.Method;
 
+/**
+ * creates {@link RetryingFilterawareRequestCallback}s sharing one {@link RetryBudget}.
+ */
 public class RetryingCallbackFactory implements CallbackFactory {
 
     private final CallbackFilter[] callbackFilters;
 
-    private final int gracePeriodMillis;
-    private final int numberOfRetries;
+    private final RetryPolicy retryPolicy;
+
+    private final RetryBudget retryBudget;
 
     public RetryingCallbackFactory(int gracePeriodMillis, int numberOfRetries, CallbackFilter... callbackFilters) {
-        this.callbackFilters = callbackFilters;
-        this.gracePeriodMillis = gracePeriodMillis;
-        this.numberOfRetries = numberOfRetries;
+        this(RetryingFilterawareRequestCallback.defaultRetryPolicy(gracePeriodMillis, numberOfRetries),
+                new RetryBudget(), callbackFilters);
     }
 
     public RetryingCallbackFactory(CallbackFilter... callbackFilters) {
+        this(1000, 5, callbackFilters);
+    }
+
+    /**
+     * @param retryBudget shared by all requests, <code>null</code> for no limit
+     */
+    public RetryingCallbackFactory(RetryPolicy retryPolicy, RetryBudget retryBudget,
+            CallbackFilter... callbackFilters) {
         this.callbackFilters = callbackFilters;
-        this.gracePeriodMillis = 1000;
-        this.numberOfRetries = 5;
+        this.retryPolicy = retryPolicy;
+        this.retryBudget = retryBudget;
     }
 
     /**
@@ -47,8 +58,11 @@ public class RetryingCallbackFactory implements CallbackFactory {
      */
     @Override
     public FilterawareRequestCallback createCallback(Method method) {
+        if (retryBudget != null) {
+            retryBudget.deposit();
+        }
         final FilterawareRequestCallback retryingCallback = new RetryingFilterawareRequestCallback(
-                method, gracePeriodMillis, numberOfRetries);
+                method, retryPolicy, retryBudget);
 
         for(CallbackFilter filter: callbackFilters){
             retryingCallback.addFilter(filter);
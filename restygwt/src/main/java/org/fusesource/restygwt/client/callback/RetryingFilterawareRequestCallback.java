@@ -25,13 +25,17 @@ import org.fusesource.restygwt.client.Method;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.http.client.Request;
-import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.RequestException;
 import com.google.gwt.http.client.Response;
 import com.google.gwt.logging.client.LogConfiguration;
 import com.google.gwt.user.client.Timer;
-import com.google.gwt.user.client.Window;
 
+/**
+ * sends a failed request again as its {@link RetryPolicy} tells, as long as
+ * the {@link RetryBudget} allows. when it gives up the callback gets the
+ * error. requests failing without a response, e.g. on a timeout, are not
+ * retried.
+ */
 public class RetryingFilterawareRequestCallback extends DefaultFilterawareRequestCallback {
 
     /**
@@ -47,8 +51,16 @@ public class RetryingFilterawareRequestCallback extends DefaultFilterawareReques
 
     protected int currentRetryCounter = 0;
 
+    private final RetryPolicy retryPolicy;
+
+    private final RetryBudget retryBudget;
+
+    private int lastDelay = 0;
+
     public RetryingFilterawareRequestCallback(Method method) {
         super(method);
+        this.retryPolicy = defaultRetryPolicy(gracePeriod, numberOfRetries);
+        this.retryBudget = null;
     }
 
     public RetryingFilterawareRequestCallback(Method method,
@@ -56,87 +68,82 @@ public class RetryingFilterawareRequestCallback extends DefaultFilterawareReques
         super(method);
         this.gracePeriod = gracePeriodMillis;
         this.numberOfRetries = numberOfRetries;
+        this.retryPolicy = defaultRetryPolicy(gracePeriod, numberOfRetries);
+        this.retryBudget = null;
     }
 
-    @Override
-    public final void doError(Request request, Response response) {
-            int code = response.getStatusCode();
-            /*
-             * retry only on GET requests that are no redirects (301, 302, 303)
-             */
-            if (code != 301
-                    && code != 302
-                    && code != 303
-                    && code != 404
-                    && (method.builder == null // jsonp method do not have a builder !! 
-                            || method.builder.getHTTPMethod().equalsIgnoreCase("get"))) {
-                handleErrorGracefully(request, response, requestCallback);
-            } else {
-                if (LogConfiguration.loggingIsEnabled()) {
-                    Logger.getLogger(RetryingFilterawareRequestCallback.class.getName()).severe(
-                            "ERROR with non-GET method: " + method.builder.getHTTPMethod() + " "
-                            + method.builder.getUrl() + ", " + response.getStatusText());
-                }
+    /**
+     * @param retryBudget shared with the other requests, <code>null</code> for no limit
+     */
+    public RetryingFilterawareRequestCallback(Method method, RetryPolicy retryPolicy,
+            RetryBudget retryBudget) {
+        super(method);
+        this.retryPolicy = retryPolicy;
+        this.retryBudget = retryBudget;
+    }
 
-                /*
-                 *  RuntimeException token from
-                 *  com.google.gwt.http.client.Request#fireOnResponseReceived()
-                 */
-                requestCallback.onError(request, new FailedStatusCodeException(response.getStatusText(), response.getStatusCode()));
-            }
+    /**
+     * the policy of the grace period and number of retries: decorrelated jitter
+     * starting at the grace period, the longest delay is the grace period times
+     * the number of retries.
+     */
+    static RetryPolicy defaultRetryPolicy(int gracePeriodMillis, int numberOfRetries) {
+        return new JitteredRetryPolicy(gracePeriodMillis, gracePeriodMillis * Math.max(1, numberOfRetries),
+                numberOfRetries);
     }
 
-    private void handleErrorGracefully(Request request, Response response,
-            RequestCallback requestCallback) {
-        // error handling...:
-        if (currentRetryCounter < numberOfRetries) {
+    @Override
+    public final void doError(Request request, Response response) {
+        int delay = retryPolicy.delay(method, response, currentRetryCounter, lastDelay);
+        if (delay >= 0 && (retryBudget == null || retryBudget.withdraw())) {
             if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
-                Logger.getLogger(RetryingFilterawareRequestCallback.class.getName()).severe(
-                        "error handling in progress for: " + method.builder.getHTTPMethod()
-                        + " " + method.builder.getUrl());
+                Logger.getLogger(RetryingFilterawareRequestCallback.class.getName()).warning(
+                        "retrying in " + delay + "ms after " + response.getStatusCode() + ": "
+                        + method.builder.getHTTPMethod() + " " + method.builder.getUrl());
             }
-
             currentRetryCounter++;
+            lastDelay = delay;
+            retry(delay);
+            return;
+        }
 
-            Timer t = new Timer() {
-                @Override
-                public void run() {
-                    try {
-                        method.builder.send();
-                    } catch (RequestException ex) {
-                        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
-                            Logger.getLogger(RetryingFilterawareRequestCallback.class.getName())
-                                    .severe(ex.getMessage());
-                        }
-                    }
-                }
-            };
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(RetryingFilterawareRequestCallback.class.getName()).severe("Request failed: "
+                    + method.builder.getHTTPMethod() + " " + method.builder.getUrl()
+                    + " with " + response.getStatusCode() + " after " + currentRetryCounter + " retries"
+                    + (delay >= 0 ? ", out of retry budget" : ""));
+        }
 
-            t.schedule(gracePeriod);
-            gracePeriod = gracePeriod * 2;
+        // the filters release whatever waits for the request, e.g. queued callbacks
+        for (CallbackFilter f : callbackFilters) {
+            requestCallback = f.filter(method, response, requestCallback);
+        }
+        if (currentRetryCounter == 0) {
+            requestCallback.onError(request, new FailedStatusCodeException(response.getStatusText(),
+                    response.getStatusCode()));
         } else {
-            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
-                Logger.getLogger(RetryingFilterawareRequestCallback.class.getName()).severe("Request failed: "
-                        + method.builder.getHTTPMethod() + " " + method.builder.getUrl()
-                        + " after " + currentRetryCounter + " tries.");
-            }
+            requestCallback.onError(request, new RuntimeException("Response "
+                    + response.getStatusCode() + " for " + method.builder.getHTTPMethod() + " "
+                    + method.builder.getUrl() + " after " + currentRetryCounter + " retries."));
+        }
+    }
 
-            if (null != request
-                    && null != response
-                    && null != requestCallback) {
-                // got the original callback, call error here
-                requestCallback.onError(request, new RuntimeException("Response "
-                        + response.getStatusCode() + " for " + method.builder.getHTTPMethod() + " "
-                        + method.builder.getUrl() + " after " + numberOfRetries + " retries."));
-            } else {
-                // got no callback - well, goodbye
-                if (Window.confirm("something severly went wrong - error - reload page ?")) {
-                    // Super severe error.
-                    // reload app or redirect.
-                    // ===> this breaks the app but that's by intention.
-                    Window.Location.reload();
+    /**
+     * send the request again after the given delay
+     */
+    protected void retry(int delayMillis) {
+        new Timer() {
+            @Override
+            public void run() {
+                try {
+                    method.builder.send();
+                } catch (RequestException ex) {
+                    if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                        Logger.getLogger(RetryingFilterawareRequestCallback.class.getName())
+                                .severe(ex.getMessage());
+                    }
                 }
             }
-        }
+        }.schedule(delayMillis);
     }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.callback;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.SharedResponse;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.dispatcher.SingleFlight;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * hands the response of a request to the identical requests waiting for it,
+ * see {@link org.fusesource.restygwt.client.dispatcher.SingleFlightDispatcherFilter}.
+ * with {@link SingleFlight#setShareDecodedResults(boolean)} the waiting requests
+ * get the very same response, so they decode it once for all of them.
+ */
+public class SingleFlightCallbackFilter implements CallbackFilter {
+
+    private final SingleFlight singleFlight;
+
+    public SingleFlightCallbackFilter(SingleFlight singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    @Override
+    public RequestCallback filter(final Method method, final Response response,
+            final RequestCallback callback) {
+        final CacheKey key = singleFlight.key(method);
+        if (key == null) {
+            return callback;
+        }
+        final List<RequestCallback> waiting = singleFlight.complete(key, method);
+        if (waiting == null || waiting.isEmpty()) {
+            return callback;
+        }
+
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(SingleFlightCallbackFilter.class.getName())
+                    .finer("hand the response to " + waiting.size() + " waiting requests for " + key);
+        }
+        return new RequestCallback() {
+
+            @Override
+            public void onResponseReceived(Request request, Response received) {
+                Response shared = share(received);
+                callback.onResponseReceived(request, shared);
+                for (RequestCallback cb : waiting) {
+                    cb.onResponseReceived(request, shared);
+                }
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                callback.onError(request, exception);
+                // let each of them make its own error out of the response
+                Response shared = share(response);
+                for (RequestCallback cb : waiting) {
+                    cb.onResponseReceived(request, shared);
+                }
+            }
+        };
+    }
+
+    private Response share(Response response) {
+        if (!singleFlight.isShareDecodedResults() || response == null || response instanceof SharedResponse) {
+            return response;
+        }
+        return new SharedResponse(response);
+    }
+}
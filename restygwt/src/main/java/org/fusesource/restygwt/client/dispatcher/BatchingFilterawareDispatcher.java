@@ -0,0 +1,508 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Resource;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * a {@link FilterawareDispatcher} which does not put each request on the wire on its own. all
+ * requests passing the dispatcherfilters within one event-loop tick are collected and sent as
+ * one <code>multipart/mixed</code> POST to a batch endpoint. the server answers with one
+ * <code>multipart/mixed</code> part per request which gets passed on to the callback of the
+ * original request.
+ *
+ * each part is a plain HTTP message (<code>Content-Type: application/http</code>) carrying a
+ * <code>Content-ID</code> which the server has to echo on the corresponding response part:
+ *
+ * <pre>
+ * --batch_1
+ * Content-Type: application/http
+ * Content-ID: &lt;0&gt;
+ *
+ * GET http://example.com/api/foo HTTP/1.1
+ * Accept: application/json
+ *
+ *
+ * --batch_1--
+ * </pre>
+ *
+ * a tick with just one request sends that request as it is, without the batch envelope. the
+ * requests are batched per origin: only the ones of the origin of the batch endpoint go into
+ * the batch, the requests to any other origin are sent on their own.
+ *
+ * a part which can not be parsed is an error for its request only.
+ *
+ * since the batch goes over the wire later on, {@link #send(Method, RequestBuilder)} returns a
+ * {@link Request} standing in for the call. it is pending until the part of the call is
+ * answered. cancelling it before the flush takes the call out of the batch, cancelling it
+ * afterwards drops the part of the call from the response.
+ */
+public class BatchingFilterawareDispatcher extends DefaultFilterawareDispatcher {
+
+    public static final String CONTENT_TYPE_MULTIPART_MIXED = "multipart/mixed";
+
+    public static final String CONTENT_TYPE_HTTP = "application/http";
+
+    public static final String HEADER_CONTENT_ID = "Content-ID";
+
+    private static final String CRLF = "\r\n";
+
+    private static int batchCounter = 0;
+
+    /**
+     * one request waiting for the next batch, the {@link Request} handed out for it
+     */
+    private class Batched extends Request {
+        final Method method;
+        final RequestBuilder builder;
+        /**
+         * the request on the wire when it was sent on its own
+         */
+        Request alone;
+        private boolean sentAlone = false;
+        private boolean answered = false;
+        private boolean cancelled = false;
+
+        Batched(Method method, RequestBuilder builder) {
+            this.method = method;
+            this.builder = builder;
+        }
+
+        void sendAlone() throws RequestException {
+            sentAlone = true;
+            alone = BatchingFilterawareDispatcher.this.sendAlone(method, builder);
+        }
+
+        void onResponseReceived(Request request, Response response) {
+            if (!cancelled) {
+                answered = true;
+                builder.getCallback().onResponseReceived(request, response);
+            }
+        }
+
+        void onError(Request request, Throwable exception) {
+            if (!cancelled) {
+                answered = true;
+                builder.getCallback().onError(request, exception);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (pending.remove(this)) {
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(BatchingFilterawareDispatcher.class.getName())
+                            .fine("cancelled batched request: " + builder.getHTTPMethod() + " " + builder.getUrl());
+                }
+            } else if (alone != null) {
+                alone.cancel();
+            }
+        }
+
+        @Override
+        public boolean isPending() {
+            if (sentAlone) {
+                return alone != null && alone.isPending();
+            }
+            return !cancelled && !answered;
+        }
+    }
+
+    /**
+     * {@link Response} of one part of a batch response
+     */
+    public static class PartResponse extends Response {
+
+        private final int statusCode;
+        private final String statusText;
+        private final List<Header> headers = new ArrayList<Header>();
+        private final Map<String, String> headerValues = new HashMap<String, String>();
+        private final String text;
+
+        PartResponse(int statusCode, String statusText, String text) {
+            this.statusCode = statusCode;
+            this.statusText = statusText;
+            this.text = text;
+        }
+
+        void addHeader(final String name, final String value) {
+            headers.add(new Header() {
+
+                @Override
+                public String getName() {
+                    return name;
+                }
+
+                @Override
+                public String getValue() {
+                    return value;
+                }
+            });
+            headerValues.put(name.toLowerCase(), value);
+        }
+
+        @Override
+        public String getHeader(String header) {
+            return headerValues.get(header.toLowerCase());
+        }
+
+        @Override
+        public Header[] getHeaders() {
+            return headers.toArray(new Header[headers.size()]);
+        }
+
+        @Override
+        public String getHeadersAsString() {
+            StringBuilder result = new StringBuilder();
+            for (Header header : headers) {
+                result.append(header.getName()).append(": ").append(header.getValue()).append(CRLF);
+            }
+            return result.toString();
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return statusText;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * URL of the server-side batch endpoint
+     */
+    private final String batchUrl;
+
+    /**
+     * requests collected during the current tick
+     */
+    private List<Batched> pending = new ArrayList<Batched>();
+
+    public BatchingFilterawareDispatcher(String batchUrl, DispatcherFilter... filters) {
+        super(filters);
+        this.batchUrl = batchUrl;
+    }
+
+    @Override
+    protected Request doSend(Method method, RequestBuilder builder) throws RequestException {
+        if (pending.isEmpty()) {
+            scheduleFlush();
+        }
+        Batched batched = new Batched(method, builder);
+        pending.add(batched);
+        return batched;
+    }
+
+    /**
+     * flush the collected requests at the end of the current event-loop tick.
+     */
+    protected void scheduleFlush() {
+        Scheduler.get().scheduleFinally(new ScheduledCommand() {
+
+            @Override
+            public void execute() {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * put all collected requests on the wire, either as they are or as one batch.
+     */
+    public void flush() {
+        List<Batched> collected = pending;
+        pending = new ArrayList<Batched>();
+
+        Map<String, List<Batched>> byOrigin = new LinkedHashMap<String, List<Batched>>();
+        for (Batched b : collected) {
+            String origin = origin(b.builder.getUrl());
+            List<Batched> ofOrigin = byOrigin.get(origin);
+            if (ofOrigin == null) {
+                ofOrigin = new ArrayList<Batched>();
+                byOrigin.put(origin, ofOrigin);
+            }
+            ofOrigin.add(b);
+        }
+        String batchOrigin = origin(batchUrl);
+        for (Map.Entry<String, List<Batched>> entry : byOrigin.entrySet()) {
+            List<Batched> batch = entry.getValue();
+            if (batch.size() == 1 || !entry.getKey().equals(batchOrigin)) {
+                for (Batched single : batch) {
+                    try {
+                        single.sendAlone();
+                    } catch (RequestException e) {
+                        single.onError(null, e);
+                    }
+                }
+            } else {
+                flush(batch);
+            }
+        }
+    }
+
+    /**
+     * put a request on the wire as it is, without the batch envelope.
+     */
+    protected Request sendAlone(Method method, RequestBuilder builder) throws RequestException {
+        return super.doSend(method, builder);
+    }
+
+    /**
+     * @return scheme, host and port of the url, the one of the host page for a relative url
+     */
+    protected String origin(String url) {
+        int scheme = url.indexOf("://");
+        if (scheme < 0) {
+            return GWT.isClient() ? origin(GWT.getHostPageBaseURL()) : "";
+        }
+        int path = url.indexOf('/', scheme + 3);
+        return (path < 0 ? url : url.substring(0, path)).toLowerCase();
+    }
+
+    private void flush(final List<Batched> batch) {
+        final String boundary = "restygwt_batch_" + (++batchCounter);
+        RequestBuilder batchBuilder = new RequestBuilder(RequestBuilder.POST, batchUrl);
+        batchBuilder.setHeader(Resource.HEADER_CONTENT_TYPE, CONTENT_TYPE_MULTIPART_MIXED + "; boundary=" + boundary);
+        batchBuilder.setHeader(Resource.HEADER_ACCEPT, CONTENT_TYPE_MULTIPART_MIXED);
+        batchBuilder.setRequestData(encode(batch, boundary));
+        batchBuilder.setTimeoutMillis(timeout(batch));
+        batchBuilder.setCallback(new RequestCallback() {
+
+            @Override
+            public void onResponseReceived(Request request, Response response) {
+                dispatch(batch, request, response);
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                for (Batched b : batch) {
+                    b.onError(request, exception);
+                }
+            }
+        });
+
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(BatchingFilterawareDispatcher.class.getName())
+                    .fine("Sending batch of " + batch.size() + " http requests to " + batchUrl);
+        }
+        try {
+            sendBatch(batchBuilder);
+        } catch (RequestException e) {
+            for (Batched b : batch) {
+                b.onError(null, e);
+            }
+        }
+    }
+
+    protected Request sendBatch(RequestBuilder batchBuilder) throws RequestException {
+        return batchBuilder.send();
+    }
+
+    /**
+     * the batch takes as long as its slowest request is allowed to take.
+     */
+    private int timeout(List<Batched> batch) {
+        int timeout = 0;
+        for (Batched b : batch) {
+            if (b.builder.getTimeoutMillis() == 0) {
+                return 0;
+            }
+            timeout = Math.max(timeout, b.builder.getTimeoutMillis());
+        }
+        return timeout;
+    }
+
+    private String encode(List<Batched> batch, String boundary) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            RequestBuilder builder = batch.get(i).builder;
+            body.append("--").append(boundary).append(CRLF);
+            body.append(Resource.HEADER_CONTENT_TYPE).append(": ").append(CONTENT_TYPE_HTTP).append(CRLF);
+            body.append(HEADER_CONTENT_ID).append(": <").append(i).append(">").append(CRLF);
+            body.append(CRLF);
+            body.append(builder.getHTTPMethod()).append(' ').append(builder.getUrl()).append(" HTTP/1.1").append(CRLF);
+            for (Map.Entry<String, String> header : batch.get(i).method.getHeaders().entrySet()) {
+                body.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+            }
+            body.append(CRLF);
+            if (builder.getRequestData() != null) {
+                body.append(builder.getRequestData());
+            }
+            body.append(CRLF);
+        }
+        body.append("--").append(boundary).append("--").append(CRLF);
+        return body.toString();
+    }
+
+    private void dispatch(List<Batched> batch, Request request, Response response) {
+        String contentType = response.getHeader(Resource.HEADER_CONTENT_TYPE);
+        String boundary = boundary(contentType);
+        if (response.getStatusCode() != Response.SC_OK || boundary == null) {
+            // the batch as a whole failed, let every request see the failure
+            for (Batched b : batch) {
+                b.onResponseReceived(request, response);
+            }
+            return;
+        }
+
+        List<PartResponse> parts = new ArrayList<PartResponse>();
+        Map<String, PartResponse> partsById = new HashMap<String, PartResponse>();
+        decode(response.getText(), boundary, parts, partsById);
+
+        for (int i = 0; i < batch.size(); i++) {
+            PartResponse part = partsById.get("<" + i + ">");
+            if (part == null && partsById.isEmpty() && i < parts.size()) {
+                // no Content-IDs on the response, rely on the order of the parts
+                part = parts.get(i);
+            }
+            Batched batched = batch.get(i);
+            RequestBuilder builder = batched.builder;
+            if (part == null) {
+                batched.onError(request, new RequestException("no response in batch for: "
+                        + builder.getHTTPMethod() + " " + builder.getUrl()));
+            } else if (part.getStatusCode() < 0) {
+                batched.onError(request, new RequestException("malformed response in batch for: "
+                        + builder.getHTTPMethod() + " " + builder.getUrl() + ": " + part.getStatusText()));
+            } else {
+                batched.onResponseReceived(request, part);
+            }
+        }
+    }
+
+    static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith(CONTENT_TYPE_MULTIPART_MIXED)) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.toLowerCase().startsWith("boundary=")) {
+                String boundary = param.substring("boundary=".length());
+                if (boundary.startsWith("\"") && boundary.endsWith("\"") && boundary.length() > 1) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary;
+            }
+        }
+        return null;
+    }
+
+    static void decode(String text, String boundary, List<PartResponse> parts, Map<String, PartResponse> partsById) {
+        String delimiter = "--" + boundary;
+        int start = text.indexOf(delimiter);
+        while (start >= 0) {
+            start += delimiter.length();
+            if (text.startsWith("--", start)) {
+                // close delimiter
+                return;
+            }
+            start = text.indexOf('\n', start) + 1;
+            if (start == 0) {
+                return;
+            }
+            int end = text.indexOf("\n" + delimiter, start);
+            if (end < 0) {
+                return;
+            }
+            String part = text.substring(start, end);
+            if (part.endsWith("\r")) {
+                part = part.substring(0, part.length() - 1);
+            }
+
+            // the MIME headers of the part
+            String[] mime = splitHead(part);
+            String contentId = null;
+            for (String line : mime[0].split("\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(HEADER_CONTENT_ID)) {
+                    contentId = line.substring(colon + 1).trim();
+                }
+            }
+
+            // the HTTP message in the part
+            String[] http = splitHead(mime[1]);
+            String[] lines = http[0].split("\n");
+            String[] status = lines[0].trim().split(" ", 3);
+            PartResponse response;
+            try {
+                response = new PartResponse(Integer.parseInt(status[1]), status.length > 2 ? status[2] : "", http[1]);
+            } catch (RuntimeException e) {
+                // a broken status line, e.g. no status code: the status line tells what went wrong
+                response = new PartResponse(-1, lines[0].trim(), http[1]);
+            }
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    response.addHeader(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+                }
+            }
+
+            parts.add(response);
+            if (contentId != null) {
+                partsById.put(contentId, response);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * split a message into its head (without the blank line) and its body
+     */
+    private static String[] splitHead(String message) {
+        int crlf = message.indexOf("\r\n\r\n");
+        int lf = message.indexOf("\n\n");
+        if (crlf >= 0 && (lf < 0 || crlf < lf)) {
+            return new String[] { message.substring(0, crlf).replace("\r", ""), message.substring(crlf + 4) };
+        }
+        if (lf >= 0) {
+            return new String[] { message.substring(0, lf).replace("\r", ""), message.substring(lf + 2) };
+        }
+        return new String[] { message.replace("\r", ""), "" };
+    }
+}
@@ -18,18 +18,28 @@
 
 package org.fusesource.restygwt.client.dispatcher;
 
+import java.util.List;
 import java.util.logging.Logger;
 
+import org.fusesource.restygwt.client.AbstractRequestCallback;
 import org.fusesource.restygwt.client.Dispatcher;
 import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.RefreshCallback;
+import org.fusesource.restygwt.client.cache.CacheDomains;
 import org.fusesource.restygwt.client.cache.CacheKey;
 import org.fusesource.restygwt.client.cache.QueueableCacheStorage;
-import org.fusesource.restygwt.client.cache.ComplexCacheKey;
+import org.fusesource.restygwt.client.cache.HashedCacheKey;
+import org.fusesource.restygwt.client.cache.HttpQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.RevalidatableCacheStorage;
+import org.fusesource.restygwt.client.cache.StatisticsCacheStorage;
+import org.fusesource.restygwt.client.cache.VaryingCacheKey;
 import org.fusesource.restygwt.client.callback.CallbackFactory;
 import org.fusesource.restygwt.client.callback.FilterawareRequestCallback;
 
+import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.Response;
@@ -62,11 +72,131 @@ public class CachingDispatcherFilter implements DispatcherFilter {
     protected CacheKey cacheKey(RequestBuilder builder) {
         if (RequestBuilder.GET.toString().equalsIgnoreCase(
                 builder.getHTTPMethod())) {
-            return new ComplexCacheKey(builder);
+            if (cacheStorage instanceof HttpQueueableCacheStorage) {
+                // tell apart the variants of a response
+                return new VaryingCacheKey(builder);
+            }
+            return new HashedCacheKey(builder);
         }
         return null;
     }
 
+    /**
+     * @return the key of the request, computed once for the filters sharing the cache storage
+     */
+    protected CacheKey cacheKey(final Method method) {
+        CacheKey key = method.getCacheKey(cacheStorage);
+        if (key == null) {
+            key = cacheKey(method.builder);
+            if (key != null) {
+                method.setCacheKey(cacheStorage, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * turn the request into a conditional one if there is an expired response
+     * in the cache which can be revalidated. the {@link org.fusesource.restygwt.client.callback.CachingCallbackFilter}
+     * delivers the cached response on a <code>304 Not Modified</code>.
+     */
+    protected void addValidators(RequestBuilder builder, Response stale) {
+        if (stale == null) {
+            return;
+        }
+        String etag = stale.getHeader(RevalidatableCacheStorage.HEADER_ETAG);
+        if (etag != null) {
+            builder.setHeader(RevalidatableCacheStorage.HEADER_IF_NONE_MATCH, etag);
+        }
+        String lastModified = stale.getHeader(RevalidatableCacheStorage.HEADER_LAST_MODIFIED);
+        if (lastModified != null) {
+            builder.setHeader(RevalidatableCacheStorage.HEADER_IF_MODIFIED_SINCE, lastModified);
+        }
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(Dispatcher.class.getName())
+                    .fine("revalidating expired response for: " + builder.getHTTPMethod() + " "
+                            + builder.getUrl());
+        }
+    }
+
+    /**
+     * @return the scopes the statistics of the request are recorded in
+     */
+    protected String[] getCacheDomains(final Method method) {
+        return CacheDomains.of(method);
+    }
+
+    /**
+     * hand a response from the cache to the callback.
+     */
+    protected void deliver(final RequestCallback callback, final Response response) {
+        // onResponseReceived can be time consuming and can manipulate the DOM
+        // deferring the command keeps the async behaviour of this method call
+        Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+
+            @Override
+            public void execute() {
+                callback.onResponseReceived(null, response);
+            }
+        });
+    }
+
+    /**
+     * deliver the stale response and refresh it in the background, unless a
+     * request for it is in flight already. a {@link RefreshCallback} gets the
+     * refreshed response as well.
+     *
+     * @return continue filtering or not
+     */
+    private boolean serveStale(final Method method, final RequestBuilder builder, final CacheKey cacheKey,
+            final Response staleResponse) {
+        if (LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(Dispatcher.class.getName())
+                    .info("serving stale response while refreshing it for: " + builder.getHTTPMethod() + " "
+                    + builder.getUrl());
+        }
+        final RequestCallback original = builder.getCallback();
+        deliver(original, staleResponse);
+        if (cacheStorage instanceof StatisticsCacheStorage) {
+            ((StatisticsCacheStorage) cacheStorage).recordHit(getCacheDomains(method));
+        }
+
+        final boolean refreshing = cacheStorage.hasCallback(cacheKey);
+        if (original instanceof AbstractRequestCallback
+                && ((AbstractRequestCallback<?>) original).isRefreshable()) {
+            cacheStorage.addCallback(cacheKey, original);
+        }
+        if (refreshing) {
+            // the response of the pending request refreshes the queued callbacks
+            return false;
+        }
+
+        // the refresh reports to the queued callbacks only, also marks it as pending
+        final RequestCallback refresh = new RequestCallback() {
+
+            @Override
+            public void onResponseReceived(Request request, Response response) {
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(Dispatcher.class.getName())
+                            .fine("refresh failed for: " + builder.getHTTPMethod() + " " + builder.getUrl());
+                }
+                cacheStorage.removeCallbacks(cacheKey);
+            }
+        };
+        cacheStorage.addCallback(cacheKey, refresh);
+        addValidators(builder, ((RevalidatableCacheStorage) cacheStorage).getStaleResultOrReturnNull(cacheKey));
+
+        // not a dead store: the callback factory wraps whatever callback the builder of the
+        // method holds when it gets called, so refresh has to be in place before
+        builder.setCallback(refresh);
+        builder.setCallback(callbackFactory.createCallback(method));
+        return true;
+    }
+
     /**
      * main filter method for a dispatcherfilter.
      *
@@ -74,9 +204,19 @@ public class CachingDispatcherFilter implements DispatcherFilter {
      */
     @Override
     public boolean filter(final Method method, final RequestBuilder builder) {
-        final CacheKey cacheKey = cacheKey(builder);
+        final CacheKey cacheKey = cacheKey(method);
 
         if (cacheKey != null) {
+            if (method.isPrefetch() && (cacheStorage.hasCallback(cacheKey)
+                    || cacheStorage.getResultOrReturnNull(cacheKey) != null)) {
+                //case 0: a prefetch of a cached or pending response => drop it
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(Dispatcher.class.getName())
+                            .fine("dropping prefetch of a cached or pending response: " + builder.getHTTPMethod()
+                            + " " + builder.getUrl());
+                }
+                return false;
+            }
             final Response cachedResponse = cacheStorage.getResultOrReturnNull(cacheKey);
             if (cachedResponse != null) {
                 //case 1: we got a result in cache => return it...
@@ -85,23 +225,36 @@ public class CachingDispatcherFilter implements DispatcherFilter {
                             .info("already got a cached response for: " + builder.getHTTPMethod() + " "
                             + builder.getUrl());
                 }
-                // onResponseReceived can be time consuming and can manipulate the DOM
-                // deferring the command keeps the async behaviour of this method call
-                Scheduler.get().scheduleDeferred(new ScheduledCommand() {
-                    
-                    @Override
-                    public void execute() {
-                        builder.getCallback().onResponseReceived(null, cachedResponse);
-                    }
-                });
+                deliver(builder.getCallback(), cachedResponse);
+                if (cacheStorage instanceof StatisticsCacheStorage) {
+                    ((StatisticsCacheStorage) cacheStorage).recordHit(getCacheDomains(method));
+                }
                 return false;
             }
+            // a prefetch refreshes a stale response instead of being served with it
+            if (!method.isPrefetch() && cacheStorage instanceof RevalidatableCacheStorage) {
+                final Response staleResponse = ((RevalidatableCacheStorage) cacheStorage)
+                        .getServableStaleResultOrReturnNull(cacheKey);
+                if (staleResponse != null) {
+                    //case 1.1: we got a stale result in cache => return it and refresh it
+                    return serveStale(method, builder, cacheKey, staleResponse);
+                }
+            }
             final RequestCallback callback = callbackFactory.createCallback(method);
 
             //case 2: => no cache in result => queue it....
             if (!cacheStorage.hasCallback(cacheKey)) {
                 //case 2.1 => first callback => make a new one and execute...
-                cacheStorage.addCallback(cacheKey, builder.getCallback());
+                final RequestCallback original = builder.getCallback();
+                cacheStorage.addCallback(cacheKey, original);
+                if (!method.isPrefetch() && cacheStorage instanceof StatisticsCacheStorage) {
+                    ((StatisticsCacheStorage) cacheStorage).recordMiss(getCacheDomains(method));
+                }
+
+                if (cacheStorage instanceof RevalidatableCacheStorage) {
+                    addValidators(builder, ((RevalidatableCacheStorage) cacheStorage)
+                            .getStaleResultOrReturnNull(cacheKey));
+                }
 
                 if (LogConfiguration.loggingIsEnabled()) {
                     Logger.getLogger(Dispatcher.class.getName())
@@ -110,7 +263,28 @@ public class CachingDispatcherFilter implements DispatcherFilter {
                 }
 
                 // important part:
-                builder.setCallback(callback);
+                builder.setCallback(new RequestCallback() {
+
+                    @Override
+                    public void onResponseReceived(Request request, Response response) {
+                        callback.onResponseReceived(request, response);
+                    }
+
+                    @Override
+                    public void onError(Request request, Throwable exception) {
+                        // an error without a response bypasses the callback filters, e.g. a timeout
+                        // or a circuit breaker: let the queued callbacks know as well
+                        List<RequestCallback> queued = cacheStorage.removeCallbacks(cacheKey);
+                        callback.onError(request, exception);
+                        if (queued != null) {
+                            for (RequestCallback cb : queued) {
+                                if (cb != original) {
+                                    cb.onError(request, exception);
+                                }
+                            }
+                        }
+                    }
+                });
                 return true;
             }
             //case 2.2 => a callback already in progress => queue to get response when back
@@ -120,6 +294,9 @@ public class CachingDispatcherFilter implements DispatcherFilter {
                         + builder.getUrl());
             }
             cacheStorage.addCallback(cacheKey, callback);
+            if (cacheStorage instanceof StatisticsCacheStorage) {
+                ((StatisticsCacheStorage) cacheStorage).recordCoalesced(getCacheDomains(method));
+            }
             return false;
         }
         // non cachable case
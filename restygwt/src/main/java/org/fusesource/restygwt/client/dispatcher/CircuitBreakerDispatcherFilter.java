@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Options;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.shared.EventBus;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestTimeoutException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * stops sending requests to a service root which keeps failing, instead of
+ * piling retries onto a struggling backend and keeping the user waiting.
+ *
+ * the filter tracks the outcome and latency of the last requests per service
+ * root. a request fails on a timeout, without a status, with
+ * <code>429 Too Many Requests</code> or any <code>5xx</code> status, a
+ * request taking longer than the slow call threshold counts as failed as
+ * well. once half of the window is recorded and the failure rate reaches its
+ * threshold, the circuit opens: requests fail right away with a
+ * {@link CircuitOpenException}. after the open period the circuit is half
+ * open and lets a few probe requests through, it closes again if all of them
+ * succeed and opens again on the first failure. every state change is fired
+ * as a {@link CircuitBreakerEvent}.
+ *
+ * the service root is the {@link Options#serviceRootKey()} of the service, the
+ * scheme, host and port of the url if there is none. put the filter after a
+ * {@link CachingDispatcherFilter}, so cached responses are still served while
+ * the circuit is open, and before a {@link ThrottlingDispatcherFilter}. the
+ * latency then includes the time a request waits in the queue of the latter.
+ */
+public class CircuitBreakerDispatcherFilter implements DispatcherFilter {
+
+    public enum State {
+        /**
+         * requests are sent and their outcome is tracked
+         */
+        CLOSED,
+        /**
+         * requests fail right away
+         */
+        OPEN,
+        /**
+         * a few probe requests are sent to find out whether the service root is back
+         */
+        HALF_OPEN
+    }
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+
+    public static final int DEFAULT_FAILURE_RATE_PERCENT = 50;
+
+    public static final int DEFAULT_SLOW_CALL_MILLIS = 10000;
+
+    public static final int DEFAULT_OPEN_MILLIS = 30000;
+
+    public static final int DEFAULT_PROBES = 3;
+
+    private final EventBus eventBus;
+
+    private final int windowSize;
+
+    private final int failureRatePercent;
+
+    private final int slowCallMillis;
+
+    private final int openMillis;
+
+    private final int probes;
+
+    private final Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+    /**
+     * state and rolling window of the outcomes of a service root
+     */
+    private class Circuit {
+
+        final String root;
+
+        State state = State.CLOSED;
+
+        /**
+         * tells apart the outcomes of requests sent before the latest state change
+         */
+        int generation;
+
+        long changedAt;
+
+        final boolean[] failed = new boolean[windowSize];
+
+        final int[] latencies = new int[windowSize];
+
+        int count;
+
+        int next;
+
+        int failures;
+
+        long latencySum;
+
+        /**
+         * probes sent and succeeded while half open
+         */
+        int permits;
+
+        int successes;
+
+        Circuit(String root) {
+            this.root = root;
+        }
+
+        void record(boolean failure, int latency) {
+            if (count == windowSize) {
+                if (failed[next]) {
+                    failures--;
+                }
+                latencySum -= latencies[next];
+            } else {
+                count++;
+            }
+            failed[next] = failure;
+            latencies[next] = latency;
+            if (failure) {
+                failures++;
+            }
+            latencySum += latency;
+            next = (next + 1) % windowSize;
+        }
+
+        void reset() {
+            count = 0;
+            next = 0;
+            failures = 0;
+            latencySum = 0;
+            permits = 0;
+            successes = 0;
+        }
+    }
+
+    public CircuitBreakerDispatcherFilter(EventBus eventBus) {
+        this(eventBus, DEFAULT_WINDOW_SIZE, DEFAULT_FAILURE_RATE_PERCENT, DEFAULT_SLOW_CALL_MILLIS,
+                DEFAULT_OPEN_MILLIS, DEFAULT_PROBES);
+    }
+
+    /**
+     * @param eventBus where to fire the {@link CircuitBreakerEvent}s, may be <code>null</code>
+     * @param windowSize number of the latest requests the rates are computed from
+     * @param failureRatePercent the share of failed requests opening the circuit
+     * @param slowCallMillis requests taking at least as long count as failed, <code>0</code> for none
+     * @param openMillis how long the circuit stays open before probing
+     * @param probes the number of requests sent while half open
+     */
+    public CircuitBreakerDispatcherFilter(EventBus eventBus, int windowSize, int failureRatePercent,
+            int slowCallMillis, int openMillis, int probes) {
+        if (windowSize < 1 || probes < 1) {
+            throw new IllegalArgumentException("window and probes need at least one request: " + windowSize
+                    + ", " + probes);
+        }
+        this.eventBus = eventBus;
+        this.windowSize = windowSize;
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.probes = probes;
+    }
+
+    /**
+     * main filter method for a dispatcherfilter.
+     *
+     * @return continue filtering or not
+     */
+    @Override
+    public boolean filter(final Method method, final RequestBuilder builder) {
+        final Circuit circuit = circuit(serviceRoot(method, builder));
+        long now = now();
+
+        if (circuit.state == State.OPEN && now - circuit.changedAt >= openMillis) {
+            change(circuit, State.HALF_OPEN);
+        }
+        if (circuit.state == State.HALF_OPEN && circuit.permits >= probes) {
+            if (now - circuit.changedAt >= openMillis) {
+                // the probes never came back, e.g. they got cancelled
+                circuit.permits = circuit.successes;
+                circuit.changedAt = now;
+            } else {
+                reject(circuit, builder);
+                return false;
+            }
+        }
+        if (circuit.state == State.OPEN) {
+            reject(circuit, builder);
+            return false;
+        }
+        if (circuit.state == State.HALF_OPEN) {
+            circuit.permits++;
+        }
+
+        final int generation = circuit.generation;
+        final long start = now;
+        final RequestCallback callback = builder.getCallback();
+        builder.setCallback(new RequestCallback() {
+            private boolean done = false;
+
+            @Override
+            public void onResponseReceived(Request request, Response response) {
+                if (!done) {
+                    done = true;
+                    outcome(circuit, generation, isFailure(response), start);
+                }
+                callback.onResponseReceived(request, response);
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                if (!done) {
+                    done = true;
+                    outcome(circuit, generation, isFailure(exception) ? Boolean.TRUE : null, start);
+                }
+                callback.onError(request, exception);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return the state of the circuit of the service root
+     */
+    public State getState(String root) {
+        Circuit circuit = circuits.get(root);
+        return circuit == null ? State.CLOSED : circuit.state;
+    }
+
+    /**
+     * @return the share of failed requests of the service root in percent, since the circuit closed last
+     */
+    public int getFailureRate(String root) {
+        Circuit circuit = circuits.get(root);
+        return circuit == null || circuit.count == 0 ? 0 : circuit.failures * 100 / circuit.count;
+    }
+
+    /**
+     * @return the average latency of the requests of the service root, since the circuit closed last
+     */
+    public int getAverageLatency(String root) {
+        Circuit circuit = circuits.get(root);
+        return circuit == null || circuit.count == 0 ? 0 : (int) (circuit.latencySum / circuit.count);
+    }
+
+    /**
+     * the service root a request is counted against, the {@link Options#serviceRootKey()}
+     * or the scheme, host and port of the url.
+     */
+    protected String serviceRoot(Method method, RequestBuilder builder) {
+        String key = method.getData().get(Options.SERVICE_ROOT_KEY);
+        return key != null ? key : ThrottlingDispatcherFilter.origin(builder.getUrl());
+    }
+
+    /**
+     * @return whether the response tells the service root is in trouble
+     */
+    protected boolean isFailure(Response response) {
+        if (response == null) {
+            return true;
+        }
+        int status = response.getStatusCode();
+        return status == 0 || status == 429 || status >= 500;
+    }
+
+    /**
+     * @return whether the error tells the service root is in trouble, other
+     *         errors like cancelled requests are not taken into account
+     */
+    protected boolean isFailure(Throwable exception) {
+        return exception instanceof RequestTimeoutException;
+    }
+
+    /**
+     * fail a request while the circuit is open. the callback gets the error
+     * deferred, like a response from the wire.
+     */
+    protected void reject(final RequestCallback callback, final CircuitOpenException exception) {
+        Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+
+            @Override
+            public void execute() {
+                callback.onError(null, exception);
+            }
+        });
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private Circuit circuit(String root) {
+        Circuit circuit = circuits.get(root);
+        if (circuit == null) {
+            circuit = new Circuit(root);
+            circuits.put(root, circuit);
+        }
+        return circuit;
+    }
+
+    private void reject(Circuit circuit, RequestBuilder builder) {
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(CircuitBreakerDispatcherFilter.class.getName())
+                    .fine("circuit " + circuit.state + " for " + circuit.root + ", failing: "
+                            + builder.getHTTPMethod() + " " + builder.getUrl());
+        }
+        reject(builder.getCallback(), new CircuitOpenException(circuit.root));
+    }
+
+    /**
+     * @param failure <code>null</code> if the request neither succeeded nor failed
+     */
+    private void outcome(Circuit circuit, int generation, Boolean failure, long start) {
+        if (generation != circuit.generation) {
+            // sent before the latest state change, tells nothing about the current one
+            return;
+        }
+        int latency = (int) (now() - start);
+        if (failure != null && !failure && slowCallMillis > 0 && latency >= slowCallMillis) {
+            failure = Boolean.TRUE;
+        }
+
+        if (circuit.state == State.HALF_OPEN) {
+            if (failure == null) {
+                // the probe did not tell, let another one through
+                circuit.permits--;
+            } else if (failure) {
+                change(circuit, State.OPEN);
+            } else if (++circuit.successes >= probes) {
+                change(circuit, State.CLOSED);
+            }
+            return;
+        }
+        if (failure == null) {
+            return;
+        }
+        circuit.record(failure, latency);
+        if (circuit.count >= Math.max(1, windowSize / 2)
+                && circuit.failures * 100 >= failureRatePercent * circuit.count) {
+            change(circuit, State.OPEN);
+        }
+    }
+
+    private void change(Circuit circuit, State state) {
+        State previous = circuit.state;
+        circuit.state = state;
+        circuit.generation++;
+        circuit.changedAt = now();
+        circuit.reset();
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(CircuitBreakerDispatcherFilter.class.getName())
+                    .info("circuit of " + circuit.root + " " + previous + " -> " + state);
+        }
+        if (eventBus != null) {
+            eventBus.fireEvent(new CircuitBreakerEvent(circuit.root, previous, state));
+        }
+    }
+}
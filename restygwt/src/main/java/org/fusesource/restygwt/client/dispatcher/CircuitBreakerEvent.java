@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import org.fusesource.restygwt.client.dispatcher.CircuitBreakerDispatcherFilter.State;
+
+import com.google.gwt.event.shared.EventHandler;
+import com.google.gwt.event.shared.GwtEvent;
+
+/**
+ * fired by the {@link CircuitBreakerDispatcherFilter} whenever the circuit
+ * of a service root changes its state, e.g. to tell the user that a backend
+ * is unavailable and when it is back.
+ */
+public class CircuitBreakerEvent extends GwtEvent<CircuitBreakerEvent.Handler> {
+
+    public interface Handler extends EventHandler {
+        void onStateChange(CircuitBreakerEvent event);
+    }
+
+    public static final Type<Handler> TYPE = new Type<Handler>();
+
+    private final String serviceRoot;
+
+    private final State previous;
+
+    private final State state;
+
+    public CircuitBreakerEvent(String serviceRoot, State previous, State state) {
+        this.serviceRoot = serviceRoot;
+        this.previous = previous;
+        this.state = state;
+    }
+
+    /**
+     * @return the service root of the circuit, its {@link org.fusesource.restygwt.client.ServiceRoots} key or
+     *         the scheme, host and port of the urls
+     */
+    public String getServiceRoot() {
+        return serviceRoot;
+    }
+
+    public State getPreviousState() {
+        return previous;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public Type<Handler> getAssociatedType() {
+        return TYPE;
+    }
+
+    @Override
+    protected void dispatch(Handler handler) {
+        handler.onStateChange(this);
+    }
+
+    @Override
+    public String toString() {
+        return "circuit of " + serviceRoot + " " + previous + " -> " + state;
+    }
+}
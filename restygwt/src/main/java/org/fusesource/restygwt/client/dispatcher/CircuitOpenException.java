@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import com.google.gwt.http.client.RequestException;
+
+/**
+ * the error a request fails with while the circuit of its service root is
+ * open, the request was never sent.
+ *
+ * @see CircuitBreakerDispatcherFilter
+ */
+public class CircuitOpenException extends RequestException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String serviceRoot;
+
+    public CircuitOpenException(String serviceRoot) {
+        super("circuit open for " + serviceRoot);
+        this.serviceRoot = serviceRoot;
+    }
+
+    public String getServiceRoot() {
+        return serviceRoot;
+    }
+}
@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.RequestTimingEvent.Phase;
+import org.fusesource.restygwt.client.RequestTimings;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.http.client.Request;
@@ -75,8 +77,12 @@ public class DefaultFilterawareDispatcher implements FilterawareDispatcher {
     
     @Override
     public Request send(Method method, RequestBuilder builder) throws RequestException {
+        double start = RequestTimings.start();
         for (DispatcherFilter f : dispatcherFilters) {
             if (!f.filter(method, builder)) {
+                RequestTimings.record(method, Phase.DISPATCH, start);
+                // not on the wire, or later on with a phase of its own, e.g. released by a throttle
+                RequestTimings.startNetwork(method, RequestTimings.NOT_TIMED);
                 // filter returned false, no continue
                 if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
                     Logger.getLogger(DefaultFilterawareDispatcher.class.getName())
@@ -86,7 +92,17 @@ public class DefaultFilterawareDispatcher implements FilterawareDispatcher {
                 return null;
             }
         }
+        RequestTimings.startNetwork(method, RequestTimings.record(method, Phase.DISPATCH, start));
 
+        return doSend(method, builder);
+    }
+
+    /**
+     * actually send the request after all dispatcherfilters agreed to continue.
+     *
+     * @return the request on the wire, or <code>null</code> if it is not sent right away
+     */
+    protected Request doSend(Method method, RequestBuilder builder) throws RequestException {
         return builder.send();
     }
 
@@ -0,0 +1,369 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Hedge;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.callback.RetryBudget;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.RequestTimeoutException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * hedges GET requests annotated with {@link Hedge}: when a request did not
+ * answer within the hedge delay, the same request is sent once more. the
+ * first response reaches the callback, the request still in flight gets
+ * cancelled. a timeout only reaches the callback once neither request is in
+ * flight any more, any other error, e.g. of a superseded request, ends both.
+ * a request cancelled with {@link Request#cancel()} is not hedged, a duplicate
+ * already sent gets cancelled as soon as the filter notices.
+ *
+ * once the race is decided the builder gets its callback back, i.e. a retry
+ * of a {@link org.fusesource.restygwt.client.callback.RetryingFilterawareRequestCallback}
+ * is sent without hedging.
+ *
+ * the delay is the one of the annotation, if it has none it is the
+ * percentile of the latencies the filter recorded for the endpoint, i.e. the
+ * http method and the url without query. until enough latencies are recorded
+ * the default delay applies. the duplicates are taken from a
+ * {@link RetryBudget}, so a slow backend gets at most a share more requests.
+ *
+ * the duplicate is sent with the callback of the builder, so put the filter
+ * last, after a {@link CachingDispatcherFilter} or a
+ * {@link ThrottlingDispatcherFilter}. requests waiting in the queue of the
+ * latter are not hedged.
+ */
+public class HedgingDispatcherFilter implements DispatcherFilter {
+
+    public static final int DEFAULT_PERCENTILE = 95;
+
+    public static final int DEFAULT_DELAY_MILLIS = 1000;
+
+    /**
+     * the latencies kept per endpoint
+     */
+    public static final int SAMPLE_SIZE = 100;
+
+    /**
+     * the latencies needed before the percentile is used as delay
+     */
+    public static final int MIN_SAMPLES = 20;
+
+    private final int percentile;
+
+    private final int defaultDelayMillis;
+
+    private final RetryBudget budget;
+
+    private final Map<String, Latencies> latencies = new HashMap<String, Latencies>();
+
+    /**
+     * hedges after the 95th percentile, with a budget of one duplicate per ten requests
+     */
+    public HedgingDispatcherFilter() {
+        this(DEFAULT_PERCENTILE, DEFAULT_DELAY_MILLIS, new RetryBudget(0.1, 5));
+    }
+
+    /**
+     * @param percentile the percentile of the latencies to wait before the duplicate is sent
+     * @param defaultDelayMillis the delay until enough latencies of an endpoint are recorded
+     * @param budget the budget the duplicates are taken from
+     */
+    public HedgingDispatcherFilter(int percentile, int defaultDelayMillis, RetryBudget budget) {
+        this.percentile = percentile;
+        this.defaultDelayMillis = defaultDelayMillis;
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean filter(Method method, RequestBuilder builder) {
+        String delay = method.getData().get(Hedge.KEY);
+        if (delay == null || method.isPrefetch() || !RequestBuilder.GET.toString().equals(builder.getHTTPMethod())) {
+            return true;
+        }
+
+        budget.deposit();
+        String endpoint = endpoint(builder);
+        int millis = Integer.parseInt(delay);
+        if (millis < 0) {
+            millis = getDelay(endpoint);
+        }
+
+        final Race race = new Race(method, builder, endpoint, millis);
+        builder.setCallback(race);
+        schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                race.hedge();
+            }
+        }, millis);
+        return true;
+    }
+
+    /**
+     * @return the delay before a request to the endpoint gets hedged
+     */
+    public int getDelay(String endpoint) {
+        Latencies recorded = latencies.get(endpoint);
+        if (recorded == null || recorded.count < MIN_SAMPLES) {
+            return defaultDelayMillis;
+        }
+        int[] sorted = new int[recorded.count];
+        System.arraycopy(recorded.samples, 0, sorted, 0, recorded.count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * @return the remaining duplicates within the budget
+     */
+    public int getRemainingHedges() {
+        return budget.getRemaining();
+    }
+
+    /**
+     * the endpoint latencies are recorded for, the http method and the url
+     * without query.
+     */
+    protected String endpoint(RequestBuilder builder) {
+        String url = builder.getUrl();
+        int query = url.indexOf('?');
+        return builder.getHTTPMethod() + " " + (query < 0 ? url : url.substring(0, query));
+    }
+
+    /**
+     * run the hedge after the delay
+     */
+    protected void schedule(final Runnable hedge, int delayMillis) {
+        new Timer() {
+
+            @Override
+            public void run() {
+                hedge.run();
+            }
+        }.schedule(Math.max(1, delayMillis));
+    }
+
+    /**
+     * send the duplicate of a request which already passed all filters
+     */
+    protected Request send(RequestBuilder builder) throws RequestException {
+        return builder.send();
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void record(String endpoint, int latency) {
+        Latencies recorded = latencies.get(endpoint);
+        if (recorded == null) {
+            recorded = new Latencies();
+            latencies.put(endpoint, recorded);
+        }
+        recorded.samples[recorded.next] = latency;
+        recorded.next = (recorded.next + 1) % SAMPLE_SIZE;
+        recorded.count = Math.min(SAMPLE_SIZE, recorded.count + 1);
+    }
+
+    /**
+     * the last latencies of an endpoint, oldest get overwritten
+     */
+    private static class Latencies {
+
+        final int[] samples = new int[SAMPLE_SIZE];
+
+        int next;
+
+        int count;
+    }
+
+    /**
+     * the callback of both requests, the first outcome wins
+     */
+    private class Race implements RequestCallback {
+
+        final Method method;
+
+        final RequestBuilder builder;
+
+        final RequestCallback callback;
+
+        final String endpoint;
+
+        final int delayMillis;
+
+        final long start = now();
+
+        Request hedge;
+
+        int pending = 1;
+
+        /**
+         * whether the first request called back
+         */
+        boolean answered;
+
+        boolean done;
+
+        Race(Method method, RequestBuilder builder, String endpoint, int delayMillis) {
+            this.method = method;
+            this.builder = builder;
+            this.callback = builder.getCallback();
+            this.endpoint = endpoint;
+            this.delayMillis = delayMillis;
+        }
+
+        void hedge() {
+            if (done || hedge != null) {
+                return;
+            }
+            if (isCancelled()) {
+                finish();
+                return;
+            }
+            if (!budget.withdraw()) {
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(HedgingDispatcherFilter.class.getName())
+                            .fine("hedge budget exhausted, not hedging " + endpoint);
+                }
+                return;
+            }
+            try {
+                hedge = send(builder);
+                pending++;
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(HedgingDispatcherFilter.class.getName())
+                            .fine("hedged " + builder.getHTTPMethod() + " " + builder.getUrl());
+                }
+                watch();
+            }
+            catch (RequestException e) {
+                // the first request is still in flight
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(HedgingDispatcherFilter.class.getName())
+                            .fine("could not hedge " + endpoint + ": " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * a cancelled request never calls back, look after the first request while the duplicate is in flight
+         */
+        void watch() {
+            schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (done) {
+                        return;
+                    }
+                    if (isCancelled()) {
+                        cancel(hedge);
+                        finish();
+                        return;
+                    }
+                    watch();
+                }
+            }, delayMillis);
+        }
+
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+            if (done) {
+                return;
+            }
+            if (hedge == null || request != hedge) {
+                answered = true;
+            }
+            else if (isCancelled()) {
+                // nobody waits for the duplicate any more
+                finish();
+                return;
+            }
+            finish();
+            record(endpoint, (int) (now() - start));
+            if (hedge != null) {
+                cancel(request == hedge ? method.getRequest() : hedge);
+            }
+            callback.onResponseReceived(request, response);
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+            if (done) {
+                return;
+            }
+            if (hedge == null || request != hedge) {
+                answered = true;
+            }
+            if (exception instanceof RequestTimeoutException) {
+                if (--pending > 0) {
+                    // the other request may still answer
+                    return;
+                }
+            }
+            else if (hedge != null) {
+                // no answer of the wire, e.g. a superseded request
+                cancel(request == hedge ? method.getRequest() : hedge);
+            }
+            finish();
+            callback.onError(request, exception);
+        }
+
+        /**
+         * @return whether the first request got cancelled without calling back
+         */
+        private boolean isCancelled() {
+            Request original = method.getRequest();
+            return !answered && original != null && !original.isPending();
+        }
+
+        /**
+         * the race is decided, a retry goes straight to the callback
+         */
+        private void finish() {
+            done = true;
+            if (builder.getCallback() == this) {
+                builder.setCallback(callback);
+            }
+        }
+
+        private void cancel(Request loser) {
+            if (loser != null && loser.isPending()) {
+                loser.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.HashedCacheKey;
+
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+
+/**
+ * the GET requests in flight along with the callbacks of the identical
+ * requests waiting for their response. shared by the
+ * {@link SingleFlightDispatcherFilter} and the
+ * {@link org.fusesource.restygwt.client.callback.SingleFlightCallbackFilter}.
+ * requests are told apart by their {@link HashedCacheKey}.
+ *
+ * nothing is kept once a request is done, there is no cache involved.
+ */
+public class SingleFlight {
+
+    private static final class Flight {
+
+        final Method method;
+        final List<RequestCallback> waiting = new ArrayList<RequestCallback>();
+
+        Flight(Method method) {
+            this.method = method;
+        }
+    }
+
+    private final Map<CacheKey, Flight> flights = new HashMap<CacheKey, Flight>();
+
+    private boolean shareDecodedResults;
+
+    /**
+     * @param share whether the waiting requests get the objects a callback of the same kind
+     *        decoded from the response, instead of decoding it again. the callbacks must not
+     *        modify the objects then. like
+     *        {@link org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage#setShareDecodedResults(boolean)}
+     */
+    public void setShareDecodedResults(boolean share) {
+        this.shareDecodedResults = share;
+    }
+
+    /**
+     * @return whether the waiting requests share the objects decoded from the response, off by default
+     */
+    public boolean isShareDecodedResults() {
+        return shareDecodedResults;
+    }
+
+    /**
+     * @return what tells apart requests, <code>null</code> for the ones never to be collapsed
+     */
+    public CacheKey key(RequestBuilder builder) {
+        if (RequestBuilder.GET.toString().equalsIgnoreCase(builder.getHTTPMethod())) {
+            return new HashedCacheKey(builder);
+        }
+        return null;
+    }
+
+    /**
+     * @return the key of the method, computed once for both filters
+     */
+    public CacheKey key(Method method) {
+        CacheKey key = method.getCacheKey(this);
+        if (key == null) {
+            key = key(method.builder);
+            if (key != null) {
+                method.setCacheKey(this, key);
+            }
+        }
+        return key;
+    }
+
+    public boolean isInFlight(CacheKey key) {
+        return flights.containsKey(key);
+    }
+
+    /**
+     * @return the method in flight the identical requests wait for, <code>null</code> if none
+     */
+    public Method getInFlight(CacheKey key) {
+        Flight flight = flights.get(key);
+        return flight == null ? null : flight.method;
+    }
+
+    /**
+     * the method is sent, identical ones wait for it from now on
+     */
+    public void start(CacheKey key, Method method) {
+        flights.put(key, new Flight(method));
+    }
+
+    /**
+     * an identical request waits for the one in flight
+     */
+    public void join(CacheKey key, RequestCallback callback) {
+        flights.get(key).waiting.add(callback);
+    }
+
+    /**
+     * the method is done, the next identical request gets sent again
+     *
+     * @return the callbacks waiting for it, <code>null</code> if the method is not in flight
+     *         (anymore), e.g. it is one of the waiting ones
+     */
+    public List<RequestCallback> complete(CacheKey key, Method method) {
+        Flight flight = flights.get(key);
+        if (flight == null || flight.method != method) {
+            return null;
+        }
+        flights.remove(key);
+        return flight.waiting;
+    }
+}
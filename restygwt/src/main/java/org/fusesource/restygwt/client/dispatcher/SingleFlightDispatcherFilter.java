@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Dispatcher;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * collapses identical GET requests in flight into one: only the first goes
+ * over the wire, the others wait for its response. unlike the
+ * {@link CachingDispatcherFilter} nothing is kept after the response
+ * arrived, the next request is sent again.
+ *
+ * the {@link org.fusesource.restygwt.client.callback.SingleFlightCallbackFilter}
+ * sharing the same {@link SingleFlight} hands the response to the waiting
+ * requests. if the request fails or times out before, this filter hands the
+ * error to them. a request cancelled with {@link Request#cancel()} never calls
+ * back: the next identical request finds it is not pending anymore, hands the
+ * waiting requests an error and goes over the wire itself.
+ */
+public class SingleFlightDispatcherFilter implements DispatcherFilter {
+
+    private final SingleFlight singleFlight;
+
+    private final CallbackFactory callbackFactory;
+
+    private final int timeoutMillis;
+
+    public SingleFlightDispatcherFilter(final SingleFlight singleFlight, final CallbackFactory cf) {
+        this(singleFlight, cf, 0);
+    }
+
+    /**
+     * @param timeoutMillis the timeout of the collapsed requests without one of their own,
+     *        the longest the waiting requests wait. <code>0</code> for none.
+     */
+    public SingleFlightDispatcherFilter(final SingleFlight singleFlight, final CallbackFactory cf,
+            final int timeoutMillis) {
+        this.singleFlight = singleFlight;
+        this.callbackFactory = cf;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * main filter method for a dispatcherfilter.
+     *
+     * @return continue filtering or not
+     */
+    @Override
+    public boolean filter(final Method method, final RequestBuilder builder) {
+        final CacheKey key = singleFlight.key(method);
+        if (key == null) {
+            builder.setCallback(callbackFactory.createCallback(method));
+            return true;
+        }
+
+        if (singleFlight.isInFlight(key)) {
+            abandonIfCancelled(key);
+        }
+
+        if (singleFlight.isInFlight(key)) {
+            if (method.isPrefetch()) {
+                // nobody waits for the response of a prefetch
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(Dispatcher.class.getName())
+                            .fine("dropping prefetch of a request in flight: " + builder.getHTTPMethod() + " "
+                                    + builder.getUrl());
+                }
+                return false;
+            }
+            if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                Logger.getLogger(Dispatcher.class.getName())
+                        .fine("request in flight, wait for it: " + builder.getHTTPMethod() + " "
+                                + builder.getUrl());
+            }
+            singleFlight.join(key, callbackFactory.createCallback(method));
+            return false;
+        }
+
+        singleFlight.start(key, method);
+        if (timeoutMillis > 0 && builder.getTimeoutMillis() == 0) {
+            builder.setTimeoutMillis(timeoutMillis);
+        }
+        final RequestCallback callback = callbackFactory.createCallback(method);
+        builder.setCallback(new RequestCallback() {
+
+            @Override
+            public void onResponseReceived(Request request, Response response) {
+                try {
+                    callback.onResponseReceived(request, response);
+                } finally {
+                    // the callback filter did not get the response, e.g. there is none
+                    for (RequestCallback cb : release(key, method)) {
+                        cb.onResponseReceived(request, response);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                try {
+                    callback.onError(request, exception);
+                } finally {
+                    for (RequestCallback cb : release(key, method)) {
+                        cb.onError(request, exception);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * fails the requests waiting for a method whose request got cancelled, it never calls back
+     */
+    private void abandonIfCancelled(CacheKey key) {
+        Method inFlight = singleFlight.getInFlight(key);
+        Request request = inFlight.getRequest();
+        if (request == null || request.isPending()) {
+            // not on the wire yet (e.g. queued or batched) or still on its way
+            return;
+        }
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(Dispatcher.class.getName())
+                    .fine("request in flight got cancelled: " + inFlight.builder.getHTTPMethod() + " "
+                            + inFlight.builder.getUrl());
+        }
+        RequestException cancelled = new RequestException("the request waited for got cancelled: "
+                + inFlight.builder.getHTTPMethod() + " " + inFlight.builder.getUrl());
+        for (RequestCallback cb : release(key, inFlight)) {
+            cb.onError(request, cancelled);
+        }
+    }
+
+    /**
+     * @return the callbacks still waiting for the method, none if they got the response already
+     */
+    private List<RequestCallback> release(CacheKey key, Method method) {
+        List<RequestCallback> waiting = singleFlight.complete(key, method);
+        if (waiting == null) {
+            return Collections.emptyList();
+        }
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled() && !waiting.isEmpty()) {
+            Logger.getLogger(Dispatcher.class.getName())
+                    .fine("release " + waiting.size() + " requests waiting for " + key);
+        }
+        return waiting;
+    }
+}
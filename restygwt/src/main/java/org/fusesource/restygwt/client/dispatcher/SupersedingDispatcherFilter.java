@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Supersede;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+
+/**
+ * latest-wins for requests annotated with {@link Supersede}: a new request of
+ * a group cancels the request of the same group which is still in flight.
+ * whatever comes back for a superseded request is dropped before it reaches
+ * the callback of the method, i.e. it is never parsed.
+ *
+ * the filter guards the callback the method was sent with, so it needs to be
+ * the first filter of the dispatcher. filters added after it still get an
+ * error for a cancelled request to clean up their state.
+ */
+public class SupersedingDispatcherFilter implements DispatcherFilter {
+
+    /**
+     * the latest method sent per group
+     */
+    private final Map<String, Method> latest = new HashMap<String, Method>();
+
+    /**
+     * main filter method for a dispatcherfilter.
+     *
+     * @return continue filtering or not
+     */
+    @Override
+    public boolean filter(final Method method, final RequestBuilder builder) {
+        final String group = method.getData().get(Supersede.GROUP_KEY);
+        if (group == null) {
+            return true;
+        }
+
+        Method previous = latest.put(group, method);
+        if (previous != null && previous != method) {
+            cancel(group, previous);
+        }
+
+        final RequestCallback callback = builder.getCallback();
+        builder.setCallback(new RequestCallback() {
+
+            @Override
+            public void onResponseReceived(Request request, Response response) {
+                if (complete(group, method)) {
+                    callback.onResponseReceived(request, response);
+                }
+            }
+
+            @Override
+            public void onError(Request request, Throwable exception) {
+                if (complete(group, method)) {
+                    callback.onError(request, exception);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return the method of the given group still in flight, <code>null</code> if none
+     */
+    public Method getInFlight(String group) {
+        return latest.get(group);
+    }
+
+    /**
+     * @return whether the method is the latest of its group and the result is to be delivered
+     */
+    private boolean complete(String group, Method method) {
+        if (latest.get(group) == method) {
+            latest.remove(group);
+            return true;
+        }
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(SupersedingDispatcherFilter.class.getName())
+                    .fine("dropping response of superseded request: " + method.builder.getHTTPMethod()
+                            + " " + method.builder.getUrl());
+        }
+        return false;
+    }
+
+    private void cancel(String group, Method previous) {
+        Request request = previous.getRequest();
+        if (request == null || !request.isPending()) {
+            // not on the wire yet (e.g. queued or batched) or already done,
+            // its response gets dropped when it arrives
+            return;
+        }
+
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(SupersedingDispatcherFilter.class.getName())
+                    .fine("cancel request superseded in group " + group + ": "
+                            + previous.builder.getHTTPMethod() + " " + previous.builder.getUrl());
+        }
+        request.cancel();
+        // a cancelled request never calls back. let the callbacks wrapped
+        // around ours know that it is done, ours drops the error.
+        previous.builder.getCallback().onError(request,
+                new RequestException("superseded by a newer request of group " + group));
+    }
+}
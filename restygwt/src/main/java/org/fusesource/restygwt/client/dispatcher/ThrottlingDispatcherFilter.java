@@ -0,0 +1,388 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.dispatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Options;
+import org.fusesource.restygwt.client.RequestTimings;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.logging.client.LogConfiguration;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * caps the number of requests in flight per service root. requests beyond
+ * that cap are queued and released as soon as a request of the same root
+ * completes, highest {@link Options#priority()} first and in the order they
+ * were sent for equal priorities.
+ *
+ * this filter replaces the callback of the builder to get notified about the
+ * completion of a request, so it needs to be the last filter of the dispatcher
+ * it is given. released requests are sent by that dispatcher as well.
+ * a request cancelled with {@link Request#cancel()} never calls back: while
+ * requests are queued, the slots are checked every
+ * {@link #CANCEL_CHECK_MILLIS} and the slot of a request which is not pending
+ * anymore is freed. a queued request is not sent by
+ * {@link DefaultFilterawareDispatcher#send(Method, RequestBuilder)}, i.e. there
+ * is no {@link Request} to cancel it, use {@link #cancelQueued(Method)} instead.
+ */
+public class ThrottlingDispatcherFilter implements DispatcherFilter {
+
+    /**
+     * six connections per host is what most browsers allow
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 6;
+
+    /**
+     * how often the slots are checked for cancelled requests while requests are queued
+     */
+    public static final int CANCEL_CHECK_MILLIS = 250;
+
+    private final DefaultFilterawareDispatcher dispatcher;
+
+    private final int maxInFlight;
+
+    private final Map<String, List<Slot>> inFlight = new HashMap<String, List<Slot>>();
+
+    private final Map<String, PriorityQueue<Queued>> queues = new HashMap<String, PriorityQueue<Queued>>();
+
+    /**
+     * keeps the queue stable for requests of equal priority
+     */
+    private long sequence = 0;
+
+    private boolean checkScheduled = false;
+
+    private static class Queued implements Comparable<Queued> {
+        final Method method;
+        final RequestBuilder builder;
+        final int priority;
+        final long sequence;
+
+        Queued(Method method, RequestBuilder builder, int priority, long sequence) {
+            this.method = method;
+            this.builder = builder;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Queued other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * a request on the wire, it frees its slot when it completes or got cancelled
+     */
+    private class Slot implements RequestCallback {
+        final String root;
+        final Method method;
+        final RequestCallback callback;
+        /**
+         * the request of a released queued request, the others keep it on their method
+         */
+        Request request;
+        private boolean released = false;
+
+        Slot(String root, Method method, RequestCallback callback) {
+            this.root = root;
+            this.method = method;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+            release();
+            callback.onResponseReceived(request, response);
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+            release();
+            callback.onError(request, exception);
+        }
+
+        /**
+         * @return whether the request is on the wire no more without having called back
+         */
+        boolean isCancelled() {
+            Request sent = request != null ? request : method.getRequest();
+            return !released && sent != null && !sent.isPending();
+        }
+
+        void release() {
+            // a callback might be called twice, e.g. on a timeout after an error
+            if (!released) {
+                released = true;
+                ThrottlingDispatcherFilter.this.release(this);
+            }
+        }
+    }
+
+    public ThrottlingDispatcherFilter(DefaultFilterawareDispatcher dispatcher) {
+        this(dispatcher, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param dispatcher the dispatcher this filter is added to, it sends the released requests
+     */
+    public ThrottlingDispatcherFilter(DefaultFilterawareDispatcher dispatcher, int maxInFlight) {
+        if (dispatcher == null) {
+            throw new IllegalArgumentException("no dispatcher to send released requests with");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("at least one request needs to be in flight: " + maxInFlight);
+        }
+        this.dispatcher = dispatcher;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * main filter method for a dispatcherfilter.
+     *
+     * @return continue filtering or not
+     */
+    @Override
+    public boolean filter(Method method, RequestBuilder builder) {
+        String root = serviceRoot(method, builder);
+        releaseCancelled(root);
+        if (getInFlight(root) < maxInFlight) {
+            acquire(root, method, builder);
+            return true;
+        }
+
+        PriorityQueue<Queued> queue = queues.get(root);
+        if (queue == null) {
+            queue = new PriorityQueue<Queued>();
+            queues.put(root, queue);
+        }
+        queue.add(new Queued(method, builder, priority(method), sequence++));
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(ThrottlingDispatcherFilter.class.getName())
+                    .fine("queued request (" + queue.size() + " waiting for " + root + "): "
+                            + builder.getHTTPMethod() + " " + builder.getUrl());
+        }
+        scheduleCancelCheck();
+        return false;
+    }
+
+    /**
+     * @return number of requests currently on the wire for the given service root
+     */
+    public int getInFlight(String root) {
+        List<Slot> slots = inFlight.get(root);
+        return slots == null ? 0 : slots.size();
+    }
+
+    /**
+     * @return number of requests waiting for the given service root
+     */
+    public int getQueued(String root) {
+        PriorityQueue<Queued> queue = queues.get(root);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * remove a request from the queue, it is never sent. its callback gets an error,
+     * so the filters before this one learn that it is done.
+     *
+     * @return whether the request of the method was queued
+     */
+    public boolean cancelQueued(Method method) {
+        for (Map.Entry<String, PriorityQueue<Queued>> entry : queues.entrySet()) {
+            Iterator<Queued> queued = entry.getValue().iterator();
+            while (queued.hasNext()) {
+                Queued next = queued.next();
+                if (next.method == method) {
+                    queued.remove();
+                    if (entry.getValue().isEmpty()) {
+                        queues.remove(entry.getKey());
+                    }
+                    if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                        Logger.getLogger(ThrottlingDispatcherFilter.class.getName())
+                                .fine("cancelled queued request: " + next.builder.getHTTPMethod() + " "
+                                        + next.builder.getUrl());
+                    }
+                    next.builder.getCallback().onError(null, new RequestException("cancelled while queued: "
+                            + next.builder.getHTTPMethod() + " " + next.builder.getUrl()));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the service root a request is counted against. by default this is the
+     * scheme, host and port of the url since the connection limit of the
+     * browser applies per host.
+     */
+    protected String serviceRoot(Method method, RequestBuilder builder) {
+        return origin(builder.getUrl());
+    }
+
+    /**
+     * @return scheme, host and port of the url, empty for a relative url
+     */
+    static String origin(String url) {
+        int scheme = url.indexOf("://");
+        if (scheme < 0) {
+            // relative url, always the host of the page
+            return "";
+        }
+        int path = url.indexOf('/', scheme + 3);
+        return path < 0 ? url : url.substring(0, path);
+    }
+
+    /**
+     * the priority given with {@link Options#priority()}, 0 if none was given
+     */
+    protected int priority(Method method) {
+        String priority = method.getData().get(Options.PRIORITY_KEY);
+        if (priority == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(priority);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * run the check for cancelled requests after the delay
+     */
+    protected void schedule(final Runnable check, int delayMillis) {
+        new Timer() {
+
+            @Override
+            public void run() {
+                check.run();
+            }
+        }.schedule(delayMillis);
+    }
+
+    private Slot acquire(String root, Method method, RequestBuilder builder) {
+        Slot slot = new Slot(root, method, builder.getCallback());
+        List<Slot> slots = inFlight.get(root);
+        if (slots == null) {
+            slots = new ArrayList<Slot>();
+            inFlight.put(root, slots);
+        }
+        slots.add(slot);
+        builder.setCallback(slot);
+        return slot;
+    }
+
+    /**
+     * a cancelled request never calls back, so check the slots as long as
+     * there are requests waiting for one
+     */
+    private void scheduleCancelCheck() {
+        if (checkScheduled || queues.isEmpty()) {
+            return;
+        }
+        checkScheduled = true;
+        schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                checkScheduled = false;
+                for (String root : new ArrayList<String>(queues.keySet())) {
+                    releaseCancelled(root);
+                }
+                scheduleCancelCheck();
+            }
+        }, CANCEL_CHECK_MILLIS);
+    }
+
+    /**
+     * a cancelled request never calls back, free its slot
+     */
+    private void releaseCancelled(String root) {
+        List<Slot> slots = inFlight.get(root);
+        if (slots == null) {
+            return;
+        }
+        for (Slot slot : new ArrayList<Slot>(slots)) {
+            if (slot.isCancelled()) {
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(ThrottlingDispatcherFilter.class.getName())
+                            .fine("releasing the slot of a cancelled request: "
+                                    + slot.method.builder.getHTTPMethod() + " " + slot.method.builder.getUrl());
+                }
+                slot.release();
+            }
+        }
+    }
+
+    private void release(Slot slot) {
+        String root = slot.root;
+        List<Slot> slots = inFlight.get(root);
+        if (slots != null) {
+            slots.remove(slot);
+            if (slots.isEmpty()) {
+                inFlight.remove(root);
+            }
+        }
+
+        PriorityQueue<Queued> queue = queues.get(root);
+        if (queue == null) {
+            return;
+        }
+        Queued next = queue.poll();
+        if (queue.isEmpty()) {
+            queues.remove(root);
+        }
+        if (next == null) {
+            return;
+        }
+
+        Slot nextSlot = acquire(root, next.method, next.builder);
+        if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+            Logger.getLogger(ThrottlingDispatcherFilter.class.getName())
+                    .fine("releasing queued request with priority " + next.priority + ": "
+                            + next.builder.getHTTPMethod() + " " + next.builder.getUrl());
+        }
+        try {
+            RequestTimings.startNetwork(next.method, RequestTimings.start());
+            nextSlot.request = dispatcher.doSend(next.method, next.builder);
+        } catch (RequestException e) {
+            // frees the slot again and lets the next one go
+            next.builder.getCallback().onError(null, e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.statistics;
+
+/**
+ * the statistics of one service method since the last reset
+ */
+public class EndpointStatistics {
+
+    private final String endpoint;
+
+    private final Histogram latency = new Histogram(Histogram.LATENCY_BOUNDS);
+
+    private final Histogram responseSize = new Histogram(Histogram.SIZE_BOUNDS);
+
+    private final Histogram parseTime = new Histogram(Histogram.LATENCY_BOUNDS);
+
+    private final Histogram decodeTime = new Histogram(Histogram.LATENCY_BOUNDS);
+
+    int requests;
+
+    int errors;
+
+    EndpointStatistics(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @return the service interface and method, e.g. <code>com.acme.client.ContactService#getContact</code>
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the milliseconds from sending a request until its response or error
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the characters of the responses
+     */
+    public Histogram getResponseSize() {
+        return responseSize;
+    }
+
+    /**
+     * @return the milliseconds parsing the json of the responses
+     */
+    public Histogram getParseTime() {
+        return parseTime;
+    }
+
+    /**
+     * @return the milliseconds decoding the parsed json to the results
+     */
+    public Histogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    /**
+     * @return the requests which reached their callback
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the requests which reached their callback with a failure
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the share of failed requests, <code>0</code> without requests
+     */
+    public double getErrorRate() {
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+    void reset() {
+        latency.reset();
+        responseSize.reset();
+        parseTime.reset();
+        decodeTime.reset();
+        requests = 0;
+        errors = 0;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.statistics;
+
+/**
+ * counts values in fixed buckets, so it takes the same memory no matter
+ * how many values it got. percentiles are the upper bound of the bucket
+ * they fall into, i.e. as exact as the buckets are fine.
+ */
+public class Histogram {
+
+    /**
+     * milliseconds, from a millisecond to ten seconds
+     */
+    public static final double[] LATENCY_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    /**
+     * characters, from a hundred to a few millions
+     */
+    public static final double[] SIZE_BOUNDS = { 128, 512, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304 };
+
+    private final double[] bounds;
+
+    /**
+     * one bucket per bound plus one for the values above the last bound
+     */
+    private final int[] counts;
+
+    private int count;
+
+    private double sum;
+
+    private double max;
+
+    /**
+     * @param bounds the ascending upper bounds of the buckets, inclusive
+     */
+    public Histogram(double[] bounds) {
+        this.bounds = bounds;
+        this.counts = new int[bounds.length + 1];
+    }
+
+    public void add(double value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @param percentile e.g. <code>95</code>
+     * @return the upper bound of the bucket of the percentile, the maximum if
+     *         it is above the last bound, <code>0</code> without values
+     */
+    public double getPercentile(int percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * count / 100.0);
+        int seen = 0;
+        for (int bucket = 0; bucket < bounds.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(bounds[bucket], max);
+            }
+        }
+        return max;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return the count of each bucket, the last one holds the values above the last bound
+     */
+    public int[] getCounts() {
+        return counts.clone();
+    }
+
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] = 0;
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
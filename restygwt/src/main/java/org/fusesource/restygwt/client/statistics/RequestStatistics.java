@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.statistics;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.RequestTimingEvent;
+import org.fusesource.restygwt.client.RequestTimingListener;
+import org.fusesource.restygwt.client.RequestTimings;
+
+/**
+ * aggregates the {@link RequestTimingEvent}s of the requests sent by
+ * service methods per endpoint, i.e. service interface and method. the
+ * statistics of an endpoint are histograms with fixed buckets, so the memory
+ * only grows with the number of endpoints. requests not sent by a service
+ * method are not taken into account, e.g. the ones of a
+ * {@link StatisticsFlusher}.
+ *
+ * <pre>
+ * RequestStatistics statistics = new RequestStatistics();
+ * RequestTimings.addListener(statistics);
+ * </pre>
+ *
+ * @see RequestTimings#addListener(RequestTimingListener)
+ */
+public class RequestStatistics implements RequestTimingListener {
+
+    private final Map<String, EndpointStatistics> endpoints = new LinkedHashMap<String, EndpointStatistics>();
+
+    @Override
+    public void onTiming(RequestTimingEvent event) {
+        if (event.getServiceInterface() == null) {
+            return;
+        }
+        EndpointStatistics statistics = endpoint(event.getServiceInterface() + "#" + event.getServiceMethod());
+        switch (event.getPhase()) {
+            case NETWORK:
+                statistics.getLatency().add(event.getDuration());
+                Method method = event.getMethod();
+                if (method.getResponse() != null && method.getResponse().getText() != null) {
+                    statistics.getResponseSize().add(method.getResponse().getText().length());
+                }
+                break;
+            case PARSE:
+                statistics.getParseTime().add(event.getDuration());
+                break;
+            case DECODE:
+                statistics.getDecodeTime().add(event.getDuration());
+                break;
+            case CALLBACK:
+                statistics.requests++;
+                if (event.isFailure()) {
+                    statistics.errors++;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param endpoint the service interface and method, e.g. <code>com.acme.client.ContactService#getContact</code>
+     * @return the statistics of the endpoint, <code>null</code> if it sent no request yet
+     */
+    public EndpointStatistics getStatistics(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    public Collection<EndpointStatistics> getEndpoints() {
+        return endpoints.values();
+    }
+
+    /**
+     * start over, e.g. after the statistics were reported
+     */
+    public void reset() {
+        for (EndpointStatistics statistics : endpoints.values()) {
+            statistics.reset();
+        }
+    }
+
+    private EndpointStatistics endpoint(String endpoint) {
+        EndpointStatistics statistics = endpoints.get(endpoint);
+        if (statistics == null) {
+            statistics = new EndpointStatistics(endpoint);
+            endpoints.put(endpoint, statistics);
+        }
+        return statistics;
+    }
+}
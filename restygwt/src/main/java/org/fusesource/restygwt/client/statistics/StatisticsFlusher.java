@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.statistics;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.Dispatcher;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Resource;
+import org.fusesource.restygwt.client.TextCallback;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.logging.client.LogConfiguration;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * reports the {@link RequestStatistics} periodically: one POST of a compact
+ * json summary of all endpoints which got requests since the last report,
+ * then the statistics start over. the summary of an endpoint holds the
+ * number of requests and errors and the 50th, 95th and 99th percentile,
+ * maximum and mean of the latency, response size, parse and decode time:
+ *
+ * <pre>
+ * {"endpoints":[{"endpoint":"com.acme.client.ContactService#getContact","requests":12,"errors":1,
+ *   "latency":{"p50":100,"p95":200,"p99":312.4,"max":312.4,"mean":92.3},"size":{...},"parse":{...},"decode":{...}}]}
+ * </pre>
+ *
+ * the report goes through the {@link Dispatcher} of the flusher, the default
+ * dispatcher if it has none, so it passes the same filters as any request.
+ * a report which fails is dropped.
+ */
+public class StatisticsFlusher {
+
+    public static final int DEFAULT_PERIOD_MILLIS = 60000;
+
+    private final RequestStatistics statistics;
+
+    private final Resource resource;
+
+    private Dispatcher dispatcher;
+
+    private Timer timer;
+
+    /**
+     * @param resource where the reports are posted to
+     */
+    public StatisticsFlusher(RequestStatistics statistics, Resource resource) {
+        this.statistics = statistics;
+        this.resource = resource;
+    }
+
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * report every {@link #DEFAULT_PERIOD_MILLIS}
+     */
+    public void start() {
+        start(DEFAULT_PERIOD_MILLIS);
+    }
+
+    /**
+     * report periodically, until {@link #stop()}
+     */
+    public void start(int periodMillis) {
+        stop();
+        timer = new Timer() {
+
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        timer.scheduleRepeating(periodMillis);
+    }
+
+    public void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * report right away, e.g. before the page is left. nothing is sent
+     * without any requests since the last report.
+     */
+    public void flush() {
+        String summary = getSummary();
+        if (summary == null) {
+            return;
+        }
+        statistics.reset();
+        send(summary);
+    }
+
+    /**
+     * @return the json summary of the endpoints with requests, <code>null</code> if there are none
+     */
+    public String getSummary() {
+        StringBuilder json = new StringBuilder("{\"endpoints\":[");
+        boolean empty = true;
+        for (EndpointStatistics endpoint : statistics.getEndpoints()) {
+            if (endpoint.getRequests() == 0 && endpoint.getLatency().getCount() == 0) {
+                continue;
+            }
+            if (!empty) {
+                json.append(',');
+            }
+            empty = false;
+            json.append("{\"endpoint\":").append(quote(endpoint.getEndpoint()))
+                    .append(",\"requests\":").append(endpoint.getRequests())
+                    .append(",\"errors\":").append(endpoint.getErrors());
+            append(json, "latency", endpoint.getLatency());
+            append(json, "size", endpoint.getResponseSize());
+            append(json, "parse", endpoint.getParseTime());
+            append(json, "decode", endpoint.getDecodeTime());
+            json.append('}');
+        }
+        return empty ? null : json.append("]}").toString();
+    }
+
+    /**
+     * post the summary
+     */
+    protected void send(String summary) {
+        Method method = resource.post().header(Resource.HEADER_CONTENT_TYPE, Resource.CONTENT_TYPE_JSON).text(summary);
+        if (dispatcher != null) {
+            method.setDispatcher(dispatcher);
+        }
+        method.send(new TextCallback() {
+
+            @Override
+            public void onSuccess(Method method, String response) {
+            }
+
+            @Override
+            public void onFailure(Method method, Throwable exception) {
+                if (GWT.isClient() && LogConfiguration.loggingIsEnabled()) {
+                    Logger.getLogger(StatisticsFlusher.class.getName()).log(Level.FINE,
+                            "dropping request statistics, could not send them to " + resource.getUri(), exception);
+                }
+            }
+        });
+    }
+
+    private static void append(StringBuilder json, String name, Histogram histogram) {
+        json.append(",\"").append(name).append("\":{\"p50\":").append(round(histogram.getPercentile(50)))
+                .append(",\"p95\":").append(round(histogram.getPercentile(95)))
+                .append(",\"p99\":").append(round(histogram.getPercentile(99)))
+                .append(",\"max\":").append(round(histogram.getMax()))
+                .append(",\"mean\":").append(round(histogram.getMean()))
+                .append('}');
+    }
+
+    /**
+     * @return the value with at most one decimal, without one if it is whole
+     */
+    private static String round(double value) {
+        long tenths = Math.round(value * 10);
+        return tenths % 10 == 0 ? String.valueOf(tenths / 10) : String.valueOf(tenths / 10.0);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -13,6 +13,28 @@ public interface EncoderDecoderLocator {
 
 	public String decodeExpression(JType type, String expression, Style style) throws UnableToCompleteException;
 
+	/**
+	 * @param writer the expression of the {@link org.fusesource.restygwt.client.JsonWriter}
+	 * @return the statement writing the value of the expression straight into the writer,
+	 *         <code>null</code> if the value needs to be encoded, see {@link #encodeExpression(JType, String, Style)}
+	 */
+	public String writeExpression(JType type, String expression, String writer, Style style) throws UnableToCompleteException;
+
+	/**
+	 * @param holder the expression of the parsed object or array holding the value, see {@link org.fusesource.restygwt.client.NativeJson}
+	 * @param key the expression of the name or index of the value
+	 * @return the expression reading the value straight from the parsed json,
+	 *         falls back to decoding the wrapped value
+	 */
+	public String readExpression(JType type, String holder, String key, Style style) throws UnableToCompleteException;
+
+	/**
+	 * @param json the expression of the json text
+	 * @return the expression decoding the json text in one go,
+	 *         <code>null</code> if the text needs to be parsed first
+	 */
+	public String parseExpression(JType type, String json, Style style) throws UnableToCompleteException;
+
 	//TODO remove this methods
 	public boolean hasCustomEncoderDecoder(JType type);
 
@@ -18,6 +18,8 @@
 
 package org.fusesource.restygwt.rebind;
 
+import org.fusesource.restygwt.client.JsonWriter;
+
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.github.nmorel.gwtjackson.client.ObjectMapper;
 import com.google.gwt.core.client.GWT;
@@ -48,6 +50,7 @@ public class GwtJacksonEncoderDecoderClassCreator extends BaseSourceCreator {
 
 	protected static final String JSON_VALUE_CLASS = JSONValue.class.getName();
 	protected static final String JSON_STRING_CLASS = JSONString.class.getName();
+	private static final String JSON_WRITER_CLASS = JsonWriter.class.getName();
 
 
 	protected boolean javaBeansNamingConventionEnabled;
@@ -72,14 +75,32 @@ public class GwtJacksonEncoderDecoderClassCreator extends BaseSourceCreator {
 		generateMapper();
 		generateSingleton(shortName);
 		generateEncodeMethod(source);
+		generateWriteMethod(source);
 		generateDecodeMethod(source);
+		generateParseMethod(source);
 	}
 
+	/**
+	 * the mapper is created once, on first use
+	 */
 	private void generateMapper() {
 		p();
 		p("public static interface " + GWT_JACKSON_MAPPER_IF + " extends " + OBJECT_MAPPER_CLASS + "<"
 				+ source.getParameterizedQualifiedSourceName() + "> {};");
 		p();
+		p("private static " + GWT_JACKSON_MAPPER_IF + " mapper__;");
+		p();
+		p("private static " + GWT_JACKSON_MAPPER_IF + " mapper() {").i(1);
+		{
+			p("if( mapper__ == null ) {").i(1);
+			{
+				p("mapper__ = " + GWT.class.getName() + ".create(" + GWT_JACKSON_MAPPER_IF + ".class);");
+			}
+			i(-1).p("}");
+			p("return mapper__;");
+		}
+		i(-1).p("}");
+		p();
 	}
 
 	protected void generateSingleton(String shortName) {
@@ -107,14 +128,31 @@ public class GwtJacksonEncoderDecoderClassCreator extends BaseSourceCreator {
 			}
 			i(-1).p("}");
 
-			p(GWT_JACKSON_MAPPER_IF + " mapper__ = "+GWT.class.getName()+".create(" + GWT_JACKSON_MAPPER_IF + ".class);");
-			p(" String returnStr = mapper__.write(value);");
+			p("String returnStr = mapper().write(value);");
 			p("return " + JSONParser.class.getName() + ".parseLenient(returnStr);");
 		}
 		i(-1).p("}");
 		p();
 	}
 
+	/**
+	 * the json of the mapper goes into the writer as it is, without parsing it
+	 */
+	private void generateWriteMethod(JClassType classType) {
+		p("public void write(" + source.getParameterizedQualifiedSourceName() + " value, " + JSON_WRITER_CLASS + " writer) {").i(1);
+		{
+			p("if( value==null ) {").i(1);
+			{
+				p("writer.nullValue();");
+				p("return;");
+			}
+			i(-1).p("}");
+			p("writer.jsonValue(mapper().write(value));");
+		}
+		i(-1).p("}");
+		p();
+	}
+
 	protected String getValueMethod(JClassType classType) {
 		String method = "name";
 		for (JMethod jm : classType.isEnum().getMethods()) {
@@ -136,12 +174,23 @@ public class GwtJacksonEncoderDecoderClassCreator extends BaseSourceCreator {
 			p("}");
 
 
-			p(GWT_JACKSON_MAPPER_IF + " mapper__ = "+GWT.class.getName()+".create(" + GWT_JACKSON_MAPPER_IF + ".class);");
-			p(" return (" + source.getParameterizedQualifiedSourceName() + ") mapper__.read(value.toString());");
+			p("return (" + source.getParameterizedQualifiedSourceName() + ") mapper().read(value.toString());");
 
 			i(-1).p("}");
 			p();
 		}
 	}
 
+	/**
+	 * the text of a response goes to the mapper as it is, without parsing it first
+	 */
+	private void generateParseMethod(JClassType classType) {
+		p("public " + source.getParameterizedQualifiedSourceName() + " parse(String json) {").i(1);
+		{
+			p("return (" + source.getParameterizedQualifiedSourceName() + ") mapper().read(json);");
+		}
+		i(-1).p("}");
+		p();
+	}
+
 }
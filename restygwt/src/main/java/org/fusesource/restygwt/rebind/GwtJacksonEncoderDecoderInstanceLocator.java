@@ -56,6 +56,30 @@ public class GwtJacksonEncoderDecoderInstanceLocator extends JsonEncoderDecoderI
         return encodeDecodeExpression(type, expression,"decode");
     }
     
+    /**
+     * gwt-jackson mappers write their own json, it goes into the writer as it is
+     */
+    @Override
+    public String writeExpression(JType type, String expression, String writer, Style style) throws UnableToCompleteException {
+        return encodeDecodeExpression(type, expression + ", " + writer, "write");
+    }
+
+    /**
+     * gwt-jackson mappers parse the text themselves
+     */
+    @Override
+    public String parseExpression(JType type, String json, Style style) throws UnableToCompleteException {
+        return encodeDecodeExpression(type, json, "parse");
+    }
+
+    /**
+     * gwt-jackson mappers read their own json, the values get decoded
+     */
+    @Override
+    public String readExpression(JType type, String holder, String key, Style style) throws UnableToCompleteException {
+        return decodeExpression(type, NATIVE_JSON_CLASS + ".get(" + holder + ", " + key + ")", style);
+    }
+
     private String getEncoderDecoder(JType type, TreeLogger logger) throws UnableToCompleteException {
         String rc = builtInEncoderDecoders.get(type);
         if (rc == null) {
@@ -25,12 +25,16 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.fusesource.restygwt.client.Defaults;
 import org.fusesource.restygwt.client.Json;
 import org.fusesource.restygwt.client.Json.Style;
+import org.fusesource.restygwt.client.JsonWriter;
+import org.fusesource.restygwt.client.NativeJson;
 import org.fusesource.restygwt.rebind.util.AnnotationUtils;
 import static org.fusesource.restygwt.rebind.util.AnnotationUtils.*;
 
@@ -43,6 +47,7 @@ import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeInfo.As;
 import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.ext.BadPropertyValueException;
 import com.google.gwt.core.ext.GeneratorContext;
 import com.google.gwt.core.ext.TreeLogger;
@@ -88,11 +93,20 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
     private static final String JSON_ARRAY_CLASS = JSONArray.class.getName();
     private static final String JSON_NULL_CLASS = JSONNull.class.getName();
     protected static final String JSON_STRING_CLASS = JSONString.class.getName();
+    private static final String JSON_WRITER_CLASS = JsonWriter.class.getName();
+    private static final String DEFAULTS_CLASS = Defaults.class.getName();
+    private static final String NATIVE_JSON_CLASS = NativeJson.class.getName();
+    private static final String JAVA_SCRIPT_OBJECT_CLASS = JavaScriptObject.class.getName();
 
     protected EncoderDecoderLocator locator;
 
     protected boolean javaBeansNamingConventionEnabled;
 
+    /**
+     * the enums decoded by the generated class, with the name of the method which looks up their values
+     */
+    private final Map<JClassType, String> enumLookups = new LinkedHashMap<JClassType, String>();
+
     public JsonEncoderDecoderClassCreator(TreeLogger logger, GeneratorContext context, JClassType source) {
         super(logger, context, source, JSON_ENCODER_SUFFIX);
 
@@ -127,9 +141,17 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
 
         generateSingleton(shortName);
 
+        generateTypeIndexes(source, typeInfo, possibleTypes, isLeaf);
+
         generateEncodeMethod(source, classStyle, typeInfo, railsWrapperName, possibleTypes, isLeaf, locator);
 
+        generateWriteMethod(source, classStyle, typeInfo, possibleTypes, locator);
+
         generateDecodeMethod(source, classStyle, typeInfo, railsWrapperName, possibleTypes, isLeaf, locator);
+
+        generateReadMethods(source, classStyle, typeInfo, possibleTypes, locator);
+
+        generateEnumLookups();
     }
 
     @Override
@@ -193,6 +215,60 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
         p();
     }
 
+    /**
+     * maps the classes and the type tags of the possible types onto their position in the possible
+     * types, so encode and decode can switch straight to the right branch instead of testing one
+     * type after the other
+     */
+    private void generateTypeIndexes(JClassType classType, JsonTypeInfo typeInfo, List<Subtype> possibleTypes, boolean isLeaf) {
+        if (typeInfo == null || isLeaf || null != classType.isEnum()) {
+            return;
+        }
+
+        Map<String, Integer> classIndexes = new LinkedHashMap<String, Integer>();
+        Map<String, Integer> tagIndexes = new LinkedHashMap<String, Integer>();
+        for (Subtype possibleType : possibleTypes) {
+            if (!possibleType.clazz.isAssignableTo(classType)) {
+                continue;
+            }
+            // the first possible type wins, as it did when the types got tested one after the other
+            Integer index = possibleTypes.indexOf(possibleType);
+            String className = possibleType.clazz.getQualifiedSourceName();
+            if (!classIndexes.containsKey(className)) {
+                classIndexes.put(className, index);
+            }
+            if (possibleType.tag != null && !tagIndexes.containsKey(possibleType.tag)) {
+                tagIndexes.put(possibleType.tag, index);
+            }
+        }
+
+        p("private static final java.util.Map<Class<?>, Integer> CLASS_INDEXES__ = new java.util.HashMap<Class<?>, Integer>();");
+        p("private static final java.util.Map<String, Integer> TAG_INDEXES__ = new java.util.HashMap<String, Integer>();");
+        p("static {").i(1);
+        {
+            for (Map.Entry<String, Integer> entry : classIndexes.entrySet()) {
+                p("CLASS_INDEXES__.put(" + entry.getKey() + ".class, " + entry.getValue() + ");");
+            }
+            for (Map.Entry<String, Integer> entry : tagIndexes.entrySet()) {
+                p("TAG_INDEXES__.put(" + wrap(entry.getKey()) + ", " + entry.getValue() + ");");
+            }
+        }
+        i(-1).p("}");
+        p();
+    }
+
+    /**
+     * @return the position of the given class within the possible types, or -1 if it is not one of them
+     */
+    private int getTypeIndex(JClassType classType, List<Subtype> possibleTypes) {
+        for (Subtype possibleType : possibleTypes) {
+            if (classType.equals(possibleType.clazz)) {
+                return possibleTypes.indexOf(possibleType);
+            }
+        }
+        return -1;
+    }
+
     private void generateEncodeMethod(JClassType classType,
             final Style classStyle,
             JsonTypeInfo typeInfo,
@@ -223,6 +299,11 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
                 p("rrc.put(\"" + railsWrapperName + "\" , rc);");
             }
 
+            if (!isLeaf && possibleTypes.size() > 1) {
+                p("Integer typeIndex = CLASS_INDEXES__.get(value.getClass());");
+                p("switch( typeIndex == null ? -1 : typeIndex ) {");
+            }
+
             for (Subtype possibleType : possibleTypes) {
 
                 if (!possibleType.clazz.isAssignableTo(classType)) {
@@ -231,8 +312,8 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
                 }
 
                 if (!isLeaf && possibleTypes.size() > 1) {
-                    // Generate a decoder for each possible type
-                    p("if(value.getClass().getName().equals(\"" + possibleType.clazz.getQualifiedBinaryName() + "\"))");
+                    // Generate a case for each possible type
+                    p("case " + possibleTypes.indexOf(possibleType) + ":");
                     p("{");
                 }
 
@@ -240,12 +321,6 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
                     generateEnumEncodeMethodBody(possibleType, typeInfo);
                 } else {
 
-                    // Try to find a constructor that is annotated as creator
-                    final JConstructor creator = findCreator(possibleType.clazz);
-                    final List<JField> fields = getFields(possibleType.clazz);
-
-                    List<JField> orderedFields = creator == null ? null : getOrderedFields(fields, creator);
-
                     if (typeInfo != null) {
                         switch (typeInfo.include()) {
                             case PROPERTY:
@@ -279,74 +354,24 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
 
                     p(possibleType.clazz.getParameterizedQualifiedSourceName() + " parseValue = (" + possibleType.clazz.getParameterizedQualifiedSourceName() + ")value;");
 
-                    for (final JField field : fields) {
-
-                        final String getterName = getGetterName(possibleType.clazz, field);
-
-                        boolean ignoreField = false;
-                        if(getAnnotation(possibleType.clazz, JsonIgnoreProperties.class) != null) {
-                            for(String s : getAnnotation(possibleType.clazz, JsonIgnoreProperties.class).value()) {
-                                if(s.equals(field.getName())) {
-                                    ignoreField = true;
-                                    break;
-                                }
-                            }
-                        }
-
-                        // If can ignore some fields right off the back..
-                        // if there is a creator encode only final fields with JsonProperty annotation
-                        if (ignoreField || getterName == null && (field.isStatic() || (field.isFinal() && !(creator != null && orderedFields.contains(field))) || field.isTransient()
-								|| isIgnored(field))) {
-                            continue;
-                        }
-
-                        branch("Processing field: " + field.getName(), new Branch<Void>() {
+                    for (final EncodedField field : getEncodedFields(possibleType.clazz, classStyle)) {
+                        branch("Processing field: " + field.field.getName(), new Branch<Void>() {
                             @Override
                             public Void execute() throws UnableToCompleteException {
-                                // TODO: try to get the field with a setter or
-                                // JSNI
-                                if (getterName != null || field.isDefaultAccess() || field.isProtected() || field.isPublic()) {
-
-                                    Json jsonAnnotation = getAnnotation(field, Json.class);
-                                    JsonProperty jsonPropertyAnnotation = getAnnotation(field, JsonProperty.class);
-
-                                    String name = field.getName();
-                                    String jsonName = name;
-
-                                    if (jsonAnnotation != null && jsonAnnotation.name().length() > 0) {
-                                        jsonName = jsonAnnotation.name();
-                                    }
-                                    if (jsonPropertyAnnotation != null && jsonPropertyAnnotation.value() != null && jsonPropertyAnnotation.value().length() > 0) {
-                                        jsonName = jsonPropertyAnnotation.value();
-                                    }
-
-                                    String fieldExpr = "parseValue." + name;
-                                    if (getterName != null) {
-                                        fieldExpr = "parseValue." + getterName + "()";
-                                    }
-
-                                    Style style = jsonAnnotation != null ? jsonAnnotation.style() : classStyle;
-                                    String expression = locator.encodeExpression(field.getType(), fieldExpr, style);
+                                String expression = locator.encodeExpression(field.field.getType(), field.expression, field.style);
 
-                                    
-                                    if (null != field.getType().isEnum()) {
-                                    	p("if(isNotNullAndCheckDefaults(" + fieldExpr+ ", rc, "+ wrap(jsonName) + ")) {").i(1);
-                                    }
-                                        
-                                    p("isNotNullValuePut(" + expression + ", rc, "+ wrap(jsonName) + ");");
+                                if (null != field.field.getType().isEnum()) {
+                                    p("if(isNotNullAndCheckDefaults(" + field.expression + ", rc, "+ wrap(field.jsonName) + ")) {").i(1);
+                                }
 
-                                    if (null != field.getType().isEnum()) {
-                                    	i(-1).p("}");
-                                    }
-                                    
+                                p("isNotNullValuePut(" + expression + ", rc, "+ wrap(field.jsonName) + ");");
 
-                                } else {
-                                    getLogger().log(DEBUG, "private field gets ignored: " + field.getEnclosingType().getQualifiedSourceName() + "." + field.getName());
+                                if (null != field.field.getType().isEnum()) {
+                                    i(-1).p("}");
                                 }
                                 return null;
                             }
                         });
-
                     }
 
                     if (returnWrapper) {
@@ -361,6 +386,7 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
             }
 
             if (!isLeaf && possibleTypes.size() > 1) {
+                p("}");
                 // Shouldn't get called
                 p("return null;");
             }
@@ -369,6 +395,183 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
         p();
     }
 
+    /**
+     * @return the fields of the class which get encoded, in the order of the class
+     */
+    private List<EncodedField> getEncodedFields(JClassType clazz, Style classStyle) throws UnableToCompleteException {
+        // Try to find a constructor that is annotated as creator
+        final JConstructor creator = findCreator(clazz);
+        final List<JField> fields = getFields(clazz);
+
+        List<JField> orderedFields = creator == null ? null : getOrderedFields(fields, creator);
+
+        List<EncodedField> encodedFields = new ArrayList<EncodedField>();
+        for (final JField field : fields) {
+
+            final String getterName = getGetterName(clazz, field);
+
+            boolean ignoreField = false;
+            if(getAnnotation(clazz, JsonIgnoreProperties.class) != null) {
+                for(String s : getAnnotation(clazz, JsonIgnoreProperties.class).value()) {
+                    if(s.equals(field.getName())) {
+                        ignoreField = true;
+                        break;
+                    }
+                }
+            }
+
+            // If can ignore some fields right off the back..
+            // if there is a creator encode only final fields with JsonProperty annotation
+            if (ignoreField || getterName == null && (field.isStatic() || (field.isFinal() && !(creator != null && orderedFields.contains(field))) || field.isTransient()
+                    || isIgnored(field))) {
+                continue;
+            }
+
+            // TODO: try to get the field with a setter or
+            // JSNI
+            if (getterName != null || field.isDefaultAccess() || field.isProtected() || field.isPublic()) {
+
+                Json jsonAnnotation = getAnnotation(field, Json.class);
+                JsonProperty jsonPropertyAnnotation = getAnnotation(field, JsonProperty.class);
+
+                String name = field.getName();
+                String jsonName = name;
+
+                if (jsonAnnotation != null && jsonAnnotation.name().length() > 0) {
+                    jsonName = jsonAnnotation.name();
+                }
+                if (jsonPropertyAnnotation != null && jsonPropertyAnnotation.value() != null && jsonPropertyAnnotation.value().length() > 0) {
+                    jsonName = jsonPropertyAnnotation.value();
+                }
+
+                String fieldExpr = "parseValue." + name;
+                JType valueType = field.getType();
+                if (getterName != null) {
+                    fieldExpr = "parseValue." + getterName + "()";
+                    // the getter may return a supertype of the field
+                    JMethod getter = findGetter(clazz, field, getterName);
+                    if (getter != null) {
+                        valueType = getter.getReturnType();
+                    }
+                }
+
+                Style style = jsonAnnotation != null ? jsonAnnotation.style() : classStyle;
+                encodedFields.add(new EncodedField(field, jsonName, fieldExpr, valueType, style));
+            } else {
+                getLogger().log(DEBUG, "private field gets ignored: " + field.getEnclosingType().getQualifiedSourceName() + "." + field.getName());
+            }
+        }
+        return encodedFields;
+    }
+
+    /**
+     * the <code>write</code> method puts the fields straight into the json
+     * writer. it is only generated for plain classes, the others write what
+     * <code>encode</code> returns, see
+     * {@link org.fusesource.restygwt.client.AbstractJsonEncoderDecoder#write(Object, org.fusesource.restygwt.client.JsonWriter)}.
+     */
+    private void generateWriteMethod(JClassType classType,
+            final Style classStyle,
+            JsonTypeInfo typeInfo,
+            List<Subtype> possibleTypes,
+            final EncoderDecoderLocator locator) throws UnableToCompleteException
+    {
+        if (classType.isEnum() != null || typeInfo != null || classStyle == Style.RAILS || possibleTypes.size() != 1
+                || !possibleTypes.get(0).clazz.isAssignableTo(classType)) {
+            return;
+        }
+        final JClassType clazz = possibleTypes.get(0).clazz;
+        List<EncodedField> fields = getEncodedFields(clazz, classStyle);
+        for (EncodedField field : fields) {
+            if (hasTypeParameter(field.field.getType())) {
+                // the values are declared with the type of their field
+                return;
+            }
+        }
+
+        p("public void write(" + source.getParameterizedQualifiedSourceName() + " value, " + JSON_WRITER_CLASS + " writer) {").i(1);
+        {
+            p("if( value==null ) {").i(1);
+            {
+                p("writer.nullValue();");
+                p("return;");
+            }
+            i(-1).p("}");
+            p(clazz.getParameterizedQualifiedSourceName() + " parseValue = (" + clazz.getParameterizedQualifiedSourceName() + ")value;");
+            p("writer.beginObject();");
+
+            for (final EncodedField field : fields) {
+                branch("Processing field: " + field.field.getName(), new Branch<Void>() {
+                    @Override
+                    public Void execute() throws UnableToCompleteException {
+                        JType type = field.field.getType();
+                        if (type.isPrimitive() != null) {
+                            // a char is a number, just like in the encoded json
+                            String cast = type.isPrimitive() == JPrimitiveType.CHAR ? "(int) " : "";
+                            p("writer.name(" + wrap(field.jsonName) + ").value(" + cast + field.expression + ");");
+                            return null;
+                        }
+
+                        p("{").i(1);
+                        {
+                            p(field.valueType.getParameterizedQualifiedSourceName() + " __field = " + field.expression + ";");
+                            if (Byte.class.getName().equals(type.getQualifiedSourceName())) {
+                                // like encode, which never puts a null byte
+                                p("if( __field!=null ) {").i(1);
+                            } else {
+                                p("if( __field==null ) {").i(1);
+                                {
+                                    p("if( !" + DEFAULTS_CLASS + ".doesIgnoreJsonNulls() ) {").i(1);
+                                    {
+                                        p("writer.name(" + wrap(field.jsonName) + ").nullValue();");
+                                    }
+                                    i(-1).p("}");
+                                }
+                                i(-1).p("} else {").i(1);
+                            }
+                            {
+                                p("writer.name(" + wrap(field.jsonName) + ");");
+                                String write = locator.writeExpression(type, "__field", "writer", field.style);
+                                if (write != null) {
+                                    p(write + ";");
+                                } else {
+                                    p("writer.value(" + locator.encodeExpression(type, "__field", field.style) + ");");
+                                }
+                            }
+                            i(-1).p("}");
+                        }
+                        i(-1).p("}");
+                        return null;
+                    }
+                });
+            }
+
+            p("writer.endObject();");
+        }
+        i(-1).p("}");
+        p();
+    }
+
+    private boolean hasTypeParameter(JType type) {
+        if (type.isTypeParameter() != null) {
+            return true;
+        }
+        if (type.isWildcard() != null) {
+            return hasTypeParameter(type.isWildcard().getUpperBound());
+        }
+        if (type.isArray() != null) {
+            return hasTypeParameter(type.isArray().getComponentType());
+        }
+        if (type.isParameterized() != null) {
+            for (JClassType arg : type.isParameterized().getTypeArgs()) {
+                if (hasTypeParameter(arg)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private void generateEnumEncodeMethodBody(final Subtype possibleType, final JsonTypeInfo typeInfo) {
         p("if( value==null ) {").i(1);
         {
@@ -445,6 +648,28 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
                 p("String sourceName = org.fusesource.restygwt.client.AbstractJsonEncoderDecoder.STRING.decode(object.get(" + wrap(getTypeInfoPropertyValue(typeInfo)) + "));");
             }
 
+            if (typeInfo != null && !isLeaf) {
+                if (typeInfo.include() == As.WRAPPER_OBJECT) {
+                    // the first declared subtype wins, whatever the order of the keys
+                    p("Integer typeIndex = null;");
+                    p("for( String key : object.keySet() ) {").i(1);
+                    {
+                        p("Integer keyIndex = TAG_INDEXES__.get(key);");
+                        p("if( keyIndex != null && (typeIndex == null || keyIndex < typeIndex) ) {").i(1);
+                        {
+                            p("typeIndex = keyIndex;");
+                        }
+                        i(-1).p("}");
+                    }
+                    i(-1).p("}");
+                } else {
+                    // without a type name the class itself gets decoded, if it is one of the possible types
+                    int classIndex = getTypeIndex(classType, possibleTypes);
+                    p("Integer typeIndex = sourceName == null ? " + (classIndex < 0 ? "null" : "Integer.valueOf(" + classIndex + ")") + " : TAG_INDEXES__.get(sourceName);");
+                }
+                p("switch( typeIndex == null ? -1 : typeIndex ) {");
+            }
+
             for (Subtype possibleType : possibleTypes) {
 
                 if (!possibleType.clazz.isAssignableTo(classType)) {
@@ -453,20 +678,12 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
                 }
 
                 if (typeInfo != null) {
+                    if (!isLeaf) {
+                        p("case " + possibleTypes.indexOf(possibleType) + ":");
+                        p("{");
+                    }
                     if (typeInfo.include() == As.WRAPPER_OBJECT) {
-                        if (!isLeaf) {
-                            p("if(object.containsKey(\"" + possibleType.tag + "\"))");
-                            p("{");
-                        }
                         p("object = toObjectFromWrapper(value, \"" + possibleType.tag + "\");");
-                    } else if (!isLeaf) {
-                        if (classType.equals(possibleType.clazz)) {
-                            p("if(sourceName == null || sourceName.equals(\"" + possibleType.tag + "\"))");
-                            p("{");
-                        } else {
-                            p("if(sourceName != null && sourceName.equals(\"" + possibleType.tag + "\"))");
-                            p("{");
-                        }
                     }
                 }
 
@@ -510,71 +727,12 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
                         p("" + possibleType.clazz.getParameterizedQualifiedSourceName() + " rc = new " + possibleType.clazz.getParameterizedQualifiedSourceName() + "();");
                     }
 
-                    for (final JField field : getFields(possibleType.clazz)) {
-
-                        boolean ignoreField = false;
-                        if(getAnnotation(possibleType.clazz, JsonIgnoreProperties.class) != null) {
-                            for(String s : getAnnotation(possibleType.clazz, JsonIgnoreProperties.class).value()) {
-                                if(s.equals(field.getName())) {
-                                    ignoreField = true;
-                                    break;
-                                }
-                            }
-                        }
-                        if(ignoreField) {
-                            continue;
-                        }
-
-                        if (orderedFields != null && orderedFields.contains(field)){
-                            continue;
-                        }
-
-                        final String setterName = getSetterName(field);
-
-                        // If can ignore some fields right off the back..
-                        if (setterName == null && (field.isStatic() || field.isFinal() || field.isTransient()) || isIgnored(field)) {
-                            continue;
-                        }
-
-                        branch("Processing field: " + field.getName(), new Branch<Void>() {
+                    for (final DecodedField field : getDecodedFields(possibleType.clazz, classStyle, orderedFields)) {
+                        branch("Processing field: " + field.field.getName(), new Branch<Void>() {
                             @Override
                             public Void execute() throws UnableToCompleteException {
-
-                                // TODO: try to set the field with a setter
-                                // or JSNI
-                                if (setterName != null || field.isDefaultAccess() || field.isProtected() || field.isPublic()) {
-
-                                    Json jsonAnnotation = getAnnotation(field, Json.class);
-                                    Style style = jsonAnnotation != null ? jsonAnnotation.style() : classStyle;
-                                    JsonProperty jsonPropertyAnnotation = getAnnotation(field, JsonProperty.class);
-
-                                    String name = field.getName();
-                                    String jsonName = name;
-
-                                    if (jsonAnnotation != null && jsonAnnotation.name().length() > 0) {
-                                        jsonName = jsonAnnotation.name();
-                                    }
-                                    if (jsonPropertyAnnotation != null && jsonPropertyAnnotation.value() != null && jsonPropertyAnnotation.value().length() > 0) {
-                                        jsonName = jsonPropertyAnnotation.value();
-                                    }
-
-                                    String objectGetter = "object.get(" + wrap(jsonName) + ")";
-                                    String expression = locator.decodeExpression(field.getType(), objectGetter, style);
-
-                                    boolean isShort = field.getType().isPrimitive() == JPrimitiveType.SHORT;
-                                    String defaultValue = getDefaultValue(field);
-
-                                    String methodName = isShort ? "getValueToSetForShort" : "getValueToSet";
-                                    
-                                    if (setterName != null) {
-                                    	p("rc." + setterName + "("  + methodName + "(" + expression + ", " + defaultValue + "));");
-                                    } else {
-                                    	p("rc." + name + "= " +  methodName + "(" + expression + "," + defaultValue + ");");
-                                    }
-                                    
-                                } else {
-                                    getLogger().log(DEBUG, "private field gets ignored: " + field.getEnclosingType().getQualifiedSourceName() + "." + field.getName());
-                                }
+                                String objectGetter = "object.get(" + wrap(field.jsonName) + ")";
+                                generateFieldAssignment(field, locator.decodeExpression(field.field.getType(), objectGetter, field.style));
                                 return null;
                             }
                         });
@@ -588,6 +746,7 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
             }
 
             if (typeInfo != null && !isLeaf) {
+                p("}");
                 p("return null;");
             }
             i(-1).p("}");
@@ -595,6 +754,145 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
         }
     }
 
+    /**
+     * @return the fields of the class which get decoded, without the ones the creator takes
+     */
+    private List<DecodedField> getDecodedFields(JClassType clazz, Style classStyle, List<JField> orderedFields) throws UnableToCompleteException {
+        List<DecodedField> decodedFields = new ArrayList<DecodedField>();
+        for (final JField field : getFields(clazz)) {
+
+            boolean ignoreField = false;
+            if(getAnnotation(clazz, JsonIgnoreProperties.class) != null) {
+                for(String s : getAnnotation(clazz, JsonIgnoreProperties.class).value()) {
+                    if(s.equals(field.getName())) {
+                        ignoreField = true;
+                        break;
+                    }
+                }
+            }
+            if(ignoreField) {
+                continue;
+            }
+
+            if (orderedFields != null && orderedFields.contains(field)){
+                continue;
+            }
+
+            final String setterName = getSetterName(field);
+
+            // If can ignore some fields right off the back..
+            if (setterName == null && (field.isStatic() || field.isFinal() || field.isTransient()) || isIgnored(field)) {
+                continue;
+            }
+
+            // TODO: try to set the field with a setter
+            // or JSNI
+            if (setterName != null || field.isDefaultAccess() || field.isProtected() || field.isPublic()) {
+
+                Json jsonAnnotation = getAnnotation(field, Json.class);
+                Style style = jsonAnnotation != null ? jsonAnnotation.style() : classStyle;
+                JsonProperty jsonPropertyAnnotation = getAnnotation(field, JsonProperty.class);
+
+                String jsonName = field.getName();
+
+                if (jsonAnnotation != null && jsonAnnotation.name().length() > 0) {
+                    jsonName = jsonAnnotation.name();
+                }
+                if (jsonPropertyAnnotation != null && jsonPropertyAnnotation.value() != null && jsonPropertyAnnotation.value().length() > 0) {
+                    jsonName = jsonPropertyAnnotation.value();
+                }
+                decodedFields.add(new DecodedField(field, jsonName, setterName, style));
+            } else {
+                getLogger().log(DEBUG, "private field gets ignored: " + field.getEnclosingType().getQualifiedSourceName() + "." + field.getName());
+            }
+        }
+        return decodedFields;
+    }
+
+    /**
+     * set the decoded value of the field on <code>rc</code>, a missing value leaves the default
+     */
+    private void generateFieldAssignment(DecodedField field, String expression) {
+        boolean isShort = field.field.getType().isPrimitive() == JPrimitiveType.SHORT;
+        String defaultValue = getDefaultValue(field.field);
+
+        String methodName = isShort ? "getValueToSetForShort" : "getValueToSet";
+
+        if (field.setterName != null) {
+            p("rc." + field.setterName + "("  + methodName + "(" + expression + ", " + defaultValue + "));");
+        } else {
+            p("rc." + field.field.getName() + "= " +  methodName + "(" + expression + "," + defaultValue + ");");
+        }
+    }
+
+    /**
+     * the <code>read</code> methods take the fields straight from the parsed
+     * json, see {@link org.fusesource.restygwt.client.NativeJson}. they are
+     * only generated for plain classes, the others decode the wrapped value, see
+     * {@link org.fusesource.restygwt.client.AbstractJsonEncoderDecoder#read(com.google.gwt.core.client.JavaScriptObject, String)}.
+     */
+    private void generateReadMethods(JClassType classType,
+            final Style classStyle,
+            JsonTypeInfo typeInfo,
+            List<Subtype> possibleTypes,
+            final EncoderDecoderLocator locator) throws UnableToCompleteException
+    {
+        if (classType.isEnum() != null || typeInfo != null || classStyle == Style.RAILS || possibleTypes.size() != 1
+                || !possibleTypes.get(0).clazz.isAssignableTo(classType)) {
+            return;
+        }
+        final JClassType clazz = possibleTypes.get(0).clazz;
+        if (clazz.isAbstract() || findCreator(clazz) != null) {
+            return;
+        }
+        List<DecodedField> fields = getDecodedFields(clazz, classStyle, null);
+        for (DecodedField field : fields) {
+            if (hasTypeParameter(field.field.getType())) {
+                return;
+            }
+        }
+
+        String type = source.getParameterizedQualifiedSourceName();
+        p("public " + type + " read(" + JAVA_SCRIPT_OBJECT_CLASS + " object, String name) {").i(1);
+        {
+            p("if( " + NATIVE_JSON_CLASS + ".isNull(object, name) ) {").i(1);
+            {
+                p("return null;");
+            }
+            i(-1).p("}");
+            p("return readObject(" + NATIVE_JSON_CLASS + ".getObject(object, name));");
+        }
+        i(-1).p("}");
+        p();
+        p("public " + type + " read(" + JAVA_SCRIPT_OBJECT_CLASS + " array, int index) {").i(1);
+        {
+            p("if( " + NATIVE_JSON_CLASS + ".isNull(array, index) ) {").i(1);
+            {
+                p("return null;");
+            }
+            i(-1).p("}");
+            p("return readObject(" + NATIVE_JSON_CLASS + ".getObject(array, index));");
+        }
+        i(-1).p("}");
+        p();
+        p("private " + type + " readObject(" + JAVA_SCRIPT_OBJECT_CLASS + " object) {").i(1);
+        {
+            p(clazz.getParameterizedQualifiedSourceName() + " rc = new " + clazz.getParameterizedQualifiedSourceName() + "();");
+            for (final DecodedField field : fields) {
+                branch("Processing field: " + field.field.getName(), new Branch<Void>() {
+                    @Override
+                    public Void execute() throws UnableToCompleteException {
+                        generateFieldAssignment(field, locator.readExpression(field.field.getType(), "object", wrap(field.jsonName), field.style));
+                        return null;
+                    }
+                });
+            }
+            p("return rc;");
+        }
+        i(-1).p("}");
+        p();
+    }
+
     private void generateEnumDecodeMethodBody(JClassType classType) {
         p(JSON_VALUE_CLASS + " str = object.get(\"name\");");
         p("if( null == str || str.isString() == null ) {").i(1);
@@ -606,7 +904,15 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
     }
 
     private String getDefaultValue(JField field) {
-        return field.getType().isPrimitive() == null ? "null" : field.getType().isPrimitive().getUninitializedFieldExpression() + "";
+        JPrimitiveType primitive = field.getType().isPrimitive();
+        if (primitive == null) {
+            return "null";
+        }
+        // a plain 0 is an int, getValueToSet could not infer a Character or Byte from it
+        if (primitive == JPrimitiveType.CHAR || primitive == JPrimitiveType.BYTE) {
+            return "(" + primitive.getSimpleSourceName() + ") " + primitive.getUninitializedFieldExpression();
+        }
+        return primitive.getUninitializedFieldExpression() + "";
     }
 
     protected void generateEnumDecodeMethod(JClassType classType, String jsonValueClass)
@@ -640,16 +946,56 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
             p("return Enum.valueOf(" + className + ".class, " + value + ");").i(-1);
         }
         else {
-            p("for(" + className + " v: " + className + ".values()) {").i(1);
+            String lookup = enumLookups.get(classType);
+            if (lookup == null) {
+                lookup = "enumLookup" + enumLookups.size();
+                enumLookups.put(classType, lookup);
+            }
+            p(className + " v = " + lookup + "().get(" + value + ");");
+            p("if( v == null ) {").i(1);
             {
-                p("if(v." + method + "().equals(" + value + ")) {").i(1);
+                p("throw new DecodingException(\"can not find enum for given value: \"+" + value + ");").i(-1);
+            }
+            p("}");
+            p("return v;").i(-1);
+        }
+    }
+
+    /**
+     * generates for each decoded enum a map from the json values onto the constants. it gets built
+     * on the first decode, so the following ones neither scan the values nor allocate anything.
+     */
+    private void generateEnumLookups() {
+        for (Map.Entry<JClassType, String> entry : enumLookups.entrySet()) {
+            String className = entry.getKey().getParameterizedQualifiedSourceName();
+            String mapType = "java.util.Map<Object, " + className + ">";
+            String method = getValueMethod(entry.getKey());
+            String lookup = entry.getValue();
+
+            p("private static " + mapType + " " + lookup + "__;");
+            p();
+            p("private static " + mapType + " " + lookup + "() {").i(1);
+            {
+                p("if( " + lookup + "__ == null ) {").i(1);
                 {
-                    p("return v;").i(-1);
+                    p(mapType + " values = new java.util.HashMap<Object, " + className + ">();");
+                    p("for(" + className + " v: " + className + ".values()) {").i(1);
+                    {
+                        // the first constant with a value wins, as it did when scanning the values
+                        p("if( !values.containsKey(v." + method + "()) ) {").i(1);
+                        {
+                            p("values.put(v." + method + "(), v);");
+                        }
+                        i(-1).p("}");
+                    }
+                    i(-1).p("}");
+                    p(lookup + "__ = values;");
                 }
-                p("}").i(-1);
+                i(-1).p("}");
+                p("return " + lookup + "__;");
             }
-            p("}");
-            p("throw new DecodingException(\"can not find enum for given value: \"+" + value + ");").i(-1);
+            i(-1).p("}");
+            p();
         }
     }
 
@@ -833,6 +1179,22 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
      * @param isSetter
      * @return
      */
+    /**
+     * @return the getter of the field, declared by the class or one of its superclasses
+     */
+    private JMethod findGetter(JClassType type, JField field, String getterName) {
+        if (field instanceof DummyJField) {
+            return ((DummyJField) field).getGetterMethod();
+        }
+        for (JClassType t = type; t != null; t = t.getSuperclass()) {
+            JMethod m = t.findMethod(getterName, new JType[] {});
+            if (m != null) {
+                return m;
+            }
+        }
+        return null;
+    }
+
     private boolean exists(JClassType type, JField field, String fieldName, boolean isSetter) {
         if ( field instanceof DummyJField ){
                return true; 
@@ -1018,6 +1380,45 @@ public class JsonEncoderDecoderClassCreator extends BaseSourceCreator {
         return !(source.getSubtypes() != null && source.getSubtypes().length > 0);
     }
 
+    /**
+     * a field which gets decoded, with its json name and its setter if there is one
+     */
+    private static class DecodedField {
+        final JField field;
+        final String jsonName;
+        final String setterName;
+        final Style style;
+
+        DecodedField(JField field, String jsonName, String setterName, Style style) {
+            this.field = field;
+            this.jsonName = jsonName;
+            this.setterName = setterName;
+            this.style = style;
+        }
+    }
+
+    /**
+     * a field which gets encoded, with its json name and the expression of its value
+     */
+    private static class EncodedField {
+        final JField field;
+        final String jsonName;
+        final String expression;
+        /**
+         * the type of the expression, the return type of the getter if there is one
+         */
+        final JType valueType;
+        final Style style;
+
+        EncodedField(JField field, String jsonName, String expression, JType valueType, Style style) {
+            this.field = field;
+            this.jsonName = jsonName;
+            this.expression = expression;
+            this.valueType = valueType;
+            this.style = style;
+        }
+    }
+
     public static class Subtype implements Comparable<Subtype> {
     final String tag;
     final JClassType clazz;
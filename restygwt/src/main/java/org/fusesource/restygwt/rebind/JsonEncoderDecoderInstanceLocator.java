@@ -38,6 +38,7 @@ import org.fusesource.restygwt.client.AbstractJsonEncoderDecoder;
 import org.fusesource.restygwt.client.AbstractNestedJsonEncoderDecoder;
 import org.fusesource.restygwt.client.Json;
 import org.fusesource.restygwt.client.Json.Style;
+import org.fusesource.restygwt.client.NativeJson;
 import org.fusesource.restygwt.client.ObjectEncoderDecoder;
 
 import com.google.gwt.core.ext.BadPropertyValueException;
@@ -60,6 +61,7 @@ public class JsonEncoderDecoderInstanceLocator implements EncoderDecoderLocator
     public static final String JSON_ENCODER_DECODER_CLASS = AbstractJsonEncoderDecoder.class.getName();
     public static final String JSON_NESTED_ENCODER_DECODER_CLASS = AbstractNestedJsonEncoderDecoder.class.getName();
     public static final String JSON_CLASS = Json.class.getName();
+    public static final String NATIVE_JSON_CLASS = NativeJson.class.getName();
     public static final String CUSTOM_SERIALIZER_GENERATORS = "org.fusesource.restygwt.restyjsonserializergenerator";
 
     public final JClassType STRING_TYPE;
@@ -199,6 +201,69 @@ public class JsonEncoderDecoderInstanceLocator implements EncoderDecoderLocator
                 + ".toList", JSON_ENCODER_DECODER_CLASS + ".toArray");
     }
 
+    /* (non-Javadoc)
+	 * @see org.fusesource.restygwt.rebind.EncoderDecoderLocator#writeExpression(com.google.gwt.core.ext.typeinfo.JType, java.lang.String, java.lang.String, org.fusesource.restygwt.client.Json.Style)
+	 */
+    @Override
+    public String writeExpression(JType type, String expression, String writer, Style style) throws UnableToCompleteException {
+        String encoderDecoder = getCustomEncoderDecoder(type);
+        if (encoderDecoder == null) {
+            encoderDecoder = getEncoderDecoder(type, logger);
+        }
+        if (encoderDecoder != null) {
+            return encoderDecoder + ".write(" + expression + ", " + writer + ")";
+        }
+
+        // maps and arrays of primitives are encoded
+        JClassType clazz = type.isClassOrInterface();
+        if (isCollectionType(clazz) && !clazz.isAssignableTo(MAP_TYPE)) {
+            encoderDecoder = isCollectionEncoderDecoder(clazz, getTypes(type), style);
+        } else if (type.isArray() != null && type.isArray().getComponentType().isPrimitive() == null) {
+            encoderDecoder = isArrayEncoderDecoder(type, style);
+        }
+        if (encoderDecoder != null) {
+            return JSON_ENCODER_DECODER_CLASS + ".write(" + expression + ", " + encoderDecoder + ", " + writer + ")";
+        }
+        return null;
+    }
+
+    /* (non-Javadoc)
+	 * @see org.fusesource.restygwt.rebind.EncoderDecoderLocator#readExpression(com.google.gwt.core.ext.typeinfo.JType, java.lang.String, java.lang.String, org.fusesource.restygwt.client.Json.Style)
+	 */
+    @Override
+    public String readExpression(JType type, String holder, String key, Style style) throws UnableToCompleteException {
+        String encoderDecoder = getCustomEncoderDecoder(type);
+        if (encoderDecoder == null) {
+            encoderDecoder = getEncoderDecoder(type, logger);
+        }
+        if (encoderDecoder != null) {
+            return encoderDecoder + ".read(" + holder + ", " + key + ")";
+        }
+
+        JClassType clazz = type.isClassOrInterface();
+        if (isCollectionType(clazz) && !clazz.isAssignableTo(MAP_TYPE)) {
+            JClassType[] types = getTypes(type);
+            encoderDecoder = isSetEncoderDecoder(clazz, types, style);
+            if (encoderDecoder != null) {
+                return JSON_ENCODER_DECODER_CLASS + ".readSet(" + holder + ", " + key + ", " + encoderDecoder + ")";
+            }
+            encoderDecoder = isCollectionEncoderDecoder(clazz, types, style);
+            if (encoderDecoder != null) {
+                return JSON_ENCODER_DECODER_CLASS + ".readList(" + holder + ", " + key + ", " + encoderDecoder + ")";
+            }
+        }
+        // maps and arrays are decoded from the wrapped value
+        return decodeExpression(type, NATIVE_JSON_CLASS + ".get(" + holder + ", " + key + ")", style);
+    }
+
+    /**
+     * the text gets parsed, the values get decoded or read
+     */
+    @Override
+    public String parseExpression(JType type, String json, Style style) throws UnableToCompleteException {
+        return null;
+    }
+
     private String encodeDecodeExpression(JType type, String expression, Style style, String encoderMethod, String mapMethod, String setMethod, String listMethod, String arrayMethod)
             throws UnableToCompleteException {
 
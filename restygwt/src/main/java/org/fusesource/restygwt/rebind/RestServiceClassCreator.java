@@ -49,20 +49,28 @@ import org.fusesource.restygwt.client.Attribute;
 import org.fusesource.restygwt.client.Defaults;
 import org.fusesource.restygwt.client.Dispatcher;
 import org.fusesource.restygwt.client.FormPostContent;
+import org.fusesource.restygwt.client.Hedge;
+import org.fusesource.restygwt.client.Idempotent;
 import org.fusesource.restygwt.client.JSONP;
 import org.fusesource.restygwt.client.Json;
 import org.fusesource.restygwt.client.Json.Style;
 import org.fusesource.restygwt.client.JsonCallback;
+import org.fusesource.restygwt.client.JsonWriter;
 import org.fusesource.restygwt.client.JsonpMethod;
 import org.fusesource.restygwt.client.Method;
 import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.NativeJson;
 import org.fusesource.restygwt.client.Options;
 import org.fusesource.restygwt.client.OverlayCallback;
+import org.fusesource.restygwt.client.Prefetcher;
+import org.fusesource.restygwt.client.RequestTimingEvent;
+import org.fusesource.restygwt.client.RequestTimings;
 import org.fusesource.restygwt.client.Resource;
 import org.fusesource.restygwt.client.ResponseFormatException;
 import org.fusesource.restygwt.client.RestService;
 import org.fusesource.restygwt.client.RestServiceProxy;
 import org.fusesource.restygwt.client.ServiceRoots;
+import org.fusesource.restygwt.client.Supersede;
 import org.fusesource.restygwt.client.TextCallback;
 import org.fusesource.restygwt.client.XmlCallback;
 
@@ -107,8 +115,12 @@ public class RestServiceClassCreator extends BaseSourceCreator {
 
     private static final String REST_SERVICE_PROXY_SUFFIX = "_Generated_RestServiceProxy_";
 
+    private static final String PREFETCHER_SUFFIX = "_Prefetcher_";
+
     private static final String PLAIN_TEXT_AUTODETECTION_CONFIGURATION_PROPERTY_NAME = "restygwt.autodetect.plainText";
 
+    private static final String NATIVE_DECODING_CONFIGURATION_PROPERTY_NAME = "restygwt.encodeDecode.useNativeDecoding";
+
     private static final String METHOD_CLASS = Method.class.getName();
     private static final String RESOURCE_CLASS = Resource.class.getName();
     private static final String DISPATCHER_CLASS = Dispatcher.class.getName();
@@ -120,11 +132,17 @@ public class RestServiceClassCreator extends BaseSourceCreator {
     private static final String JSON_OBJECT_CLASS = JSONObject.class.getName();
     private static final String JSON_VALUE_CLASS = JSONValue.class.getName();
     private static final String JSON_STRING_CLASS = JSONString.class.getName();
+    private static final String JSON_WRITER_CLASS = JsonWriter.class.getName();
+    private static final String NATIVE_JSON_CLASS = NativeJson.class.getName();
+    private static final String JAVA_SCRIPT_OBJECT_CLASS = JavaScriptObject.class.getName();
     private static final String REQUEST_EXCEPTION_CLASS = RequestException.class.getName();
     private static final String RESPONSE_FORMAT_EXCEPTION_CLASS = ResponseFormatException.class.getName();
     private static final String JSONP_METHOD_CLASS = JsonpMethod.class.getName();
     private static final String FORM_POST_CONTENT_CLASS = FormPostContent.class.getName();
     private static final String SERVICE_ROOTS_CLASS = ServiceRoots.class.getName();
+    private static final String PREFETCHER_CLASS = Prefetcher.class.getName();
+    private static final String REQUEST_TIMINGS_CLASS = RequestTimings.class.getName();
+    private static final String REQUEST_TIMING_PHASE_CLASS = RequestTimingEvent.Phase.class.getCanonicalName();
 
     /*
      * static class in which are some compile-time relevant infos.
@@ -172,6 +190,8 @@ public class RestServiceClassCreator extends BaseSourceCreator {
 
     private boolean autodetectTypeForStrings;
 
+    private boolean nativeDecoding;
+
     public RestServiceClassCreator(TreeLogger logger, GeneratorContext context, JClassType source) {
         super(logger, context, source, REST_SERVICE_PROXY_SUFFIX);
     }
@@ -215,6 +235,9 @@ public class RestServiceClassCreator extends BaseSourceCreator {
         // true, if plain text autodetection for strings should be used
         autodetectTypeForStrings = getBooleanProperty(getLogger(), context.getPropertyOracle(), PLAIN_TEXT_AUTODETECTION_CONFIGURATION_PROPERTY_NAME, false);
 
+        // true, if the responses should be read straight from the parsed javascript objects
+        nativeDecoding = getBooleanProperty(getLogger(), context.getPropertyOracle(), NATIVE_DECODING_CONFIGURATION_PROPERTY_NAME, false);
+
         locator = EncoderDecoderLocatorFactory.getEncoderDecoderInstanceLocator(context, getLogger());
 
         this.XML_CALLBACK_TYPE = find(XmlCallback.class, getLogger(), context);
@@ -294,13 +317,110 @@ public class RestServiceClassCreator extends BaseSourceCreator {
         }
         i(-1).p("}");
 
+        JClassType prefetcher = getPrefetcherType();
+
         for (JMethod method : source.getInheritableMethods()) {
+            if (isPrefetcherMethod(method)) {
+                continue;
+            }
         	JClassType iface = method.getReturnType().isInterface();
         	if(iface != null && REST_SERVICE_TYPE.isAssignableFrom(iface))
         		writeSubresourceLocatorImpl(method);
         	else
-                writeMethodImpl(method, options);
+                writeMethodImpl(method, options, false);
+        }
+
+        if (prefetcher != null) {
+            writePrefetcherImpl(prefetcher, options);
+        }
+    }
+
+    /**
+     * @return the {@link Prefetcher} the service extends, <code>null</code> if it does not
+     */
+    private JClassType getPrefetcherType() throws UnableToCompleteException {
+        for (JClassType type : source.getFlattenedSupertypeHierarchy()) {
+            if (type.getQualifiedSourceName().equals(PREFETCHER_CLASS)) {
+                JClassType[] args = type.isParameterized() == null ? null : type.isParameterized().getTypeArgs();
+                if (args == null || args.length != 1
+                        || !args[0].getErasedType().equals(source.getErasedType())) {
+                    getLogger().log(ERROR, "Invalid prefetcher. The service must extend " + PREFETCHER_CLASS + "<"
+                            + source.getQualifiedSourceName() + ">: " + source.getQualifiedSourceName());
+                    throw new UnableToCompleteException();
+                }
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPrefetcherMethod(JMethod method) {
+        return method.getEnclosingType().getQualifiedSourceName().equals(PREFETCHER_CLASS);
+    }
+
+    /**
+     * the companion sending the GET requests of the service as prefetches, see {@link Prefetcher}
+     */
+    private void writePrefetcherImpl(JClassType prefetcher, Options options) throws UnableToCompleteException {
+        String serviceType = source.getParameterizedQualifiedSourceName();
+
+        p();
+        p("private " + serviceType + " prefetcher = null;");
+        p();
+        p("public " + serviceType + " prefetch() {").i(1);
+        {
+            p("if (this.prefetcher == null) {").i(1);
+            {
+                p("this.prefetcher = new " + PREFETCHER_SUFFIX + "();");
+            }
+            i(-1).p("}");
+            p("return this.prefetcher;");
+        }
+        i(-1).p("}");
+
+        p();
+        p("private class " + PREFETCHER_SUFFIX + " implements " + serviceType + " {").i(1);
+        {
+            p("public " + serviceType + " prefetch() {").i(1);
+            {
+                p("return this;");
+            }
+            i(-1).p("}");
+
+            for (JMethod method : source.getInheritableMethods()) {
+                if (isPrefetcherMethod(method)) {
+                    continue;
+                }
+                JClassType iface = method.getReturnType().isInterface();
+                if (iface == null || !REST_SERVICE_TYPE.isAssignableFrom(iface)) {
+                    if (getRestMethod(method).equals(METHOD_GET)) {
+                        p();
+                        writeMethodImpl(method, options, true);
+                        continue;
+                    }
+                }
+                // only GET requests get prefetched, the companion just logs the others
+                p();
+                p(method.getReadableDeclaration(false, false, false, false, true) + " {").i(1);
+                {
+                    p("if (com.google.gwt.logging.client.LogConfiguration.loggingIsEnabled()) {").i(1);
+                    {
+                        p("java.util.logging.Logger.getLogger(" + wrap(PREFETCHER_CLASS) + ").fine("
+                                + wrap("no prefetch for " + source.getName() + "." + method.getName() + ", it is no GET")
+                                + ");");
+                    }
+                    i(-1).p("}");
+                    JPrimitiveType primitive = method.getReturnType().isPrimitive();
+                    if (primitive == null) {
+                        p("return null;");
+                    } else if (primitive != JPrimitiveType.VOID) {
+                        p("return " + primitive.getUninitializedFieldExpression() + ";");
+                    }
+                }
+                i(-1).p("}");
+            }
         }
+        i(-1).p("}");
     }
 
     private static String getPathFromSource(HasAnnotations annotatedType) {
@@ -397,13 +517,21 @@ public class RestServiceClassCreator extends BaseSourceCreator {
     }
 
     void writeOptions(Options options, Options classOptions) {
+        writeOptions(options, classOptions, "this");
+    }
+
+    /**
+     * @param proxy the expression of the generated proxy, the companions of the proxy
+     *        use the dispatcher of the proxy
+     */
+    private void writeOptions(Options options, Options classOptions, String proxy) {
         // configure the dispatcher
         if (options != null && options.dispatcher() != Dispatcher.class) {
             // use the dispatcher configured for the method.
             p("__method.setDispatcher(" + options.dispatcher().getName() + ".INSTANCE);");
         } else {
             // use the default dispatcher configured for the service..
-            p("__method.setDispatcher(this.dispatcher);");
+            p("__method.setDispatcher(" + proxy + ".dispatcher);");
         }
 
         // configure the expected statuses..
@@ -423,9 +551,50 @@ public class RestServiceClassCreator extends BaseSourceCreator {
             // Using class level defined value
             p("__method.timeout(" + classOptions.timeout() + ");");
         }
+
+        // configure the priority
+        if (options != null && options.priority() != 0) {
+            // Using method level defined value
+            p("__method.addData(" + wrap(Options.PRIORITY_KEY) + ", " + wrap(String.valueOf(options.priority())) + ");");
+        } else if (classOptions != null && classOptions.priority() != 0) {
+            // Using class level defined value
+            p("__method.addData(" + wrap(Options.PRIORITY_KEY) + ", " + wrap(String.valueOf(classOptions.priority())) + ");");
+        }
+
+        // tell the service root, the resource of the service is resolved against it
+        if (classOptions != null && !classOptions.serviceRootKey().isEmpty()) {
+            p("__method.addData(" + wrap(Options.SERVICE_ROOT_KEY) + ", " + wrap(classOptions.serviceRootKey()) + ");");
+        }
+    }
+
+    void writeSupersede(JMethod method) {
+        Supersede supersede = findAnnotationOnMethodOrEnclosingType(method, Supersede.class);
+        if (supersede != null) {
+            // without a group each method only supersedes its own requests
+            String group = supersede.group().length() > 0 ? supersede.group()
+                    : method.getEnclosingType().getQualifiedSourceName() + "#" + method.getName();
+            p("__method.addData(" + wrap(Supersede.GROUP_KEY) + ", " + wrap(group) + ");");
+        }
     }
 
-    private void writeMethodImpl(JMethod method, Options classOptions) throws UnableToCompleteException {
+    void writeHedge(JMethod method) {
+        Hedge hedge = findAnnotationOnMethodOrEnclosingType(method, Hedge.class);
+        if (hedge != null) {
+            p("__method.addData(" + wrap(Hedge.KEY) + ", " + wrap(String.valueOf(hedge.delay())) + ");");
+        }
+    }
+
+    void writeIdempotent(JMethod method) {
+        if (findAnnotationOnMethodOrEnclosingType(method, Idempotent.class) != null) {
+            p("__method.addData(" + wrap(Idempotent.KEY) + ", \"true\");");
+        }
+    }
+
+    /**
+     * @param prefetch write the method of the prefetching companion, it sends the same request
+     *        with {@link Method#prefetch()} and ignores the callback
+     */
+    private void writeMethodImpl(JMethod method, Options classOptions, boolean prefetch) throws UnableToCompleteException {
         boolean returnRequest = false;
         if (method.getReturnType() != JPrimitiveType.VOID) {
             if (!method.getReturnType().getQualifiedSourceName().equals(Request.class.getName()) &&
@@ -577,7 +746,14 @@ public class RestServiceClassCreator extends BaseSourceCreator {
                 }
             }
 
-            writeOptions(options, classOptions);
+            writeOptions(options, classOptions, prefetch ? shortName + ".this" : "this");
+            p("__method.serviceMethod(" + wrap(source.getQualifiedSourceName()) + ", " + wrap(method.getName()) + ");");
+            if (!prefetch) {
+                // a prefetch must neither cancel the requests of its group nor send duplicates
+                writeSupersede(method);
+                writeHedge(method);
+            }
+            writeIdempotent(method);
 
             String contentTypeHeaderValue = null;
 
@@ -669,10 +845,18 @@ public class RestServiceClassCreator extends BaseSourceCreator {
                     jsonAnnotation = getAnnotation(contentArg, Json.class);
                     Style style = jsonAnnotation != null ? jsonAnnotation.style() : classStyle;
 
-                    // example:
-                    // .json(Listings$_Generated_JsonEncoder_$.INSTANCE.encode(arg0)
-                    // )
-                    p("__method.json(" + locator.encodeExpression(contentClass, contentArg.getName(), style) + ");");
+                    // the body is only sent, write it straight into a string if the locator can
+                    String write = locator.writeExpression(contentClass, contentArg.getName(), "__writer", style);
+                    if (write != null) {
+                        p(JSON_WRITER_CLASS + " __writer = new " + JSON_WRITER_CLASS + "();");
+                        p(write + ";");
+                        p("__method.json(__writer);");
+                    } else {
+                        // example:
+                        // .json(Listings$_Generated_JsonEncoder_$.INSTANCE.encode(arg0)
+                        // )
+                        p("__method.json(" + locator.encodeExpression(contentClass, contentArg.getName(), style) + ");");
+                    }
                 }
             }
 
@@ -708,7 +892,13 @@ public class RestServiceClassCreator extends BaseSourceCreator {
             }
 
 
-            if (acceptTypeBuiltIn != null) {
+            if (prefetch) {
+                // nothing to decode, the cache keeps the response
+                p("__method.prefetch();");
+                if (returnRequest) {
+                    p("return null;");
+                }
+            } else if (acceptTypeBuiltIn != null) {
                 // TODO: shouldn't we also have a cach in here?
                 p(returnRequest(returnRequest,isJsonp) + "__method.send(" + callbackArg.getName() + ");");
             } else if ( isJsonp ){
@@ -756,7 +946,25 @@ public class RestServiceClassCreator extends BaseSourceCreator {
                                 {
                                     jsonAnnotation = getAnnotation(method, Json.class);
                                     Style style = jsonAnnotation != null ? jsonAnnotation.style() : classStyle;
-                                    p("return " + locator.decodeExpression(resultType, JSON_PARSER_CLASS + ".parse(__method.getResponse().getText())", style) + ";");
+                                    // the phases are only timed with a listener, see RequestTimings
+                                    p("double __start = " + REQUEST_TIMINGS_CLASS + ".start();");
+                                    String parse = locator.parseExpression(resultType, "__method.getResponse().getText()", style);
+                                    if (parse != null) {
+                                        // parsed and decoded in one go, the decode phase takes both
+                                        p("double __parsed = __start;");
+                                        p(resultType.getParameterizedQualifiedSourceName() + " __result = " + parse + ";");
+                                    } else if (nativeDecoding) {
+                                        // the document is at index 0, see NativeJson.parse
+                                        p(JAVA_SCRIPT_OBJECT_CLASS + " __json = " + NATIVE_JSON_CLASS + ".parse(__method.getResponse().getText());");
+                                        p("double __parsed = " + REQUEST_TIMINGS_CLASS + ".record(__method, " + REQUEST_TIMING_PHASE_CLASS + ".PARSE, __start);");
+                                        p(resultType.getParameterizedQualifiedSourceName() + " __result = " + locator.readExpression(resultType, "__json", "0", style) + ";");
+                                    } else {
+                                        p(JSON_VALUE_CLASS + " __json = " + JSON_PARSER_CLASS + ".parse(__method.getResponse().getText());");
+                                        p("double __parsed = " + REQUEST_TIMINGS_CLASS + ".record(__method, " + REQUEST_TIMING_PHASE_CLASS + ".PARSE, __start);");
+                                        p(resultType.getParameterizedQualifiedSourceName() + " __result = " + locator.decodeExpression(resultType, "__json", style) + ";");
+                                    }
+                                    p(REQUEST_TIMINGS_CLASS + ".record(__method, " + REQUEST_TIMING_PHASE_CLASS + ".DECODE, __parsed);");
+                                    p("return __result;");
                                 }
                                 i(-1).p("} catch (Throwable __e) {").i(1);
                                 {
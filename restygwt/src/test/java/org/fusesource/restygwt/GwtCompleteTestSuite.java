@@ -19,6 +19,7 @@
 package org.fusesource.restygwt;
 
 import org.fusesource.restygwt.client.basic.BasicGwtJacksonTestGwt;
+import org.fusesource.restygwt.client.basic.BasicNativeDecodingTestGwt;
 import org.fusesource.restygwt.client.basic.BasicTestGwt;
 import org.fusesource.restygwt.client.basic.CacheCallbackTestGwt;
 import org.fusesource.restygwt.client.basic.CachingTestGwt;
@@ -34,17 +35,27 @@ import org.fusesource.restygwt.client.basic.JsonpTestGwt;
 import org.fusesource.restygwt.client.basic.ParameterizedTypeDTO;
 import org.fusesource.restygwt.client.basic.ParameterizedTypeServiceInterfaces;
 import org.fusesource.restygwt.client.basic.PathParamTestGwt;
+import org.fusesource.restygwt.client.basic.PrefetchTestGwt;
 import org.fusesource.restygwt.client.basic.QueryParamTestGwt;
+import org.fusesource.restygwt.client.basic.RequestTimingTestGwt;
 import org.fusesource.restygwt.client.basic.ResourcePassesHeadersTestGwt;
 import org.fusesource.restygwt.client.basic.ResourceTestGwt;
 import org.fusesource.restygwt.client.basic.SubResourceClientGeneration;
 import org.fusesource.restygwt.client.basic.TimeoutTestGwt;
+import org.fusesource.restygwt.client.cache.PersistentQueueableCacheStorageTestGwt;
+import org.fusesource.restygwt.client.cache.VolatileQueueableCacheStorageBenchmarkTestGwt;
 import org.fusesource.restygwt.client.cache.VolatileQueueableCacheStorageTestGwt;
 import org.fusesource.restygwt.client.codec.EncoderDecoderTestGwt;
+import org.fusesource.restygwt.client.codec.EnumDecodingBenchmarkTestGwt;
 import org.fusesource.restygwt.client.codec.InnerClassesEncoderDecoderTestGwt;
 import org.fusesource.restygwt.client.codec.JsonIgnoreEncoderTestGwt;
+import org.fusesource.restygwt.client.codec.JsonWriterBenchmarkTestGwt;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt;
 import org.fusesource.restygwt.client.codec.MapInRestServiceEncoderDecoderTestGwt;
+import org.fusesource.restygwt.client.codec.NativeJsonBenchmarkTestGwt;
+import org.fusesource.restygwt.client.codec.NativeJsonTestGwt;
 import org.fusesource.restygwt.client.codec.PolymorphicEncoderDecoderTestGwt;
+import org.fusesource.restygwt.client.codec.WideHierarchyBenchmarkTestGwt;
 import org.fusesource.restygwt.client.complex.JsonTypeIdResolver;
 import org.fusesource.restygwt.client.complex.string.StringEncoderDecoderAutodetectPlainTextTestGwt;
 import org.fusesource.restygwt.client.complex.string.StringEncoderDecoderTestGwt;
@@ -80,22 +91,33 @@ public class GwtCompleteTestSuite extends TestCase {
         GWTTestSuite suite = new GWTTestSuite("all GwtTestCases but AnnotationResolver");
 
         suite.addTestSuite(BasicGwtJacksonTestGwt.class);
+        suite.addTestSuite(BasicNativeDecodingTestGwt.class);
         suite.addTestSuite(BasicTestGwt.class);
         // keep the cache-callback at the beginning to get it pass
         // TODO why ? and what goes wrong when at located at the end ?
         suite.addTestSuite(CacheCallbackTestGwt.class);
         suite.addTestSuite(InnerClassesEncoderDecoderTestGwt.class);
         suite.addTestSuite(MapInRestServiceEncoderDecoderTestGwt.class);
+        suite.addTestSuite(NativeJsonTestGwt.class);
+        suite.addTestSuite(NativeJsonBenchmarkTestGwt.class);
         suite.addTestSuite(EncoderDecoderTestGwt.class);
+        suite.addTestSuite(EnumDecodingBenchmarkTestGwt.class);
         suite.addTestSuite(PolymorphicEncoderDecoderTestGwt.class);
+        suite.addTestSuite(WideHierarchyBenchmarkTestGwt.class);
         suite.addTestSuite(JsonIgnoreEncoderTestGwt.class);
+        suite.addTestSuite(JsonWriterTestGwt.class);
+        suite.addTestSuite(JsonWriterBenchmarkTestGwt.class);
 
         suite.addTestSuite(FlakyTestGwt.class);
         suite.addTestSuite(TimeoutTestGwt.class);
         suite.addTestSuite(CachingTestGwt.class);
+        suite.addTestSuite(PrefetchTestGwt.class);
+        suite.addTestSuite(RequestTimingTestGwt.class);
         suite.addTestSuite(ResourceTestGwt.class);
         suite.addTestSuite(ResourcePassesHeadersTestGwt.class);
         suite.addTestSuite(VolatileQueueableCacheStorageTestGwt.class);
+        suite.addTestSuite(VolatileQueueableCacheStorageBenchmarkTestGwt.class);
+        suite.addTestSuite(PersistentQueueableCacheStorageTestGwt.class);
         suite.addTestSuite(FailingTestGwt.class);
         suite.addTestSuite(GenericsTestGwt.class);
         suite.addTestSuite(ParameterizedTypeDTO.class);
@@ -36,4 +36,32 @@ public class BasicGwtJacksonTestGwt extends BasicTestGwt {
         return "org.fusesource.restygwt.BasicGwtJacksonTestGwt";
     }
 
+    /**
+     * the json of the mapper is sent as it is
+     */
+    public void testObjectPost() {
+        Resource resource = new Resource(GWT.getModuleBaseURL() + "api");
+
+        ExampleService service = GWT.create(ExampleService.class);
+        ((RestServiceProxy) service).setResource(resource);
+
+        ExampleDto dto = new ExampleDto();
+        dto.name = "posted";
+        service.storeDto(dto, new MethodCallback<Void>() {
+            @Override
+            public void onSuccess(Method method, Void response) {
+                String json = method.builder.getRequestData();
+                assertTrue(json, json.startsWith("{") && json.contains("\"name\":\"posted\""));
+                finishTest();
+            }
+
+            @Override
+            public void onFailure(Method method, Throwable exception) {
+                fail(exception.toString());
+            }
+        });
+
+        delayTestFinish(10000);
+    }
+
 }
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.basic;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+
+import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.Prefetcher;
+import org.fusesource.restygwt.client.RestService;
+
+import com.google.gwt.http.client.Request;
+
+public interface PrefetchService extends RestService, Prefetcher<PrefetchService> {
+
+    @GET
+    @Path("/dto")
+    void getExampleDto(@QueryParam("name") String name, MethodCallback<ExampleDto> callback);
+
+    @GET
+    @Path("/dto")
+    Request getExampleDtoCancelable(@QueryParam("name") String name, MethodCallback<ExampleDto> callback);
+
+    @POST
+    @Path("/store")
+    void storeDto(ExampleDto exampleDto, MethodCallback<Void> callback);
+}
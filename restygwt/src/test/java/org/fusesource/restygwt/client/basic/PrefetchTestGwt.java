@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.basic;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.Resource;
+import org.fusesource.restygwt.client.RestServiceProxy;
+import org.fusesource.restygwt.client.cache.QueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.VolatileQueueableCacheStorage;
+import org.fusesource.restygwt.client.callback.CachingCallbackFilter;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+import org.fusesource.restygwt.client.callback.DefaultCallbackFactory;
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+import org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.user.client.Timer;
+
+public class PrefetchTestGwt extends GWTTestCase {
+
+    private PrefetchService service;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.CachingTestGwt";
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        QueueableCacheStorage cache = new VolatileQueueableCacheStorage();
+        CallbackFactory callbackFactory = new DefaultCallbackFactory(new CachingCallbackFilter(cache));
+
+        service = GWT.create(PrefetchService.class);
+        ((RestServiceProxy) service).setResource(new Resource(GWT.getModuleBaseURL() + "prefetch"));
+        ((RestServiceProxy) service).setDispatcher(
+                new DefaultFilterawareDispatcher(new CachingDispatcherFilter(cache, callbackFactory)));
+    }
+
+    public void testPrefetchFillsTheCache() {
+        countContacts(new Counted() {
+
+            @Override
+            void contacts(final int before) {
+                // the second one is dropped, the response is on its way
+                service.prefetch().getExampleDto("prefetched", null);
+                assertNull(service.prefetch().getExampleDtoCancelable("prefetched", null));
+
+                new Timer() {
+
+                    @Override
+                    public void run() {
+                        service.getExampleDto("prefetched", new MethodCallback<ExampleDto>() {
+
+                            @Override
+                            public void onSuccess(Method method, ExampleDto response) {
+                                assertEquals("myName", response.name);
+                                countContacts(new Counted() {
+
+                                    @Override
+                                    void contacts(int after) {
+                                        assertEquals(before + 1, after);
+                                        finishTest();
+                                    }
+                                });
+                            }
+
+                            @Override
+                            public void onFailure(Method method, Throwable exception) {
+                                fail(exception.getMessage());
+                            }
+                        });
+                    }
+                }.schedule(1000);
+            }
+        });
+        delayTestFinish(10000);
+    }
+
+    public void testOnlyGetIsPrefetched() {
+        // a POST is no prefetch, nothing gets sent
+        service.prefetch().storeDto(new ExampleDto(), null);
+        assertSame(service.prefetch(), service.prefetch().prefetch());
+    }
+
+    private abstract static class Counted {
+        abstract void contacts(int count);
+    }
+
+    private void countContacts(final Counted counted) {
+        try {
+            new RequestBuilder(RequestBuilder.GET, GWT.getModuleBaseURL() + "prefetch/getnumberofcontacts")
+                    .sendRequest("", new RequestCallback() {
+
+                @Override
+                public void onResponseReceived(Request request, Response response) {
+                    counted.contacts(Integer.parseInt(response.getText()));
+                }
+
+                @Override
+                public void onError(Request request, Throwable exception) {
+                    fail(exception.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+}
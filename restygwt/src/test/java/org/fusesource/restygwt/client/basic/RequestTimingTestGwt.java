@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.RequestTimingEvent;
+import org.fusesource.restygwt.client.RequestTimingEvent.Phase;
+import org.fusesource.restygwt.client.RequestTimingListener;
+import org.fusesource.restygwt.client.RequestTimings;
+import org.fusesource.restygwt.client.Resource;
+import org.fusesource.restygwt.client.RestServiceProxy;
+import org.fusesource.restygwt.client.cache.QueueableCacheStorage;
+import org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher;
+import org.fusesource.restygwt.client.dispatcher.DispatcherFilter;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.client.GWTTestCase;
+
+public class RequestTimingTestGwt extends GWTTestCase {
+
+    private PrefetchService service;
+
+    private RequestTimingListener listener;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.CachingTestGwt";
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        service = GWT.create(PrefetchService.class);
+        ((RestServiceProxy) service).setResource(new Resource(GWT.getModuleBaseURL() + "prefetch"));
+        ((RestServiceProxy) service).setDispatcher(new DefaultFilterawareDispatcher());
+    }
+
+    @Override
+    protected void gwtTearDown() throws Exception {
+        RequestTimings.removeListener(listener);
+    }
+
+    public void testPhasesOfServiceMethod() {
+        final List<Phase> phases = new ArrayList<Phase>();
+        final List<RequestTimingEvent> events = new ArrayList<RequestTimingEvent>();
+        listener = new RequestTimingListener() {
+
+            @Override
+            public void onTiming(RequestTimingEvent event) {
+                assertEquals(PrefetchService.class.getName(), event.getServiceInterface());
+                assertEquals("getExampleDto", event.getServiceMethod());
+                assertTrue(event.getDuration() >= 0);
+                assertFalse(event.isFailure());
+                phases.add(event.getPhase());
+                events.add(event);
+
+                if (event.getPhase() == Phase.CALLBACK) {
+                    assertEquals(Phase.DISPATCH, phases.get(0));
+                    assertEquals(Phase.NETWORK, phases.get(1));
+                    // the network phase starts where the dispatch ends
+                    assertEquals(events.get(0).getEnd(), events.get(1).getStart(), 0);
+                    assertEquals(Phase.READ, phases.get(2));
+                    assertEquals(Phase.PARSE, phases.get(3));
+                    assertEquals(Phase.DECODE, phases.get(4));
+                    assertEquals(6, phases.size());
+                    finishTest();
+                }
+            }
+        };
+        RequestTimings.addListener(listener);
+
+        service.getExampleDto("timed", new MethodCallback<ExampleDto>() {
+
+            @Override
+            public void onSuccess(Method method, ExampleDto response) {
+                assertEquals("myName", response.name);
+            }
+
+            @Override
+            public void onFailure(Method method, Throwable exception) {
+                fail(exception.getMessage());
+            }
+        });
+        delayTestFinish(10000);
+    }
+
+    public void testNoNetworkPhaseOfCachedResponse() {
+        final List<Phase> phases = new ArrayList<Phase>();
+        listener = new RequestTimingListener() {
+
+            @Override
+            public void onTiming(RequestTimingEvent event) {
+                phases.add(event.getPhase());
+            }
+        };
+        RequestTimings.addListener(listener);
+        // answers like a cache does, the request never goes on the wire
+        ((RestServiceProxy) service).setDispatcher(new DefaultFilterawareDispatcher(new DispatcherFilter() {
+
+            @Override
+            public boolean filter(Method method, RequestBuilder builder) {
+                builder.getCallback().onResponseReceived(null, new CachedResponse("{\"name\":\"myName\"}"));
+                return false;
+            }
+        }));
+
+        service.getExampleDto("cached", new MethodCallback<ExampleDto>() {
+
+            @Override
+            public void onSuccess(Method method, ExampleDto response) {
+                assertEquals("myName", response.name);
+            }
+
+            @Override
+            public void onFailure(Method method, Throwable exception) {
+                fail(exception.getMessage());
+            }
+        });
+        assertEquals("[READ, PARSE, DECODE, CALLBACK, DISPATCH]", phases.toString());
+    }
+
+    static class CachedResponse extends Response {
+
+        private final String text;
+
+        CachedResponse(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String getHeader(String header) {
+            if (QueueableCacheStorage.RESTY_CACHE_HEADER.equals(header)) {
+                return "true";
+            }
+            return Resource.HEADER_CONTENT_TYPE.equalsIgnoreCase(header) ? Resource.CONTENT_TYPE_JSON : null;
+        }
+
+        @Override
+        public Header[] getHeaders() {
+            return new Header[0];
+        }
+
+        @Override
+        public String getHeadersAsString() {
+            return "";
+        }
+
+        @Override
+        public int getStatusCode() {
+            return Response.SC_OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+    }
+
+    public void testNoTimingWithoutListener() {
+        assertFalse(RequestTimings.isEnabled());
+        assertEquals(RequestTimings.NOT_TIMED, RequestTimings.start());
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.storage.client.Storage;
+
+
+public class PersistentQueueableCacheStorageTestGwt extends GWTTestCase {
+
+    static class ResponseMock extends Response {
+
+        private final String text;
+        private final String cacheControl;
+
+        ResponseMock(String text) {
+            this(text, null);
+        }
+
+        ResponseMock(String text, String cacheControl) {
+            this.text = text;
+            this.cacheControl = cacheControl;
+        }
+
+        @Override
+        public String getHeader(String header) {
+            if (CacheControl.HEADER_CACHE_CONTROL.equalsIgnoreCase(header)) {
+                return cacheControl;
+            }
+            return "Content-Type".equalsIgnoreCase(header) ? "application/json" : null;
+        }
+
+        @Override
+        public Header[] getHeaders() {
+            return null;
+        }
+
+        @Override
+        public String getHeadersAsString() {
+            return null;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return 200;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+    }
+
+    private Storage storage;
+    private long now;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.VolatileQueueableCacheStorageTestGwt";
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        storage = Storage.getLocalStorageIfSupported();
+        assertNotNull("local storage is supported", storage);
+        storage.clear();
+        now = 1000000;
+    }
+
+    private PersistentQueueableCacheStorage cache(int quota) {
+        return new PersistentQueueableCacheStorage(storage, "1.0", quota, false) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+    }
+
+    private static String json(int items) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item ").append(i)
+                    .append("\",\"enabled\":true}");
+        }
+        return json.append("]").toString();
+    }
+
+    public void testSurvivesReload() {
+        CacheKey key = new SimpleCacheKey("GET http://localhost/api/config [null]");
+        String config = json(100);
+        new PersistentQueueableCacheStorage(storage, "1.0", 100000, true).putResult(key, new ResponseMock(config));
+
+        // a new page loads with an empty memory
+        PersistentQueueableCacheStorage reloaded = new PersistentQueueableCacheStorage(storage, "1.0", 100000, true);
+        Response cached = reloaded.getResultOrReturnNull(key);
+        assertNotNull(cached);
+        assertEquals(config, cached.getText());
+        assertEquals(200, cached.getStatusCode());
+        assertEquals("application/json", cached.getHeader("Content-Type"));
+        assertEquals("true", cached.getHeader(QueueableCacheStorage.RESTY_CACHE_HEADER));
+        assertNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("GET http://localhost/api/other [null]")));
+    }
+
+    public void testCompression() {
+        String text = json(200) + " ä中😀";
+        PersistentQueueableCacheStorage compressed = new PersistentQueueableCacheStorage(storage, "1.0", 100000, true);
+        compressed.putResult(new SimpleCacheKey("compressed"), new ResponseMock(text), "a");
+        PersistentQueueableCacheStorage plain = new PersistentQueueableCacheStorage(storage, "1.0", 100000, false);
+        plain.putResult(new SimpleCacheKey("plain"), new ResponseMock(text), "b");
+
+        assertTrue(compressed.getStoredSize("a") * 3 < plain.getStoredSize("b"));
+        assertEquals(text, new PersistentQueueableCacheStorage(storage, "1.0", 100000, false)
+                .getResultOrReturnNull(new SimpleCacheKey("compressed"), "a").getText());
+        assertEquals("", TextCompression.decompress(TextCompression.compress("")));
+    }
+
+    public void testVersion() {
+        CacheKey key = new SimpleCacheKey("GET http://localhost/api/config [null]");
+        new PersistentQueueableCacheStorage(storage, "1.0", 100000, true).putResult(key, new ResponseMock("{}"), "a");
+
+        PersistentQueueableCacheStorage release = new PersistentQueueableCacheStorage(storage, "1.1", 100000, true);
+        assertNull(release.getResultOrReturnNull(key, "a"));
+        // the stale index is dropped along with its items
+        assertEquals(0, release.getStoredSize("a"));
+        assertEquals(0, storage.getLength());
+    }
+
+    public void testQuotaPerScope() {
+        PersistentQueueableCacheStorage cache = new PersistentQueueableCacheStorage(storage, "1.0", 100000, false);
+        String text = json(10);
+        int size = text.length();
+        cache.setQuota("small", 3 * size);
+        for (int i = 0; i < 5; i++) {
+            cache.putResult(new SimpleCacheKey("small" + i), new ResponseMock(text), "small");
+            cache.putResult(new SimpleCacheKey("large" + i), new ResponseMock(text), "large");
+        }
+        assertTrue(cache.getStoredSize("small") <= 3 * size);
+        assertTrue(cache.getStoredSize("large") >= 5 * size);
+
+        PersistentQueueableCacheStorage reloaded = new PersistentQueueableCacheStorage(storage, "1.0", 100000, false);
+        // the oldest of the small scope made room for the newer ones
+        assertNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("small0"), "small"));
+        assertNotNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("small4"), "small"));
+        assertNotNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("large0"), "large"));
+    }
+
+    public void testPurgeAndRemove() {
+        PersistentQueueableCacheStorage cache = new PersistentQueueableCacheStorage(storage, "1.0", 100000, true);
+        storage.setItem("unrelated", "kept");
+        cache.putResult(new SimpleCacheKey("one"), new ResponseMock("1"), "a");
+        cache.putResult(new SimpleCacheKey("two"), new ResponseMock("2"), "b");
+        cache.putResult(new SimpleCacheKey("three"), new ResponseMock("3"));
+
+        cache.remove(new SimpleCacheKey("three"));
+        cache.purge("a");
+        PersistentQueueableCacheStorage reloaded = new PersistentQueueableCacheStorage(storage, "1.0", 100000, true);
+        assertNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("three")));
+        assertNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("one"), "a"));
+        assertNotNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("two"), "b"));
+
+        reloaded.purge();
+        assertEquals(1, storage.getLength());
+        assertEquals("kept", storage.getItem("unrelated"));
+    }
+
+    public void testExpiry() {
+        CacheKey fresh = new SimpleCacheKey("fresh");
+        CacheKey stale = new SimpleCacheKey("stale");
+        PersistentQueueableCacheStorage cache = cache(100000);
+        cache.setLifetime(60000);
+        cache.putResult(fresh, new ResponseMock("1", "max-age=3600"), "a");
+        cache.putResult(stale, new ResponseMock("2"), "a");
+
+        now += 120000;
+        assertNull(cache.getResultOrReturnNull(stale, "a"));
+        assertNotNull(cache.getResultOrReturnNull(fresh, "a"));
+
+        // the expiry survives a reload
+        cache.putResult(stale, new ResponseMock("2"), "a");
+        now += 120000;
+        PersistentQueueableCacheStorage reloaded = cache(100000);
+        assertNull(reloaded.getResultOrReturnNull(stale, "a"));
+        assertNull(storage.getItem("restygwt.cache." + stale));
+        assertNotNull(reloaded.getResultOrReturnNull(fresh, "a"));
+
+        now += 3600000;
+        assertNull(cache(100000).getResultOrReturnNull(fresh, "a"));
+        assertEquals(0, storage.getLength());
+    }
+
+    public void testNoStoreAndPrivateStayInMemory() {
+        CacheKey key = new SimpleCacheKey("account");
+        PersistentQueueableCacheStorage cache = cache(100000);
+        cache.putResult(key, new ResponseMock("1"), "a");
+        assertTrue(cache.getStoredSize("a") > 0);
+
+        cache.putResult(key, new ResponseMock("2", "private, max-age=60"), "a");
+        assertEquals("2", cache.getResultOrReturnNull(key, "a").getText());
+        // the former response is gone from the web storage as well
+        assertEquals(0, cache.getStoredSize("a"));
+        assertEquals(0, storage.getLength());
+
+        cache.putResult(new SimpleCacheKey("token"), new ResponseMock("3", "no-store"), "a");
+        assertNotNull(cache.getResultOrReturnNull(new SimpleCacheKey("token"), "a"));
+        assertEquals(0, storage.getLength());
+    }
+
+    public void testEvictionLeavesAllScopes() {
+        String text = json(10);
+        PersistentQueueableCacheStorage cache = cache(100000);
+        cache.putResult(new SimpleCacheKey("shared"), new ResponseMock(text), "small", "large");
+        int size = cache.getStoredSize("small");
+        cache.setQuota("small", 2 * size);
+        cache.putResult(new SimpleCacheKey("one"), new ResponseMock(text), "small");
+        cache.putResult(new SimpleCacheKey("two"), new ResponseMock(text), "small");
+
+        // evicted from the web storage, the index of the other scope and memory
+        assertEquals(0, cache.getStoredSize("large"));
+        assertNull(cache.getResultOrReturnNull(new SimpleCacheKey("shared"), "large"));
+        assertNull(cache.getResultOrReturnNull(new SimpleCacheKey("shared")));
+        assertTrue(cache.getStoredSize("small") <= 2 * size);
+        assertNotNull(cache.getResultOrReturnNull(new SimpleCacheKey("one"), "small"));
+    }
+
+    public void testRemoveNotLoaded() {
+        cache(100000).putResult(new SimpleCacheKey("shared"), new ResponseMock("1"), "a", "b");
+        cache(100000).putResult(new SimpleCacheKey("other"), new ResponseMock("2"), "a");
+
+        PersistentQueueableCacheStorage reloaded = cache(100000);
+        int sizeOfA = reloaded.getStoredSize("a");
+        reloaded.remove(new SimpleCacheKey("shared"), "c");
+        assertTrue(reloaded.getStoredSize("b") > 0);
+        reloaded.remove(new SimpleCacheKey("shared"), "b");
+        assertEquals(0, reloaded.getStoredSize("b"));
+        assertTrue(reloaded.getStoredSize("a") < sizeOfA);
+        // not loaded into memory to be removed
+        assertNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("shared")));
+        assertNotNull(reloaded.getResultOrReturnNull(new SimpleCacheKey("other"), "a"));
+    }
+}
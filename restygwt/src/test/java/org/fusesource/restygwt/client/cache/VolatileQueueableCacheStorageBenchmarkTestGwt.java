@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.client.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.cache.VolatileQueueableCacheStorageTestGwt.ResponseMock;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * compares put and expire throughput of the {@link VolatileQueueableCacheStorage}
+ * with the timer per cachekey it used before. it runs with the complete test suite
+ * and logs the timings.
+ */
+public class VolatileQueueableCacheStorageBenchmarkTestGwt extends GWTTestCase {
+
+    private static final Logger log = Logger.getLogger(VolatileQueueableCacheStorageBenchmarkTestGwt.class.getName());
+
+    private static final int KEYS = 5000;
+
+    private static final int LIFETIME_MS = 200;
+
+    /**
+     * the former implementation: one timer per cachekey and scope
+     */
+    static class TimerPerKeyCacheStorage extends DefaultQueueableCacheStorage {
+
+        private final List<Timer> timers = new ArrayList<Timer>();
+
+        @Override
+        protected void putResult(final CacheKey key, final Response response, final String scope) {
+            final Timer t = new Timer() {
+                @Override
+                public void run() {
+                    remove(key, scope);
+                    timers.remove(this);
+                }
+            };
+            t.schedule(LIFETIME_MS);
+            timers.add(t);
+
+            super.putResult(key, response, scope);
+        }
+    }
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.VolatileQueueableCacheStorageTestGwt";
+    }
+
+    public void testPutAndExpire() {
+        final List<CacheKey> keys = new ArrayList<CacheKey>();
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(new SimpleCacheKey("GET http://localhost/api/items/" + i));
+        }
+        final Response response = new ResponseMock();
+
+        run("timer per key", new TimerPerKeyCacheStorage(), keys, response, new Runnable() {
+
+            @Override
+            public void run() {
+                VolatileQueueableCacheStorage storage = new VolatileQueueableCacheStorage(LIFETIME_MS, 50);
+                VolatileQueueableCacheStorageBenchmarkTestGwt.this.run("single sweeper", storage, keys, response,
+                        new Runnable() {
+
+                    @Override
+                    public void run() {
+                        finishTest();
+                    }
+                });
+            }
+        });
+        delayTestFinish(60 * 1000);
+    }
+
+    private void run(final String name, final DefaultQueueableCacheStorage storage, final List<CacheKey> keys,
+            Response response, final Runnable next) {
+        final Duration duration = new Duration();
+        for (CacheKey key : keys) {
+            storage.putResult(key, response);
+        }
+        final int putMillis = duration.elapsedMillis();
+
+        // poll without touching the entries, the lookup of the volatile storage would expire them
+        new Timer() {
+
+            @Override
+            public void run() {
+                for (CacheKey key : keys) {
+                    if (storage.getStoredResult(key) != null) {
+                        return;
+                    }
+                }
+                cancel();
+                int expireMillis = duration.elapsedMillis() - putMillis - LIFETIME_MS;
+                log.info(name + ": " + KEYS + " puts in " + putMillis + "ms, all expired "
+                        + expireMillis + "ms after their lifetime");
+                next.run();
+            }
+        }.scheduleRepeating(10);
+    }
+}
@@ -213,6 +213,23 @@ public class EncoderDecoderTestGwt extends GWTTestCase {
     public interface SubWrapperCodec extends JsonEncoderDecoder<SubCredentialsWithWrapperObject> {
     }
 
+    public void testWrapperObjectWithTwoTagsDoesNotDependOnTheKeyOrder() {
+        WrapperCodec codec = GWT.create(WrapperCodec.class);
+        JSONObject base = codec.encode(new CredentialsWithWrapperObject()).isObject();
+        JSONObject sub = codec.encode(new SubCredentialsWithWrapperObject()).isObject();
+        String baseTag = base.keySet().iterator().next();
+        String subTag = sub.keySet().iterator().next();
+
+        JSONObject baseFirst = new JSONObject();
+        baseFirst.put(baseTag, base.get(baseTag));
+        baseFirst.put(subTag, sub.get(subTag));
+        JSONObject subFirst = new JSONObject();
+        subFirst.put(subTag, sub.get(subTag));
+        subFirst.put(baseTag, base.get(baseTag));
+
+        assertEquals(codec.decode(baseFirst).getClass(), codec.decode(subFirst).getClass());
+    }
+
     public void testSubtypeWrapperObject() {
         WrapperCodec codec = GWT.create(WrapperCodec.class);
         CredentialsWithWrapperObject base = new CredentialsWithWrapperObject();
@@ -1068,6 +1085,25 @@ public class EncoderDecoderTestGwt extends GWTTestCase {
         assertEquals( roundTrip.lang, Language.FRENCH );
     }
 
+    public void testEnumAndUnknownJsonValue() {
+        LangRequestCodec codec = GWT.create(LangRequestCodec.class);
+        assertEquals(Language.ENGLISH, codec.decode(JSONParser.parseStrict("{\"lang\":\"en\"}")).lang);
+        // served by the lookup the first value built
+        assertEquals(Language.FRENCH, codec.decode(JSONParser.parseStrict("{\"lang\":\"fr\"}")).lang);
+        try {
+            codec.decode(JSONParser.parseStrict("{\"lang\":\"ENGLISH\"}"));
+            fail("the constant name is not the json value");
+        } catch (JsonEncoderDecoder.DecodingException e) {
+            // expected
+        }
+        try {
+            codec.decode(JSONParser.parseStrict("{\"lang\":\"de\"}"));
+            fail("no constant has that json value");
+        } catch (JsonEncoderDecoder.DecodingException e) {
+            // expected
+        }
+    }
+
     static class WithEnum {
 
         enum Cycle { BEGIN, LIFE, END } 
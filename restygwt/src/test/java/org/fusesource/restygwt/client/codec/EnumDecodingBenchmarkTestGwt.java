@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2009-2015 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.codec;
+
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.JsonEncoderDecoder;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.json.client.JSONValue;
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * decodes a lot of values of an enum with a {@link JsonValue}. it runs with the complete
+ * test suite and logs the timings.
+ */
+public class EnumDecodingBenchmarkTestGwt extends GWTTestCase {
+
+    private static final Logger log = Logger.getLogger(EnumDecodingBenchmarkTestGwt.class.getName());
+
+    private static final int VALUES = 100000;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.EncoderDecoderTestGwt";
+    }
+
+    static enum Country {
+        AT("at"),
+        BE("be"),
+        BG("bg"),
+        CH("ch"),
+        CY("cy"),
+        CZ("cz"),
+        DE("de"),
+        DK("dk"),
+        EE("ee"),
+        ES("es"),
+        FI("fi"),
+        FR("fr"),
+        GB("gb"),
+        GR("gr"),
+        HR("hr"),
+        HU("hu"),
+        IE("ie"),
+        IS("is"),
+        IT("it"),
+        LI("li"),
+        LT("lt"),
+        LU("lu"),
+        LV("lv"),
+        MT("mt"),
+        NL("nl"),
+        NO("no"),
+        PL("pl"),
+        PT("pt"),
+        RO("ro"),
+        SE("se"),
+        SI("si"),
+        SK("sk");
+
+        private final String code;
+
+        private Country(String code) {
+            this.code = code;
+        }
+
+        @JsonValue
+        public String getCode() {
+            return code;
+        }
+    }
+
+    static interface CountryCodec extends JsonEncoderDecoder<Country> {
+    }
+
+    public void testDecode() {
+        CountryCodec codec = GWT.create(CountryCodec.class);
+        Country[] countries = Country.values();
+        JSONValue[] json = new JSONValue[countries.length];
+        for (int i = 0; i < countries.length; i++) {
+            json[i] = new JSONString(countries[i].getCode());
+        }
+
+        Duration duration = new Duration();
+        for (int i = 0; i < VALUES; i++) {
+            assertSame(countries[i % countries.length], codec.decode(json[i % countries.length]));
+        }
+        log.info(VALUES + " values of " + countries.length + " constants: " + duration.elapsedMillis() + "ms");
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.AbstractJsonEncoderDecoder;
+import org.fusesource.restygwt.client.JsonWriter;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt.Row;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt.RowCodec;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * compares encoding a list of objects to a {@link com.google.gwt.json.client.JSONValue}
+ * tree and its text with writing it through a {@link JsonWriter}. it runs with the
+ * complete test suite and logs the timings.
+ */
+public class JsonWriterBenchmarkTestGwt extends GWTTestCase {
+
+    private static final Logger log = Logger.getLogger(JsonWriterBenchmarkTestGwt.class.getName());
+
+    private static final int ROWS = 500;
+
+    private static final int ROUNDS = 3;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.EncoderDecoderTestGwt";
+    }
+
+    public void testEncode() {
+        AbstractJsonEncoderDecoder<Row> codec = GWT.create(RowCodec.class);
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(JsonWriterTestGwt.row(i));
+        }
+
+        String tree = null;
+        Duration duration = new Duration();
+        for (int i = 0; i < ROUNDS; i++) {
+            tree = AbstractJsonEncoderDecoder.toJSON(rows, codec).toString();
+        }
+        int treeMillis = duration.elapsedMillis();
+
+        String written = null;
+        duration = new Duration();
+        for (int i = 0; i < ROUNDS; i++) {
+            JsonWriter writer = new JsonWriter();
+            AbstractJsonEncoderDecoder.write(rows, codec, writer);
+            written = writer.toString();
+        }
+        int writerMillis = duration.elapsedMillis();
+
+        assertEquals(tree, JSONParser.parseStrict(written).toString());
+        log.info(ROUNDS + " x " + ROWS + " rows, " + written.length() + " chars: tree " + treeMillis
+                + "ms, writer " + writerMillis + "ms");
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.fusesource.restygwt.client.AbstractJsonEncoderDecoder;
+import org.fusesource.restygwt.client.Defaults;
+import org.fusesource.restygwt.client.JsonEncoderDecoder;
+import org.fusesource.restygwt.client.JsonWriter;
+import org.fusesource.restygwt.client.codec.EncoderDecoderTestGwt.Foo;
+import org.fusesource.restygwt.client.codec.EncoderDecoderTestGwt.FooCodec;
+import org.fusesource.restygwt.client.codec.EncoderDecoderTestGwt.MoreSpecificFieldThanConstructor;
+import org.fusesource.restygwt.client.codec.EncoderDecoderTestGwt.MoreSpecificFieldThanConstructorCodec;
+import org.fusesource.restygwt.client.codec.EncoderDecoderTestGwt.Name;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.json.client.JSONValue;
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * the json a generated encoder writes equals the one of the tree it encodes.
+ */
+public class JsonWriterTestGwt extends GWTTestCase {
+
+    enum Color {
+        RED, GREEN
+    }
+
+    static class Row {
+        public String text;
+        public int number;
+        public long big;
+        public double fraction;
+        public float ratio;
+        public boolean flag;
+        public char letter;
+        public Integer boxed;
+        public Color color;
+        public Date date;
+        @JsonProperty("renamed")
+        public String original;
+        public Name name;
+        public List<Name> names;
+        public Set<String> tags;
+        public String[] array;
+        public int[] numbers;
+        public Map<String, Integer> counts;
+        public List<List<String>> nested;
+        private String hidden;
+
+        public String getHidden() {
+            return hidden;
+        }
+
+        public void setHidden(String hidden) {
+            this.hidden = hidden;
+        }
+    }
+
+    public interface RowCodec extends JsonEncoderDecoder<Row> {
+    }
+
+    static class Boxed {
+        public Byte b;
+        public Character c;
+        public Short s;
+        public Long l;
+        public Double d;
+        public Boolean flag;
+    }
+
+    public interface BoxedCodec extends JsonEncoderDecoder<Boxed> {
+    }
+
+    private RowCodec codec;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.EncoderDecoderTestGwt";
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        codec = GWT.create(RowCodec.class);
+    }
+
+    @Override
+    protected void gwtTearDown() throws Exception {
+        Defaults.dontIgnoreJsonNulls();
+    }
+
+    static Row row(int i) {
+        Row row = new Row();
+        row.text = "row \"" + i + "\"\n\ttab \\ \u2028 \u0001 \u00e4\u00f6\u00fc";
+        row.number = i;
+        row.big = 1234567890123L + i;
+        row.fraction = i + 0.25;
+        row.ratio = 1.5f;
+        row.flag = i % 2 == 0;
+        row.letter = 'x';
+        row.color = Color.GREEN;
+        row.date = new Date(1400000000000L);
+        row.original = "original";
+        row.name = new Name();
+        row.name.name = "name " + i;
+        row.names = new ArrayList<Name>();
+        row.names.add(row.name);
+        row.names.add(null);
+        row.tags = new LinkedHashSet<String>(Arrays.asList("a", "b"));
+        row.array = new String[] { "x", null };
+        row.numbers = new int[] { 1, 2, 3 };
+        row.counts = new HashMap<String, Integer>();
+        row.counts.put("one", 1);
+        row.nested = new ArrayList<List<String>>();
+        row.nested.add(Arrays.asList("deep"));
+        row.hidden = "by getter";
+        return row;
+    }
+
+    private static void assertSameJson(JSONValue expected, String written) {
+        assertEquals(expected.toString(), JSONParser.parseStrict(written).toString());
+    }
+
+    private String write(Object value, JsonEncoderDecoder<?> codec) {
+        JsonWriter writer = new JsonWriter();
+        write(writer, value, codec);
+        return writer.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(JsonWriter writer, Object value, JsonEncoderDecoder<T> codec) {
+        ((AbstractJsonEncoderDecoder<T>) codec).write((T) value, writer);
+    }
+
+    public void testSameJsonAsTheTree() {
+        Row row = row(1);
+        assertSameJson(codec.encode(row), write(row, codec));
+    }
+
+    public void testNulls() {
+        Row row = new Row();
+        assertSameJson(codec.encode(row), write(row, codec));
+        assertTrue(write(row, codec).contains("\"text\":null"));
+
+        Defaults.ignoreJsonNulls();
+        assertSameJson(codec.encode(row), write(row, codec));
+        assertFalse(write(row, codec).contains("\"text\""));
+
+        assertEquals("null", write(null, codec));
+    }
+
+    public void testListOfRows() {
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(row(i));
+        }
+        AbstractJsonEncoderDecoder<Row> rowCodec = GWT.create(RowCodec.class);
+        JsonWriter writer = new JsonWriter();
+        AbstractJsonEncoderDecoder.write(rows, rowCodec, writer);
+        assertSameJson(AbstractJsonEncoderDecoder.toJSON(rows, rowCodec),
+                writer.toString());
+    }
+
+    public void testCodecWithoutWriteFallsBackToTheTree() {
+        FooCodec foo = GWT.create(FooCodec.class);
+        Foo value = new Foo();
+        value.bars.add("bar");
+        assertSameJson(foo.encode(value), write(value, foo));
+    }
+
+    public void testGetterOfSupertype() {
+        MoreSpecificFieldThanConstructorCodec elements = GWT.create(MoreSpecificFieldThanConstructorCodec.class);
+        MoreSpecificFieldThanConstructor value = new MoreSpecificFieldThanConstructor(
+                Collections.<String, String> singletonMap("foo", "bar"));
+        assertSameJson(elements.encode(value), write(value, elements));
+    }
+
+    public void testNullBoxedPrimitives() {
+        BoxedCodec boxed = GWT.create(BoxedCodec.class);
+        Boxed value = new Boxed();
+        assertSameJson(boxed.encode(value), write(value, boxed));
+
+        Defaults.ignoreJsonNulls();
+        assertSameJson(boxed.encode(value), write(value, boxed));
+
+        value.b = 1;
+        value.c = 'c';
+        assertSameJson(boxed.encode(value), write(value, boxed));
+    }
+}
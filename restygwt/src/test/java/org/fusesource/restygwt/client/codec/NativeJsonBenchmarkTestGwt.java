@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.AbstractJsonEncoderDecoder;
+import org.fusesource.restygwt.client.NativeJson;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt.Row;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt.RowCodec;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * compares decoding a list of objects from the {@link com.google.gwt.json.client.JSONValue}
+ * wrappers with reading it straight from the parsed json, see {@link NativeJson}. it runs
+ * with the complete test suite and logs the timings.
+ */
+public class NativeJsonBenchmarkTestGwt extends GWTTestCase {
+
+    private static final Logger log = Logger.getLogger(NativeJsonBenchmarkTestGwt.class.getName());
+
+    private static final int ROWS = 500;
+
+    private static final int ROUNDS = 3;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.EncoderDecoderTestGwt";
+    }
+
+    public void testDecode() {
+        AbstractJsonEncoderDecoder<Row> codec = GWT.create(RowCodec.class);
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(JsonWriterTestGwt.row(i));
+        }
+        String json = AbstractJsonEncoderDecoder.toJSON(rows, codec).toString();
+
+        List<Row> decoded = null;
+        Duration duration = new Duration();
+        for (int i = 0; i < ROUNDS; i++) {
+            decoded = AbstractJsonEncoderDecoder.toList(JSONParser.parseStrict(json), codec);
+        }
+        int treeMillis = duration.elapsedMillis();
+
+        List<Row> read = null;
+        duration = new Duration();
+        for (int i = 0; i < ROUNDS; i++) {
+            read = AbstractJsonEncoderDecoder.readList(NativeJson.parse(json), 0, codec);
+        }
+        int nativeMillis = duration.elapsedMillis();
+
+        assertEquals(AbstractJsonEncoderDecoder.toJSON(decoded, codec).toString(),
+                AbstractJsonEncoderDecoder.toJSON(read, codec).toString());
+        log.info(ROUNDS + " x " + ROWS + " rows, " + json.length() + " chars: wrappers " + treeMillis
+                + "ms, native " + nativeMillis + "ms");
+    }
+}
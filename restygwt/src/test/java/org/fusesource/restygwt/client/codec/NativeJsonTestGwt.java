@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fusesource.restygwt.client.AbstractJsonEncoderDecoder;
+import org.fusesource.restygwt.client.JsonEncoderDecoder;
+import org.fusesource.restygwt.client.JsonEncoderDecoder.DecodingException;
+import org.fusesource.restygwt.client.NativeJson;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt.Row;
+import org.fusesource.restygwt.client.codec.JsonWriterTestGwt.RowCodec;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * the values read straight from the parsed json equal the decoded ones.
+ */
+public class NativeJsonTestGwt extends GWTTestCase {
+
+    /**
+     * fields named like the properties every javascript object inherits
+     */
+    static class Inherited {
+        public String constructor;
+        public List<String> valueOf;
+    }
+
+    public interface InheritedCodec extends JsonEncoderDecoder<Inherited> {
+    }
+
+    private AbstractJsonEncoderDecoder<Row> codec;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.EncoderDecoderTestGwt";
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        codec = GWT.create(RowCodec.class);
+    }
+
+    /**
+     * compare the encoded values, the classes do not implement equals
+     */
+    private static <T> void assertSameRead(JsonEncoderDecoder<T> codec, String json) {
+        T decoded = codec.decode(JSONParser.parseStrict(json));
+        T read = ((AbstractJsonEncoderDecoder<T>) codec).read(NativeJson.parse(json), 0);
+        assertEquals(codec.encode(decoded).toString(), codec.encode(read).toString());
+    }
+
+    public void testSameValuesAsTheDecoder() {
+        assertSameRead(codec, codec.encode(JsonWriterTestGwt.row(1)).toString());
+    }
+
+    public void testNullsAndMissingValues() {
+        assertSameRead(codec, codec.encode(new Row()).toString());
+        assertSameRead(codec, "{}");
+        assertNull(codec.read(NativeJson.parse("null"), 0));
+    }
+
+    public void testNumbersFromStrings() {
+        assertSameRead(codec, "{\"number\":\"12\",\"big\":\"9007199254740993\",\"fraction\":\"1.5\",\"text\":42}");
+        Row row = codec.read(NativeJson.parse("{\"big\":\"9007199254740993\"}"), 0);
+        assertEquals(9007199254740993L, row.big);
+    }
+
+    public void testList() {
+        List<Row> rows = new ArrayList<Row>();
+        for (int i = 0; i < 3; i++) {
+            rows.add(JsonWriterTestGwt.row(i));
+        }
+        String json = AbstractJsonEncoderDecoder.toJSON(rows, codec).toString();
+        List<Row> read = AbstractJsonEncoderDecoder.readList(NativeJson.parse(json), 0, codec);
+        assertEquals(json, AbstractJsonEncoderDecoder.toJSON(read, codec).toString());
+    }
+
+    public void testWrongTypes() {
+        JavaScriptObject json = NativeJson.parse("{\"number\":true,\"flag\":1,\"name\":[],\"names\":{},\"id\":\"one\"}");
+        try {
+            AbstractJsonEncoderDecoder.INT.read(NativeJson.getObject(json, 0), "number");
+            fail("a boolean is no number");
+        } catch (DecodingException e) {
+        }
+        try {
+            AbstractJsonEncoderDecoder.LONG.read(NativeJson.getObject(json, 0), "id");
+            fail("a word is no long");
+        } catch (DecodingException e) {
+        }
+        try {
+            AbstractJsonEncoderDecoder.BOOLEAN.read(NativeJson.getObject(json, 0), "flag");
+            fail("a number is no boolean");
+        } catch (DecodingException e) {
+        }
+        try {
+            codec.read(json, 0);
+            fail("the fields have the wrong types");
+        } catch (DecodingException e) {
+        }
+        try {
+            codec.read(NativeJson.parse("[]"), 0);
+            fail("an array is no row");
+        } catch (DecodingException e) {
+        }
+    }
+
+    public void testCodecWithoutReadDecodesTheWrappedValue() {
+        assertSameRead(AbstractJsonEncoderDecoder.DATE, "\"2014-05-13T16:53:20.000+0000\"");
+        assertSameRead(AbstractJsonEncoderDecoder.JSON_VALUE, "{\"a\":[1,true,null]}");
+    }
+
+    public void testInheritedPropertiesAreMissing() {
+        AbstractJsonEncoderDecoder<Inherited> inheritedCodec = GWT.create(InheritedCodec.class);
+        Inherited read = inheritedCodec.read(NativeJson.parse("{}"), 0);
+        assertNull(read.constructor);
+        assertNull(read.valueOf);
+        assertTrue(NativeJson.isNull(NativeJson.getObject(NativeJson.parse("{}"), 0), "constructor"));
+
+        read = inheritedCodec.read(NativeJson.parse("{\"constructor\":\"given\",\"valueOf\":[\"a\"]}"), 0);
+        assertEquals("given", read.constructor);
+        assertEquals(1, read.valueOf.size());
+        assertEquals("a", read.valueOf.get(0));
+    }
+}
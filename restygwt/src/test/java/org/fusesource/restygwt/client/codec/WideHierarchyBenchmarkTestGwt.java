@@ -0,0 +1,418 @@
+/**
+ * Copyright (C) 2009-2015 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.client.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.fusesource.restygwt.client.JsonEncoderDecoder;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeInfo.As;
+import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.json.client.JSONValue;
+import com.google.gwt.junit.client.GWTTestCase;
+
+/**
+ * encodes and decodes the first and the last subtypes of a wide hierarchy. the generated
+ * codec picks the subtype by a lookup, so both should take about the same time. it runs
+ * with the complete test suite and logs the timings.
+ */
+public class WideHierarchyBenchmarkTestGwt extends GWTTestCase {
+
+    private static final Logger log = Logger.getLogger(WideHierarchyBenchmarkTestGwt.class.getName());
+
+    private static final int VALUES = 500;
+
+    private static final int ROUNDS = 3;
+
+    @Override
+    public String getModuleName() {
+        return "org.fusesource.restygwt.PolymorphicEncoderDecoderTestGwt";
+    }
+
+    @JsonTypeInfo(use = Id.CLASS, include = As.PROPERTY, property = "@class")
+    @JsonSubTypes({
+        @Type(WideHierarchyBenchmarkTestGwt.Wide00.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide01.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide02.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide03.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide04.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide05.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide06.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide07.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide08.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide09.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide10.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide11.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide12.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide13.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide14.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide15.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide16.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide17.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide18.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide19.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide20.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide21.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide22.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide23.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide24.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide25.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide26.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide27.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide28.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide29.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide30.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide31.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide32.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide33.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide34.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide35.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide36.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide37.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide38.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide39.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide40.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide41.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide42.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide43.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide44.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide45.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide46.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide47.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide48.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide49.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide50.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide51.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide52.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide53.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide54.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide55.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide56.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide57.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide58.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide59.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide60.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide61.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide62.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide63.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide64.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide65.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide66.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide67.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide68.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide69.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide70.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide71.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide72.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide73.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide74.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide75.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide76.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide77.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide78.class),
+        @Type(WideHierarchyBenchmarkTestGwt.Wide79.class) })
+    static abstract class Wide {
+        public int value;
+    }
+
+    static class Wide00 extends Wide {
+    }
+
+    static class Wide01 extends Wide {
+    }
+
+    static class Wide02 extends Wide {
+    }
+
+    static class Wide03 extends Wide {
+    }
+
+    static class Wide04 extends Wide {
+    }
+
+    static class Wide05 extends Wide {
+    }
+
+    static class Wide06 extends Wide {
+    }
+
+    static class Wide07 extends Wide {
+    }
+
+    static class Wide08 extends Wide {
+    }
+
+    static class Wide09 extends Wide {
+    }
+
+    static class Wide10 extends Wide {
+    }
+
+    static class Wide11 extends Wide {
+    }
+
+    static class Wide12 extends Wide {
+    }
+
+    static class Wide13 extends Wide {
+    }
+
+    static class Wide14 extends Wide {
+    }
+
+    static class Wide15 extends Wide {
+    }
+
+    static class Wide16 extends Wide {
+    }
+
+    static class Wide17 extends Wide {
+    }
+
+    static class Wide18 extends Wide {
+    }
+
+    static class Wide19 extends Wide {
+    }
+
+    static class Wide20 extends Wide {
+    }
+
+    static class Wide21 extends Wide {
+    }
+
+    static class Wide22 extends Wide {
+    }
+
+    static class Wide23 extends Wide {
+    }
+
+    static class Wide24 extends Wide {
+    }
+
+    static class Wide25 extends Wide {
+    }
+
+    static class Wide26 extends Wide {
+    }
+
+    static class Wide27 extends Wide {
+    }
+
+    static class Wide28 extends Wide {
+    }
+
+    static class Wide29 extends Wide {
+    }
+
+    static class Wide30 extends Wide {
+    }
+
+    static class Wide31 extends Wide {
+    }
+
+    static class Wide32 extends Wide {
+    }
+
+    static class Wide33 extends Wide {
+    }
+
+    static class Wide34 extends Wide {
+    }
+
+    static class Wide35 extends Wide {
+    }
+
+    static class Wide36 extends Wide {
+    }
+
+    static class Wide37 extends Wide {
+    }
+
+    static class Wide38 extends Wide {
+    }
+
+    static class Wide39 extends Wide {
+    }
+
+    static class Wide40 extends Wide {
+    }
+
+    static class Wide41 extends Wide {
+    }
+
+    static class Wide42 extends Wide {
+    }
+
+    static class Wide43 extends Wide {
+    }
+
+    static class Wide44 extends Wide {
+    }
+
+    static class Wide45 extends Wide {
+    }
+
+    static class Wide46 extends Wide {
+    }
+
+    static class Wide47 extends Wide {
+    }
+
+    static class Wide48 extends Wide {
+    }
+
+    static class Wide49 extends Wide {
+    }
+
+    static class Wide50 extends Wide {
+    }
+
+    static class Wide51 extends Wide {
+    }
+
+    static class Wide52 extends Wide {
+    }
+
+    static class Wide53 extends Wide {
+    }
+
+    static class Wide54 extends Wide {
+    }
+
+    static class Wide55 extends Wide {
+    }
+
+    static class Wide56 extends Wide {
+    }
+
+    static class Wide57 extends Wide {
+    }
+
+    static class Wide58 extends Wide {
+    }
+
+    static class Wide59 extends Wide {
+    }
+
+    static class Wide60 extends Wide {
+    }
+
+    static class Wide61 extends Wide {
+    }
+
+    static class Wide62 extends Wide {
+    }
+
+    static class Wide63 extends Wide {
+    }
+
+    static class Wide64 extends Wide {
+    }
+
+    static class Wide65 extends Wide {
+    }
+
+    static class Wide66 extends Wide {
+    }
+
+    static class Wide67 extends Wide {
+    }
+
+    static class Wide68 extends Wide {
+    }
+
+    static class Wide69 extends Wide {
+    }
+
+    static class Wide70 extends Wide {
+    }
+
+    static class Wide71 extends Wide {
+    }
+
+    static class Wide72 extends Wide {
+    }
+
+    static class Wide73 extends Wide {
+    }
+
+    static class Wide74 extends Wide {
+    }
+
+    static class Wide75 extends Wide {
+    }
+
+    static class Wide76 extends Wide {
+    }
+
+    static class Wide77 extends Wide {
+    }
+
+    static class Wide78 extends Wide {
+    }
+
+    static class Wide79 extends Wide {
+    }
+
+    static interface WideCodec extends JsonEncoderDecoder<Wide> {
+    }
+
+    public void testFirstAndLastSubtypes() {
+        WideCodec codec = GWT.create(WideCodec.class);
+        List<Wide> first = new ArrayList<Wide>();
+        List<Wide> last = new ArrayList<Wide>();
+        for (int i = 0; i < VALUES; i++) {
+            first.add(wide(new Wide00(), i));
+            last.add(wide(new Wide79(), i));
+        }
+
+        int firstMillis = roundTrip(codec, first);
+        int lastMillis = roundTrip(codec, last);
+
+        log.info(ROUNDS + " x " + VALUES + " values of 80 subtypes: first subtype " + firstMillis
+                + "ms, last subtype " + lastMillis + "ms");
+    }
+
+    private static Wide wide(Wide wide, int value) {
+        wide.value = value;
+        return wide;
+    }
+
+    private static int roundTrip(WideCodec codec, List<Wide> values) {
+        Duration duration = new Duration();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Wide value : values) {
+                JSONValue json = codec.encode(value);
+                Wide decoded = codec.decode(json);
+                assertEquals(value.getClass(), decoded.getClass());
+                assertEquals(value.value, decoded.value);
+            }
+        }
+        return duration.elapsedMillis();
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.dispatcher.BatchingFilterawareDispatcher;
+import org.fusesource.restygwt.mocking.DispatcherMocks.RecordingCallback;
+import org.fusesource.restygwt.mocking.DispatcherMocks.ResponseMock;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class BatchingFilterawareDispatcherTestCase extends TestCase {
+
+    private int scheduled;
+    private List<RequestBuilder> roundTrips;
+    private BatchingFilterawareDispatcher dispatcher;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.scheduled = 0;
+        this.roundTrips = new ArrayList<RequestBuilder>();
+        this.dispatcher = new BatchingFilterawareDispatcher("http://localhost/batch") {
+
+            @Override
+            protected void scheduleFlush() {
+                scheduled++;
+            }
+
+            @Override
+            protected Request sendBatch(RequestBuilder batchBuilder) throws RequestException {
+                roundTrips.add(batchBuilder);
+                return null;
+            }
+
+            @Override
+            protected Request sendAlone(Method method, RequestBuilder builder) throws RequestException {
+                roundTrips.add(builder);
+                return null;
+            }
+        };
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private RecordingCallback send(String url) throws RequestException {
+        RecordingCallback callback = new RecordingCallback();
+        send(url, callback);
+        return callback;
+    }
+
+    private Request send(String url, RecordingCallback callback) throws RequestException {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", "application/json");
+
+        RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, url);
+        builder.setCallback(callback);
+
+        Method method = EasyMock.createMock(Method.class);
+        EasyMock.expect(method.getHeaders()).andReturn(headers).anyTimes();
+        EasyMock.replay(method);
+        method.builder = builder;
+
+        Request request = dispatcher.send(method, builder);
+        assertTrue(request.isPending());
+        return request;
+    }
+
+    public void testManyCallsOneRoundTrip() throws Exception {
+        RecordingCallback[] callbacks = new RecordingCallback[5];
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i] = send("http://localhost/api/item/" + i);
+        }
+
+        assertEquals(1, scheduled);
+        assertEquals(0, roundTrips.size());
+
+        dispatcher.flush();
+
+        assertEquals(1, roundTrips.size());
+        RequestBuilder batch = roundTrips.get(0);
+        assertEquals("POST", batch.getHTTPMethod());
+        assertEquals("http://localhost/batch", batch.getUrl());
+        assertTrue(batch.getHeader("Content-Type").startsWith("multipart/mixed; boundary="));
+        for (int i = 0; i < callbacks.length; i++) {
+            assertTrue(batch.getRequestData().contains("Content-ID: <" + i + ">\r\n\r\n"
+                    + "GET http://localhost/api/item/" + i + " HTTP/1.1\r\nAccept: application/json\r\n"));
+        }
+
+        // answer in reverse order, the Content-ID tells which part belongs to which call
+        StringBuilder body = new StringBuilder();
+        for (int i = callbacks.length - 1; i >= 0; i--) {
+            body.append("--xyz\r\nContent-Type: application/http\r\nContent-ID: <" + i + ">\r\n\r\n");
+            body.append("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n");
+            body.append("{\"id\":" + i + "}\r\n");
+        }
+        body.append("--xyz--\r\n");
+        batch.getCallback().onResponseReceived(null,
+                new ResponseMock(200, body.toString(), "Content-Type", "multipart/mixed; boundary=xyz"));
+
+        for (int i = 0; i < callbacks.length; i++) {
+            assertNull(callbacks[i].exception);
+            assertEquals(200, callbacks[i].response.getStatusCode());
+            assertEquals("application/json", callbacks[i].response.getHeader("content-type"));
+            assertEquals("{\"id\":" + i + "}", callbacks[i].response.getText());
+        }
+
+        // the next tick starts a new batch
+        send("http://localhost/api/item/5");
+        send("http://localhost/api/item/6");
+        assertEquals(2, scheduled);
+    }
+
+    public void testMissingPart() throws Exception {
+        RecordingCallback first = send("http://localhost/api/item/0");
+        RecordingCallback second = send("http://localhost/api/item/1");
+        dispatcher.flush();
+
+        String body = "--xyz\nContent-ID: <1>\n\nHTTP/1.1 404 Not Found\n\n\n--xyz--\n";
+        roundTrips.get(0).getCallback().onResponseReceived(null,
+                new ResponseMock(200, body, "Content-Type", "multipart/mixed; boundary=\"xyz\""));
+
+        assertNull(first.response);
+        assertNotNull(first.exception);
+        assertEquals(404, second.response.getStatusCode());
+        assertEquals("Not Found", second.response.getStatusText());
+        assertEquals("", second.response.getText());
+    }
+
+    public void testFailedBatch() throws Exception {
+        RecordingCallback first = send("http://localhost/api/item/0");
+        RecordingCallback second = send("http://localhost/api/item/1");
+        dispatcher.flush();
+
+        Response failure = new ResponseMock(503, "down", "Content-Type", "text/plain");
+        roundTrips.get(0).getCallback().onResponseReceived(null, failure);
+        assertSame(failure, first.response);
+        assertSame(failure, second.response);
+
+        Exception e = new Exception();
+        roundTrips.get(0).getCallback().onError(null, e);
+        assertSame(e, first.exception);
+        assertSame(e, second.exception);
+    }
+
+    public void testMalformedPart() throws Exception {
+        RecordingCallback first = send("http://localhost/api/item/0");
+        RecordingCallback second = send("http://localhost/api/item/1");
+        dispatcher.flush();
+
+        String body = "--xyz\nContent-ID: <0>\n\nHTTP/1.1 OK\n\n\n"
+                + "--xyz\nContent-ID: <1>\n\nHTTP/1.1 200 OK\n\n{}\n--xyz--\n";
+        roundTrips.get(0).getCallback().onResponseReceived(null,
+                new ResponseMock(200, body, "Content-Type", "multipart/mixed; boundary=xyz"));
+
+        assertNull(first.response);
+        assertTrue(first.exception.getMessage().contains("HTTP/1.1 OK"));
+        assertNull(second.exception);
+        assertEquals("{}", second.response.getText());
+    }
+
+    public void testBatchPerOrigin() throws Exception {
+        send("http://localhost/api/item/0");
+        send("http://example.com/api/item/1");
+        send("http://LOCALHOST/api/item/2");
+        send("http://example.com/api/item/3");
+        dispatcher.flush();
+
+        // the other origin does not know the batch endpoint
+        assertEquals(3, roundTrips.size());
+        assertEquals("http://localhost/batch", roundTrips.get(0).getUrl());
+        assertTrue(roundTrips.get(0).getRequestData().contains("GET http://LOCALHOST/api/item/2 HTTP/1.1"));
+        assertFalse(roundTrips.get(0).getRequestData().contains("example.com"));
+        assertEquals("http://example.com/api/item/1", roundTrips.get(1).getUrl());
+        assertEquals("http://example.com/api/item/3", roundTrips.get(2).getUrl());
+    }
+
+    public void testCancel() throws Exception {
+        RecordingCallback first = new RecordingCallback();
+        Request firstRequest = send("http://localhost/api/item/0", first);
+        RecordingCallback second = new RecordingCallback();
+        Request secondRequest = send("http://localhost/api/item/1", second);
+        RecordingCallback third = new RecordingCallback();
+        Request thirdRequest = send("http://localhost/api/item/2", third);
+        RecordingCallback fourth = new RecordingCallback();
+        Request fourthRequest = send("http://localhost/api/item/3", fourth);
+
+        // not part of the batch anymore
+        secondRequest.cancel();
+        assertFalse(secondRequest.isPending());
+        dispatcher.flush();
+
+        assertEquals(1, roundTrips.size());
+        String data = roundTrips.get(0).getRequestData();
+        assertTrue(data.contains("Content-ID: <0>\r\n\r\nGET http://localhost/api/item/0 HTTP/1.1"));
+        assertTrue(data.contains("Content-ID: <1>\r\n\r\nGET http://localhost/api/item/2 HTTP/1.1"));
+        assertTrue(data.contains("Content-ID: <2>\r\n\r\nGET http://localhost/api/item/3 HTTP/1.1"));
+        assertFalse(data.contains("item/1"));
+
+        // on the wire already, its part gets dropped
+        fourthRequest.cancel();
+        assertFalse(fourthRequest.isPending());
+        assertTrue(firstRequest.isPending());
+        assertTrue(thirdRequest.isPending());
+
+        String body = "--xyz\nContent-ID: <0>\n\nHTTP/1.1 200 OK\n\n{}\n"
+                + "--xyz\nContent-ID: <1>\n\nHTTP/1.1 200 OK\n\n{}\n"
+                + "--xyz\nContent-ID: <2>\n\nHTTP/1.1 200 OK\n\n{}\n--xyz--\n";
+        roundTrips.get(0).getCallback().onResponseReceived(null,
+                new ResponseMock(200, body, "Content-Type", "multipart/mixed; boundary=xyz"));
+
+        assertEquals("{}", first.response.getText());
+        assertEquals("{}", third.response.getText());
+        assertFalse(firstRequest.isPending());
+        assertFalse(thirdRequest.isPending());
+        assertNull(second.response);
+        assertNull(second.exception);
+        assertNull(fourth.response);
+        assertNull(fourth.exception);
+    }
+}
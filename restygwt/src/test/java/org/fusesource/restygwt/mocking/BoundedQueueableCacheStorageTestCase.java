@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.cache.BoundedQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.CompactResponse;
+import org.fusesource.restygwt.client.cache.SimpleCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage.ResponseWrapper;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class BoundedQueueableCacheStorageTestCase extends TestCase {
+
+    private BoundedQueueableCacheStorage storage;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        // room for four responses of 1000 characters
+        this.storage = new BoundedQueueableCacheStorage(8100);
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private static Response response(int chars) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < chars; i++) {
+            text.append('x');
+        }
+        return new TextResponseMock(200, text.toString());
+    }
+
+    private static CacheKey key(int i) {
+        return new SimpleCacheKey("GET http://localhost/api/items/" + i);
+    }
+
+    public void testSnapshot() {
+        Response response = new TextResponseMock(200, "{\"name\":\"foo\"}", "ETag", "\"v1\"",
+                "Content-Type", "application/json", "Set-Cookie", "secret");
+        storage.putResult(key(1), response);
+
+        Response cached = ((ResponseWrapper) storage.getResultOrReturnNull(key(1))).response;
+        assertTrue(cached instanceof CompactResponse);
+        assertEquals(200, cached.getStatusCode());
+        assertEquals("{\"name\":\"foo\"}", cached.getText());
+        assertEquals("\"v1\"", cached.getHeader("ETag"));
+        assertEquals("\"v1\"", cached.getHeader("etag"));
+        assertEquals("application/json", cached.getHeader("Content-Type"));
+        // not one of the kept headers
+        assertNull(cached.getHeader("Set-Cookie"));
+        assertEquals(2, cached.getHeaders().length);
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        for (int i = 0; i < 4; i++) {
+            storage.putResult(key(i), response(1000));
+        }
+        assertEquals(4, storage.getEntryCount());
+        assertEquals(0, storage.getEvictionCount());
+
+        // 0 is used again, 1 is the least recently used now
+        assertNotNull(storage.getResultOrReturnNull(key(0)));
+        storage.putResult(key(4), response(1000));
+
+        assertEquals(1, storage.getEvictionCount());
+        assertNull(storage.getResultOrReturnNull(key(1)));
+        assertNotNull(storage.getResultOrReturnNull(key(0)));
+        assertNotNull(storage.getResultOrReturnNull(key(4)));
+    }
+
+    public void testBudgetSpansScopes() {
+        storage.putResult(key(1), response(1000), "users");
+        storage.putResult(key(2), response(1000), "orders");
+        storage.putResult(key(3), response(1000), "users", "orders");
+        // stored once whatever the number of scopes
+        assertEquals(3, storage.getEntryCount());
+        assertEquals(6000, storage.getSize());
+
+        storage.putResult(key(4), response(1000));
+        storage.putResult(key(5), response(1000));
+        assertEquals(1, storage.getEvictionCount());
+        assertNull(storage.getResultOrReturnNull(key(1), "users"));
+        assertNotNull(storage.getResultOrReturnNull(key(2), "orders"));
+
+        storage.purge("users");
+        assertEquals(6000, storage.getSize());
+        assertNull(storage.getResultOrReturnNull(key(3), "orders"));
+
+        storage.remove(key(4));
+        storage.remove(key(2), "orders");
+        assertEquals(2000, storage.getSize());
+        storage.purge();
+        assertEquals(0, storage.getSize());
+        assertEquals(0, storage.getEntryCount());
+    }
+
+    public void testReplaceAndOversized() {
+        storage.putResult(key(1), response(1000));
+        storage.putResult(key(1), response(500));
+        assertEquals(1000, storage.getSize());
+
+        // does not fit at all, the older one of the same key is gone
+        storage.putResult(key(1), response(5000));
+        assertNull(storage.getResultOrReturnNull(key(1)));
+        assertEquals(0, storage.getSize());
+        assertEquals(0, storage.getEvictionCount());
+    }
+
+    public void testMemoryStaysBounded() {
+        int puts = 10000;
+        for (int i = 0; i < puts; i++) {
+            // responses between 10 and 1009 characters
+            storage.putResult(key(i), response(10 + (i * 37) % 1000), "scope" + (i % 7));
+            assertTrue(storage.getSize() <= storage.getMaxBytes());
+        }
+        assertEquals(puts, storage.getEntryCount() + storage.getEvictionCount());
+        // the most recent one is always there
+        assertNotNull(storage.getResultOrReturnNull(key(puts - 1), "scope" + ((puts - 1) % 7)));
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.cache.BoundedQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.CacheStatistics;
+import org.fusesource.restygwt.client.cache.CacheStatisticsSink;
+import org.fusesource.restygwt.client.cache.HashedCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.SimpleCacheKey;
+import org.fusesource.restygwt.client.cache.VolatileQueueableCacheStorage;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.MethodMock;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class CacheStatisticsTestCase extends TestCase {
+
+    static class NoopCallback implements RequestCallback {
+
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+        }
+    }
+
+    private long now;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private static Response response(int chars) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < chars; i++) {
+            text.append('x');
+        }
+        return new TextResponseMock(200, text.toString());
+    }
+
+    private static CacheKey key(int i) {
+        return new SimpleCacheKey("GET http://localhost/api/items/" + i);
+    }
+
+    private static boolean send(CachingDispatcherFilter filter) {
+        Method method = new MethodMock();
+        method.builder.setCallback(new NoopCallback());
+        return filter.filter(method, method.builder);
+    }
+
+    public void testFilterRecords() {
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        CachingDispatcherFilter filter = new CachingDispatcherFilter(storage, new CallbackFactory() {
+
+            @Override
+            public RequestCallback createCallback(Method method) {
+                return new NoopCallback();
+            }
+        }) {
+
+            @Override
+            protected void deliver(RequestCallback callback, Response response) {
+            }
+        };
+
+        assertTrue(send(filter));
+        assertFalse(send(filter));
+        storage.putResult(new HashedCacheKey(new MethodMock().builder), response(10));
+        storage.removeCallbacks(new HashedCacheKey(new MethodMock().builder));
+        assertFalse(send(filter));
+
+        CacheStatistics total = storage.getStatistics();
+        assertEquals(1, total.getHits());
+        assertEquals(1, total.getMisses());
+        assertEquals(1, total.getCoalesced());
+        assertEquals(0.5, total.getHitRatio(), 0.001);
+        assertEquals(20, total.getBytes());
+        // no domain, the default scope
+        assertEquals(1, storage.getStatistics("").getHits());
+    }
+
+    public void testScopes() {
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        storage.recordMiss("users", "orders");
+        storage.recordHit("users");
+        storage.recordHit("users");
+        storage.putResult(key(1), response(1000), "users", "orders");
+        storage.putResult(key(2), response(500), "orders");
+
+        assertEquals(2, storage.getStatistics().getHits());
+        assertEquals(1, storage.getStatistics().getMisses());
+        assertEquals(3000, storage.getStatistics().getBytes());
+
+        CacheStatistics users = storage.getStatistics("users");
+        assertEquals(2, users.getHits());
+        assertEquals(2000, users.getBytes());
+        assertEquals(2.0 / 3, users.getHitRatio(), 0.001);
+        CacheStatistics orders = storage.getStatistics("orders");
+        assertEquals(0, orders.getHits());
+        assertEquals(3000, orders.getBytes());
+        assertEquals(0.0, orders.getHitRatio(), 0.001);
+
+        assertEquals(0, storage.getStatistics("unknown").getMisses());
+        assertEquals(2, storage.getScopeStatistics().size());
+
+        // snapshots do not change
+        storage.recordHit("orders");
+        assertEquals(0, orders.getHits());
+
+        storage.resetStatistics();
+        assertEquals(0, storage.getStatistics("users").getHits());
+        assertEquals(2000, storage.getStatistics("users").getBytes());
+    }
+
+    public void testEvictionsAndExpirations() {
+        BoundedQueueableCacheStorage bounded = new BoundedQueueableCacheStorage(4100);
+        bounded.putResult(key(1), response(1000), "users");
+        bounded.putResult(key(2), response(1000), "orders");
+        bounded.putResult(key(3), response(1000), "orders");
+        assertEquals(1, bounded.getStatistics().getEvictions());
+        assertEquals(1, bounded.getStatistics("users").getEvictions());
+        assertEquals(0, bounded.getStatistics("orders").getEvictions());
+        assertEquals(0, bounded.getStatistics("users").getBytes());
+
+        now = 1000;
+        VolatileQueueableCacheStorage volatileStorage = new VolatileQueueableCacheStorage(100) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+
+            @Override
+            protected void schedule(int delayMillis) {
+            }
+        };
+        volatileStorage.putResult(key(1), response(10), "users");
+        volatileStorage.putResult(key(2), response(10));
+        now += 100;
+        assertNull(volatileStorage.getResultOrReturnNull(key(1), "users"));
+        assertEquals(1, volatileStorage.getStatistics().getExpirations());
+        assertEquals(1, volatileStorage.getStatistics("users").getExpirations());
+        // removed, not expired
+        volatileStorage.remove(key(2));
+        assertEquals(1, volatileStorage.getStatistics().getExpirations());
+    }
+
+    public void testSink() {
+        final CacheStatistics[] published = new CacheStatistics[2];
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        // nowhere to publish to
+        storage.publishStatistics();
+
+        storage.setStatisticsSink(new CacheStatisticsSink() {
+
+            @Override
+            public void publish(CacheStatistics total, Map<String, CacheStatistics> scopes) {
+                published[0] = total;
+                published[1] = scopes.get("users");
+            }
+        });
+        storage.recordHit("users");
+        storage.recordMiss();
+        storage.publishStatistics();
+
+        assertEquals(1, published[0].getHits());
+        assertEquals(1, published[0].getMisses());
+        assertEquals(1, published[1].getHits());
+        assertEquals(0, published[1].getMisses());
+    }
+}
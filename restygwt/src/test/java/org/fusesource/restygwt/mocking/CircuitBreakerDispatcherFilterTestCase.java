@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Options;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage;
+import org.fusesource.restygwt.client.callback.CachingCallbackFilter;
+import org.fusesource.restygwt.client.callback.DefaultCallbackFactory;
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+import org.fusesource.restygwt.client.dispatcher.CircuitBreakerDispatcherFilter;
+import org.fusesource.restygwt.client.dispatcher.CircuitBreakerDispatcherFilter.State;
+import org.fusesource.restygwt.client.dispatcher.CircuitBreakerEvent;
+import org.fusesource.restygwt.client.dispatcher.CircuitOpenException;
+import org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher;
+import org.fusesource.restygwt.mocking.DispatcherMocks.RecordingCallback;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.event.shared.SimpleEventBus;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.RequestTimeoutException;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class CircuitBreakerDispatcherFilterTestCase extends TestCase {
+
+    private static final String ROOT = "http://localhost:8080";
+
+    /**
+     * does not touch the wire, just remembers what was sent
+     */
+    class RequestBuilderMock extends RequestBuilder {
+
+        RequestBuilderMock(String url) {
+            super(RequestBuilder.GET, url);
+        }
+
+        @Override
+        public Request send() throws RequestException {
+            sent.add(this);
+            return null;
+        }
+
+        void complete(int status) {
+            getCallback().onResponseReceived(null, new TextResponseMock(status, "{}"));
+        }
+    }
+
+    private List<RequestBuilderMock> sent;
+    private List<CircuitBreakerEvent> events;
+    private long now;
+    private CircuitBreakerDispatcherFilter filter;
+    private DefaultFilterawareDispatcher dispatcher;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.sent = new ArrayList<RequestBuilderMock>();
+        this.events = new ArrayList<CircuitBreakerEvent>();
+        this.now = 0;
+
+        SimpleEventBus eventBus = new SimpleEventBus();
+        eventBus.addHandler(CircuitBreakerEvent.TYPE, new CircuitBreakerEvent.Handler() {
+
+            @Override
+            public void onStateChange(CircuitBreakerEvent event) {
+                events.add(event);
+            }
+        });
+        // window of 4, opens at 50% failures, slow from 1s, open for 5s, 2 probes
+        this.filter = new CircuitBreakerDispatcherFilter(eventBus, 4, 50, 1000, 5000, 2) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+
+            @Override
+            protected void reject(RequestCallback callback, CircuitOpenException exception) {
+                callback.onError(null, exception);
+            }
+        };
+        this.dispatcher = new DefaultFilterawareDispatcher(filter);
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private RequestBuilderMock send(String url, RequestCallback callback, String serviceRootKey)
+            throws RequestException {
+        RequestBuilderMock builder = new RequestBuilderMock(url);
+        builder.setCallback(callback);
+        Method method = new Method() {
+        };
+        method.builder = builder;
+        if (serviceRootKey != null) {
+            method.addData(Options.SERVICE_ROOT_KEY, serviceRootKey);
+        }
+        dispatcher.send(method, builder);
+        return builder;
+    }
+
+    private RequestBuilderMock send(RequestCallback callback) throws RequestException {
+        return send(ROOT + "/api/items", callback, null);
+    }
+
+    private void open() throws RequestException {
+        send(new RecordingCallback()).complete(503);
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+        send(new RecordingCallback()).getCallback().onError(null, new RequestTimeoutException(null, 1000));
+        assertEquals(State.OPEN, filter.getState(ROOT));
+    }
+
+    public void testOpensOnFailureRate() throws Exception {
+        // a single failure is no rate yet
+        send(new RecordingCallback()).complete(500);
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+        send(new RecordingCallback()).complete(404);
+        assertEquals(State.OPEN, filter.getState(ROOT));
+        assertEquals(1, events.size());
+        assertEquals(ROOT, events.get(0).getServiceRoot());
+        assertEquals(State.CLOSED, events.get(0).getPreviousState());
+        assertEquals(State.OPEN, events.get(0).getState());
+        assertEquals(2, sent.size());
+
+        RecordingCallback rejected = new RecordingCallback();
+        send(rejected);
+        assertEquals(2, sent.size());
+        assertEquals(1, rejected.errors.size());
+        assertTrue(rejected.errors.get(0) instanceof CircuitOpenException);
+        assertEquals(ROOT, ((CircuitOpenException) rejected.errors.get(0)).getServiceRoot());
+
+        // other hosts are not affected
+        RecordingCallback other = new RecordingCallback();
+        send("http://other/api/items", other, null);
+        assertEquals(3, sent.size());
+        assertEquals(State.CLOSED, filter.getState("http://other"));
+    }
+
+    public void testRollingWindow() throws Exception {
+        send(new RecordingCallback()).complete(200);
+        send(new RecordingCallback()).complete(200);
+        send(new RecordingCallback()).complete(200);
+        send(new RecordingCallback()).complete(500);
+        assertEquals(25, filter.getFailureRate(ROOT));
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+        // the first success drops out of the window
+        send(new RecordingCallback()).complete(502);
+        assertEquals(State.OPEN, filter.getState(ROOT));
+        // starts over with the next state
+        assertEquals(0, filter.getFailureRate(ROOT));
+    }
+
+    public void testSlowCallsFail() throws Exception {
+        RequestBuilderMock first = send(new RecordingCallback());
+        RequestBuilderMock second = send(new RecordingCallback());
+        now = 1500;
+        first.complete(200);
+        assertEquals(1500, filter.getAverageLatency(ROOT));
+        second.complete(200);
+        assertEquals(State.OPEN, filter.getState(ROOT));
+    }
+
+    public void testProbesClose() throws Exception {
+        open();
+        now = 4999;
+        send(new RecordingCallback());
+        assertEquals(State.OPEN, filter.getState(ROOT));
+
+        now = 5000;
+        int before = sent.size();
+        RequestBuilderMock probe1 = send(new RecordingCallback());
+        assertEquals(State.HALF_OPEN, filter.getState(ROOT));
+        RequestBuilderMock probe2 = send(new RecordingCallback());
+        RecordingCallback third = new RecordingCallback();
+        send(third);
+        assertEquals(before + 2, sent.size());
+        assertEquals(1, third.errors.size());
+
+        probe1.complete(200);
+        assertEquals(State.HALF_OPEN, filter.getState(ROOT));
+        probe2.complete(200);
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+        assertEquals(0, filter.getFailureRate(ROOT));
+        assertEquals(3, events.size());
+        assertEquals(State.HALF_OPEN, events.get(2).getPreviousState());
+        assertEquals(State.CLOSED, events.get(2).getState());
+    }
+
+    public void testProbeFailureReopens() throws Exception {
+        open();
+        now = 5000;
+        RequestBuilderMock probe = send(new RecordingCallback());
+        probe.complete(500);
+        assertEquals(State.OPEN, filter.getState(ROOT));
+
+        // another open period before the next probe
+        now = 9999;
+        RecordingCallback rejected = new RecordingCallback();
+        send(rejected);
+        assertEquals(1, rejected.errors.size());
+        now = 10000;
+        send(new RecordingCallback()).complete(200);
+        send(new RecordingCallback()).complete(200);
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+    }
+
+    public void testOutcomesOfFormerStatesAndCancelledProbes() throws Exception {
+        RequestBuilderMock late = send(new RecordingCallback());
+        open();
+        now = 5000;
+        // sent while closed, tells nothing about the probes
+        late.complete(500);
+        assertEquals(State.OPEN, filter.getState(ROOT));
+        RequestBuilderMock probe1 = send(new RecordingCallback());
+        late.complete(200);
+        assertEquals(State.HALF_OPEN, filter.getState(ROOT));
+
+        // a superseded or cancelled probe does not tell
+        probe1.getCallback().onError(null, new RequestException("superseded"));
+        RequestBuilderMock probe2 = send(new RecordingCallback());
+        RequestBuilderMock probe3 = send(new RecordingCallback());
+        int before = sent.size();
+        send(new RecordingCallback());
+        assertEquals(before, sent.size());
+
+        // the probes never came back
+        now = 10000;
+        send(new RecordingCallback()).complete(200);
+        send(new RecordingCallback()).complete(200);
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+        probe2.complete(500);
+        probe3.complete(500);
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+    }
+
+    public void testServiceRootKey() throws Exception {
+        send(ROOT + "/api/items", new RecordingCallback(), "backend").complete(500);
+        send("http://mirror/api/items", new RecordingCallback(), "backend").complete(500);
+        assertEquals(State.OPEN, filter.getState("backend"));
+        assertEquals(State.CLOSED, filter.getState(ROOT));
+    }
+
+    public void testQueuedCallbacksOfCachingFilterFail() throws Exception {
+        open();
+
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        DefaultCallbackFactory callbackFactory = new DefaultCallbackFactory(new CachingCallbackFilter(storage));
+        dispatcher = new DefaultFilterawareDispatcher(new CachingDispatcherFilter(storage, callbackFactory), filter);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        send(ROOT + "/api/other", first, null);
+        assertEquals(1, first.errors.size());
+        // nothing stays queued for the key
+        send(ROOT + "/api/other", second, null);
+        assertEquals(1, second.errors.size());
+
+        // the errors of a pending request reach the requests queued on it
+        now = 5000;
+        RequestBuilderMock pending = send(ROOT + "/api/pending", new RecordingCallback(), null);
+        RecordingCallback queued = new RecordingCallback();
+        send(ROOT + "/api/pending", queued, null);
+        pending.getCallback().onError(null, new RequestTimeoutException(null, 1000));
+        assertEquals(1, queued.errors.size());
+        assertTrue(queued.errors.get(0) instanceof RequestTimeoutException);
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.AbstractRequestCallback;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.HashedCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.SimpleCacheKey;
+import org.fusesource.restygwt.client.callback.CachingCallbackFilter;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.MethodMock;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class DecodeOnceTestCase extends TestCase {
+
+    static class Dto {
+        final String text;
+
+        Dto(String text) {
+            this.text = text;
+        }
+    }
+
+    static class Results implements MethodCallback<Dto> {
+
+        final List<Dto> dtos = new ArrayList<Dto>();
+
+        @Override
+        public void onSuccess(Method method, Dto response) {
+            dtos.add(response);
+        }
+
+        @Override
+        public void onFailure(Method method, Throwable exception) {
+            fail(exception.getMessage());
+        }
+    }
+
+    /**
+     * stands for the callback generated for a method of a service
+     */
+    static class DecodingCallback extends AbstractRequestCallback<Dto> {
+
+        static int decoded;
+
+        DecodingCallback(Results results) {
+            super(new MethodMock(), results);
+        }
+
+        @Override
+        protected Dto parseResult() throws Exception {
+            decoded++;
+            return new Dto(method.getResponse().getText());
+        }
+    }
+
+    /**
+     * the callback of another method of a service
+     */
+    static class OtherDecodingCallback extends DecodingCallback {
+
+        OtherDecodingCallback(Results results) {
+            super(results);
+        }
+    }
+
+    private Results results;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.results = new Results();
+        DecodingCallback.decoded = 0;
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    public void testCoalescedAreNotSharedByDefault() {
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        Method method = new MethodMock();
+        CacheKey key = new HashedCacheKey(method.builder);
+        for (int i = 0; i < 3; i++) {
+            storage.addCallback(key, new DecodingCallback(results));
+        }
+
+        Response response = new TextResponseMock(200, "{}");
+        new CachingCallbackFilter(storage).filter(method, response, null).onResponseReceived(null, response);
+
+        assertEquals(3, DecodingCallback.decoded);
+        assertNotSame(results.dtos.get(0), results.dtos.get(1));
+    }
+
+    public void testCoalescedDecodeOnce() {
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        storage.setShareDecodedResults(true);
+        Method method = new MethodMock();
+        CacheKey key = new HashedCacheKey(method.builder);
+        for (int i = 0; i < 10; i++) {
+            storage.addCallback(key, new DecodingCallback(results));
+        }
+        storage.addCallback(key, new OtherDecodingCallback(results));
+
+        RequestCallback callback = new CachingCallbackFilter(storage)
+                .filter(method, new TextResponseMock(200, "{\"name\":\"foo\"}"), null);
+        callback.onResponseReceived(null, new TextResponseMock(200, "{\"name\":\"foo\"}"));
+
+        assertEquals(11, results.dtos.size());
+        // once for each kind of callback
+        assertEquals(2, DecodingCallback.decoded);
+        for (int i = 1; i < 10; i++) {
+            assertSame(results.dtos.get(0), results.dtos.get(i));
+        }
+        assertNotSame(results.dtos.get(0), results.dtos.get(10));
+    }
+
+    public void testSingleCallbackIsNotShared() {
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        Method method = new MethodMock();
+        storage.addCallback(new HashedCacheKey(method.builder), new DecodingCallback(results));
+
+        Response response = new TextResponseMock(200, "{}");
+        new CachingCallbackFilter(storage).filter(method, response, null).onResponseReceived(null, response);
+        assertEquals(1, DecodingCallback.decoded);
+    }
+
+    public void testCacheHitsShareResults() {
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        CacheKey key = new SimpleCacheKey("GET http://localhost/api/countries");
+        storage.putResult(key, new TextResponseMock(200, "v1"));
+
+        // not shared by default
+        new DecodingCallback(results).onResponseReceived(null, storage.getResultOrReturnNull(key));
+        new DecodingCallback(results).onResponseReceived(null, storage.getResultOrReturnNull(key));
+        assertEquals(2, DecodingCallback.decoded);
+
+        storage.setShareDecodedResults(true);
+        new DecodingCallback(results).onResponseReceived(null, storage.getResultOrReturnNull(key));
+        new DecodingCallback(results).onResponseReceived(null, storage.getResultOrReturnNull(key));
+        assertEquals(3, DecodingCallback.decoded);
+        assertSame(results.dtos.get(2), results.dtos.get(3));
+
+        // a new response is decoded again
+        storage.putResult(key, new TextResponseMock(200, "v2"));
+        new DecodingCallback(results).onResponseReceived(null, storage.getResultOrReturnNull(key));
+        assertEquals(4, DecodingCallback.decoded);
+        assertEquals("v2", results.dtos.get(4).text);
+    }
+}
@@ -117,6 +117,35 @@ public class DefaultQueuableCacheStorageTestCase extends TestCase {
         EasyMock.verify(scopedResp);
     }
     
+    public void testSeveralScopes(){
+        CacheKey key = new SimpleCacheKey("first");
+        CacheKey secondKey = new SimpleCacheKey("second");
+        Response resp = EasyMock.createMock(Response.class);
+        EasyMock.replay(resp);
+
+        storage.putResult(key, resp, "users", "orders");
+        storage.putResult(secondKey, resp, "orders");
+
+        // stored once, found in each of its scopes and by the key alone
+        assertEquals(resp, ((ResponseWrapper)storage.getResultOrReturnNull(key, "users")).response);
+        assertEquals(resp, ((ResponseWrapper)storage.getResultOrReturnNull(key, "orders")).response);
+        assertEquals(resp, ((ResponseWrapper)storage.getResultOrReturnNull(key)).response);
+        assertNull(storage.getResultOrReturnNull(key, "admin"));
+
+        // removed from one scope means removed from all of them
+        storage.remove(key, "users");
+        assertNull(storage.getResultOrReturnNull(key, "orders"));
+        assertNull(storage.getResultOrReturnNull(key));
+        assertEquals(resp, ((ResponseWrapper)storage.getResultOrReturnNull(secondKey, "orders")).response);
+
+        storage.putResult(key, resp, "users", "orders");
+        storage.purge("users");
+        assertNull(storage.getResultOrReturnNull(key, "orders"));
+        assertEquals(resp, ((ResponseWrapper)storage.getResultOrReturnNull(secondKey, "orders")).response);
+
+        EasyMock.verify(resp);
+    }
+
     public void testQueue() {
         CacheKey key = new SimpleCacheKey("first");
         CacheKey secondKey = new SimpleCacheKey("second");
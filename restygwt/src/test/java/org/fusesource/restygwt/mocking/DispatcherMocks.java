@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fusesource.restygwt.client.Method;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+
+/**
+ * the mocks the tests of the dispatchers and their filters share
+ */
+final class DispatcherMocks {
+
+    private DispatcherMocks() {
+    }
+
+    /**
+     * a method which is not sent, the request it knows is given by the test
+     */
+    static class MethodMock extends Method {
+
+        Request request;
+
+        MethodMock(RequestBuilder.Method httpMethod, String url) {
+            builder = new RequestBuilder(httpMethod, url);
+        }
+
+        @Override
+        public Request getRequest() {
+            return request;
+        }
+
+        /**
+         * the statuses expected by default, without asking GWT for the host page
+         */
+        @Override
+        public boolean isExpected(int status) {
+            return status == 200 || status == 201 || status == 204;
+        }
+    }
+
+    /**
+     * remembers what the callback was called with
+     */
+    static class RecordingCallback implements RequestCallback {
+
+        int responses;
+        Request request;
+        Response response;
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Throwable exception;
+
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+            responses++;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+            errors.add(exception);
+            this.exception = exception;
+        }
+    }
+
+    static class ResponseMock extends Response {
+
+        private final int status;
+        private final String text;
+        private final Map<String, String> headers = new HashMap<String, String>();
+
+        /**
+         * @param headers names and values of the headers
+         */
+        ResponseMock(int status, String text, String... headers) {
+            this.status = status;
+            this.text = text;
+            for (int i = 0; i < headers.length; i += 2) {
+                this.headers.put(headers[i], headers[i + 1]);
+            }
+        }
+
+        @Override
+        public String getHeader(String header) {
+            return headers.get(header);
+        }
+
+        @Override
+        public Header[] getHeaders() {
+            return null;
+        }
+
+        @Override
+        public String getHeadersAsString() {
+            return null;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return status;
+        }
+
+        @Override
+        public String getStatusText() {
+            return null;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+    }
+}
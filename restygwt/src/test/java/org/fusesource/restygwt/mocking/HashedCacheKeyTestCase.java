@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.ComplexCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.HashedCacheKey;
+import org.fusesource.restygwt.client.callback.CachingCallbackFilter;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+import org.fusesource.restygwt.mocking.CacheStatisticsTestCase.NoopCallback;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.MethodMock;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class HashedCacheKeyTestCase extends TestCase {
+
+    private static final String URL = "http://localhost/api/items";
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    public void testNormalizedUrl() {
+        assertEquals(URL + "?a=1&b=2", HashedCacheKey.normalize(URL + "?b=2&a=1"));
+        assertEquals(URL + "?a=1&b=2", HashedCacheKey.normalize(URL + "?a=1&b=2#top"));
+        // the values of a parameter keep their order
+        assertEquals(URL + "?a=2&a=1&b=3", HashedCacheKey.normalize(URL + "?a=2&b=3&a=1"));
+        assertEquals(URL + "?flag&z=1", HashedCacheKey.normalize(URL + "?z=1&&flag"));
+        assertEquals(URL + "?a=1", HashedCacheKey.normalize(URL + "?a=1"));
+        assertEquals(URL, HashedCacheKey.normalize(URL));
+
+        assertEquals(new HashedCacheKey("GET", URL + "?a=1&b=2", null),
+                new HashedCacheKey("GET", URL + "?b=2&a=1", null));
+        assertFalse(new HashedCacheKey("GET", URL + "?a=1", null)
+                .equals(new HashedCacheKey("GET", URL + "?a=2", null)));
+    }
+
+    public void testBodyDigest() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("{\"id\":").append(i).append("},");
+        }
+        CacheKey key = new HashedCacheKey("POST", URL, body.toString());
+        assertTrue(key.toString().length() < URL.length() + 40);
+        assertEquals(key, new HashedCacheKey("POST", URL, body.toString()));
+        assertEquals(key.hashCode(), new HashedCacheKey("POST", URL, body.toString()).hashCode());
+
+        assertFalse(key.equals(new HashedCacheKey("POST", URL, body.toString() + " ")));
+        assertFalse(key.equals(new HashedCacheKey("POST", URL, body.toString().replace("{\"id\":1}", "{\"id\":2}"))));
+        assertFalse(new HashedCacheKey("POST", URL, "").equals(new HashedCacheKey("POST", URL, null)));
+        assertFalse(new HashedCacheKey("POST", URL, "ab").equals(new HashedCacheKey("POST", URL, "ba")));
+    }
+
+    public void testDigestIsUnambiguous() {
+        // the hashes of an empty body are 0 and 5381, without padding "#0:01505"
+        assertEquals("#0:0000000000001505", HashedCacheKey.digest(""));
+        // 'a' hashes to 0x61 and 0x2b5c4 which must not read like 0x612 and 0xb5c4
+        assertEquals("#1:00000061" + "0002b5c4", HashedCacheKey.digest("a"));
+        for (String body : new String[] {"b", "ab", "{}", "{\"id\":1}", "\u00ff\u0100"}) {
+            assertTrue(HashedCacheKey.digest(body), HashedCacheKey.digest(body).matches("#\\d+:[0-9a-f]{16}"));
+        }
+    }
+
+    public void testSameAsComplexCacheKeyWithoutBody() {
+        RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, URL + "?a=1");
+        CacheKey complex = new ComplexCacheKey(builder);
+        CacheKey hashed = new HashedCacheKey(builder);
+        assertEquals(complex, hashed);
+        assertEquals(hashed, complex);
+        assertEquals(complex.hashCode(), hashed.hashCode());
+    }
+
+    public void testComputedOncePerMethod() {
+        final int[] computed = new int[1];
+        DefaultQueueableCacheStorage storage = new DefaultQueueableCacheStorage();
+        CachingDispatcherFilter dispatcherFilter = new CachingDispatcherFilter(storage, new CallbackFactory() {
+
+            @Override
+            public RequestCallback createCallback(Method method) {
+                return new NoopCallback();
+            }
+        }) {
+
+            @Override
+            protected CacheKey cacheKey(RequestBuilder builder) {
+                computed[0]++;
+                return super.cacheKey(builder);
+            }
+        };
+        CachingCallbackFilter callbackFilter = new CachingCallbackFilter(storage) {
+
+            @Override
+            protected CacheKey cacheKey(RequestBuilder builder) {
+                computed[0]++;
+                return super.cacheKey(builder);
+            }
+        };
+
+        Method method = new MethodMock();
+        method.builder.setCallback(new NoopCallback());
+        dispatcherFilter.filter(method, method.builder);
+        callbackFilter.filter(method, new TextResponseMock(200, "{}"), new NoopCallback());
+        assertEquals(1, computed[0]);
+        assertNotNull(storage.getResultOrReturnNull(method.getCacheKey(storage)));
+
+        // others compute their own
+        assertNull(method.getCacheKey(new Object()));
+
+        // and keep it next to the one of the cache
+        Object other = new Object();
+        CacheKey otherKey = new HashedCacheKey(method.builder);
+        method.setCacheKey(other, otherKey);
+        assertSame(otherKey, method.getCacheKey(other));
+        assertNotNull(method.getCacheKey(storage));
+        callbackFilter.filter(method, new TextResponseMock(200, "{}"), new NoopCallback());
+        assertEquals(1, computed[0]);
+    }
+}
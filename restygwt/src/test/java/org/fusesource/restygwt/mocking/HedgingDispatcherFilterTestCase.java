@@ -0,0 +1,320 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.fusesource.restygwt.client.Hedge;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.callback.RetryBudget;
+import org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher;
+import org.fusesource.restygwt.client.dispatcher.HedgingDispatcherFilter;
+import org.fusesource.restygwt.mocking.DispatcherMocks.MethodMock;
+import org.fusesource.restygwt.mocking.DispatcherMocks.RecordingCallback;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.RequestTimeoutException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+public class HedgingDispatcherFilterTestCase extends TestCase {
+
+    private HedgingDispatcherFilter filter;
+    private DefaultFilterawareDispatcher dispatcher;
+    private List<Runnable> scheduled;
+    private List<Integer> delays;
+    private List<Request> hedges;
+    private List<Request> replayed;
+    private long now;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        scheduled = new ArrayList<Runnable>();
+        delays = new ArrayList<Integer>();
+        hedges = new ArrayList<Request>();
+        replayed = new ArrayList<Request>();
+        now = 0;
+        filter(new RetryBudget(0.1, 5));
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private void filter(RetryBudget budget) {
+        filter = new HedgingDispatcherFilter(95, 500, budget) {
+
+            @Override
+            protected void schedule(Runnable hedge, int delayMillis) {
+                scheduled.add(hedge);
+                delays.add(delayMillis);
+            }
+
+            @Override
+            protected Request send(RequestBuilder builder) throws RequestException {
+                Request request = pending();
+                hedges.add(request);
+                return request;
+            }
+
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+        dispatcher = new DefaultFilterawareDispatcher(filter) {
+
+            @Override
+            protected Request doSend(Method method, RequestBuilder builder) throws RequestException {
+                Request request = pending();
+                ((MethodMock) method).request = request;
+                return request;
+            }
+        };
+    }
+
+    private static Request pending() {
+        Request request = EasyMock.createMock(Request.class);
+        EasyMock.expect(request.isPending()).andReturn(true).anyTimes();
+        return request;
+    }
+
+    private static void expectCancel(Request request) {
+        EasyMock.reset(request);
+        EasyMock.expect(request.isPending()).andReturn(true).anyTimes();
+        request.cancel();
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(request);
+    }
+
+    private MethodMock send(RequestBuilder.Method httpMethod, String delay, RequestCallback callback) throws RequestException {
+        MethodMock method = new MethodMock(httpMethod, "http://localhost/search?q=resty");
+        if (delay != null) {
+            method.addData(Hedge.KEY, delay);
+        }
+        method.builder.setCallback(callback);
+        dispatcher.send(method, method.builder);
+        EasyMock.replay(method.request);
+        return method;
+    }
+
+    private void hedge() {
+        List<Runnable> due = new ArrayList<Runnable>(scheduled);
+        scheduled.clear();
+        for (Runnable runnable : due) {
+            runnable.run();
+        }
+        for (Request request : hedges) {
+            if (!replayed.contains(request)) {
+                EasyMock.replay(request);
+                replayed.add(request);
+            }
+        }
+    }
+
+    private static void expectNotPending(Request request) {
+        EasyMock.reset(request);
+        EasyMock.expect(request.isPending()).andReturn(false).anyTimes();
+        EasyMock.replay(request);
+    }
+
+    public void testHedgeWins() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        assertEquals(Integer.valueOf(100), delays.get(0));
+
+        hedge();
+        assertEquals(1, hedges.size());
+        Request hedge = hedges.get(0);
+        expectCancel(method.request);
+
+        RequestCallback race = method.builder.getCallback();
+        race.onResponseReceived(hedge, EasyMock.createMock(Response.class));
+        EasyMock.verify(method.request);
+        assertEquals(1, callback.responses);
+        assertSame(hedge, callback.request);
+
+        // whatever the cancelled request still delivers is dropped
+        race.onResponseReceived(method.request, EasyMock.createMock(Response.class));
+        assertEquals(1, callback.responses);
+        assertEquals(0, callback.errors.size());
+    }
+
+    public void testFirstWins() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        hedge();
+        Request hedge = hedges.get(0);
+        expectCancel(hedge);
+
+        method.builder.getCallback().onResponseReceived(method.request, EasyMock.createMock(Response.class));
+        EasyMock.verify(hedge);
+        assertEquals(1, callback.responses);
+        assertSame(method.request, callback.request);
+    }
+
+    public void testAnsweredInTime() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        method.builder.getCallback().onResponseReceived(method.request, EasyMock.createMock(Response.class));
+
+        hedge();
+        assertTrue(hedges.isEmpty());
+        assertEquals(1, callback.responses);
+    }
+
+    public void testOnlyAnnotatedGets() throws Exception {
+        send(RequestBuilder.GET, null, new RecordingCallback());
+        send(RequestBuilder.POST, "100", new RecordingCallback());
+        assertTrue(scheduled.isEmpty());
+    }
+
+    public void testErrorWaitsForOtherRequest() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        hedge();
+        Request hedge = hedges.get(0);
+
+        expectNotPending(method.request);
+        method.builder.getCallback().onError(method.request, new RequestTimeoutException(method.request, 100));
+        assertEquals(0, callback.errors.size());
+
+        method.builder.getCallback().onResponseReceived(hedge, EasyMock.createMock(Response.class));
+        assertEquals(1, callback.responses);
+        assertEquals(0, callback.errors.size());
+    }
+
+    public void testErrorOfBothRequests() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        hedge();
+        Request hedge = hedges.get(0);
+
+        method.builder.getCallback().onError(hedge, new RequestTimeoutException(hedge, 100));
+        method.builder.getCallback().onError(method.request, new RequestTimeoutException(method.request, 100));
+        assertEquals(1, callback.errors.size());
+        assertEquals(0, callback.responses);
+    }
+
+    public void testRetryIsNotHedged() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        hedge();
+        Request hedge = hedges.get(0);
+        expectCancel(hedge);
+
+        // e.g. a 503 the callback sends again with the same builder
+        method.builder.getCallback().onResponseReceived(method.request, EasyMock.createMock(Response.class));
+        assertSame(callback, method.builder.getCallback());
+
+        method.builder.getCallback().onResponseReceived(null, EasyMock.createMock(Response.class));
+        assertEquals(2, callback.responses);
+        hedge();
+        assertEquals(1, hedges.size());
+    }
+
+    public void testCancelledIsNotHedged() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+
+        expectNotPending(method.request);
+        hedge();
+        assertTrue(hedges.isEmpty());
+        assertSame(callback, method.builder.getCallback());
+        assertEquals(0, callback.responses);
+        assertEquals(0, callback.errors.size());
+    }
+
+    public void testHedgeOfCancelledIsCancelled() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        hedge();
+        Request hedge = hedges.get(0);
+        RequestCallback race = method.builder.getCallback();
+
+        // still in flight, keep watching
+        hedge();
+        assertEquals(1, scheduled.size());
+
+        expectNotPending(method.request);
+        expectCancel(hedge);
+        hedge();
+        EasyMock.verify(hedge);
+        assertTrue(scheduled.isEmpty());
+
+        race.onResponseReceived(hedge, EasyMock.createMock(Response.class));
+        assertEquals(0, callback.responses);
+        assertEquals(0, callback.errors.size());
+    }
+
+    public void testSupersededCancelsHedge() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send(RequestBuilder.GET, "100", callback);
+        hedge();
+        Request hedge = hedges.get(0);
+        RequestCallback race = method.builder.getCallback();
+
+        expectNotPending(method.request);
+        expectCancel(hedge);
+        race.onError(method.request, new RequestException("superseded by a newer request of group search"));
+        EasyMock.verify(hedge);
+        assertEquals(1, callback.errors.size());
+
+        race.onResponseReceived(hedge, EasyMock.createMock(Response.class));
+        assertEquals(0, callback.responses);
+    }
+
+    public void testBudget() throws Exception {
+        filter(new RetryBudget(0, 1));
+        send(RequestBuilder.GET, "100", new RecordingCallback());
+        send(RequestBuilder.GET, "100", new RecordingCallback());
+        hedge();
+
+        assertEquals(1, hedges.size());
+        assertEquals(0, filter.getRemainingHedges());
+    }
+
+    public void testLearnedDelay() throws Exception {
+        String endpoint = "GET http://localhost/search";
+        assertEquals(500, filter.getDelay(endpoint));
+
+        for (int i = 1; i <= HedgingDispatcherFilter.MIN_SAMPLES; i++) {
+            now = 0;
+            MethodMock method = send(RequestBuilder.GET, "-1", new RecordingCallback());
+            now = i * 10;
+            method.builder.getCallback().onResponseReceived(method.request, EasyMock.createMock(Response.class));
+        }
+        assertEquals(Integer.valueOf(500), delays.get(0));
+        // the 95th percentile of 10, 20, ..., 200
+        assertEquals(190, filter.getDelay(endpoint));
+
+        send(RequestBuilder.GET, "-1", new RecordingCallback());
+        assertEquals(Integer.valueOf(190), delays.get(delays.size() - 1));
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.cache.CacheControl;
+import org.fusesource.restygwt.client.cache.ComplexCacheKey;
+import org.fusesource.restygwt.client.cache.HttpQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.VaryingCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage.ResponseWrapper;
+import org.fusesource.restygwt.mocking.RevalidatingQueueableCacheStorageTestCase.ResponseMock;
+
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class HttpQueueableCacheStorageTestCase extends TestCase {
+
+    private long now;
+    private HttpQueueableCacheStorage storage;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        // Wed, 21 Oct 2015 07:28:00 GMT
+        this.now = 1445412480000L;
+        this.storage = new HttpQueueableCacheStorage(1000) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private VaryingCacheKey key(String url, String... headers) {
+        RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, url);
+        for (int i = 0; i < headers.length; i += 2) {
+            builder.setHeader(headers[i], headers[i + 1]);
+        }
+        return new VaryingCacheKey(builder);
+    }
+
+    private Response cached(VaryingCacheKey key) {
+        Response response = storage.getResultOrReturnNull(key);
+        return response == null ? null : ((ResponseWrapper) response).response;
+    }
+
+    public void testMaxAge() {
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        Response response = new ResponseMock(200, "Cache-Control", "public, max-age=60",
+                "Expires", "Wed, 21 Oct 2015 07:28:10 GMT");
+        storage.putResult(key, response);
+
+        // max-age wins over Expires
+        now += 59 * 1000;
+        assertSame(response, cached(key));
+        now += 1000;
+        assertNull(cached(key));
+    }
+
+    public void testExpires() {
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        // the clock of the server is 10 seconds ahead
+        Response response = new ResponseMock(200, "Date", "Wed, 21 Oct 2015 07:28:10 GMT",
+                "Expires", "Wed, 21 Oct 2015 07:29:10 GMT");
+        storage.putResult(key, response);
+
+        now += 59 * 1000;
+        assertSame(response, cached(key));
+        now += 1000;
+        assertNull(cached(key));
+
+        VaryingCacheKey expired = key("http://localhost/api/expired");
+        storage.putResult(expired, new ResponseMock(200, "Expires", "0"));
+        assertNull(cached(expired));
+    }
+
+    public void testAge() {
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        // a shared cache held it for 40 of its 60 seconds already
+        Response response = new ResponseMock(200, "Cache-Control", "max-age=60", "Age", "40");
+        storage.putResult(key, response);
+
+        now += 19 * 1000;
+        assertSame(response, cached(key));
+        now += 1000;
+        assertNull(cached(key));
+
+        VaryingCacheKey old = key("http://localhost/api/old");
+        storage.putResult(old, new ResponseMock(200, "Cache-Control", "max-age=60", "Age", "90"));
+        assertNull(cached(old));
+    }
+
+    public void testDefaultLifetime() {
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        Response response = new ResponseMock(200);
+        storage.putResult(key, response);
+
+        now += 999;
+        assertSame(response, cached(key));
+        now += 1;
+        assertNull(cached(key));
+    }
+
+    public void testNoStore() {
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        storage.putResult(key, new ResponseMock(200));
+        storage.putResult(key, new ResponseMock(200, "Cache-Control", "no-store"));
+        assertNull(cached(key));
+
+        storage.putResult(key, new ResponseMock(200, "Vary", "*"));
+        assertNull(cached(key));
+    }
+
+    public void testPrivateIsStored() {
+        VaryingCacheKey key = key("http://localhost/api/me");
+        Response response = new ResponseMock(200, "Cache-Control", "private, max-age=10");
+        storage.putResult(key, response);
+        assertSame(response, cached(key));
+    }
+
+    public void testNoCacheAndMustRevalidate() {
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        Response response = new ResponseMock(200, "Cache-Control", "no-cache", "ETag", "\"v1\"");
+        storage.putResult(key, response);
+
+        // always revalidated
+        assertNull(cached(key));
+        assertSame(response, ((ResponseWrapper) storage.getStaleResultOrReturnNull(key)).response);
+
+        // the 304 comes with a lifetime
+        storage.revalidated(key, new ResponseMock(304, "Cache-Control", "max-age=5, must-revalidate"));
+        assertSame(response, cached(key));
+        now += 5000;
+        assertNull(cached(key));
+
+        CacheControl cacheControl = CacheControl.parse(
+                new ResponseMock(304, "Cache-Control", "max-age=5, must-revalidate"));
+        assertTrue(cacheControl.mustRevalidate);
+        assertFalse(cacheControl.noStore);
+        assertEquals(5, cacheControl.maxAge);
+    }
+
+    public void testVary() {
+        VaryingCacheKey english = key("http://localhost/api/countries", "Accept-Language", "en");
+        VaryingCacheKey german = key("http://localhost/api/countries", "Accept-Language", "de");
+        Response englishResponse = new ResponseMock(200, "Vary", "accept-language", "Cache-Control", "max-age=60");
+        Response germanResponse = new ResponseMock(200, "Vary", "accept-language", "Cache-Control", "max-age=60");
+
+        // before the first response the variants are unknown
+        assertEquals(english, german);
+        assertEquals(english, new ComplexCacheKey(
+                new RequestBuilder(RequestBuilder.GET, "http://localhost/api/countries")));
+        assertEquals(new ComplexCacheKey(
+                new RequestBuilder(RequestBuilder.GET, "http://localhost/api/countries")), english);
+        assertEquals(english.getKey(), english);
+        assertEquals(english, english.getKey());
+
+        storage.putResult(english, englishResponse);
+        assertSame(englishResponse, cached(english));
+        assertNull(cached(german));
+
+        storage.putResult(german, germanResponse);
+        assertSame(englishResponse, cached(english));
+        assertSame(germanResponse, cached(german));
+
+        storage.remove(german);
+        assertSame(englishResponse, cached(english));
+        assertNull(cached(german));
+    }
+
+    public void testHeadersParsedOncePerStore() {
+        final int[] parsed = new int[1];
+        VaryingCacheKey key = key("http://localhost/api/countries");
+        Response response = new ResponseMock(200, "Cache-Control", "max-age=1, stale-while-revalidate=60") {
+
+            @Override
+            public String getHeader(String header) {
+                if ("Cache-Control".equals(header)) {
+                    parsed[0]++;
+                }
+                return super.getHeader(header);
+            }
+        };
+        storage.putResult(key, response);
+        assertEquals(1, parsed[0]);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(response, cached(key));
+        }
+        now += 2000;
+        for (int i = 0; i < 10; i++) {
+            assertNull(cached(key));
+            assertSame(response, ((ResponseWrapper) storage.getServableStaleResultOrReturnNull(key)).response);
+        }
+        assertEquals(1, parsed[0]);
+    }
+}
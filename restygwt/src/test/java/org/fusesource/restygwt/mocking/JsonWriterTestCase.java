@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package org.fusesource.restygwt.mocking;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.JsonWriter;
+
+public class JsonWriterTestCase extends TestCase {
+
+    public void testObject() {
+        JsonWriter writer = new JsonWriter();
+        writer.beginObject().name("name").value("resty").name("age").value(3).name("flag").value(true)
+                .name("nothing").nullValue().endObject();
+        assertEquals("{\"name\":\"resty\",\"age\":3,\"flag\":true,\"nothing\":null}", writer.toString());
+    }
+
+    public void testNesting() {
+        JsonWriter writer = new JsonWriter();
+        writer.beginArray().beginObject().name("a").beginArray().value(1).value(2).endArray().endObject()
+                .beginObject().endObject().beginArray().endArray().value(1.5).endArray();
+        assertEquals("[{\"a\":[1,2]},{},[],1.5]", writer.toString());
+    }
+
+    public void testNullString() {
+        JsonWriter writer = new JsonWriter();
+        writer.beginArray().value((String) null).value("").endArray();
+        assertEquals("[null,\"\"]", writer.toString());
+    }
+
+    public void testEscaping() {
+        JsonWriter writer = new JsonWriter();
+        writer.value("a\"b\\c\nd\re\tf\bg\fh\u0001i\u2028j\u2029k \u00e4\u00f6\u00fc");
+        assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\\bg\\fh\\u0001i\\u2028j\\u2029k \u00e4\u00f6\u00fc\"", writer.toString());
+    }
+
+    public void testEscapingAtTheEnds() {
+        JsonWriter writer = new JsonWriter();
+        writer.value("\"\"");
+        assertEquals("\"\\\"\\\"\"", writer.toString());
+    }
+
+    public void testJsonValueIsWrittenAsItIs() {
+        JsonWriter writer = new JsonWriter();
+        writer.beginArray().jsonValue("{\"a\":[1, 2]}").jsonValue("null").endArray();
+        assertEquals("[{\"a\":[1, 2]},null]", writer.toString());
+    }
+
+    public void testAppendsToTheGivenBuilder() {
+        StringBuilder builder = new StringBuilder("prefix ");
+        new JsonWriter(builder).beginArray().value("x").endArray();
+        assertEquals("prefix [\"x\"]", builder.toString());
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fusesource.restygwt.mocking;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.RequestTimingEvent;
+import org.fusesource.restygwt.client.RequestTimingEvent.Phase;
+import org.fusesource.restygwt.client.statistics.EndpointStatistics;
+import org.fusesource.restygwt.client.statistics.Histogram;
+import org.fusesource.restygwt.client.statistics.RequestStatistics;
+import org.fusesource.restygwt.client.statistics.StatisticsFlusher;
+
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+public class RequestStatisticsTestCase extends TestCase {
+
+    static class MethodMock extends Method {
+
+        Response response;
+
+        MethodMock(String serviceMethod, String text) {
+            serviceMethod("com.acme.ContactService", serviceMethod);
+            response = EasyMock.createMock(Response.class);
+            EasyMock.expect(response.getText()).andReturn(text).anyTimes();
+            EasyMock.replay(response);
+        }
+
+        @Override
+        public Response getResponse() {
+            return response;
+        }
+    }
+
+    private RequestStatistics statistics;
+
+    private String sent;
+
+    private StatisticsFlusher flusher;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        statistics = new RequestStatistics();
+        sent = null;
+        flusher = new StatisticsFlusher(statistics, null) {
+
+            @Override
+            protected void send(String summary) {
+                sent = summary;
+            }
+        };
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private void request(String serviceMethod, double latency, String text, boolean failure) {
+        Method method = new MethodMock(serviceMethod, text);
+        statistics.onTiming(new RequestTimingEvent(method, Phase.DISPATCH, 0, 0.1, false));
+        statistics.onTiming(new RequestTimingEvent(method, Phase.NETWORK, 0, latency, failure));
+        if (!failure) {
+            statistics.onTiming(new RequestTimingEvent(method, Phase.PARSE, latency, latency + 0.5, false));
+            statistics.onTiming(new RequestTimingEvent(method, Phase.DECODE, latency + 0.5, latency + 2, false));
+        }
+        statistics.onTiming(new RequestTimingEvent(method, Phase.CALLBACK, latency + 2, latency + 3, failure));
+    }
+
+    public void testHistogram() {
+        Histogram histogram = new Histogram(Histogram.LATENCY_BOUNDS);
+        assertEquals(0.0, histogram.getPercentile(50));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.add(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean());
+        assertEquals(50.0, histogram.getPercentile(50));
+        assertEquals(100.0, histogram.getPercentile(95));
+        assertEquals(100.0, histogram.getMax());
+
+        // beyond the last bucket the maximum is as good as it gets
+        histogram.add(60000);
+        assertEquals(60000.0, histogram.getPercentile(100));
+        assertEquals(1, histogram.getCounts()[Histogram.LATENCY_BOUNDS.length]);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getCounts()[0]);
+    }
+
+    public void testAggregatesPerServiceMethod() {
+        for (int i = 0; i < 9; i++) {
+            request("getContact", 40, "{\"name\":\"acme\"}", false);
+        }
+        request("getContact", 400, null, true);
+        request("getContacts", 1500, "[]", false);
+        // not sent by a service method
+        statistics.onTiming(new RequestTimingEvent(new Method() {}, Phase.NETWORK, 0, 10, false));
+
+        assertEquals(2, statistics.getEndpoints().size());
+        EndpointStatistics contact = statistics.getStatistics("com.acme.ContactService#getContact");
+        assertEquals(10, contact.getRequests());
+        assertEquals(1, contact.getErrors());
+        assertEquals(0.1, contact.getErrorRate());
+        assertEquals(50.0, contact.getLatency().getPercentile(50));
+        assertEquals(400.0, contact.getLatency().getPercentile(99));
+        assertEquals(9, contact.getResponseSize().getCount());
+        assertEquals(15.0, contact.getResponseSize().getMax());
+        assertEquals(9, contact.getParseTime().getCount());
+        assertEquals(1.5, contact.getDecodeTime().getMean());
+
+        // the bucket up to two seconds, capped by the maximum
+        assertEquals(1500.0, statistics.getStatistics("com.acme.ContactService#getContacts")
+                .getLatency().getPercentile(50));
+    }
+
+    public void testFlushSendsOneSummaryAndStartsOver() {
+        flusher.flush();
+        assertNull(sent);
+
+        request("getContact", 40, "{}", false);
+        request("getContacts", 1500, "[]", true);
+        flusher.flush();
+
+        assertEquals("{\"endpoints\":["
+                + "{\"endpoint\":\"com.acme.ContactService#getContact\",\"requests\":1,\"errors\":0,"
+                + "\"latency\":{\"p50\":40,\"p95\":40,\"p99\":40,\"max\":40,\"mean\":40},"
+                + "\"size\":{\"p50\":2,\"p95\":2,\"p99\":2,\"max\":2,\"mean\":2},"
+                + "\"parse\":{\"p50\":0.5,\"p95\":0.5,\"p99\":0.5,\"max\":0.5,\"mean\":0.5},"
+                + "\"decode\":{\"p50\":1.5,\"p95\":1.5,\"p99\":1.5,\"max\":1.5,\"mean\":1.5}}",
+                sent.substring(0, sent.indexOf("},{\"endpoint\"") + 1));
+        assertTrue(sent.contains("{\"endpoint\":\"com.acme.ContactService#getContacts\",\"requests\":1,\"errors\":1,"));
+        assertTrue(sent.endsWith("}]}"));
+
+        sent = null;
+        flusher.flush();
+        assertNull(sent);
+        assertEquals(0, statistics.getStatistics("com.acme.ContactService#getContact").getRequests());
+    }
+}
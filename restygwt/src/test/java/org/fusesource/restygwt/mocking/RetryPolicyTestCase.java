@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.FailedStatusCodeException;
+import org.fusesource.restygwt.client.Idempotent;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.callback.JitteredRetryPolicy;
+import org.fusesource.restygwt.client.callback.RetryBudget;
+import org.fusesource.restygwt.client.callback.RetryPolicy;
+import org.fusesource.restygwt.client.callback.RetryingFilterawareRequestCallback;
+import org.fusesource.restygwt.mocking.DispatcherMocks.MethodMock;
+import org.fusesource.restygwt.mocking.DispatcherMocks.RecordingCallback;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class RetryPolicyTestCase extends TestCase {
+
+    private static final String URL = "http://localhost/api/items";
+
+    /**
+     * picks the given random numbers in turn
+     */
+    static class FixedRandomRetryPolicy extends JitteredRetryPolicy {
+
+        private final double[] randoms;
+        private int next;
+
+        FixedRandomRetryPolicy(int baseMillis, int capMillis, int maxRetries, double... randoms) {
+            super(baseMillis, capMillis, maxRetries);
+            this.randoms = randoms;
+        }
+
+        @Override
+        protected double random() {
+            return randoms[next++ % randoms.length];
+        }
+
+        @Override
+        protected long now() {
+            return 1000000;
+        }
+    }
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private static Response response(int status, String... headers) {
+        return new TextResponseMock(status, "", headers);
+    }
+
+    public void testDecorrelatedJitter() {
+        Method get = new MethodMock(RequestBuilder.GET, URL);
+        RetryPolicy policy = new FixedRandomRetryPolicy(100, 1000, 5, 0.0, 0.5, 1.0);
+
+        // between the base and three times the last delay
+        assertEquals(100, policy.delay(get, response(503), 0, 0));
+        assertEquals(200, policy.delay(get, response(503), 1, 100));
+        assertEquals(900, policy.delay(get, response(503), 2, 300));
+        assertEquals(100, policy.delay(get, response(503), 3, 900));
+        // capped
+        assertEquals(1000, policy.delay(get, response(503), 3, 900));
+        assertEquals(1000, policy.delay(get, response(503), 4, 1000));
+        // no more
+        assertEquals(-1, policy.delay(get, response(503), 5, 1000));
+    }
+
+    public void testRetryableRequests() {
+        RetryPolicy policy = new FixedRandomRetryPolicy(100, 1000, 5, 0.0);
+        Method get = new MethodMock(RequestBuilder.GET, URL);
+        assertEquals(100, policy.delay(get, response(0), 0, 0));
+        assertEquals(100, policy.delay(get, response(408), 0, 0));
+        assertEquals(100, policy.delay(get, response(500), 0, 0));
+        assertEquals(-1, policy.delay(get, response(404), 0, 0));
+        assertEquals(-1, policy.delay(get, response(400), 0, 0));
+
+        assertEquals(-1, policy.delay(new MethodMock(RequestBuilder.POST, URL), response(503), 0, 0));
+        Method put = new MethodMock(RequestBuilder.PUT, URL);
+        assertEquals(-1, policy.delay(put, response(503), 0, 0));
+        put.addData(Idempotent.KEY, "true");
+        assertEquals(100, policy.delay(put, response(503), 0, 0));
+        Method delete = new MethodMock(RequestBuilder.DELETE, URL);
+        delete.addData(Idempotent.KEY, "true");
+        assertEquals(100, policy.delay(delete, response(503), 0, 0));
+        // a POST never is
+        Method post = new MethodMock(RequestBuilder.POST, URL);
+        post.addData(Idempotent.KEY, "true");
+        assertEquals(-1, policy.delay(post, response(503), 0, 0));
+    }
+
+    public void testRetryAfter() {
+        RetryPolicy policy = new FixedRandomRetryPolicy(100, 5000, 5, 0.0);
+        Method get = new MethodMock(RequestBuilder.GET, URL);
+        assertEquals(2000, policy.delay(get, response(429, "Retry-After", "2"), 0, 0));
+        assertEquals(3000, policy.delay(get, response(503, "Retry-After", " 3 "), 0, 0));
+        @SuppressWarnings("deprecation")
+        String date = new Date(1000000 + 4000).toGMTString();
+        assertEquals(4000, policy.delay(get, response(503, "Retry-After", date), 0, 0));
+        // longer than the cap
+        assertEquals(-1, policy.delay(get, response(503, "Retry-After", "60"), 0, 0));
+        // only for 429 and 503, garbage is ignored
+        assertEquals(100, policy.delay(get, response(500, "Retry-After", "2"), 0, 0));
+        assertEquals(100, policy.delay(get, response(503, "Retry-After", "soon"), 0, 0));
+    }
+
+    public void testBudget() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        assertTrue(budget.withdraw());
+        assertTrue(budget.withdraw());
+        assertFalse(budget.withdraw());
+        budget.deposit();
+        assertFalse(budget.withdraw());
+        budget.deposit();
+        assertTrue(budget.withdraw());
+        // never more than the reserve
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        assertEquals(2, budget.getRemaining());
+    }
+
+    private RetryingFilterawareRequestCallback callback(Method method, RequestCallback original,
+            RetryBudget budget, final List<Integer> delays) {
+        method.builder.setCallback(original);
+        return new RetryingFilterawareRequestCallback(method, new FixedRandomRetryPolicy(100, 1000, 3, 0.0),
+                budget) {
+
+            @Override
+            protected void retry(int delayMillis) {
+                delays.add(delayMillis);
+            }
+        };
+    }
+
+    public void testGivesUpToTheCallback() {
+        List<Integer> delays = new ArrayList<Integer>();
+        RecordingCallback original = new RecordingCallback();
+        RetryingFilterawareRequestCallback callback = callback(new MethodMock(RequestBuilder.GET, URL), original,
+                null, delays);
+
+        for (int i = 0; i < 3; i++) {
+            callback.onResponseReceived(null, response(503));
+        }
+        assertEquals(3, delays.size());
+        assertTrue(original.errors.isEmpty());
+
+        callback.onResponseReceived(null, response(504));
+        assertEquals(3, delays.size());
+        assertEquals(1, original.errors.size());
+        assertEquals("Response 504 for GET " + URL + " after 3 retries.", original.errors.get(0).getMessage());
+
+        // not retryable at all
+        original = new RecordingCallback();
+        callback(new MethodMock(RequestBuilder.POST, URL), original, null, delays).onResponseReceived(null,
+                response(503));
+        assertEquals(3, delays.size());
+        assertTrue(original.errors.get(0) instanceof FailedStatusCodeException);
+    }
+
+    public void testBudgetIsShared() {
+        List<Integer> delays = new ArrayList<Integer>();
+        RetryBudget budget = new RetryBudget(0.2, 2);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        RetryingFilterawareRequestCallback one = callback(new MethodMock(RequestBuilder.GET, URL), first, budget,
+                delays);
+        RetryingFilterawareRequestCallback other = callback(new MethodMock(RequestBuilder.GET, URL), second, budget,
+                delays);
+
+        one.onResponseReceived(null, response(503));
+        other.onResponseReceived(null, response(503));
+        assertEquals(2, delays.size());
+        // out of budget, gives up early
+        one.onResponseReceived(null, response(503));
+        assertEquals(2, delays.size());
+        assertEquals(1, first.errors.size());
+        assertEquals("Response 503 for GET " + URL + " after 1 retries.", first.errors.get(0).getMessage());
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.QueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.RevalidatingQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.SimpleCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage.ResponseWrapper;
+import org.fusesource.restygwt.client.callback.CachingCallbackFilter;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+import org.fusesource.restygwt.client.callback.FilterawareRequestCallback;
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+
+import com.google.gwt.http.client.Header;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class RevalidatingQueueableCacheStorageTestCase extends TestCase {
+
+    static class ResponseMock extends Response {
+
+        private final int status;
+        private final Map<String, String> headers = new HashMap<String, String>();
+
+        ResponseMock(int status, String... headers) {
+            this.status = status;
+            for (int i = 0; i < headers.length; i += 2) {
+                this.headers.put(headers[i], headers[i + 1]);
+            }
+        }
+
+        @Override
+        public String getHeader(String header) {
+            return headers.get(header);
+        }
+
+        @Override
+        public Header[] getHeaders() {
+            return null;
+        }
+
+        @Override
+        public String getHeadersAsString() {
+            return null;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return status;
+        }
+
+        @Override
+        public String getStatusText() {
+            return null;
+        }
+
+        @Override
+        public String getText() {
+            return "{}";
+        }
+    }
+
+    private long now;
+    private RevalidatingQueueableCacheStorage storage;
+    private CacheKey key;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.now = 1000;
+        this.storage = new RevalidatingQueueableCacheStorage(100) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+        this.key = new SimpleCacheKey("GET http://localhost/api/countries [null]");
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    public void testExpiry() {
+        Response etag = new ResponseMock(200, "ETag", "\"v1\"");
+        Response plain = new ResponseMock(200);
+        CacheKey plainKey = new SimpleCacheKey("plain");
+
+        storage.putResult(key, etag);
+        storage.putResult(plainKey, plain);
+        assertSame(etag, ((ResponseWrapper) storage.getResultOrReturnNull(key)).response);
+        assertSame(plain, ((ResponseWrapper) storage.getResultOrReturnNull(plainKey)).response);
+        assertNull(storage.getStaleResultOrReturnNull(key));
+
+        now += 100;
+        assertNull(storage.getResultOrReturnNull(key));
+        assertNull(storage.getResultOrReturnNull(plainKey));
+
+        // only the response with a validator is kept
+        assertSame(etag, ((ResponseWrapper) storage.getStaleResultOrReturnNull(key)).response);
+        assertNull(storage.getStaleResultOrReturnNull(plainKey));
+
+        Response revalidated = storage.revalidated(key, new ResponseMock(304));
+        assertSame(etag, ((ResponseWrapper) revalidated).response);
+        assertNotNull(revalidated.getHeader(QueueableCacheStorage.RESTY_CACHE_HEADER));
+        assertSame(etag, ((ResponseWrapper) storage.getResultOrReturnNull(key)).response);
+        assertNull(storage.revalidated(plainKey, new ResponseMock(304)));
+    }
+
+    public void testConditionalRequest() throws Exception {
+        storage.putResult(key, new ResponseMock(200, "ETag", "\"v1\"",
+                "Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT"));
+
+        CallbackFactory factory = EasyMock.createMock(CallbackFactory.class);
+        EasyMock.expect(factory.createCallback(EasyMock.<Method>anyObject()))
+                .andReturn(EasyMock.createMock(FilterawareRequestCallback.class)).anyTimes();
+        Method method = EasyMock.createMock(Method.class);
+        // no domains to record the statistics in
+        EasyMock.expect(method.getData()).andReturn(new HashMap<String, String>()).anyTimes();
+        EasyMock.replay(factory, method);
+        CachingDispatcherFilter filter = new CachingDispatcherFilter(storage, factory) {
+
+            @Override
+            protected CacheKey cacheKey(RequestBuilder builder) {
+                return key;
+            }
+        };
+
+        now += 100;
+        RequestBuilder expired = new RequestBuilder(RequestBuilder.GET, "http://localhost/api/countries");
+        expired.setCallback(EasyMock.createMock(RequestCallback.class));
+        assertTrue(filter.filter(method, expired));
+        assertEquals("\"v1\"", expired.getHeader("If-None-Match"));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", expired.getHeader("If-Modified-Since"));
+        assertTrue(storage.hasCallback(key));
+    }
+
+    public void testNotModified() throws Exception {
+        Response cached = new ResponseMock(200, "ETag", "\"v1\"");
+        storage.putResult(key, cached);
+        now += 100;
+
+        RequestCallback first = EasyMock.createMock(RequestCallback.class);
+        RequestCallback second = EasyMock.createMock(RequestCallback.class);
+        RequestCallback[] callbacks = new RequestCallback[] { first, second };
+        for (RequestCallback callback : callbacks) {
+            callback.onResponseReceived(EasyMock.<Request>isNull(), EasyMock.<Response>anyObject());
+            EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+                @Override
+                public Object answer() {
+                    Response delivered = (Response) EasyMock.getCurrentArguments()[1];
+                    assertEquals("{}", delivered.getText());
+                    assertEquals(200, delivered.getStatusCode());
+                    assertEquals("true", delivered.getHeader(QueueableCacheStorage.RESTY_CACHE_HEADER));
+                    return null;
+                }
+            });
+            storage.addCallback(key, callback);
+        }
+        Method method = EasyMock.createMock(Method.class);
+        EasyMock.replay(first, second, method);
+
+        CachingCallbackFilter filter = new CachingCallbackFilter(storage) {
+
+            @Override
+            protected CacheKey cacheKey(RequestBuilder builder) {
+                return key;
+            }
+        };
+        // 304 is no expected status, so it arrives as error
+        RequestCallback callback = filter.filter(method, new ResponseMock(304), first);
+        callback.onError(null, new RequestException("304"));
+
+        EasyMock.verify(first, second, method);
+        assertSame(cached, ((ResponseWrapper) storage.getResultOrReturnNull(key)).response);
+        assertFalse(storage.hasCallback(key));
+    }
+}
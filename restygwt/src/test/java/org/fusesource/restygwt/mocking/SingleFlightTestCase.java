@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.fusesource.restygwt.client.AbstractRequestCallback;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.MethodCallback;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+import org.fusesource.restygwt.client.callback.DefaultCallbackFactory;
+import org.fusesource.restygwt.client.callback.SingleFlightCallbackFilter;
+import org.fusesource.restygwt.client.dispatcher.SingleFlight;
+import org.fusesource.restygwt.client.dispatcher.SingleFlightDispatcherFilter;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.MethodMock;
+import org.fusesource.restygwt.mocking.StaleWhileRevalidateTestCase.TextResponseMock;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class SingleFlightTestCase extends TestCase {
+
+    static class Results implements MethodCallback<String> {
+
+        final List<String> texts = new ArrayList<String>();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+
+        @Override
+        public void onSuccess(Method method, String response) {
+            texts.add(response);
+        }
+
+        @Override
+        public void onFailure(Method method, Throwable exception) {
+            failures.add(exception);
+        }
+    }
+
+    static class TextCallback extends AbstractRequestCallback<String> {
+
+        static int decoded;
+
+        TextCallback(Method method, Results results) {
+            super(method, results);
+        }
+
+        @Override
+        protected String parseResult() throws Exception {
+            decoded++;
+            return method.getResponse().getText();
+        }
+    }
+
+    static class Recording implements RequestCallback {
+
+        final List<Response> responses = new ArrayList<Response>();
+        int errors;
+
+        @Override
+        public void onResponseReceived(Request request, Response response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void onError(Request request, Throwable exception) {
+            errors++;
+        }
+    }
+
+    private SingleFlight singleFlight;
+    private SingleFlightDispatcherFilter filter;
+    private Results results;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.singleFlight = new SingleFlight();
+        this.filter = new SingleFlightDispatcherFilter(singleFlight,
+                new DefaultCallbackFactory(new SingleFlightCallbackFilter(singleFlight)), 5000);
+        this.results = new Results();
+        TextCallback.decoded = 0;
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private Method send(Method method) {
+        method.builder.setCallback(new TextCallback(method, results));
+        return filter.filter(method, method.builder) ? method : null;
+    }
+
+    public void testCollapse() {
+        singleFlight.setShareDecodedResults(true);
+        Method first = send(new MethodMock());
+        assertNotNull(first);
+        assertEquals(5000, first.builder.getTimeoutMillis());
+        assertNull(send(new MethodMock()));
+        assertNull(send(new MethodMock()));
+
+        first.builder.getCallback().onResponseReceived(null, new TextResponseMock(200, "countries"));
+        assertEquals(3, results.texts.size());
+        assertEquals("countries", results.texts.get(2));
+        // all share the response
+        assertEquals(1, TextCallback.decoded);
+
+        // nothing kept, sent again
+        assertFalse(singleFlight.isInFlight(singleFlight.key(first.builder)));
+        assertNotNull(send(new MethodMock()));
+    }
+
+    public void testWaitingDecodeOnTheirOwnByDefault() {
+        Method first = send(new MethodMock());
+        assertNull(send(new MethodMock()));
+        assertNull(send(new MethodMock()));
+
+        first.builder.getCallback().onResponseReceived(null, new TextResponseMock(200, "countries"));
+        assertEquals(3, results.texts.size());
+        assertEquals(3, TextCallback.decoded);
+    }
+
+    public void testFailedStatus() {
+        Method first = new MethodMock();
+        CacheKey key = singleFlight.key(first.builder);
+        singleFlight.start(key, first);
+        Recording waiting = new Recording();
+        singleFlight.join(key, waiting);
+
+        Response unavailable = new TextResponseMock(503, "unavailable");
+        Recording callback = new Recording();
+        new SingleFlightCallbackFilter(singleFlight).filter(first, unavailable, callback)
+                .onError(null, new RequestException("503"));
+        assertEquals(1, callback.errors);
+        // makes its own error out of the response
+        assertEquals("unavailable", waiting.responses.get(0).getText());
+        assertFalse(singleFlight.isInFlight(key));
+    }
+
+    public void testErrorAndTimeout() {
+        Method first = send(new MethodMock());
+        send(new MethodMock());
+        send(new MethodMock());
+
+        // e.g. a timeout, the callback filters do not get it
+        first.builder.getCallback().onError(null, new RequestException("timeout"));
+        assertEquals(3, results.failures.size());
+        assertEquals("timeout", results.failures.get(2).getMessage());
+        assertFalse(singleFlight.isInFlight(singleFlight.key(first.builder)));
+    }
+
+    public void testNoResponse() {
+        final List<Recording> callbacks = new ArrayList<Recording>();
+        filter = new SingleFlightDispatcherFilter(singleFlight, new CallbackFactory() {
+
+            @Override
+            public RequestCallback createCallback(Method method) {
+                // does not run the callback filters without a response
+                Recording callback = new Recording();
+                callbacks.add(callback);
+                return callback;
+            }
+        });
+        Method first = send(new MethodMock());
+        send(new MethodMock());
+
+        first.builder.getCallback().onResponseReceived(null, null);
+        assertEquals(2, callbacks.size());
+        assertEquals(1, callbacks.get(1).responses.size());
+        assertNull(callbacks.get(1).responses.get(0));
+        assertFalse(singleFlight.isInFlight(singleFlight.key(first.builder)));
+    }
+
+    public void testNewFlightWhileDelivering() {
+        final List<Method> resent = new ArrayList<Method>();
+        Method first = new MethodMock();
+        first.builder.setCallback(new TextCallback(first, new Results() {
+
+            @Override
+            public void onSuccess(Method method, String response) {
+                // polls again at once
+                resent.add(send(new MethodMock()));
+            }
+        }));
+        filter.filter(first, first.builder);
+        send(new MethodMock());
+
+        first.builder.getCallback().onResponseReceived(null, new TextResponseMock(200, "countries"));
+        assertNotNull(resent.get(0));
+        assertEquals(1, results.texts.size());
+        // the new request is still in flight
+        assertTrue(singleFlight.isInFlight(singleFlight.key(first.builder)));
+    }
+
+    public void testCancelledRequestIsNotWaitedFor() {
+        final Request cancelled = EasyMock.createMock(Request.class);
+        // pending while the second request joins, cancelled before the third one
+        EasyMock.expect(cancelled.isPending()).andReturn(true).once();
+        EasyMock.expect(cancelled.isPending()).andReturn(false).anyTimes();
+        EasyMock.replay(cancelled);
+        send(new MethodMock() {
+
+            @Override
+            public Request getRequest() {
+                return cancelled;
+            }
+        });
+        assertNull(send(new MethodMock()));
+        assertTrue(results.failures.isEmpty());
+
+        // the cancelled request never calls back, the next one goes over the wire
+        Method next = send(new MethodMock());
+        assertNotNull(next);
+        assertEquals(1, results.failures.size());
+        assertSame(next, singleFlight.getInFlight(singleFlight.key(next.builder)));
+
+        next.builder.getCallback().onResponseReceived(null, new TextResponseMock(200, "countries"));
+        assertEquals(1, results.texts.size());
+        assertFalse(singleFlight.isInFlight(singleFlight.key(next.builder)));
+    }
+
+    public void testOtherMethodsPass() {
+        Method post = new MethodMock();
+        post.builder = new RequestBuilder(RequestBuilder.POST, "http://localhost/api/countries");
+        assertNotNull(send(post));
+        assertNotNull(send(post));
+        assertEquals(0, post.builder.getTimeoutMillis());
+    }
+}
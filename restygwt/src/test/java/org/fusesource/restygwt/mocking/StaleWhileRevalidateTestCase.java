@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.AbstractRequestCallback;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.RefreshCallback;
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.HttpQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.RevalidatingQueueableCacheStorage;
+import org.fusesource.restygwt.client.cache.SimpleCacheKey;
+import org.fusesource.restygwt.client.cache.VaryingCacheKey;
+import org.fusesource.restygwt.client.cache.DefaultQueueableCacheStorage.ResponseWrapper;
+import org.fusesource.restygwt.client.callback.CallbackFactory;
+import org.fusesource.restygwt.client.dispatcher.CachingDispatcherFilter;
+import org.fusesource.restygwt.mocking.RevalidatingQueueableCacheStorageTestCase.ResponseMock;
+
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class StaleWhileRevalidateTestCase extends TestCase {
+
+    private static final String URL = "http://localhost/api/countries";
+
+    static class MethodMock extends Method {
+
+        MethodMock() {
+            builder = new RequestBuilder(RequestBuilder.GET, URL);
+        }
+
+        @Override
+        public boolean isExpected(int status) {
+            return status == 200;
+        }
+    }
+
+    static class RecordingCallback implements RefreshCallback<String> {
+
+        final List<String> results = new ArrayList<String>();
+        int failures;
+
+        @Override
+        public void onSuccess(Method method, String response) {
+            results.add(response);
+        }
+
+        @Override
+        public void onRefresh(Method method, String response) {
+            results.add("refreshed " + response);
+        }
+
+        @Override
+        public void onFailure(Method method, Throwable exception) {
+            failures++;
+        }
+    }
+
+    static class TextCallback extends AbstractRequestCallback<String> {
+
+        TextCallback(Method method, RecordingCallback callback) {
+            super(method, callback);
+        }
+
+        @Override
+        protected String parseResult() throws Exception {
+            return method.getResponse().getText();
+        }
+    }
+
+    static class TextResponseMock extends ResponseMock {
+
+        private final String text;
+
+        TextResponseMock(int status, String text, String... headers) {
+            super(status, headers);
+            this.text = text;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+    }
+
+    private long now;
+    private HttpQueueableCacheStorage storage;
+    private CachingDispatcherFilter filter;
+    private List<RequestCallback> refreshes;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.now = 1445412480000L;
+        this.refreshes = new ArrayList<RequestCallback>();
+        this.storage = new HttpQueueableCacheStorage(1000) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+        this.filter = new CachingDispatcherFilter(storage, new CallbackFactory() {
+
+            @Override
+            public RequestCallback createCallback(Method method) {
+                // stands for the filteraware callback which captures the refresh callback
+                RequestCallback refresh = method.builder.getCallback();
+                refreshes.add(refresh);
+                return refresh;
+            }
+        }) {
+
+            @Override
+            protected void deliver(RequestCallback callback, Response response) {
+                callback.onResponseReceived(null, response);
+            }
+        };
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private boolean send(RequestCallback callback) {
+        Method method = new MethodMock();
+        method.builder.setCallback(callback);
+        return filter.filter(method, method.builder);
+    }
+
+    private RecordingCallback sendRefreshable() {
+        Method method = new MethodMock();
+        RecordingCallback recording = new RecordingCallback();
+        method.builder.setCallback(new TextCallback(method, recording));
+        filter.filter(method, method.builder);
+        return recording;
+    }
+
+    /**
+     * the response of the refresh as the caching callback filter distributes it
+     */
+    private void refreshed(Response response) {
+        CacheKey key = new VaryingCacheKey(new RequestBuilder(RequestBuilder.GET, URL));
+        storage.putResult(key, response);
+        List<RequestCallback> callbacks = storage.removeCallbacks(key);
+        if (callbacks != null) {
+            for (RequestCallback callback : callbacks) {
+                callback.onResponseReceived(null, response);
+            }
+        }
+    }
+
+    public void testStaleWindow() {
+        RevalidatingQueueableCacheStorage fixed = new RevalidatingQueueableCacheStorage(100, 50) {
+
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+        CacheKey key = new SimpleCacheKey("plain");
+        Response response = new ResponseMock(200);
+        fixed.putResult(key, response);
+
+        now += 100;
+        assertNull(fixed.getResultOrReturnNull(key));
+        assertSame(response, ((ResponseWrapper) fixed.getServableStaleResultOrReturnNull(key)).response);
+        now += 49;
+        assertSame(response, ((ResponseWrapper) fixed.getServableStaleResultOrReturnNull(key)).response);
+        now += 1;
+        assertNull(fixed.getServableStaleResultOrReturnNull(key));
+        assertNull(fixed.getResultOrReturnNull(key));
+    }
+
+    public void testCacheControl() {
+        VaryingCacheKey key = new VaryingCacheKey(new RequestBuilder(RequestBuilder.GET, URL));
+        storage.putResult(key, new ResponseMock(200, "Cache-Control", "max-age=1, stale-while-revalidate=10"));
+        now += 1000;
+        assertNull(storage.getResultOrReturnNull(key));
+        assertNotNull(storage.getServableStaleResultOrReturnNull(key));
+        now += 10 * 1000;
+        assertNull(storage.getServableStaleResultOrReturnNull(key));
+
+        // must-revalidate forbids to serve it stale
+        storage.putResult(key, new ResponseMock(200,
+                "Cache-Control", "max-age=1, stale-while-revalidate=10, must-revalidate"));
+        now += 1000;
+        assertNull(storage.getServableStaleResultOrReturnNull(key));
+    }
+
+    public void testConcurrentRefreshesAreCoalesced() {
+        refreshed(new TextResponseMock(200, "stale", "ETag", "\"v1\"",
+                "Cache-Control", "max-age=1, stale-while-revalidate=60"));
+        now += 2000;
+
+        RecordingCallback first = sendRefreshable();
+        RecordingCallback second = sendRefreshable();
+        RecordingCallback plain = new RecordingCallback();
+        assertFalse(send(new TextCallback(new MethodMock(), plain) {
+
+            @Override
+            public boolean isRefreshable() {
+                return false;
+            }
+        }));
+
+        // everybody got the stale result right away, only one refresh is on the wire
+        assertEquals("[stale]", first.results.toString());
+        assertEquals("[stale]", second.results.toString());
+        assertEquals("[stale]", plain.results.toString());
+        assertEquals(1, refreshes.size());
+
+        refreshed(new TextResponseMock(200, "fresh", "Cache-Control", "max-age=60"));
+        assertEquals("[stale, refreshed fresh]", first.results.toString());
+        assertEquals("[stale, refreshed fresh]", second.results.toString());
+        assertEquals("[stale]", plain.results.toString());
+
+        // fresh again
+        RecordingCallback third = sendRefreshable();
+        assertEquals("[fresh]", third.results.toString());
+        assertEquals(1, refreshes.size());
+    }
+
+    public void testFailedRefresh() {
+        refreshed(new TextResponseMock(200, "stale", "Cache-Control", "max-age=1, stale-while-revalidate=60"));
+        now += 2000;
+
+        RecordingCallback callback = sendRefreshable();
+        refreshes.get(0).onError(null, new RequestException("timeout"));
+        assertEquals("[stale]", callback.results.toString());
+        assertEquals(0, callback.failures);
+
+        // the next one tries again
+        sendRefreshable();
+        assertEquals(2, refreshes.size());
+    }
+}
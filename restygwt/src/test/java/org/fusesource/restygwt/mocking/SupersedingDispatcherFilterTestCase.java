@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Supersede;
+import org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher;
+import org.fusesource.restygwt.client.dispatcher.DispatcherFilter;
+import org.fusesource.restygwt.client.dispatcher.SupersedingDispatcherFilter;
+import org.fusesource.restygwt.mocking.DispatcherMocks.MethodMock;
+import org.fusesource.restygwt.mocking.DispatcherMocks.RecordingCallback;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class SupersedingDispatcherFilterTestCase extends TestCase {
+
+    private SupersedingDispatcherFilter filter;
+    private RecordingCallback outer;
+    private DefaultFilterawareDispatcher dispatcher;
+    private boolean onTheWire;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.filter = new SupersedingDispatcherFilter();
+        this.outer = new RecordingCallback();
+        this.onTheWire = true;
+        this.dispatcher = new DefaultFilterawareDispatcher(filter, new DispatcherFilter() {
+
+            // stands for any filter wrapping the callback, e.g. the throttling one
+            @Override
+            public boolean filter(Method method, RequestBuilder builder) {
+                final RequestCallback callback = builder.getCallback();
+                builder.setCallback(new RequestCallback() {
+
+                    @Override
+                    public void onResponseReceived(Request request, Response response) {
+                        outer.onResponseReceived(request, response);
+                        callback.onResponseReceived(request, response);
+                    }
+
+                    @Override
+                    public void onError(Request request, Throwable exception) {
+                        outer.onError(request, exception);
+                        callback.onError(request, exception);
+                    }
+                });
+                return true;
+            }
+        }) {
+
+            @Override
+            protected Request doSend(Method method, RequestBuilder builder) throws RequestException {
+                if (!onTheWire) {
+                    return null;
+                }
+                Request request = EasyMock.createMock(Request.class);
+                EasyMock.expect(request.isPending()).andReturn(true).anyTimes();
+                ((MethodMock) method).request = request;
+                return request;
+            }
+        };
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private MethodMock send(String group, RequestCallback callback) throws RequestException {
+        MethodMock method = new MethodMock(RequestBuilder.GET, "http://localhost/search");
+        if (group != null) {
+            method.addData(Supersede.GROUP_KEY, group);
+        }
+        method.builder.setCallback(callback);
+        dispatcher.send(method, method.builder);
+        if (method.request != null) {
+            EasyMock.replay(method.request);
+        }
+        return method;
+    }
+
+    private void respond(MethodMock method) {
+        method.builder.getCallback().onResponseReceived(method.request, EasyMock.createMock(Response.class));
+    }
+
+    public void testLatestWins() throws Exception {
+        RecordingCallback first = new RecordingCallback();
+        MethodMock firstMethod = send("search", first);
+        // the first request is going to be cancelled
+        EasyMock.reset(firstMethod.request);
+        EasyMock.expect(firstMethod.request.isPending()).andReturn(true).anyTimes();
+        firstMethod.request.cancel();
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(firstMethod.request);
+
+        RecordingCallback second = new RecordingCallback();
+        MethodMock secondMethod = send("search", second);
+
+        EasyMock.verify(firstMethod.request);
+        assertSame(secondMethod, filter.getInFlight("search"));
+        // the outer callbacks know the first one is done, the callback of the method does not
+        assertEquals(1, outer.errors.size());
+        assertEquals(0, first.errors.size());
+
+        // a late response of the superseded request is dropped
+        respond(firstMethod);
+        assertEquals(0, first.responses);
+
+        respond(secondMethod);
+        assertEquals(1, second.responses);
+        assertEquals(0, second.errors.size());
+        assertNull(filter.getInFlight("search"));
+    }
+
+    public void testNotOnTheWire() throws Exception {
+        onTheWire = false;
+        RecordingCallback first = new RecordingCallback();
+        MethodMock firstMethod = send("search", first);
+        RecordingCallback second = new RecordingCallback();
+        MethodMock secondMethod = send("search", second);
+
+        // nothing to cancel, still the response of the first one never gets through
+        assertEquals(0, outer.errors.size());
+        respond(firstMethod);
+        respond(secondMethod);
+        assertEquals(0, first.responses);
+        assertEquals(1, second.responses);
+    }
+
+    public void testGroupsAreIndependent() throws Exception {
+        RecordingCallback search = new RecordingCallback();
+        MethodMock searchMethod = send("search", search);
+        RecordingCallback lookup = new RecordingCallback();
+        MethodMock lookupMethod = send("lookup", lookup);
+        RecordingCallback plain = new RecordingCallback();
+        MethodMock plainMethod = send(null, plain);
+        MethodMock otherPlainMethod = send(null, new RecordingCallback());
+
+        respond(lookupMethod);
+        respond(searchMethod);
+        respond(plainMethod);
+        respond(otherPlainMethod);
+        assertEquals(1, search.responses);
+        assertEquals(1, lookup.responses);
+        assertEquals(1, plain.responses);
+        assertEquals(0, outer.errors.size());
+        EasyMock.verify(searchMethod.request, lookupMethod.request);
+    }
+
+    public void testErrorOfLatestIsDelivered() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        MethodMock method = send("search", callback);
+        method.builder.getCallback().onError(method.request, new RequestException());
+        assertEquals(1, callback.errors.size());
+        assertNull(filter.getInFlight("search"));
+    }
+}
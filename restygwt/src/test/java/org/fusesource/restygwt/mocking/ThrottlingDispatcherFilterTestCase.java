@@ -0,0 +1,327 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.fusesource.restygwt.client.Method;
+import org.fusesource.restygwt.client.Options;
+import org.fusesource.restygwt.client.dispatcher.DefaultFilterawareDispatcher;
+import org.fusesource.restygwt.client.dispatcher.ThrottlingDispatcherFilter;
+import org.fusesource.restygwt.mocking.DispatcherMocks.RecordingCallback;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class ThrottlingDispatcherFilterTestCase extends TestCase {
+
+    private static final String ROOT = "http://localhost:8080";
+
+    /**
+     * pending until cancelled, never calls back
+     */
+    static class RequestMock extends Request {
+
+        boolean cancelled;
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isPending() {
+            return !cancelled;
+        }
+    }
+
+    /**
+     * does not touch the wire, just remembers what was sent
+     */
+    class RequestBuilderMock extends RequestBuilder {
+
+        final String name;
+        RequestMock request;
+
+        RequestBuilderMock(String name, String url) {
+            super(RequestBuilder.GET, url);
+            this.name = name;
+        }
+
+        @Override
+        public Request send() throws RequestException {
+            sent.add(this);
+            maxInFlight = Math.max(maxInFlight, filter.getInFlight(ROOT));
+            request = new RequestMock();
+            return request;
+        }
+
+        void complete() {
+            getCallback().onResponseReceived(null, EasyMock.createMock(Response.class));
+        }
+    }
+
+    private List<RequestBuilderMock> sent;
+    private int doSent;
+    private int maxInFlight;
+    private List<Runnable> scheduled;
+    private ThrottlingDispatcherFilter filter;
+    private DefaultFilterawareDispatcher dispatcher;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.sent = new ArrayList<RequestBuilderMock>();
+        this.doSent = 0;
+        this.maxInFlight = 0;
+        this.scheduled = new ArrayList<Runnable>();
+        throttle(2);
+    }
+
+    private void throttle(int maxInFlight) {
+        dispatcher = new DefaultFilterawareDispatcher() {
+
+            @Override
+            protected Request doSend(Method method, RequestBuilder builder) throws RequestException {
+                doSent++;
+                return super.doSend(method, builder);
+            }
+        };
+        filter = new ThrottlingDispatcherFilter(dispatcher, maxInFlight) {
+
+            @Override
+            protected void schedule(Runnable check, int delayMillis) {
+                assertEquals(CANCEL_CHECK_MILLIS, delayMillis);
+                scheduled.add(check);
+            }
+        };
+        dispatcher.addFilter(filter);
+    }
+
+    private void runScheduled() {
+        List<Runnable> run = new ArrayList<Runnable>(scheduled);
+        scheduled.clear();
+        for (Runnable check : run) {
+            check.run();
+        }
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private RequestBuilderMock send(String name, int priority) throws RequestException {
+        return send(name, priority, ROOT + "/api/" + name, new RecordingCallback());
+    }
+
+    private RequestBuilderMock send(String name, int priority, String url, RequestCallback callback)
+            throws RequestException {
+        return (RequestBuilderMock) send(method(name, priority, url, callback)).builder;
+    }
+
+    private Method method(String name, int priority, String url, RequestCallback callback) {
+        Map<String, String> data = new HashMap<String, String>();
+        if (priority != 0) {
+            data.put(Options.PRIORITY_KEY, String.valueOf(priority));
+        }
+        Method method = EasyMock.createMock(Method.class);
+        final RequestBuilderMock builder = new RequestBuilderMock(name, url);
+        EasyMock.expect(method.getData()).andReturn(data).anyTimes();
+        // like Method#send the method knows the request the dispatcher sent
+        EasyMock.expect(method.getRequest()).andAnswer(new IAnswer<Request>() {
+
+            @Override
+            public Request answer() {
+                return builder.request;
+            }
+        }).anyTimes();
+        EasyMock.replay(method);
+
+        builder.setCallback(callback);
+        method.builder = builder;
+        return method;
+    }
+
+    private Method send(Method method) throws RequestException {
+        dispatcher.send(method, method.builder);
+        return method;
+    }
+
+    private List<String> sentNames() {
+        List<String> names = new ArrayList<String>();
+        for (RequestBuilderMock builder : sent) {
+            names.add(builder.name);
+        }
+        return names;
+    }
+
+    public void testCapAndPriority() throws Exception {
+        send("first", 0);
+        send("second", 0);
+        send("background-1", -5);
+        send("background-2", -5);
+        send("normal", 0);
+        send("user", 10);
+
+        assertEquals(2, sent.size());
+        assertEquals(2, filter.getInFlight(ROOT));
+        assertEquals(4, filter.getQueued(ROOT));
+
+        // drain: whatever completes, the next one is the most important queued request
+        while (sent.size() < 6) {
+            sent.get(sent.size() - 2).complete();
+        }
+        assertEquals(2, maxInFlight);
+        assertEquals("[first, second, user, normal, background-1, background-2]", sentNames().toString());
+        // released requests are sent by the dispatcher as well
+        assertEquals(6, doSent);
+
+        sent.get(4).complete();
+        sent.get(5).complete();
+        assertEquals(0, filter.getInFlight(ROOT));
+        assertEquals(0, filter.getQueued(ROOT));
+    }
+
+    public void testCallbackIsCalledOnce() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        RequestBuilderMock builder = send("one", 0, ROOT + "/api/one", callback);
+        send("two", 0);
+        send("three", 0);
+
+        builder.getCallback().onError(null, new RequestException());
+        // e.g. a timeout after the error must not release a second slot
+        builder.getCallback().onError(null, new RequestException());
+
+        assertEquals(2, callback.errors.size());
+        assertEquals(0, callback.responses);
+        assertEquals(2, filter.getInFlight(ROOT));
+        assertEquals(0, filter.getQueued(ROOT));
+        assertEquals("[one, two, three]", sentNames().toString());
+    }
+
+    public void testRootsAreIndependent() throws Exception {
+        send("a1", 0);
+        send("a2", 0);
+        send("a3", 0);
+        send("b1", 0, "http://example.com/api/b1", new RecordingCallback());
+        send("b2", 0, "http://example.com/api/b2", new RecordingCallback());
+
+        assertEquals("[a1, a2, b1, b2]", sentNames().toString());
+        assertEquals(1, filter.getQueued(ROOT));
+        assertEquals(0, filter.getQueued("http://example.com"));
+        assertEquals(2, filter.getInFlight("http://example.com"));
+    }
+
+    public void testCapUnderLoad() throws Exception {
+        throttle(4);
+
+        for (int i = 0; i < 100; i++) {
+            send("r" + i, i % 3);
+        }
+        assertEquals(4, sent.size());
+
+        int completed = 0;
+        while (completed < sent.size()) {
+            sent.get(completed++).complete();
+            assertTrue(filter.getInFlight(ROOT) <= 4);
+        }
+        assertEquals(100, sent.size());
+        assertEquals(4, maxInFlight);
+        assertEquals(0, filter.getInFlight(ROOT));
+    }
+
+    public void testCancelledRequestFreesItsSlot() throws Exception {
+        RequestBuilderMock one = send("one", 0);
+        send("two", 0);
+        send("three", 0);
+        assertEquals(1, filter.getQueued(ROOT));
+
+        // a cancelled request never calls back
+        one.request.cancel();
+        send("four", 0);
+
+        assertEquals("[one, two, three]", sentNames().toString());
+        assertEquals(2, filter.getInFlight(ROOT));
+        assertEquals(1, filter.getQueued(ROOT));
+
+        // a queued request released on a cancel can be cancelled as well
+        sent.get(2).request.cancel();
+        send("five", 0);
+        assertEquals("[one, two, three, four]", sentNames().toString());
+        assertEquals(2, filter.getInFlight(ROOT));
+        assertEquals(1, filter.getQueued(ROOT));
+    }
+
+    public void testCancelQueued() throws Exception {
+        RequestBuilderMock one = send("one", 0);
+        send("two", 0);
+        RecordingCallback callback = new RecordingCallback();
+        Method three = send(method("three", 0, ROOT + "/api/three", callback));
+        send("four", 0);
+
+        assertTrue(filter.cancelQueued(three));
+        assertFalse(filter.cancelQueued(three));
+        assertEquals(1, callback.errors.size());
+        assertEquals(1, filter.getQueued(ROOT));
+
+        one.complete();
+        assertEquals("[one, two, four]", sentNames().toString());
+        assertEquals(0, filter.getQueued(ROOT));
+        assertEquals(0, callback.responses);
+    }
+
+    public void testCancelledSlotIsFreedWithoutFurtherRequests() throws Exception {
+        RequestBuilderMock one = send("one", 0);
+        send("two", 0);
+        send("three", 0);
+        send("four", 0);
+        assertEquals(1, scheduled.size());
+
+        // nothing cancelled yet, keep checking
+        runScheduled();
+        assertEquals("[one, two]", sentNames().toString());
+        assertEquals(1, scheduled.size());
+
+        one.request.cancel();
+        runScheduled();
+        assertEquals("[one, two, three]", sentNames().toString());
+        assertEquals(1, filter.getQueued(ROOT));
+        assertEquals(1, scheduled.size());
+
+        sent.get(1).complete();
+        assertEquals("[one, two, three, four]", sentNames().toString());
+        // the queue is empty, stop checking
+        runScheduled();
+        assertEquals(0, scheduled.size());
+        assertEquals(2, filter.getInFlight(ROOT));
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.mocking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.fusesource.restygwt.client.cache.CacheKey;
+import org.fusesource.restygwt.client.cache.SimpleCacheKey;
+import org.fusesource.restygwt.client.cache.VolatileQueueableCacheStorage;
+import org.fusesource.restygwt.mocking.RevalidatingQueueableCacheStorageTestCase.ResponseMock;
+
+import com.google.gwt.junit.GWTMockUtilities;
+
+
+public class VolatileQueueableCacheStorageTestCase extends TestCase {
+
+    /**
+     * sweeps when told so
+     */
+    class StorageMock extends VolatileQueueableCacheStorage {
+
+        StorageMock() {
+            super(100, 50);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+
+        @Override
+        protected void schedule(int delayMillis) {
+            scheduled.add(now + delayMillis);
+        }
+
+        @Override
+        protected void cancelSweep() {
+            cancelled++;
+        }
+
+        /**
+         * let the time pass until the last scheduled sweep and run it
+         */
+        void sweepWhenDue() {
+            now = scheduled.get(scheduled.size() - 1);
+            sweep();
+        }
+    }
+
+    private long now;
+    private List<Long> scheduled;
+    private int cancelled;
+    private StorageMock storage;
+
+    protected void setUp() throws Exception{
+        super.setUp();
+        GWTMockUtilities.disarm();
+
+        this.now = 1000;
+        this.scheduled = new ArrayList<Long>();
+        this.cancelled = 0;
+        this.storage = new StorageMock();
+    }
+
+    protected void tearDown() {
+        GWTMockUtilities.restore();
+    }
+
+    private static CacheKey key(int i) {
+        return new SimpleCacheKey("GET http://localhost/api/items/" + i);
+    }
+
+    public void testOneTimerForAllKeys() {
+        for (int i = 0; i < 1000; i++) {
+            storage.putResult(key(i), new ResponseMock(200));
+            now++;
+        }
+        // one sweep when the first one expires
+        assertEquals(1, scheduled.size());
+        assertEquals(Long.valueOf(1100), scheduled.get(0));
+
+        storage.sweepWhenDue();
+        // all which expired by then are dropped in one go, the next sweep is
+        // no earlier than the sweep interval
+        assertNull(storage.getResultOrReturnNull(key(0)));
+        assertNotNull(storage.getResultOrReturnNull(key(1)));
+        assertEquals(999, storage.getQueuedExpiries());
+        assertEquals(2, scheduled.size());
+        assertEquals(Long.valueOf(1150), scheduled.get(1));
+
+        while (storage.getQueuedExpiries() > 0) {
+            storage.sweepWhenDue();
+        }
+        // a sweep every 50 milliseconds until the last one expired at 2099
+        assertEquals(21, scheduled.size());
+        assertNull(storage.getResultOrReturnNull(key(999)));
+    }
+
+    public void testLazyExpiry() {
+        storage.putResult(key(1), new ResponseMock(200));
+        now += 99;
+        assertNotNull(storage.getResultOrReturnNull(key(1)));
+        now += 1;
+        // no sweep ran yet, still it is gone
+        assertNull(storage.getResultOrReturnNull(key(1)));
+    }
+
+    public void testPutAgainRenews() {
+        storage.putResult(key(1), new ResponseMock(200));
+        now += 60;
+        storage.putResult(key(1), new ResponseMock(200));
+
+        storage.sweepWhenDue();
+        assertNotNull(storage.getResultOrReturnNull(key(1)));
+        now += 60;
+        assertNull(storage.getResultOrReturnNull(key(1)));
+    }
+
+    public void testPurgeScope() {
+        storage.putResult(key(1), new ResponseMock(200), "users");
+        storage.putResult(key(2), new ResponseMock(200), "orders");
+        storage.putResult(key(3), new ResponseMock(200), "users", "orders");
+        storage.purge("users");
+        assertNull(storage.getResultOrReturnNull(key(1), "users"));
+        assertNull(storage.getResultOrReturnNull(key(3), "orders"));
+        assertNotNull(storage.getResultOrReturnNull(key(2), "orders"));
+
+        // stored again after the purge, lives its own lifetime
+        now += 50;
+        storage.putResult(key(1), new ResponseMock(200), "users");
+        storage.sweepWhenDue();
+        assertNotNull(storage.getResultOrReturnNull(key(1), "users"));
+        assertNull(storage.getResultOrReturnNull(key(2), "orders"));
+        assertEquals(1, storage.getQueuedExpiries());
+    }
+
+    public void testPurgeCancelsTheSweep() {
+        storage.putResult(key(1), new ResponseMock(200));
+        storage.purge();
+        assertEquals(1, cancelled);
+        assertEquals(0, storage.getQueuedExpiries());
+
+        storage.putResult(key(1), new ResponseMock(200));
+        assertEquals(2, scheduled.size());
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2009-2012 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.restygwt.server;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * counts the requests for prefetched responses, apart from the
+ * {@link CachingTestServlet} to keep its counter to itself.
+ */
+public class PrefetchTestServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static int contactCounter = 0;
+
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        response.setStatus(200);
+        if (request.getPathInfo().equals("/getnumberofcontacts")) {
+            response.getWriter().print(contactCounter);
+        } else {
+            ++contactCounter;
+            response.getWriter().print("{\"name\":\"myName\"}");
+        }
+    }
+}